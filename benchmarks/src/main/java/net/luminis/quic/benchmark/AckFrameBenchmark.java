@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.benchmark;
+
+import net.luminis.quic.frame.AckFrame;
+import net.luminis.quic.frame.Range;
+import net.luminis.quic.generic.InvalidIntegerEncodingException;
+import net.luminis.quic.impl.Version;
+import net.luminis.quic.log.Logger;
+import net.luminis.quic.log.NullLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing and serializing ack frames; with many ranges, the frame resembles the acks sent under heavy loss
+ * or reordering.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AckFrameBenchmark {
+
+    @Param({ "1", "32", "256" })
+    public int numberOfRanges;
+
+    private final Logger log = new NullLogger();
+    private List<Range> ranges;
+    private ByteBuffer serialized;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setup() {
+        // Ranges of 10 acknowledged packets, separated by gaps of 3 missing packets, largest first.
+        ranges = new ArrayList<>();
+        long largest = 1_000_000;
+        for (int i = 0; i < numberOfRanges; i++) {
+            ranges.add(new Range(largest - 9, largest));
+            largest -= 13;
+        }
+        buffer = ByteBuffer.allocate(1500);
+        serialized = ByteBuffer.allocate(1500);
+        new AckFrame(Version.getDefault(), ranges, 10).serialize(serialized);
+        serialized.flip();
+    }
+
+    @Benchmark
+    public AckFrame parse() throws InvalidIntegerEncodingException {
+        serialized.rewind();
+        return new AckFrame().parse(serialized, log);
+    }
+
+    @Benchmark
+    public int serialize() {
+        buffer.clear();
+        new AckFrame(Version.getDefault(), ranges, 10).serialize(buffer);
+        return buffer.position();
+    }
+}
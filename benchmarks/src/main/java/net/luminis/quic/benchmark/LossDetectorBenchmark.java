@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.benchmark;
+
+import net.luminis.quic.cc.CongestionControlEventListener;
+import net.luminis.quic.cc.NewRenoCongestionController;
+import net.luminis.quic.crypto.Aead;
+import net.luminis.quic.crypto.Aes128Gcm;
+import net.luminis.quic.frame.AckFrame;
+import net.luminis.quic.frame.Range;
+import net.luminis.quic.frame.StreamFrame;
+import net.luminis.quic.impl.Role;
+import net.luminis.quic.impl.Version;
+import net.luminis.quic.log.Logger;
+import net.luminis.quic.log.NullLogger;
+import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.packet.ShortHeaderPacket;
+import net.luminis.quic.recovery.LossDetector;
+import net.luminis.quic.recovery.RecoveryManager;
+import net.luminis.quic.recovery.RttEstimator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures processing acknowledgements by the loss detector when a large number of packets is in flight: either with
+ * one ack frame acknowledging all packets at once, or with a sequence of (cumulative) ack frames, each acknowledging
+ * two more packets, like a receiver that acknowledges every second packet.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LossDetectorBenchmark {
+
+    @Param({ "100", "1000", "10000" })
+    public int packetsInFlight;
+
+    private final Logger log = new NullLogger();
+    private QuicPacket[] packets;
+    private AckFrame ackAll;
+    private AckFrame[] cumulativeAcks;
+    private LossDetector lossDetector;
+
+    @Setup(Level.Trial)
+    public void createPackets() {
+        Version version = Version.getDefault();
+        Aead aead = new Aes128Gcm(version, Role.Client, log);
+        aead.computeKeys(new byte[32]);
+        ByteBuffer buffer = ByteBuffer.allocate(1500);
+        byte[] data = new byte[1200];
+        byte[] destinationConnectionId = new byte[8];
+
+        packets = new QuicPacket[packetsInFlight];
+        for (int i = 0; i < packetsInFlight; i++) {
+            ShortHeaderPacket packet = new ShortHeaderPacket(version, destinationConnectionId, new StreamFrame(0, (long) i * data.length, data, false));
+            packet.setPacketNumber(i);
+            // Generating the packet determines its size, which is needed by the congestion controller.
+            buffer.clear();
+            packet.generatePacketBytes(aead, buffer);
+            packets[i] = packet;
+        }
+
+        ackAll = new AckFrame(new Range(0, packetsInFlight - 1));
+        cumulativeAcks = new AckFrame[packetsInFlight / 2];
+        for (int i = 0; i < cumulativeAcks.length; i++) {
+            cumulativeAcks[i] = new AckFrame(new Range(0, 2 * i + 1));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void sendPackets() {
+        RttEstimator rttEstimator = new RttEstimator(log);
+        NewRenoCongestionController congestionController = new NewRenoCongestionController(log, new CongestionControlEventListener() {
+            @Override
+            public void bytesInFlightIncreased(long bytesInFlight) {
+            }
+
+            @Override
+            public void bytesInFlightDecreased(long bytesInFlight) {
+            }
+        });
+        RecoveryManager recoveryManager = new RecoveryManager(Role.Client, rttEstimator, congestionController, new NoOpSender(), log);
+        lossDetector = new LossDetector(recoveryManager, rttEstimator, congestionController, () -> {}, log.getQLog());
+
+        Instant timeSent = Instant.now();
+        for (QuicPacket packet: packets) {
+            lossDetector.packetSent(packet, timeSent, p -> {});
+        }
+    }
+
+    @Benchmark
+    public LossDetector ackAllAtOnce() {
+        lossDetector.onAckReceived(ackAll, Instant.now());
+        return lossDetector;
+    }
+
+    @Benchmark
+    public LossDetector ackEverySecondPacket() {
+        Instant timeReceived = Instant.now();
+        for (AckFrame ack: cumulativeAcks) {
+            lossDetector.onAckReceived(ack, timeReceived);
+        }
+        return lossDetector;
+    }
+}
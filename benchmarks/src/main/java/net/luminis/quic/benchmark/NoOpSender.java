@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.benchmark;
+
+import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.common.PnSpace;
+import net.luminis.quic.frame.QuicFrame;
+import net.luminis.quic.send.Sender;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Sender that ignores everything, for benchmarking components that need a sender but whose output is not relevant.
+ */
+class NoOpSender implements Sender {
+
+    @Override
+    public void send(QuicFrame frame, EncryptionLevel level) {
+    }
+
+    @Override
+    public void send(QuicFrame frame, EncryptionLevel level, Consumer<QuicFrame> frameLostCallback) {
+    }
+
+    @Override
+    public void send(Function<Integer, QuicFrame> frameSupplier, int minimumSize, EncryptionLevel level, Consumer<QuicFrame> lostCallback) {
+    }
+
+    @Override
+    public void setInitialToken(byte[] token) {
+    }
+
+    @Override
+    public void sendAck(PnSpace pnSpace, int maxDelay) {
+    }
+
+    @Override
+    public void sendProbe(EncryptionLevel level) {
+    }
+
+    @Override
+    public void sendProbe(List<QuicFrame> frames, EncryptionLevel level) {
+    }
+
+    @Override
+    public void packetProcessed(boolean expectingMore) {
+    }
+
+    @Override
+    public void datagramProcessed(boolean expectingMore) {
+    }
+
+    @Override
+    public void flush() {
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.benchmark;
+
+import net.luminis.quic.ack.GlobalAckGenerator;
+import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.frame.StreamFrame;
+import net.luminis.quic.impl.VersionHolder;
+import net.luminis.quic.send.GlobalPacketAssembler;
+import net.luminis.quic.send.SendItem;
+import net.luminis.quic.send.SendRequestQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures assembling 1-RTT packets from queued stream frame send requests, as the sender does for bulk data transfer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PacketAssemblerBenchmark {
+
+    private static final int MAX_DATAGRAM_SIZE = 1232;
+    // Stream frame overhead: type, stream id, offset and length
+    private static final int MAX_STREAM_FRAME_OVERHEAD = 1 + 8 + 8 + 2;
+
+    @Param({ "1", "16", "256" })
+    public int sendRequests;
+
+    private final byte[] connectionId = new byte[8];
+    private final byte[] data = new byte[MAX_DATAGRAM_SIZE];
+    private SendRequestQueue[] sendRequestQueues;
+    private GlobalPacketAssembler packetAssembler;
+    private long streamOffset;
+
+    @Setup
+    public void setup() {
+        sendRequestQueues = new SendRequestQueue[EncryptionLevel.values().length];
+        Arrays.stream(EncryptionLevel.values()).forEach(level -> sendRequestQueues[level.ordinal()] = new SendRequestQueue(level));
+        packetAssembler = new GlobalPacketAssembler(VersionHolder.withDefault(), sendRequestQueues, new GlobalAckGenerator(new NoOpSender()));
+        packetAssembler.enableAppLevel();
+    }
+
+    @Benchmark
+    public int assemble() {
+        SendRequestQueue appQueue = sendRequestQueues[EncryptionLevel.App.ordinal()];
+        for (int i = 0; i < sendRequests; i++) {
+            appQueue.addRequest(this::createStreamFrame, MAX_STREAM_FRAME_OVERHEAD + 1, f -> {});
+        }
+
+        int packetCount = 0;
+        List<SendItem> items;
+        do {
+            items = packetAssembler.assemble(Integer.MAX_VALUE, MAX_DATAGRAM_SIZE, connectionId, connectionId);
+            packetCount += items.size();
+        }
+        while (!items.isEmpty());
+        return packetCount;
+    }
+
+    private StreamFrame createStreamFrame(int maxSize) {
+        int length = maxSize - MAX_STREAM_FRAME_OVERHEAD;
+        StreamFrame frame = new StreamFrame(0, streamOffset, data, 0, length, false);
+        streamOffset += length;
+        return frame;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.benchmark;
+
+import net.luminis.quic.frame.StreamFrame;
+import net.luminis.quic.stream.ReceiveBufferImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures adding stream frames to a receive buffer and reading the data from it, with frames arriving in order or
+ * reordered (every group of frames arriving in reverse order, so all but one frame of each group is buffered out of
+ * order first).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReceiveBufferBenchmark {
+
+    private static final int NUMBER_OF_FRAMES = 1024;
+    private static final int FRAME_SIZE = 1200;
+
+    @Param({ "1", "8", "32" })
+    public int reorderDistance;
+
+    private StreamFrame[] frames;
+    private ByteBuffer readBuffer;
+
+    @Setup
+    public void setup() {
+        byte[] data = new byte[FRAME_SIZE];
+        StreamFrame[] inOrder = new StreamFrame[NUMBER_OF_FRAMES];
+        for (int i = 0; i < NUMBER_OF_FRAMES; i++) {
+            inOrder[i] = new StreamFrame(0, (long) i * FRAME_SIZE, data, i == NUMBER_OF_FRAMES - 1);
+        }
+        frames = new StreamFrame[NUMBER_OF_FRAMES];
+        for (int i = 0; i < NUMBER_OF_FRAMES; i++) {
+            int groupStart = i - i % reorderDistance;
+            int groupEnd = Integer.min(groupStart + reorderDistance, NUMBER_OF_FRAMES);
+            frames[i] = inOrder[groupEnd - 1 - (i - groupStart)];
+        }
+        readBuffer = ByteBuffer.allocate(16384);
+    }
+
+    /**
+     * Adds all frames and reads the data as soon as it becomes available, like a stream reader that keeps up.
+     */
+    @Benchmark
+    public long addAndRead() {
+        ReceiveBufferImpl receiveBuffer = new ReceiveBufferImpl();
+        long totalRead = 0;
+        for (StreamFrame frame: frames) {
+            if (receiveBuffer.add(frame)) {
+                int read;
+                do {
+                    readBuffer.clear();
+                    read = receiveBuffer.read(readBuffer);
+                    totalRead += Integer.max(read, 0);
+                }
+                while (read > 0);
+            }
+        }
+        return totalRead;
+    }
+}
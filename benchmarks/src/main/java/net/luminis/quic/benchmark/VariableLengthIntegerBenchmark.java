@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.benchmark;
+
+import net.luminis.quic.generic.InvalidIntegerEncodingException;
+import net.luminis.quic.generic.VariableLengthInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and decoding of variable-length integers, for each of the four possible encoded lengths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VariableLengthIntegerBenchmark {
+
+    // https://www.rfc-editor.org/rfc/rfc9000.html#name-sample-variable-length-inte
+    @Param({ "37", "15293", "494878333", "151288809941952652" })
+    public long value;
+
+    private ByteBuffer encodeBuffer;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setup() {
+        encodeBuffer = ByteBuffer.allocate(8);
+        encoded = ByteBuffer.allocate(8);
+        VariableLengthInteger.encode(value, encoded);
+        encoded.flip();
+    }
+
+    @Benchmark
+    public int encode() {
+        encodeBuffer.clear();
+        return VariableLengthInteger.encode(value, encodeBuffer);
+    }
+
+    @Benchmark
+    public long decode() throws InvalidIntegerEncodingException {
+        encoded.rewind();
+        return VariableLengthInteger.parseLong(encoded);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.packet;
+
+import net.luminis.quic.crypto.Aead;
+import net.luminis.quic.crypto.Aes128Gcm;
+import net.luminis.quic.crypto.Aes256Gcm;
+import net.luminis.quic.crypto.ChaCha20;
+import net.luminis.quic.frame.StreamFrame;
+import net.luminis.quic.impl.Role;
+import net.luminis.quic.impl.Version;
+import net.luminis.quic.log.Logger;
+import net.luminis.quic.log.NullLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures protecting (generate) and unprotecting (parse) 1-RTT packets for each of the cipher suites supported.
+ * This benchmark lives in the packet package (of the benchmark module), so it can use the same parse method (with a
+ * reusable decryption buffer) as the packet parser does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShortHeaderPacketBenchmark {
+
+    // Parsing the same packet over and over again would not be realistic (and would trigger the replay protection of
+    // some cipher implementations), so parsing cycles through a set of different packets.
+    private static final int NUMBER_OF_PACKETS = 1024;
+
+    @Param({ "TLS_AES_128_GCM_SHA256", "TLS_AES_256_GCM_SHA384", "TLS_CHACHA20_POLY1305_SHA256" })
+    public String cipherSuite;
+
+    @Param({ "64", "1200" })
+    public int payloadSize;
+
+    private final Logger log = new NullLogger();
+    private final byte[] destinationConnectionId = new byte[] { 0x0d, 0x0c, 0x01, 0x0d, 0x0c, 0x02, 0x0d, 0x0c };
+    private Version version;
+    private Aead senderAead;
+    private Aead receiverAead;
+    private byte[] streamData;
+    private long packetNumber;
+    private ByteBuffer datagramBuffer;
+    private byte[][] packets;
+    private int nextPacket;
+    private DecryptionBuffer decryptionBuffer;
+
+    @Setup
+    public void setup() {
+        version = Version.getDefault();
+        byte[] trafficSecret = new byte[cipherSuite.endsWith("SHA384")? 48: 32];
+        Arrays.fill(trafficSecret, (byte) 0x5a);
+        senderAead = createAead(Role.Client, trafficSecret);
+        receiverAead = createAead(Role.Server, trafficSecret);
+        streamData = new byte[payloadSize];
+        datagramBuffer = ByteBuffer.allocate(QuicPacket.MAX_PACKET_SIZE);
+        decryptionBuffer = new DecryptionBuffer();
+
+        packets = new byte[NUMBER_OF_PACKETS][];
+        for (int i = 0; i < NUMBER_OF_PACKETS; i++) {
+            ShortHeaderPacket packet = createPacket();
+            datagramBuffer.clear();
+            int length = packet.generatePacketBytes(senderAead, datagramBuffer);
+            packets[i] = Arrays.copyOf(datagramBuffer.array(), length);
+        }
+    }
+
+    @Benchmark
+    public int generate() {
+        datagramBuffer.clear();
+        // Packet number must increase, as a nonce may never be reused for encryption.
+        return createPacket().generatePacketBytes(senderAead, datagramBuffer);
+    }
+
+    @Benchmark
+    public ShortHeaderPacket parse() throws Exception {
+        byte[] packetBytes = packets[nextPacket];
+        nextPacket = (nextPacket + 1) % NUMBER_OF_PACKETS;
+        // Header protection is removed in place, so each parse needs a fresh copy, just like received datagrams.
+        datagramBuffer.clear();
+        datagramBuffer.put(packetBytes);
+        datagramBuffer.flip();
+        ShortHeaderPacket packet = new ShortHeaderPacket(version);
+        packet.parse(datagramBuffer, receiverAead, 0, log, destinationConnectionId.length, decryptionBuffer);
+        return packet;
+    }
+
+    private ShortHeaderPacket createPacket() {
+        ShortHeaderPacket packet = new ShortHeaderPacket(version, destinationConnectionId, new StreamFrame(version, 0, packetNumber * payloadSize, streamData, false));
+        packet.setPacketNumber(packetNumber++);
+        return packet;
+    }
+
+    private Aead createAead(Role role, byte[] trafficSecret) {
+        Aead aead;
+        switch (cipherSuite) {
+            case "TLS_AES_128_GCM_SHA256":
+                aead = new Aes128Gcm(version, role, log);
+                break;
+            case "TLS_AES_256_GCM_SHA384":
+                aead = new Aes256Gcm(version, role, log);
+                break;
+            case "TLS_CHACHA20_POLY1305_SHA256":
+                aead = new ChaCha20(version, role, log);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported cipher suite " + cipherSuite);
+        }
+        aead.computeKeys(trafficSecret);
+        return aead;
+    }
+}
@@ -20,6 +20,8 @@ package net.luminis.quic;
 
 public interface ConnectionConfig {
 
+    enum CongestionControlAlgorithm { NewReno, Cubic, Bbr }
+
     /**
      * @return  the maximum idle time in milliseconds before the connection is closed.
      */
@@ -59,4 +61,28 @@ public interface ConnectionConfig {
      * @return  the maximum buffer size on stream level (per stream) for bidirectional streams.
      */
     long maxBidirectionalStreamBufferSize();
+
+    /**
+     * @return  whether receive windows (flow control limits) are tuned dynamically; when enabled, the stream and
+     * connection windows grow towards the bandwidth-delay product (as measured by the rate at which the application
+     * reads and the round trip time), starting at the buffer sizes above and up to the maximum receive windows.
+     * Disabled by default.
+     */
+    default boolean receiveWindowAutoTuning() {
+        return false;
+    }
+
+    /**
+     * @return  the maximum receive window on stream level (per stream), when receive window auto-tuning is enabled.
+     */
+    default long maxStreamReceiveWindow() {
+        return 0;
+    }
+
+    /**
+     * @return  the maximum receive window on connection level, when receive window auto-tuning is enabled.
+     */
+    default long maxConnectionReceiveWindow() {
+        return 0;
+    }
 }
@@ -115,6 +115,16 @@ public interface QuicClientConnection extends QuicConnection {
 
         Builder sessionTicket(byte[] ticketData);
 
+        /**
+         * Sets the cache for address validation tokens. Tokens received from the server (in NEW_TOKEN frames) are
+         * stored in the cache, keyed by server name; when the cache contains a token for the server when connecting,
+         * it is used in the Initial packets, so the server can skip address validation (and e.g. does not need to
+         * send a Retry).
+         * @param tokenCache  the cache, which can be shared between connections
+         * @return  the builder
+         */
+        Builder tokenCache(TokenCache tokenCache);
+
         Builder proxy(String host);
 
         Builder secrets(Path secretsFile);
@@ -125,6 +135,36 @@ public interface QuicClientConnection extends QuicConnection {
 
         Builder initialRtt(int initialRtt);
 
+        /**
+         * The congestion control algorithm to use for this connection; default is NewReno.
+         * @param algorithm
+         * @return
+         */
+        Builder congestionControlAlgorithm(ConnectionConfig.CongestionControlAlgorithm algorithm);
+
+        /**
+         * The maximum number of datagrams that is sent in one burst, i.e. without pacing; default is 10.
+         * @param datagrams  burst allowance, 0 disables pacing
+         * @return
+         */
+        Builder pacingBurstAllowance(int datagrams);
+
+        /**
+         * Enables receive window auto-tuning: stream and connection receive windows start at the configured buffer
+         * sizes and grow (when the application reads fast enough) up to the given maximums.
+         * @param maxStreamReceiveWindow  maximum receive window per stream
+         * @param maxConnectionReceiveWindow  maximum receive window for the connection
+         * @return
+         */
+        Builder receiveWindowAutoTuning(long maxStreamReceiveWindow, long maxConnectionReceiveWindow);
+
+        /**
+         * Enables receiving (unreliable) datagrams (https://www.rfc-editor.org/rfc/rfc9221.html).
+         * @param maxDatagramFrameSize  the maximum size of a datagram frame the peer may send, 0 to disable
+         * @return
+         */
+        Builder maxDatagramFrameSize(int maxDatagramFrameSize);
+
         Builder cipherSuite(TlsConstants.CipherSuite cipherSuite);
 
         Builder noServerCertificateCheck();
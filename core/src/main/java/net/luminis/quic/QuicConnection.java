@@ -18,6 +18,7 @@
  */
 package net.luminis.quic;
 
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.function.Consumer;
 
@@ -94,6 +95,30 @@ public interface QuicConnection {
 
     void setPeerInitiatedStreamCallback(Consumer<QuicStream> streamConsumer);
 
+    /**
+     * Sends an unreliable datagram (https://www.rfc-editor.org/rfc/rfc9221.html). Datagrams are subject to congestion
+     * control, but are not flow controlled and are never retransmitted when lost.
+     * @param data  the datagram data, i.e. the remaining bytes of the buffer (which are copied)
+     * @throws IllegalStateException when the peer does not (or not yet, i.e. before the handshake is complete)
+     * support receiving datagrams
+     * @throws IllegalArgumentException when the datagram is larger than the maximum datagram size
+     */
+    void sendDatagram(ByteBuffer data);
+
+    /**
+     * @return  the maximum size of datagram data that can be sent with sendDatagram(ByteBuffer), 0 when the peer does
+     * not support receiving datagrams.
+     */
+    int getMaxDatagramSize();
+
+    /**
+     * Sets the callback that is called with the data of each datagram that is received. The callback is called on the
+     * thread that processes incoming packets, so it should not block.
+     * Datagrams are only accepted when support for receiving datagrams is enabled in the connection configuration.
+     * @param datagramConsumer
+     */
+    void setDatagramReceivedCallback(Consumer<ByteBuffer> datagramConsumer);
+
     void close();
 
     /**
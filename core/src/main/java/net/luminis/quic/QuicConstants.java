@@ -42,6 +42,8 @@ public class QuicConstants {
         retry_source_connection_id(0x10),
         // https://www.ietf.org/archive/id/draft-ietf-quic-version-negotiation-05.html#name-quic-transport-parameter
         version_information(0x11),
+        // https://www.rfc-editor.org/rfc/rfc9221.html#name-transport-parameter
+        max_datagram_frame_size(0x20),
         ;
         public final int value;
 
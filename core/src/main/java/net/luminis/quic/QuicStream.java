@@ -20,6 +20,9 @@ package net.luminis.quic;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 
 /**
  * A QUIC stream.
@@ -45,6 +48,55 @@ public interface QuicStream {
      */
     OutputStream getOutputStream();
 
+    /**
+     * Reads data sent by the peer into the given buffer, without blocking. The returned future completes as soon as at
+     * least one byte is read, or the end of the stream is reached. At most one asynchronous read can be pending, and
+     * asynchronous reads should not be mixed with reads on the input stream.
+     * <p>
+     * Note that (non-async) dependent actions of the returned future might be executed by the thread that processes
+     * incoming packets, so these must not block; use the async variants (e.g. <code>thenAcceptAsync</code>) for
+     * actions that might block or take long.
+     *
+     * @param buffer  the buffer to read into
+     * @return  a future that completes with the number of bytes read, or -1 if the end of the stream has been reached
+     * @throws java.nio.channels.ReadPendingException  if a previous asynchronous read has not completed yet
+     */
+    CompletableFuture<Integer> readAsync(ByteBuffer buffer);
+
+    /**
+     * Writes the remaining bytes of the given buffer to the stream, without blocking. The data is not copied, so the
+     * caller must not change the content of the buffer anymore. The returned future completes when all data is buffered
+     * for sending, i.e. when a next write can be done. At most one asynchronous write can be pending, and asynchronous
+     * writes should not be mixed with writes on the output stream.
+     * <p>
+     * Note that (non-async) dependent actions of the returned future might be executed by the thread that sends
+     * packets, so these must not block; use the async variants (e.g. <code>thenRunAsync</code>) for actions that might
+     * block or take long.
+     *
+     * @param data  the data to write
+     * @return  a future that completes when all data is buffered
+     * @throws java.nio.channels.WritePendingException  if a previous asynchronous write has not completed yet
+     */
+    CompletableFuture<Void> writeAsync(ByteBuffer data);
+
+    /**
+     * Returns a publisher of the data sent by the peer. Data is only read from the stream when the subscriber has
+     * signalled demand, so a slow subscriber is subject to flow control just like a slow reader of the input stream.
+     * The publisher supports only one subscriber; cancelling the subscription aborts reading the stream.
+     *
+     * @return  the publisher
+     */
+    Flow.Publisher<ByteBuffer> getPublisher();
+
+    /**
+     * Returns a subscriber that writes the data it receives to the stream. It requests a next item only when the
+     * previous one has been buffered for sending. When the publisher completes, the output stream is closed; when the
+     * publisher signals an error, the stream is reset.
+     *
+     * @return  the subscriber
+     */
+    Flow.Subscriber<ByteBuffer> getSubscriber();
+
     /**
      * Returns the stream ID of the stream.
      * <p>
@@ -105,6 +157,23 @@ public interface QuicStream {
      */
     void resetStream(long applicationProtocolErrorCode);
 
+    /**
+     * Sets the priority of this stream, which determines the order in which data of the streams of one connection is
+     * sent, see {@link StreamPriority}.
+     * Changing the priority applies to data that is sent after the change; it does not affect frames that are already
+     * sent.
+     *
+     * @param priority  the new priority
+     */
+    void setPriority(StreamPriority priority);
+
+    /**
+     * Returns the priority of this stream.
+     *
+     * @return  the priority, {@link StreamPriority#DEFAULT} when not set
+     */
+    StreamPriority getPriority();
+
     /**
      * @deprecated use {@link #abortReading(long)} instead
      * @param applicationProtocolErrorCode
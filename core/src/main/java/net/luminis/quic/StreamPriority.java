@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic;
+
+import java.util.Objects;
+
+/**
+ * Priority of a stream, modeled after the Extensible Prioritization Scheme for HTTP.
+ * See https://www.rfc-editor.org/rfc/rfc9218.html#name-priority-parameters
+ * <p>
+ * The urgency determines which streams are served first: data of streams with a lower urgency value is sent before
+ * data of streams with a higher urgency value. The incremental flag determines how streams with the same urgency
+ * share the available bandwidth: incremental streams are served round-robin, non-incremental streams are served one
+ * at a time, in order of stream id.
+ */
+public final class StreamPriority {
+
+    /**
+     * https://www.rfc-editor.org/rfc/rfc9218.html#name-urgency
+     * "The urgency (u) parameter value is Integer (see Section 3.3.1 of [STRUCTURED-FIELDS]), between 0 and 7 inclusive,
+     *  in descending order of priority. The default is 3."
+     */
+    public static final int HIGHEST_URGENCY = 0;
+    public static final int LOWEST_URGENCY = 7;
+    public static final int DEFAULT_URGENCY = 3;
+
+    public static final StreamPriority DEFAULT = new StreamPriority(DEFAULT_URGENCY, false);
+
+    private final int urgency;
+    private final boolean incremental;
+
+    private StreamPriority(int urgency, boolean incremental) {
+        this.urgency = urgency;
+        this.incremental = incremental;
+    }
+
+    /**
+     * Creates a stream priority.
+     * @param urgency  the urgency, between 0 (highest priority) and 7 (lowest priority) inclusive
+     * @param incremental  whether the stream should share bandwidth with other (incremental) streams of the same urgency
+     * @return
+     */
+    public static StreamPriority of(int urgency, boolean incremental) {
+        if (urgency < HIGHEST_URGENCY || urgency > LOWEST_URGENCY) {
+            throw new IllegalArgumentException("urgency must be between " + HIGHEST_URGENCY + " and " + LOWEST_URGENCY);
+        }
+        return new StreamPriority(urgency, incremental);
+    }
+
+    public int getUrgency() {
+        return urgency;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StreamPriority)) return false;
+        StreamPriority that = (StreamPriority) o;
+        return urgency == that.urgency && incremental == that.incremental;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(urgency, incremental);
+    }
+
+    @Override
+    public String toString() {
+        return "u=" + urgency + (incremental? ", i": "");
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic;
+
+import java.util.Optional;
+
+/**
+ * Cache for address validation tokens that a client receives from a server (in NEW_TOKEN frames), so they can be used
+ * in the Initial packet of a subsequent connection to the same server, which enables the server to skip address
+ * validation. See https://www.rfc-editor.org/rfc/rfc9000.html#name-address-validation-for-futu
+ * Implementations must be thread-safe, as a cache can be shared by multiple connections.
+ */
+public interface TokenCache {
+
+    /**
+     * Stores a token received from the given server.
+     * @param serverName  the name of the server the token was received from
+     * @param token  the token
+     */
+    void put(String serverName, byte[] token);
+
+    /**
+     * Retrieves and removes a token for the given server. Tokens are removed because
+     * https://www.rfc-editor.org/rfc/rfc9000.html#name-address-validation-for-futu
+     * "A client SHOULD NOT reuse a token from a NEW_TOKEN frame for different connection attempts."
+     * @param serverName  the name of the server to connect to
+     * @return  a token, if any is available
+     */
+    Optional<byte[]> take(String serverName);
+}
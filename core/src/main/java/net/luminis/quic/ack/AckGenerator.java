@@ -44,7 +44,8 @@ public class AckGenerator {
     private List<Range> rangesToAcknowledge = new ArrayList<>();
     private boolean newPacketsToAcknowledge;
     private Instant newPacketsToAcknowlegdeSince;
-    private Map<Long, AckFrame> ackSentWithPacket = new HashMap<>();
+    // Sorted on packet number, so the largest packet (with an ack) that is acknowledged can be found per range.
+    private NavigableMap<Long, AckFrame> ackSentWithPacket = new TreeMap<>();
     private int acksNotSend = 0;
 
     public AckGenerator(PnSpace pnSpace, Sender sender) {
@@ -102,19 +103,27 @@ public class AckGenerator {
      * @param receivedAck
      */
     public synchronized void process(QuicFrame receivedAck) {
-        // Find max packet number that had an ack sent with it...
-        Optional<Long> largestWithAck = ((AckFrame) receivedAck).getAckedPacketNumbers()
-                .filter(pn -> ackSentWithPacket.containsKey(pn))
-                .findFirst();
+        // Find max packet number that had an ack sent with it (ranges are sorted largest first)...
+        Long largestWithAck = null;
+        for (Range range: ((AckFrame) receivedAck).getAcknowledgedRanges()) {
+            Long candidate = ackSentWithPacket.floorKey(range.getLargest());
+            if (candidate == null) {
+                break;
+            }
+            if (candidate >= range.getSmallest()) {
+                largestWithAck = candidate;
+                break;
+            }
+        }
 
-        if (largestWithAck.isPresent()) {
+        if (largestWithAck != null) {
             // ... and for that max pn, all packets that where acked by it don't need to be acked again.
-            AckFrame latestAcknowledgedAck = ackSentWithPacket.get(largestWithAck.get());
+            AckFrame latestAcknowledgedAck = ackSentWithPacket.get(largestWithAck);
             removeAcknowlegdedRanges(rangesToAcknowledge, latestAcknowledgedAck);
 
             // And for all earlier sent packets (smaller packet numbers), the sent ack's can be discarded because
             // their ranges are a subset of the ones from the latestAcknowledgedAck and thus are now implicitly acked.
-            ackSentWithPacket.keySet().removeIf(key -> key <= largestWithAck.get());
+            ackSentWithPacket.headMap(largestWithAck, true).clear();
         }
     }
 
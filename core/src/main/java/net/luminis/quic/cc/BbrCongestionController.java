@@ -0,0 +1,481 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.cc;
+
+import net.luminis.quic.log.Logger;
+import net.luminis.quic.packet.PacketInfo;
+import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.recovery.RttEstimator;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Model based congestion controller, following BBR (https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr).
+ * The controller estimates the bottleneck bandwidth (windowed max of delivery rate samples) and the round-trip
+ * propagation time (windowed min RTT), and derives both the congestion window and a pacing rate from their product.
+ * Compared to the draft, this is a simplified version: loss is evaluated once per round trip (instead of per ack), there
+ * is no short-term lower bound (inflight_lo / bw_lo) and the upper bound on inflight is probed with a linear increase.
+ */
+public class BbrCongestionController extends AbstractCongestionController implements CongestionController {
+
+    public enum Mode {
+        Startup,
+        Drain,
+        ProbeBwDown,
+        ProbeBwCruise,
+        ProbeBwRefill,
+        ProbeBwUp,
+        ProbeRtt
+    }
+
+    // https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr#name-startup
+    // "BBRStartupPacingGain = 4 * ln(2) = 2.77"  "BBRStartupCwndGain = 2"
+    private static final double STARTUP_PACING_GAIN = 2.77;
+    private static final double STARTUP_CWND_GAIN = 2.0;
+    // https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr#name-drain
+    // "BBR.pacing_gain = BBRDrainPacingGain = 0.35"
+    private static final double DRAIN_PACING_GAIN = 0.35;
+    // https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr#name-probebw
+    private static final double PROBE_BW_DOWN_PACING_GAIN = 0.9;
+    private static final double PROBE_BW_UP_PACING_GAIN = 1.25;
+    private static final double PROBE_BW_UP_CWND_GAIN = 2.25;
+    private static final double DEFAULT_CWND_GAIN = 2.0;
+    // "BBRPacingMarginPercent = 1"
+    private static final double PACING_MARGIN = 0.01;
+    // https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr#name-bbr-model-and-state
+    // "BBRLossThresh: The maximum tolerated per-round-trip packet loss rate when probing for bandwidth (the default is 2%)."
+    private static final double LOSS_THRESH = 0.02;
+    // "BBRBeta: The default multiplicative decrease to make upon each round trip during which the connection detects
+    //  packet loss (the value is 0.7)."
+    private static final double BETA = 0.7;
+    // "BBRHeadroom: The multiplicative factor to apply to BBR.inflight_hi when calculating a volume of free headroom to
+    //  try to leave unused in the path (the default is 0.15)."
+    private static final double HEADROOM = 0.15;
+    // "MaxBwFilterLen: The filter window length for BBR.MaxBwFilter = 2 (representing up to 2 ProbeBW cycles...)"
+    // As the ProbeBW cycle is not used to age the filter, a window of 10 round trips is used instead (as in BBRv1).
+    private static final int MAX_BW_FILTER_LENGTH = 10;
+    // "MinRTTFilterLen: A constant specifying the length of the BBR.min_rtt min filter window, MinRTTFilterLen is 10 secs."
+    private static final Duration MIN_RTT_FILTER_LENGTH = Duration.ofSeconds(10);
+    // "ProbeRTTDuration: A constant specifying the minimum duration for which ProbeRTT state holds inflight to
+    //  BBRMinPipeCwnd or fewer packets: 200 ms."
+    private static final Duration PROBE_RTT_DURATION = Duration.ofMillis(200);
+
+    protected long kMaxDatagramSize = 1200;
+    // "BBRMinPipeCwnd: The minimal cwnd value BBR targets, to allow pipelining with endpoints that follow an "ACK every
+    //  other packet" delayed-ACK policy: 4 * SMSS."
+    protected long kMinimumWindow = 4 * kMaxDatagramSize;
+
+    private final Clock clock;
+    private final RttEstimator rttEstimator;
+    private final Random random;
+    private volatile Mode mode;
+    private volatile long pacingRate;
+
+    // Model
+    private final long[] maxBwFilter = new long[MAX_BW_FILTER_LENGTH];
+    private long maxBw;
+    private Duration minRtt;
+    private Instant minRttStamp;
+    private long inflightHi = Long.MAX_VALUE;
+
+    // Round counting
+    private RateSample rateSample;
+    private long totalDelivered;
+    private long nextRoundDelivered;
+    private long roundCount;
+    private long bytesAckedInRound;
+    private long bytesLostInRound;
+
+    // Startup
+    private boolean filledPipe;
+    private long fullBw;
+    private int fullBwCount;
+
+    // ProbeBW
+    private Instant cycleStart;
+    private Duration cruiseDuration;
+
+    // ProbeRTT
+    private Instant probeRttDoneStamp;
+    private boolean probeRttRoundDone;
+    private long priorCwnd;
+
+    public BbrCongestionController(Logger logger, CongestionControlEventListener eventListener, RttEstimator rttEstimator) {
+        this(Clock.systemUTC(), logger, eventListener, rttEstimator);
+    }
+
+    public BbrCongestionController(Clock clock, Logger logger, CongestionControlEventListener eventListener, RttEstimator rttEstimator) {
+        super(logger, eventListener);
+        this.clock = clock;
+        this.rttEstimator = rttEstimator;
+        random = new Random();
+        mode = Mode.Startup;
+        updatePacingRate();
+    }
+
+    @Override
+    public synchronized void registerInFlight(QuicPacket sentPacket) {
+        super.registerInFlight(sentPacket);
+        log.getQLog().emitCongestionControlMetrics(congestionWindow, bytesInFlight);
+    }
+
+    @Override
+    public synchronized void registerRateSample(RateSample rateSample) {
+        // Processed when the acked packets are registered, so the bytes in flight are up-to-date.
+        this.rateSample = rateSample;
+    }
+
+    @Override
+    public synchronized void registerAcked(List<? extends PacketInfo> acknowlegdedPackets) {
+        super.registerAcked(acknowlegdedPackets);
+        long ackedBytes = acknowlegdedPackets.stream().mapToLong(p -> p.packet().getSize()).sum();
+        if (ackedBytes == 0) {
+            return;
+        }
+
+        Instant now = clock.instant();
+        if (rateSample != null) {
+            updateModel(rateSample, now);
+            rateSample = null;
+        }
+        bytesAckedInRound += ackedBytes;
+        updateState(ackedBytes, now);
+        updateCongestionWindow(ackedBytes);
+        updatePacingRate();
+        log.getQLog().emitCongestionControlMetrics(congestionWindow, bytesInFlight);
+    }
+
+    @Override
+    public synchronized void registerLost(List<? extends PacketInfo> lostPackets) {
+        super.registerLost(lostPackets);
+        bytesLostInRound += lostPackets.stream().mapToLong(p -> p.packet().getSize()).sum();
+        log.getQLog().emitCongestionControlMetrics(congestionWindow, bytesInFlight);
+    }
+
+    private void updateModel(RateSample sample, Instant now) {
+        totalDelivered = sample.totalDelivered();
+
+        // https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr#name-tracking-packet-timed-round
+        // "if (rs.prior_delivered >= BBR.next_round_delivered) BBRStartRound(); BBR.round_count++; ..."
+        if (sample.priorDelivered() >= nextRoundDelivered) {
+            nextRoundDelivered = totalDelivered;
+            roundCount++;
+            maxBwFilter[(int) (roundCount % MAX_BW_FILTER_LENGTH)] = 0;
+            onRoundEnd(sample);
+        }
+
+        // https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr#name-updating-the-bbrmax_bw-max-
+        // "if (rs.delivery_rate >= BBR.max_bw || !rs.is_app_limited) update_windowed_max_filter(...)"
+        // Samples with an interval shorter than min_rtt (e.g. due to ack compression) would inflate max_bw.
+        long bw = sample.isValid()? (long) sample.deliveryRate(): 0;
+        if (bw > 0 && (bw >= maxBw || !sample.isAppLimited())) {
+            int slot = (int) (roundCount % MAX_BW_FILTER_LENGTH);
+            maxBwFilter[slot] = Long.max(maxBwFilter[slot], bw);
+        }
+        long newMaxBw = 0;
+        for (long value: maxBwFilter) {
+            newMaxBw = Long.max(newMaxBw, value);
+        }
+        maxBw = newMaxBw;
+
+        // https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr#name-updating-bbrmin_rtt-and-bbr
+        // "min_rtt_expired = Now() > (BBR.min_rtt_stamp + MinRTTFilterLen); if (rs.rtt >= 0 and (rs.rtt < BBR.min_rtt
+        //  or min_rtt_expired)) BBR.min_rtt = rs.rtt; BBR.min_rtt_stamp = Now()"
+        boolean minRttExpired = minRttStamp != null && now.isAfter(minRttStamp.plus(MIN_RTT_FILTER_LENGTH));
+        Duration rtt = sample.rtt();
+        if (!rtt.isNegative() && !rtt.isZero() && (minRtt == null || rtt.compareTo(minRtt) < 0 || minRttExpired)) {
+            minRtt = rtt;
+            minRttStamp = now;
+        }
+        if (minRttExpired && mode != Mode.ProbeRtt) {
+            enterProbeRtt();
+        }
+    }
+
+    private void onRoundEnd(RateSample sample) {
+        // https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr#name-probing-for-bandwidth-in-st
+        // "IsInflightTooHigh: return (rs.lost > rs.tx_in_flight * BBRLossThresh)"
+        // Simplified: loss rate is determined over the last round trip.
+        long bytesSent = bytesAckedInRound + bytesLostInRound;
+        if (bytesLostInRound > 0 && bytesLostInRound > LOSS_THRESH * bytesSent) {
+            onHighLoss();
+        }
+        else if (!filledPipe && !sample.isAppLimited()) {
+            checkFullPipe();
+        }
+        bytesAckedInRound = 0;
+        bytesLostInRound = 0;
+
+        if (mode == Mode.ProbeRtt && probeRttDoneStamp != null) {
+            probeRttRoundDone = true;
+        }
+        else if (mode == Mode.ProbeBwRefill) {
+            // "BBR.bw_probe_samples = 1 ... After one round trip in REFILL, BBR transitions to UP"
+            enterProbeBw(Mode.ProbeBwUp);
+        }
+    }
+
+    private void onHighLoss() {
+        // "BBRHandleInflightTooHigh: BBR.inflight_hi = max(rs.tx_in_flight, BBRTargetInflight() * BBRBeta)"
+        inflightHi = Long.max(kMinimumWindow, (long) (Long.max(bdp(1.0), bytesInFlight) * BETA));
+        log.cc("BBR: loss rate exceeds threshold, inflight_hi: " + inflightHi + " (" + mode + ")");
+        if (mode == Mode.Startup) {
+            // https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr#name-exiting-startup-based-on-pa
+            filledPipe = true;
+        }
+        else if (mode == Mode.ProbeBwUp) {
+            enterProbeBw(Mode.ProbeBwDown);
+        }
+    }
+
+    private void checkFullPipe() {
+        // https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr#name-exiting-startup-based-on-ba
+        // "if (BBR.max_bw >= BBR.full_bw * 1.25) BBR.full_bw = BBR.max_bw; BBR.full_bw_count = 0; return;
+        //  BBR.full_bw_count++; if (BBR.full_bw_count >= 3) BBR.filled_pipe = true"
+        if (maxBw >= fullBw * 1.25) {
+            fullBw = maxBw;
+            fullBwCount = 0;
+        }
+        else if (++fullBwCount >= 3) {
+            filledPipe = true;
+            log.cc("BBR: pipe filled, max bw: " + maxBw + " B/s");
+        }
+    }
+
+    private void updateState(long ackedBytes, Instant now) {
+        switch (mode) {
+            case Startup:
+                if (filledPipe) {
+                    // https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr#name-drain
+                    setMode(Mode.Drain);
+                }
+                break;
+            case Drain:
+                // "if (BBR.state == Drain and packets_in_flight <= BBRInflight(1.0)) BBREnterProbeBW()"
+                if (bytesInFlight <= bdp(1.0)) {
+                    enterProbeBw(Mode.ProbeBwDown);
+                }
+                break;
+            case ProbeBwDown:
+                // "if (inflight <= BBRInflightWithHeadroom() and inflight <= BBRInflight(1.0)) BBRStartProbeBW_CRUISE()"
+                if (bytesInFlight <= inflightWithHeadroom() && bytesInFlight <= bdp(1.0)) {
+                    enterProbeBw(Mode.ProbeBwCruise);
+                }
+                break;
+            case ProbeBwCruise:
+                if (!now.isBefore(cycleStart.plus(cruiseDuration))) {
+                    enterProbeBw(Mode.ProbeBwRefill);
+                }
+                break;
+            case ProbeBwUp:
+                // "BBRProbeInflightHiUpward": when fully using the upper bound, raise it
+                if (inflightHi != Long.MAX_VALUE && bytesInFlight + ackedBytes >= inflightHi) {
+                    inflightHi += ackedBytes;
+                }
+                // "if (is_full_length and inflight > BBRInflight(BBR.pacing_gain)) BBRStartProbeBW_DOWN()"
+                if (!now.isBefore(cycleStart.plus(minRttOrDefault())) && bytesInFlight + ackedBytes > bdp(PROBE_BW_UP_PACING_GAIN)) {
+                    enterProbeBw(Mode.ProbeBwDown);
+                }
+                break;
+            case ProbeRtt:
+                handleProbeRtt(now);
+                break;
+        }
+    }
+
+    private void enterProbeBw(Mode probeBwMode) {
+        cycleStart = clock.instant();
+        if (probeBwMode == Mode.ProbeBwCruise) {
+            // "randomized wall clock time from 2 to 3 seconds"
+            cruiseDuration = Duration.ofMillis(2000 + random.nextInt(1000));
+        }
+        else if (probeBwMode == Mode.ProbeBwRefill) {
+            // "BBR.bw_probe_up_rounds ... BBRStartRound()": refill during one round trip
+            nextRoundDelivered = totalDelivered;
+        }
+        setMode(probeBwMode);
+    }
+
+    private void enterProbeRtt() {
+        // https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr#name-probertt
+        priorCwnd = congestionWindow;
+        probeRttDoneStamp = null;
+        probeRttRoundDone = false;
+        setMode(Mode.ProbeRtt);
+    }
+
+    private void handleProbeRtt(Instant now) {
+        // "if (BBR.probe_rtt_done_stamp == 0 and packets_in_flight <= BBRProbeRTTCwnd()) BBR.probe_rtt_done_stamp =
+        //  Now() + ProbeRTTDuration; BBR.probe_rtt_round_done = false; BBRStartRound()"
+        if (probeRttDoneStamp == null) {
+            if (bytesInFlight <= probeRttCwnd()) {
+                probeRttDoneStamp = now.plus(PROBE_RTT_DURATION);
+                probeRttRoundDone = false;
+                nextRoundDelivered = totalDelivered;
+            }
+        }
+        else if (probeRttRoundDone && !now.isBefore(probeRttDoneStamp)) {
+            // "BBR.min_rtt_stamp = Now(); BBRRestoreCwnd(); BBRExitProbeRTT()"
+            minRttStamp = now;
+            congestionWindow = Long.max(congestionWindow, priorCwnd);
+            if (filledPipe) {
+                enterProbeBw(Mode.ProbeBwDown);
+            }
+            else {
+                setMode(Mode.Startup);
+            }
+        }
+    }
+
+    private void updateCongestionWindow(long ackedBytes) {
+        // https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr#name-core-cwnd-adjustment-mechan
+        // "if (BBR.filled_pipe) cwnd = min(cwnd + rs.newly_acked, BBR.max_inflight)
+        //  else if (cwnd < BBR.max_inflight or C.delivered < InitialCwnd) cwnd = cwnd + rs.newly_acked"
+        long targetCwnd = maxBw > 0? bdp(cwndGain()): Long.MAX_VALUE;
+        long previousCwnd = congestionWindow;
+        if (filledPipe) {
+            congestionWindow = Long.min(congestionWindow + ackedBytes, targetCwnd);
+        }
+        else if (congestionWindow < targetCwnd || totalDelivered < initialWindowSize) {
+            congestionWindow += ackedBytes;
+        }
+
+        // https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr#name-bounding-cwnd-based-on-rece
+        if (mode == Mode.ProbeRtt) {
+            congestionWindow = Long.min(congestionWindow, probeRttCwnd());
+        }
+        else if (mode == Mode.ProbeBwCruise || mode == Mode.ProbeBwDown) {
+            congestionWindow = Long.min(congestionWindow, inflightWithHeadroom());
+        }
+        else {
+            congestionWindow = Long.min(congestionWindow, inflightHi);
+        }
+        congestionWindow = Long.max(congestionWindow, kMinimumWindow);
+        if (congestionWindow != previousCwnd) {
+            log.cc("Cwnd(" + (congestionWindow > previousCwnd? "+": "-") + "): " + congestionWindow + " (" + mode + "); inflight: " + bytesInFlight);
+        }
+    }
+
+    private void updatePacingRate() {
+        // https://datatracker.ietf.org/doc/html/draft-ietf-ccwg-bbr#name-pacing-rate-bbrpacing_rate
+        if (maxBw == 0) {
+            // "nominal_bandwidth = InitialCwnd / (SRTT ? SRTT : 1ms); BBR.pacing_rate = BBR.pacing_gain * nominal_bandwidth"
+            int srtt = Integer.max(rttEstimator.getSmoothedRtt(), 1);
+            pacingRate = (long) (pacingGain() * congestionWindow * 1000 / srtt);
+        }
+        else {
+            // "rate = pacing_gain * bw * (100 - BBRPacingMarginPercent) / 100;
+            //  if (BBR.filled_pipe || rate > BBR.pacing_rate) BBR.pacing_rate = rate"
+            long rate = (long) (pacingGain() * maxBw * (1 - PACING_MARGIN));
+            if (filledPipe || rate > pacingRate) {
+                pacingRate = rate;
+            }
+        }
+    }
+
+    private double pacingGain() {
+        switch (mode) {
+            case Startup:
+                return STARTUP_PACING_GAIN;
+            case Drain:
+                return DRAIN_PACING_GAIN;
+            case ProbeBwDown:
+                return PROBE_BW_DOWN_PACING_GAIN;
+            case ProbeBwUp:
+                return PROBE_BW_UP_PACING_GAIN;
+            default:
+                return 1.0;
+        }
+    }
+
+    private double cwndGain() {
+        switch (mode) {
+            case Startup:
+                return STARTUP_CWND_GAIN;
+            case ProbeBwUp:
+                return PROBE_BW_UP_CWND_GAIN;
+            default:
+                return DEFAULT_CWND_GAIN;
+        }
+    }
+
+    /**
+     * Computes the estimated bandwidth-delay product, multiplied by the given gain (BBRInflight(gain)).
+     */
+    private long bdp(double gain) {
+        if (minRtt == null || maxBw == 0) {
+            return initialWindowSize;
+        }
+        long bdp = (long) (gain * maxBw * minRtt.toNanos() / 1e9);
+        return Long.max(bdp, kMinimumWindow);
+    }
+
+    private long inflightWithHeadroom() {
+        // "if (BBR.inflight_hi == Infinity) return Infinity; headroom = max(1*SMSS, BBRHeadroom * BBR.inflight_hi);
+        //  return max(BBR.inflight_hi - headroom, BBRMinPipeCwnd)"
+        if (inflightHi == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        long headroom = Long.max(kMaxDatagramSize, (long) (HEADROOM * inflightHi));
+        return Long.max(inflightHi - headroom, kMinimumWindow);
+    }
+
+    private long probeRttCwnd() {
+        // "BBRProbeRTTCwndGain = 0.5"
+        return Long.max(bdp(0.5), kMinimumWindow);
+    }
+
+    private Duration minRttOrDefault() {
+        return minRtt != null? minRtt: Duration.ofMillis(rttEstimator.getSmoothedRtt());
+    }
+
+    private void setMode(Mode newMode) {
+        if (newMode != mode) {
+            log.cc("BBR: " + mode + " -> " + newMode);
+            mode = newMode;
+        }
+    }
+
+    @Override
+    public long getPacingRate() {
+        return pacingRate;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return  the estimated bottleneck bandwidth in bytes per second, or 0 when not yet known.
+     */
+    public synchronized long getMaxBandwidth() {
+        return maxBw;
+    }
+
+    /**
+     * @return  the minimum RTT observed in the current filter window, or null when not yet known.
+     */
+    public synchronized Duration getMinRtt() {
+        return minRtt;
+    }
+}
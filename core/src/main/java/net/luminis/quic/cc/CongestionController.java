@@ -31,6 +31,12 @@ public interface CongestionController {
 
     void registerLost(List<? extends PacketInfo> lostPackets);
 
+    /**
+     * Registers the delivery rate sample for the ack that is registered next (with registerAcked).
+     * @param rateSample
+     */
+    default void registerRateSample(RateSample rateSample) {}
+
     boolean canSend(int bytes);
 
     long getBytesInFlight();
@@ -42,4 +48,18 @@ public interface CongestionController {
     void discard(List<? extends PacketInfo> packetStatusStream);
 
     long remainingCwnd();
+
+    /**
+     * @return  the rate (in bytes per second) at which packets should be paced, or 0 when this congestion controller
+     * does not determine a pacing rate.
+     */
+    default long getPacingRate() {
+        return 0;
+    }
+
+    /**
+     * Informs the congestion controller whether the sender paces the sending of in-flight packets.
+     * @param paced
+     */
+    default void setPaced(boolean paced) {}
 }
@@ -0,0 +1,314 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.cc;
+
+import net.luminis.quic.log.Logger;
+import net.luminis.quic.packet.PacketInfo;
+import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.recovery.RttEstimator;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Congestion controller implementing CUBIC (https://www.rfc-editor.org/rfc/rfc9438.html), with HyStart++
+ * (https://www.rfc-editor.org/rfc/rfc9406.html) to exit slow start before (instead of after) the first loss.
+ * Windows are in bytes; the RFC formulas, which are expressed in segments, are scaled with the max datagram size.
+ */
+public class CubicCongestionController extends AbstractCongestionController implements CongestionController {
+
+    public enum Mode {
+        SlowStart,
+        ConservativeSlowStart,
+        CongestionAvoidance
+    }
+
+    // https://www.rfc-editor.org/rfc/rfc9438.html#name-constants-of-interest
+    // "C: Constant that determines the aggressiveness of CUBIC in competing with other congestion control algorithms
+    //  in high-BDP networks."  "C SHOULD be set to 0.4."
+    private static final double C = 0.4;
+    // "β_cubic: CUBIC multiplicative decrease factor"  "β_cubic SHOULD be set to 0.7"
+    private static final double BETA_CUBIC = 0.7;
+    // https://www.rfc-editor.org/rfc/rfc9438.html#name-reno-friendly-region
+    // "α_cubic = 3 * (1 - β_cubic) / (1 + β_cubic)"
+    private static final double ALPHA_CUBIC = 3 * (1 - BETA_CUBIC) / (1 + BETA_CUBIC);
+
+    // https://www.rfc-editor.org/rfc/rfc9406.html#name-constants
+    private static final int MIN_RTT_THRESH = 4;
+    private static final int MAX_RTT_THRESH = 16;
+    private static final int MIN_RTT_DIVISOR = 8;
+    private static final int N_RTT_SAMPLE = 8;
+    private static final int CSS_GROWTH_DIVISOR = 4;
+    private static final int CSS_ROUNDS = 5;
+    // "L: Limit on the number of segments by which cwnd may increase per ACK": "L = infinity if paced, L = 8 if non-paced"
+    private static final int L_NON_PACED = 8;
+
+    // https://www.rfc-editor.org/rfc/rfc9002.html#name-constants-of-interest-2
+    // "kMinimumWindow: Minimum congestion window in bytes as described in Section 7.2. The RECOMMENDED value is 2 * max_datagram_size."
+    protected int kMinimumWindow = 2 * 1200;
+
+    protected long kMaxDatagramSize = 1200;
+
+    private final Clock clock;
+    private final RttEstimator rttEstimator;
+    private long slowStartThreshold = Long.MAX_VALUE;
+    private Instant congestionRecoveryStartTime;
+
+    // CUBIC state
+    private double wMax;
+    private double k;
+    private double wEst;
+    private Instant congestionAvoidanceStart;
+
+    // HyStart++ state
+    private boolean inConservativeSlowStart;
+    private Instant roundStart;
+    private Duration lastRoundMinRtt;
+    private Duration currentRoundMinRtt;
+    private int rttSampleCount;
+    private Duration cssBaselineMinRtt;
+    private int cssRounds;
+    private volatile boolean paced;
+
+    public CubicCongestionController(Logger logger, CongestionControlEventListener eventListener, RttEstimator rttEstimator) {
+        this(Clock.systemUTC(), logger, eventListener, rttEstimator);
+    }
+
+    public CubicCongestionController(Clock clock, Logger logger, CongestionControlEventListener eventListener, RttEstimator rttEstimator) {
+        super(logger, eventListener);
+        this.clock = clock;
+        this.rttEstimator = rttEstimator;
+        congestionRecoveryStartTime = Instant.MIN;
+        roundStart = Instant.MIN;
+    }
+
+    @Override
+    public synchronized void registerInFlight(QuicPacket sentPacket) {
+        super.registerInFlight(sentPacket);
+        log.getQLog().emitCongestionControlMetrics(congestionWindow, bytesInFlight);
+    }
+
+    @Override
+    public synchronized void registerAcked(List<? extends PacketInfo> acknowlegdedPackets) {
+        int epsilon = 3;
+        boolean cwndLimited = congestionWindow - bytesInFlight <= epsilon;
+
+        long bytesInFlightBefore = this.bytesInFlight;
+        super.registerAcked(acknowlegdedPackets);
+
+        Instant now = clock.instant();
+        if (getMode() != Mode.CongestionAvoidance && !acknowlegdedPackets.isEmpty()) {
+            updateHyStartState(acknowlegdedPackets, now);
+        }
+
+        // https://www.rfc-editor.org/rfc/rfc9002.html#name-underutilizing-the-congesti
+        // "When bytes in flight is smaller than the congestion window and sending is not pacing limited, the congestion
+        //  window is underutilized. (...) When this occurs, the congestion window SHOULD NOT be increased in either slow
+        //  start or congestion avoidance."
+        long ackedBytes = acknowlegdedPackets.stream()
+                .filter(ackedPacket -> ackedPacket.timeSent().isAfter(congestionRecoveryStartTime))
+                .mapToLong(ackedPacket -> ackedPacket.packet().getSize())
+                .sum();
+        if (cwndLimited && ackedBytes > 0) {
+            long previousCwnd = congestionWindow;
+            if (congestionWindow < slowStartThreshold) {
+                increaseInSlowStart(ackedBytes);
+            }
+            else {
+                increaseInCongestionAvoidance(ackedBytes, now);
+            }
+            if (congestionWindow != previousCwnd) {
+                log.cc("Cwnd(+): " + congestionWindow + " (" + getMode() + "); inflight: " + bytesInFlightBefore);
+            }
+        }
+        log.getQLog().emitCongestionControlMetrics(congestionWindow, this.bytesInFlight);
+    }
+
+    @Override
+    public void registerLost(List<? extends PacketInfo> lostPackets) {
+        super.registerLost(lostPackets);
+
+        if (! lostPackets.isEmpty()) {
+            PacketInfo largest = lostPackets.stream().max(Comparator.comparing(p -> p.packet().getPacketNumber())).get();
+            fireCongestionEvent(largest.timeSent());
+        }
+        log.getQLog().emitCongestionControlMetrics(congestionWindow, bytesInFlight);
+    }
+
+    @Override
+    public void setPaced(boolean paced) {
+        this.paced = paced;
+    }
+
+    private void increaseInSlowStart(long ackedBytes) {
+        // https://www.rfc-editor.org/rfc/rfc9406.html#name-algorithm-details
+        // "cwnd = cwnd + min(N, L * SMSS)" and in CSS: "cwnd = cwnd + (min(N, L * SMSS) / CSS_GROWTH_DIVISOR)"
+        long increase = paced? ackedBytes: Long.min(ackedBytes, L_NON_PACED * kMaxDatagramSize);
+        congestionWindow += inConservativeSlowStart? increase / CSS_GROWTH_DIVISOR: increase;
+    }
+
+    private void increaseInCongestionAvoidance(long ackedBytes, Instant now) {
+        if (congestionAvoidanceStart == null) {
+            // Congestion avoidance is entered without a congestion event (i.e. slow start was ended by HyStart++).
+            // https://www.rfc-editor.org/rfc/rfc9438.html#name-window-increase-function
+            // "...  if cwnd is already above W_max, K is set to 0 and W_max to cwnd"
+            startCongestionAvoidance(now, Double.max(wMax, congestionWindow));
+        }
+
+        // https://www.rfc-editor.org/rfc/rfc9438.html#name-window-increase-function
+        // "t is the elapsed time in seconds from the beginning of the current congestion avoidance stage"
+        double t = Duration.between(congestionAvoidanceStart, now).toNanos() / 1e9;
+        double rtt = rttEstimator.getSmoothedRtt() / 1000.0;
+
+        // https://www.rfc-editor.org/rfc/rfc9438.html#name-reno-friendly-region
+        // "W_est = W_est + α_cubic * segments_acked / cwnd"  "Once W_est has grown to reach the cwnd at the time of
+        //  most recently setting ssthresh -- that is, W_est >= cwnd_prior -- the sender SHOULD set α_cubic to 1"
+        double alpha = wEst >= wMax? 1.0: ALPHA_CUBIC;
+        wEst += alpha * kMaxDatagramSize * ackedBytes / congestionWindow;
+
+        double wCubic = wCubic(t);
+        if (wCubic < wEst) {
+            // "When receiving a new ACK in congestion avoidance (where cwnd could be greater than or less than W_max),
+            //  CUBIC checks whether W_cubic(t) is less than W_est. If so, CUBIC is in the Reno-friendly region and cwnd
+            //  SHOULD be set to W_est at each reception of a new ACK."
+            congestionWindow = Long.max(congestionWindow, (long) wEst);
+        }
+        else {
+            // https://www.rfc-editor.org/rfc/rfc9438.html#name-concave-region
+            // "target = cwnd if W_cubic(t + RTT) < cwnd; 1.5 * cwnd if W_cubic(t + RTT) > 1.5 * cwnd; W_cubic(t + RTT) otherwise"
+            // "the cwnd MUST be incremented by (target - cwnd) / cwnd for each received new ACK"
+            double target = Double.min(Double.max(wCubic(t + rtt), congestionWindow), 1.5 * congestionWindow);
+            congestionWindow += (long) ((target - congestionWindow) * ackedBytes / congestionWindow);
+        }
+    }
+
+    /**
+     * Computes W_cubic(t) (in bytes): "W_cubic(t) = C * (t - K)^3 + W_max"
+     */
+    private double wCubic(double t) {
+        double d = t - k;
+        return C * d * d * d * kMaxDatagramSize + wMax;
+    }
+
+    private void startCongestionAvoidance(Instant now, double windowMax) {
+        congestionAvoidanceStart = now;
+        wMax = windowMax;
+        // https://www.rfc-editor.org/rfc/rfc9438.html#name-window-increase-function
+        // "K = cubic_root((W_max - cwnd_epoch) / C)"
+        k = Math.cbrt((wMax - congestionWindow) / kMaxDatagramSize / C);
+        wEst = congestionWindow;
+    }
+
+    private void updateHyStartState(List<? extends PacketInfo> acknowlegdedPackets, Instant now) {
+        // https://www.rfc-editor.org/rfc/rfc9406.html#name-algorithm-details
+        // "For each arriving ACK in slow start, where N is the number of previously unacknowledged bytes acknowledged
+        //  in the arriving ACK: Update the cwnd ... Keep track of the minimum observed RTT"
+        PacketInfo largestAcked = acknowlegdedPackets.stream().max(Comparator.comparing(p -> p.packet().getPacketNumber())).get();
+        Duration rttSample = Duration.between(largestAcked.timeSent(), now);
+
+        // "The sender ... ends a round when the ACK for the packet with sequence number windowEnd is received."
+        // As packet numbers are not unique over packet number spaces, rounds are tracked by time sent: a round ends
+        // when a packet sent after the start of the round is acknowledged.
+        if (largestAcked.timeSent().isAfter(roundStart)) {
+            startNewRound(now);
+        }
+
+        currentRoundMinRtt = currentRoundMinRtt == null? rttSample: min(currentRoundMinRtt, rttSample);
+        rttSampleCount++;
+
+        if (!inConservativeSlowStart) {
+            // "For rounds where at least N_RTT_SAMPLE RTT samples have been obtained and currentRoundMinRTT and
+            //  lastRoundMinRTT are valid, check to see if delay increase triggers slow start exit"
+            if (rttSampleCount >= N_RTT_SAMPLE && currentRoundMinRtt != null && lastRoundMinRtt != null) {
+                // "RttThresh = max(MIN_RTT_THRESH, min(lastRoundMinRTT / MIN_RTT_DIVISOR, MAX_RTT_THRESH))"
+                long rttThresh = Long.max(MIN_RTT_THRESH, Long.min(lastRoundMinRtt.toMillis() / MIN_RTT_DIVISOR, MAX_RTT_THRESH));
+                // "if (currentRoundMinRTT >= (lastRoundMinRTT + RttThresh))"
+                if (currentRoundMinRtt.compareTo(lastRoundMinRtt.plusMillis(rttThresh)) >= 0) {
+                    // "cssBaselineMinRtt = currentRoundMinRTT; exit slow start and enter CSS"
+                    cssBaselineMinRtt = currentRoundMinRtt;
+                    inConservativeSlowStart = true;
+                    cssRounds = 0;
+                    log.cc("HyStart++: RTT increase (" + lastRoundMinRtt.toMillis() + " -> " + currentRoundMinRtt.toMillis() + " ms), entering conservative slow start");
+                }
+            }
+        }
+        else {
+            // "If the currentRoundMinRTT of a CSS round is less than cssBaselineMinRtt, this indicates that the
+            //  previous slow start exit was spurious; hence, the sender exits CSS and resumes slow start"
+            if (rttSampleCount >= N_RTT_SAMPLE && currentRoundMinRtt.compareTo(cssBaselineMinRtt) < 0) {
+                cssBaselineMinRtt = null;
+                inConservativeSlowStart = false;
+                log.cc("HyStart++: RTT decreased, resuming slow start");
+            }
+        }
+    }
+
+    private void startNewRound(Instant now) {
+        if (inConservativeSlowStart) {
+            cssRounds++;
+            // "If CSS_ROUNDS rounds are complete, enter congestion avoidance by setting the ssthresh to the current cwnd."
+            if (cssRounds >= CSS_ROUNDS) {
+                inConservativeSlowStart = false;
+                slowStartThreshold = congestionWindow;
+                log.cc("HyStart++: leaving slow start, ssthresh: " + slowStartThreshold);
+            }
+        }
+        // "At the start of each round during standard slow start and CSS, initialize the variables used to compute the
+        //  last round's and current round's minimum RTT"
+        roundStart = now;
+        lastRoundMinRtt = currentRoundMinRtt;
+        currentRoundMinRtt = null;
+        rttSampleCount = 0;
+    }
+
+    private void fireCongestionEvent(Instant timeSent) {
+        if (timeSent.isAfter(congestionRecoveryStartTime)) {
+            Instant now = clock.instant();
+            congestionRecoveryStartTime = now;
+            // https://www.rfc-editor.org/rfc/rfc9438.html#name-fast-convergence
+            // "if (cwnd < W_max and fast convergence enabled) W_max = cwnd * (1 + β_cubic) / 2; else W_max = cwnd"
+            double windowMax = congestionWindow < wMax? congestionWindow * (1 + BETA_CUBIC) / 2: congestionWindow;
+            // https://www.rfc-editor.org/rfc/rfc9438.html#name-multiplicative-decrease
+            // "ssthresh = cwnd * β_cubic; ... cwnd = max(ssthresh, 2)"
+            congestionWindow = Long.max((long) (congestionWindow * BETA_CUBIC), kMinimumWindow);
+            slowStartThreshold = congestionWindow;
+            // https://www.rfc-editor.org/rfc/rfc9406.html#name-algorithm-details
+            // "If loss or ECN-marking is observed anytime during standard slow start or CSS, enter congestion avoidance"
+            inConservativeSlowStart = false;
+            startCongestionAvoidance(now, windowMax);
+            log.cc("Cwnd(-): " + congestionWindow + "; inflight: " + bytesInFlight);
+        }
+    }
+
+    public synchronized Mode getMode() {
+        if (congestionWindow < slowStartThreshold) {
+            return inConservativeSlowStart? Mode.ConservativeSlowStart: Mode.SlowStart;
+        }
+        else {
+            return Mode.CongestionAvoidance;
+        }
+    }
+
+    private static Duration min(Duration d1, Duration d2) {
+        return d1.compareTo(d2) <= 0? d1: d2;
+    }
+}
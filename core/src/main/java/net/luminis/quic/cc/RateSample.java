@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.cc;
+
+import java.time.Duration;
+
+/**
+ * A delivery rate sample, as defined by https://datatracker.ietf.org/doc/html/draft-cheng-iccrg-delivery-rate-estimation:
+ * the amount of data delivered over an interval, based on the most recently sent packet that is acknowledged by an
+ * ack, together with the connection's delivery state when that packet was sent.
+ */
+public class RateSample {
+
+    private final long delivered;
+    private final Duration interval;
+    private final long priorDelivered;
+    private final long totalDelivered;
+    private final Duration rtt;
+    private final long bytesInFlightAtSend;
+    private final boolean appLimited;
+    private final boolean valid;
+
+    public RateSample(long delivered, Duration interval, long priorDelivered, long totalDelivered, Duration rtt, long bytesInFlightAtSend, boolean appLimited) {
+        this(delivered, interval, priorDelivered, totalDelivered, rtt, bytesInFlightAtSend, appLimited, true);
+    }
+
+    public RateSample(long delivered, Duration interval, long priorDelivered, long totalDelivered, Duration rtt, long bytesInFlightAtSend, boolean appLimited, boolean valid) {
+        this.delivered = delivered;
+        this.interval = interval;
+        this.priorDelivered = priorDelivered;
+        this.totalDelivered = totalDelivered;
+        this.rtt = rtt;
+        this.bytesInFlightAtSend = bytesInFlightAtSend;
+        this.appLimited = appLimited;
+        this.valid = valid;
+    }
+
+    /**
+     * @return  the delivery rate in bytes per second, or 0 if the sample interval is empty.
+     */
+    public double deliveryRate() {
+        long nanos = interval.toNanos();
+        return nanos > 0? delivered * 1e9 / nanos: 0;
+    }
+
+    /**
+     * @return  the number of bytes delivered during the sample interval.
+     */
+    public long delivered() {
+        return delivered;
+    }
+
+    public Duration interval() {
+        return interval;
+    }
+
+    /**
+     * @return  the total number of bytes delivered at the time the packet (on which the sample is based) was sent.
+     */
+    public long priorDelivered() {
+        return priorDelivered;
+    }
+
+    /**
+     * @return  the total number of bytes delivered, including the ones acknowledged by this ack.
+     */
+    public long totalDelivered() {
+        return totalDelivered;
+    }
+
+    /**
+     * @return  the RTT measured with the packet this sample is based on (without correction for ack delay).
+     */
+    public Duration rtt() {
+        return rtt;
+    }
+
+    /**
+     * @return  the number of bytes in flight when the packet was sent, including the packet itself.
+     */
+    public long bytesInFlightAtSend() {
+        return bytesInFlightAtSend;
+    }
+
+    /**
+     * @return  whether the sending was limited by the application (instead of by the congestion controller) during
+     * the sample interval, in which case the delivery rate most likely underestimates the available bandwidth.
+     */
+    public boolean isAppLimited() {
+        return appLimited;
+    }
+
+    /**
+     * @return  whether the delivery rate of this sample is reliable; a sample with an interval shorter than the minimum
+     * RTT is not, as it overestimates the delivery rate.
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    @Override
+    public String toString() {
+        return "RateSample[" + (long) deliveryRate() + " B/s, delivered: " + delivered + ", interval: " + interval.toMillis() + " ms"
+                + ", rtt: " + rtt.toMillis() + " ms" + (appLimited? ", app-limited": "") + (valid? "": ", invalid") + "]";
+    }
+}
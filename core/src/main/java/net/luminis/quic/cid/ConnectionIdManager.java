@@ -76,14 +76,34 @@ public class ConnectionIdManager {
     public ConnectionIdManager(byte[] initialClientCid, byte[] originalDestinationConnectionId, int connectionIdLength,
                                int maxPeerCids, ServerConnectionRegistry connectionRegistry, Sender sender,
                                BiConsumer<Integer, String> closeConnectionCallback, Logger log) {
+        this(initialClientCid, originalDestinationConnectionId, null, connectionIdLength, maxPeerCids, connectionRegistry,
+                sender, closeConnectionCallback, log);
+    }
+
+    /**
+     * Creates a connection ID manager for server role, using a given initial connection ID for this endpoint (server).
+     * @param initialClientCid  the initial connection ID of the client
+     * @param originalDestinationConnectionId
+     * @param initialConnectionId  the initial connection ID for this endpoint, e.g. the source connection ID of a Retry
+     *                             packet, or null to generate one
+     * @param connectionIdLength  the length of the connection IDs generated for this endpoint (server)
+     * @param maxPeerCids  the maximum number of peer connection IDs this endpoint is willing to store
+     * @param connectionRegistry  the connection registry for associating new connection IDs with the connection
+     * @param sender  the sender to send messages to the peer
+     * @param closeConnectionCallback  callback for closing the connection with a transport error code
+     * @param log  logger
+     */
+    public ConnectionIdManager(byte[] initialClientCid, byte[] originalDestinationConnectionId, byte[] initialConnectionId,
+                               int connectionIdLength, int maxPeerCids, ServerConnectionRegistry connectionRegistry,
+                               Sender sender, BiConsumer<Integer, String> closeConnectionCallback, Logger log) {
         this.originalDestinationConnectionId = originalDestinationConnectionId;
         this.connectionIdLength = connectionIdLength;
         this.maxPeerCids = maxPeerCids;
         this.connectionRegistry = connectionRegistry;
         this.sender = sender;
         this.closeConnectionCallback = closeConnectionCallback;
-        cidRegistry = new SourceConnectionIdRegistry(connectionIdLength, log);
-        initialConnectionId = cidRegistry.currentConnectionId;
+        cidRegistry = new SourceConnectionIdRegistry(connectionIdLength, initialConnectionId, log);
+        this.initialConnectionId = cidRegistry.currentConnectionId;
 
         if (initialClientCid != null && initialClientCid.length != 0) {
             peerCidRegistry = new DestinationConnectionIdRegistry(initialClientCid, log);
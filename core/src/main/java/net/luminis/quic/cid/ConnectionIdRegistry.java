@@ -44,12 +44,22 @@ public abstract class ConnectionIdRegistry {
     }
 
     public ConnectionIdRegistry(Integer cidLength, Logger logger) {
+        this(cidLength, null, logger);
+    }
+
+    /**
+     * Creates a registry with the given connection id as initial (sequence number 0) connection id.
+     * @param cidLength  the length of connection ids generated by this registry
+     * @param initialConnectionId  the initial connection id, or null to generate one
+     * @param logger
+     */
+    public ConnectionIdRegistry(Integer cidLength, byte[] initialConnectionId, Logger logger) {
         connectionIdLength = cidLength != null? cidLength: DEFAULT_CID_LENGTH;
         this.log = logger;
 
         randomGenerator = new SecureRandom();
 
-        currentConnectionId = generateConnectionId();
+        currentConnectionId = initialConnectionId != null? initialConnectionId: generateConnectionId();
         connectionIds.put(0, new ConnectionIdInfo(0, currentConnectionId, ConnectionIdStatus.IN_USE));
     }
 
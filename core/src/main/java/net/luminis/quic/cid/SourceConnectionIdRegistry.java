@@ -30,6 +30,10 @@ public class SourceConnectionIdRegistry extends ConnectionIdRegistry {
         super(cidLength, logger);
     }
 
+    public SourceConnectionIdRegistry(Integer cidLength, byte[] initialConnectionId, Logger logger) {
+        super(cidLength, initialConnectionId, logger);
+    }
+
     public ConnectionIdInfo generateNew() {
         int sequenceNr = connectionIds.keySet().stream().max(Integer::compareTo).get() + 1;
         ConnectionIdInfo newCid = new ConnectionIdInfo(sequenceNr, generateConnectionId(), ConnectionIdStatus.NEW);
@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.client;
+
+import net.luminis.quic.TokenCache;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-memory token cache, that keeps a limited number of (most recently received) tokens per server.
+ */
+public class InMemoryTokenCache implements TokenCache {
+
+    public static final int DEFAULT_MAX_TOKENS_PER_SERVER = 4;
+
+    private final int maxTokensPerServer;
+    private final Map<String, Deque<byte[]>> tokens = new HashMap<>();
+
+    public InMemoryTokenCache() {
+        this(DEFAULT_MAX_TOKENS_PER_SERVER);
+    }
+
+    public InMemoryTokenCache(int maxTokensPerServer) {
+        if (maxTokensPerServer < 1) {
+            throw new IllegalArgumentException("max tokens per server must be at least 1");
+        }
+        this.maxTokensPerServer = maxTokensPerServer;
+    }
+
+    @Override
+    public synchronized void put(String serverName, byte[] token) {
+        Deque<byte[]> serverTokens = tokens.computeIfAbsent(serverName, name -> new ArrayDeque<>());
+        if (serverTokens.size() == maxTokensPerServer) {
+            serverTokens.removeLast();
+        }
+        serverTokens.addFirst(token);
+    }
+
+    @Override
+    public synchronized Optional<byte[]> take(String serverName) {
+        Deque<byte[]> serverTokens = tokens.get(serverName);
+        if (serverTokens == null) {
+            return Optional.empty();
+        }
+        byte[] token = serverTokens.removeFirst();
+        if (serverTokens.isEmpty()) {
+            tokens.remove(serverName);
+        }
+        return Optional.of(token);
+    }
+}
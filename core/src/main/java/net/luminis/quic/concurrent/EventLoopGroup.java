@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * A fixed set of single threaded event loops (workers) that can be shared by many connections. Each connection is
+ * pinned to one worker (determined by its connection id), so all tasks for that connection (processing received
+ * datagrams, sending and timers) execute on the same thread; this way, the connection can still use the
+ * thread-confinement strategy for concurrency control, while the number of threads no longer grows with the number
+ * of connections.
+ * Tasks executed on a worker should never block, as that would delay all other connections pinned to the same worker.
+ */
+public class EventLoopGroup {
+
+    private final ScheduledThreadPoolExecutor[] workers;
+
+    public EventLoopGroup(int numberOfWorkers) {
+        this(numberOfWorkers, "event-loop");
+    }
+
+    public EventLoopGroup(int numberOfWorkers, String name) {
+        if (numberOfWorkers < 1) {
+            throw new IllegalArgumentException("number of workers must be at least 1");
+        }
+        DaemonThreadFactory threadFactory = new DaemonThreadFactory(name);
+        workers = new ScheduledThreadPoolExecutor[numberOfWorkers];
+        for (int i = 0; i < numberOfWorkers; i++) {
+            workers[i] = new ScheduledThreadPoolExecutor(1, threadFactory);
+            // Timers are cancelled and rescheduled frequently; cancelled tasks should not pile up in the work queue.
+            workers[i].setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    /**
+     * Selects the worker for the connection with the given (original) connection id. For a given connection id, this
+     * method always returns the same worker.
+     * @param connectionId
+     * @return
+     */
+    public ScheduledExecutorService select(byte[] connectionId) {
+        return workers[Math.floorMod(Arrays.hashCode(connectionId), workers.length)];
+    }
+
+    /**
+     * Returns the number of tasks that are waiting to be executed, summed over all workers (including delayed tasks).
+     * @return
+     */
+    public int queuedTasks() {
+        return Arrays.stream(workers).mapToInt(worker -> worker.getQueue().size()).sum();
+    }
+
+    public int size() {
+        return workers.length;
+    }
+
+    public void shutdown() {
+        Arrays.stream(workers).forEach(ScheduledExecutorService::shutdown);
+    }
+}
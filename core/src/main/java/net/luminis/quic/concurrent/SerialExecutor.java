@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Executor that executes its tasks one at a time, in the order they are submitted, using a (shared) executor that
+ * might have many threads. Used for timer tasks of connections that are not pinned to an event loop: these tasks
+ * (e.g. closing the connection) must not run on the timer thread, as that would delay all other timers, but a thread
+ * per connection is not needed either.
+ */
+public class SerialExecutor implements Executor {
+
+    private static ExecutorService sharedPool;
+
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    // Concurrency: guarded by tasks
+    private boolean running;
+
+    /**
+     * Returns the pool (of daemon threads) that is shared by serial executors that do not need an executor of their own.
+     * @return
+     */
+    public static synchronized Executor sharedPool() {
+        if (sharedPool == null) {
+            sharedPool = Executors.newCachedThreadPool(new DaemonThreadFactory("timer-task"));
+        }
+        return sharedPool;
+    }
+
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized (tasks) {
+            tasks.add(task);
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+        try {
+            executor.execute(this::runTasks);
+        }
+        catch (RejectedExecutionException rejected) {
+            synchronized (tasks) {
+                tasks.clear();
+                running = false;
+            }
+            throw rejected;
+        }
+    }
+
+    private void runTasks() {
+        while (true) {
+            Runnable task;
+            synchronized (tasks) {
+                task = tasks.poll();
+                if (task == null) {
+                    running = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            }
+            catch (RuntimeException error) {
+                // Never let a failing task stop the execution of subsequent tasks.
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, error);
+            }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel (see "Hashed and Hierarchical Timing Wheels", Varghese and Lauck, scheme 6): a circular array of
+ * buckets, each bucket holding the timeouts that expire in a given tick (modulo the wheel size). Scheduling,
+ * rescheduling and cancelling a timeout are O(1) operations (adding to or removing from a doubly linked bucket list),
+ * which makes it suitable for timers that are rescheduled very often (like the loss detection timer, that is
+ * rescheduled on every ack) and for very large numbers of timers (e.g. idle timers of many connections), all served
+ * by one thread.
+ *
+ * Expired timeouts are run on the executor that was passed when the timeout was created, or, when no executor was
+ * given, on the timer thread itself; in the latter case, tasks should be short and never block.
+ * Timeouts never expire early: a timeout expires in the first tick that starts at or after its deadline, so the
+ * precision of the timer is determined by the tick duration.
+ */
+public class TimerWheel {
+
+    public static final int DEFAULT_TICK_MILLIS = 1;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static TimerWheel sharedInstance;
+
+    private final Clock clock;
+    private final long tickMillis;
+    private final long startMillis;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final Object lock = new Object();
+    private final Thread timerThread;
+    // Concurrency: all mutable state is guarded by lock
+    private long currentTick;
+    private int pending;
+    private boolean stopped;
+
+    /**
+     * Returns the timer wheel that is shared by all components that do not need a timer of their own.
+     * @return
+     */
+    public static synchronized TimerWheel shared() {
+        if (sharedInstance == null) {
+            sharedInstance = new TimerWheel("timer-wheel");
+        }
+        return sharedInstance;
+    }
+
+    /**
+     * Creates a timer wheel with default tick duration and wheel size, that is driven by its own (daemon) thread.
+     * @param threadName
+     */
+    public TimerWheel(String threadName) {
+        this(Clock.systemUTC(), DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE, threadName);
+    }
+
+    /**
+     * Creates a timer wheel that is not driven by a thread of its own; timeouts will only expire when
+     * {@link #expireTimeouts()} is called.
+     * @param clock
+     * @param tickMillis
+     * @param wheelSize  number of buckets, will be rounded up to a power of two.
+     */
+    public TimerWheel(Clock clock, int tickMillis, int wheelSize) {
+        this(clock, tickMillis, wheelSize, null);
+    }
+
+    private TimerWheel(Clock clock, int tickMillis, int wheelSize, String threadName) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("tick duration must be at least 1 ms");
+        }
+        if (wheelSize < 1 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("invalid wheel size");
+        }
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        buckets = new Timeout[size];
+        mask = size - 1;
+        startMillis = clock.millis();
+        currentTick = 0;
+
+        if (threadName != null) {
+            timerThread = new Thread(this::run, threadName);
+            timerThread.setDaemon(true);
+            timerThread.start();
+        }
+        else {
+            timerThread = null;
+        }
+    }
+
+    /**
+     * Creates a new timeout for the given task. The timeout is not scheduled until one of its schedule methods is
+     * called; the timeout can be (re)scheduled as often as needed.
+     * @param task  the task to run when the timeout expires
+     * @return
+     */
+    public Timeout newTimeout(Runnable task) {
+        return new Timeout(task, null);
+    }
+
+    /**
+     * Creates a new timeout for the given task, that will be executed with the given executor.
+     * @param task  the task to run when the timeout expires
+     * @param executor  the executor to run the task with, or null to run the task on the timer thread
+     * @return
+     */
+    public Timeout newTimeout(Runnable task, Executor executor) {
+        return new Timeout(task, executor);
+    }
+
+    /**
+     * Schedules a one-shot task.
+     * @param task
+     * @param delay
+     * @param unit
+     * @param executor  the executor to run the task with, or null to run the task on the timer thread
+     * @return
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit, Executor executor) {
+        Timeout timeout = new Timeout(task, executor);
+        timeout.schedule(delay, unit);
+        return timeout;
+    }
+
+    /**
+     * @return  the number of scheduled timeouts.
+     */
+    public int size() {
+        synchronized (lock) {
+            return pending;
+        }
+    }
+
+    public void stop() {
+        synchronized (lock) {
+            stopped = true;
+            lock.notifyAll();
+        }
+        if (timerThread != null) {
+            timerThread.interrupt();
+        }
+    }
+
+    /**
+     * Expires all timeouts with a deadline that has passed (according to the clock of this wheel) and runs their tasks.
+     */
+    public void expireTimeouts() {
+        List<Timeout> expired = new ArrayList<>();
+        synchronized (lock) {
+            long nowTick = (clock.millis() - startMillis) / tickMillis;
+            while (currentTick <= nowTick) {
+                if (pending == 0) {
+                    // Nothing to expire, so no need to visit buckets one by one.
+                    currentTick = nowTick + 1;
+                    break;
+                }
+                int index = (int) (currentTick & mask);
+                Timeout timeout = buckets[index];
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    if (timeout.tick <= currentTick) {
+                        unlink(timeout);
+                        expired.add(timeout);
+                    }
+                    timeout = next;
+                }
+                currentTick++;
+            }
+        }
+        expired.forEach(Timeout::expire);
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                long nextTickMillis;
+                synchronized (lock) {
+                    while (pending == 0 && !stopped) {
+                        lock.wait();
+                    }
+                    if (stopped) {
+                        return;
+                    }
+                    nextTickMillis = startMillis + currentTick * tickMillis;
+                }
+                long sleepTime = nextTickMillis - clock.millis();
+                if (sleepTime > 0) {
+                    Thread.sleep(sleepTime);
+                }
+                expireTimeouts();
+            }
+        }
+        catch (InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    private void link(Timeout timeout, long tick) {
+        // Must be called with lock held
+        timeout.tick = tick;
+        int index = (int) (tick & mask);
+        timeout.prev = null;
+        timeout.next = buckets[index];
+        if (buckets[index] != null) {
+            buckets[index].prev = timeout;
+        }
+        buckets[index] = timeout;
+        timeout.linked = true;
+        pending++;
+        if (pending == 1) {
+            lock.notifyAll();
+        }
+    }
+
+    private void unlink(Timeout timeout) {
+        // Must be called with lock held
+        int index = (int) (timeout.tick & mask);
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        }
+        else {
+            buckets[index] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.linked = false;
+        pending--;
+    }
+
+    /**
+     * A (reusable) timeout for a given task.
+     */
+    public class Timeout {
+
+        private final Runnable task;
+        private final Executor executor;
+        // Concurrency: guarded by (wheel) lock
+        private Timeout prev;
+        private Timeout next;
+        private long tick;
+        private boolean linked;
+
+        private Timeout(Runnable task, Executor executor) {
+            this.task = task;
+            this.executor = executor;
+        }
+
+        /**
+         * Schedules (or reschedules, when already scheduled) this timeout to expire after the given delay.
+         * @param delay
+         * @param unit
+         */
+        public void schedule(long delay, TimeUnit unit) {
+            scheduleAt(clock.millis() + unit.toMillis(delay));
+        }
+
+        /**
+         * Schedules (or reschedules, when already scheduled) this timeout to expire at the given time.
+         * @param deadline
+         */
+        public void schedule(Instant deadline) {
+            scheduleAt(deadline.toEpochMilli());
+        }
+
+        private void scheduleAt(long deadlineMillis) {
+            // Round up, to ensure timeout never expires before its deadline.
+            long deadlineTick = Math.floorDiv(deadlineMillis - startMillis + tickMillis - 1, tickMillis);
+            synchronized (lock) {
+                if (stopped) {
+                    return;
+                }
+                if (linked) {
+                    unlink(this);
+                }
+                link(this, Long.max(deadlineTick, currentTick));
+            }
+        }
+
+        /**
+         * Cancels this timeout.
+         * @return  true if the timeout was scheduled (and now is cancelled), false otherwise.
+         */
+        public boolean cancel() {
+            synchronized (lock) {
+                if (linked) {
+                    unlink(this);
+                    return true;
+                }
+                return false;
+            }
+        }
+
+        public boolean isScheduled() {
+            synchronized (lock) {
+                return linked;
+            }
+        }
+
+        private void expire() {
+            if (executor != null) {
+                try {
+                    executor.execute(task);
+                }
+                catch (RejectedExecutionException rejected) {
+                    // Executor is shut down, so task is not relevant anymore.
+                }
+            }
+            else {
+                try {
+                    task.run();
+                }
+                catch (RuntimeException error) {
+                    // Never let a failing task stop the timer.
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, error);
+                }
+            }
+        }
+    }
+}
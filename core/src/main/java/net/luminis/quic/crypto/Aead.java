@@ -20,6 +20,8 @@ package net.luminis.quic.crypto;
 
 import net.luminis.quic.impl.DecryptionException;
 
+import java.nio.ByteBuffer;
+
 /**
  * https://www.rfc-editor.org/rfc/rfc9001.html#name-packet-protection
  * "As with TLS over TCP, QUIC protects packets with keys derived from the TLS handshake, using the AEAD algorithm [AEAD]
@@ -31,12 +33,41 @@ public interface Aead {
 
     byte[] createHeaderProtectionMask(byte[] sample);
 
+    /**
+     * Computes the header protection mask for the 16-byte sample that starts at the given (absolute) offset in the
+     * buffer, without allocating a new array. The position of the buffer is not changed.
+     * @param buffer        buffer containing the sample
+     * @param sampleOffset  absolute offset of the sample in the buffer
+     * @param mask          array that receives the mask; must be at least 16 bytes long, of which the first 5 are
+     *                      meaningful ("The output of this algorithm is a 5-byte mask")
+     */
+    void createHeaderProtectionMask(ByteBuffer buffer, int sampleOffset, byte[] mask);
+
     byte[] getWriteIV();
 
     byte[] aeadEncrypt(byte[] associatedData, byte[] message, byte[] nonce);
 
     byte[] aeadDecrypt(byte[] associatedData, byte[] message, byte[] nonce) throws DecryptionException;
 
+    /**
+     * Encrypts the remaining bytes of the message buffer into the output buffer. Input and output may share the same
+     * backing memory (in-place encryption), as long as the output does not start after the input.
+     * All buffers are consumed, i.e. their positions are advanced. The nonce is derived from the packet number and
+     * the packet protection IV.
+     * @return  the number of bytes written to the output, which includes the authentication tag
+     */
+    int aeadEncrypt(ByteBuffer associatedData, ByteBuffer message, ByteBuffer output, long packetNumber);
+
+    /**
+     * Decrypts the remaining bytes of the message buffer (ciphertext including the authentication tag) into the output
+     * buffer. Input and output may share the same backing memory (in-place decryption).
+     * All buffers are consumed, i.e. their positions are advanced. The nonce is derived from the packet number and
+     * the packet protection IV.
+     * @return  the number of (plaintext) bytes written to the output
+     * @throws DecryptionException  if the ciphertext cannot be authenticated
+     */
+    int aeadDecrypt(ByteBuffer associatedData, ByteBuffer message, ByteBuffer output, long packetNumber) throws DecryptionException;
+
     /**
      * Check whether the key phase carried by a received packet still matches the current key phase; if not, compute
      * new keys (to be used for decryption). Note that the changed key phase can also be caused by packet corruption,
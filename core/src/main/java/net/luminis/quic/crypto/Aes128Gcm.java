@@ -1,22 +1,19 @@
 package net.luminis.quic.crypto;
 
 import at.favre.lib.hkdf.HKDF;
-import net.luminis.quic.impl.DecryptionException;
-import net.luminis.quic.impl.QuicRuntimeException;
 import net.luminis.quic.impl.Role;
 import net.luminis.quic.impl.Version;
 import net.luminis.quic.log.Logger;
 
-import javax.crypto.AEADBadTagException;
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
-import java.security.InvalidAlgorithmParameterException;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
 
 /**
  * https://www.rfc-editor.org/rfc/rfc9001.html#name-aead-usage
@@ -55,12 +52,9 @@ public class Aes128Gcm extends BaseAeadImpl {
             try {
                 // https://tools.ietf.org/html/draft-ietf-quic-tls-27#section-5.4.3
                 // "AEAD_AES_128_GCM and AEAD_AES_128_CCM use 128-bit AES [AES] in electronic code-book (ECB) mode."
-                hpCipher = Cipher.getInstance("AES/ECB/NoPadding");
+                hpCipher = createCipher("AES/ECB/NoPadding");
                 SecretKeySpec keySpec = new SecretKeySpec(getHp(), "AES");
                 hpCipher.init(Cipher.ENCRYPT_MODE, keySpec);
-            } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
-                // Inappropriate runtime environment
-                throw new QuicRuntimeException(e);
             } catch (InvalidKeyException e) {
                 // Programming error
                 throw new RuntimeException();
@@ -82,6 +76,21 @@ public class Aes128Gcm extends BaseAeadImpl {
         return mask;
     }
 
+    @Override
+    public void createHeaderProtectionMask(ByteBuffer buffer, int sampleOffset, byte[] mask) {
+        Cipher hpCipher = getHeaderProtectionCipher();
+        try {
+            // Copy the sample into the mask array and encrypt in place, which works for heap and direct buffers alike.
+            for (int i = 0; i < 16; i++) {
+                mask[i] = buffer.get(sampleOffset + i);
+            }
+            hpCipher.doFinal(mask, 0, 16, mask, 0);
+        } catch (IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
+            // Programming error
+            throw new RuntimeException();
+        }
+    }
+
     @Override
     public SecretKeySpec getWriteKeySpec() {
         if (possibleKeyUpdateInProgresss) {
@@ -99,56 +108,14 @@ public class Aes128Gcm extends BaseAeadImpl {
     }
 
     @Override
-    public Cipher getWriteCipher() {
-        if (writeCipher == null) {
-            try {
-                // From https://tools.ietf.org/html/draft-ietf-quic-tls-16#section-5.3:
-                // "Prior to establishing a shared secret, packets are protected with AEAD_AES_128_GCM"
-                String AES_GCM_NOPADDING = "AES/GCM/NoPadding";
-                writeCipher = Cipher.getInstance(AES_GCM_NOPADDING);
-            } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
-                // Inappropriate runtime environment
-                throw new QuicRuntimeException(e);
-            }
-        }
-        return writeCipher;
-    }
-
-    @Override
-    public byte[] aeadEncrypt(byte[] associatedData, byte[] message, byte[] nonce) {
-        Cipher aeadCipher = getWriteCipher();
-        SecretKeySpec secretKey = getWriteKeySpec();
-        try {
-            GCMParameterSpec parameterSpec = new GCMParameterSpec(128, nonce);   // https://tools.ietf.org/html/rfc5116#section-5.3: "the tag length t is 16"
-            aeadCipher.init(Cipher.ENCRYPT_MODE, secretKey, parameterSpec);
-            aeadCipher.updateAAD(associatedData);
-            return aeadCipher.doFinal(message);
-        } catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException |
-                 BadPaddingException e) {
-            // Programming error
-            throw new RuntimeException();
-        }
+    protected Cipher createAeadCipher() {
+        // From https://tools.ietf.org/html/draft-ietf-quic-tls-16#section-5.3:
+        // "Prior to establishing a shared secret, packets are protected with AEAD_AES_128_GCM"
+        return createCipher("AES/GCM/NoPadding");
     }
 
     @Override
-    public byte[] aeadDecrypt(byte[] associatedData, byte[] message, byte[] nonce) throws DecryptionException {
-        if (message.length <= 16) {
-            // https://www.rfc-editor.org/rfc/rfc9001.html#name-aead-usage
-            // "These cipher suites have a 16-byte authentication tag and produce an output 16 bytes larger than their input."
-            throw new DecryptionException("ciphertext must be longer than 16 bytes");
-        }
-        SecretKeySpec secretKey = getWriteKeySpec();
-        Cipher aeadCipher = getWriteCipher();
-        try {
-            GCMParameterSpec parameterSpec = new GCMParameterSpec(128, nonce);   // https://tools.ietf.org/html/rfc5116#section-5.3: "the tag length t is 16"
-            aeadCipher.init(Cipher.DECRYPT_MODE, secretKey, parameterSpec);
-            aeadCipher.updateAAD(associatedData);
-            return aeadCipher.doFinal(message);
-        } catch (AEADBadTagException decryptError) {
-            throw new DecryptionException();
-        } catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
-            // Programming error
-            throw new RuntimeException();
-        }
+    protected AlgorithmParameterSpec createAeadParameterSpec(byte[] nonce) {
+        return new GCMParameterSpec(128, nonce);   // https://tools.ietf.org/html/rfc5116#section-5.3: "the tag length t is 16"
     }
 }
@@ -19,14 +19,25 @@
 package net.luminis.quic.crypto;
 
 import at.favre.lib.hkdf.HKDF;
+import net.luminis.quic.impl.DecryptionException;
+import net.luminis.quic.impl.QuicRuntimeException;
 import net.luminis.quic.impl.Role;
 import net.luminis.quic.impl.Version;
 import net.luminis.quic.log.Logger;
 
+import javax.crypto.AEADBadTagException;
+import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
 
 import static net.luminis.quic.impl.Role.Client;
 
@@ -62,7 +73,10 @@ public abstract class BaseAeadImpl implements Aead {
     protected Cipher hpCipher;
     protected SecretKeySpec writeKeySpec;
     protected SecretKeySpec newWriteKeySpec;
-    protected Cipher writeCipher;
+    // Separate contexts, so that encryption and decryption never share a cipher (even though in practice, one instance
+    // is used either for encryption (own) or decryption (peer)).
+    private CipherContext encryptionContext;
+    private CipherContext decryptionContext;
     private int keyUpdateCounter = 0;
     protected boolean possibleKeyUpdateInProgresss = false;
     private volatile Aead peerAead;
@@ -238,7 +252,114 @@ public abstract class BaseAeadImpl implements Aead {
 
     public abstract SecretKeySpec getWriteKeySpec();
 
-    public abstract Cipher getWriteCipher();
+    /**
+     * Creates a new (uninitialized) cipher for the AEAD algorithm.
+     * @return
+     */
+    protected abstract Cipher createAeadCipher();
+
+    /**
+     * Creates the parameter spec for initializing the AEAD cipher with the given nonce.
+     * @param nonce
+     * @return
+     */
+    protected abstract AlgorithmParameterSpec createAeadParameterSpec(byte[] nonce);
+
+    protected static Cipher createCipher(String transformation) {
+        try {
+            return Cipher.getInstance(transformation);
+        }
+        catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            // Inappropriate runtime environment
+            throw new QuicRuntimeException(e);
+        }
+    }
+
+    private CipherContext getEncryptionContext() {
+        if (encryptionContext == null) {
+            encryptionContext = CipherContext.forEncryption(this::createAeadCipher);
+        }
+        return encryptionContext;
+    }
+
+    private CipherContext getDecryptionContext() {
+        if (decryptionContext == null) {
+            decryptionContext = CipherContext.forDecryption(this::createAeadCipher);
+        }
+        return decryptionContext;
+    }
+
+    @Override
+    public byte[] aeadEncrypt(byte[] associatedData, byte[] message, byte[] nonce) {
+        try {
+            Cipher aeadCipher = getEncryptionContext().init(getWriteKeySpec(), createAeadParameterSpec(nonce));
+            aeadCipher.updateAAD(associatedData);
+            return aeadCipher.doFinal(message);
+        }
+        catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
+            // Programming error
+            throw new RuntimeException();
+        }
+    }
+
+    @Override
+    public int aeadEncrypt(ByteBuffer associatedData, ByteBuffer message, ByteBuffer output, long packetNumber) {
+        CipherContext context = getEncryptionContext();
+        byte[] nonce = context.computeNonce(getWriteIV(), packetNumber);
+        try {
+            Cipher aeadCipher = context.init(getWriteKeySpec(), createAeadParameterSpec(nonce));
+            aeadCipher.updateAAD(associatedData);
+            return aeadCipher.doFinal(message, output);
+        }
+        catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
+            // Programming error
+            throw new RuntimeException();
+        }
+    }
+
+    @Override
+    public byte[] aeadDecrypt(byte[] associatedData, byte[] message, byte[] nonce) throws DecryptionException {
+        checkCiphertextLength(message.length);
+        try {
+            Cipher aeadCipher = getDecryptionContext().init(getWriteKeySpec(), createAeadParameterSpec(nonce));
+            aeadCipher.updateAAD(associatedData);
+            return aeadCipher.doFinal(message);
+        }
+        catch (AEADBadTagException decryptError) {
+            throw new DecryptionException();
+        }
+        catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
+            // Programming error
+            throw new RuntimeException();
+        }
+    }
+
+    @Override
+    public int aeadDecrypt(ByteBuffer associatedData, ByteBuffer message, ByteBuffer output, long packetNumber) throws DecryptionException {
+        checkCiphertextLength(message.remaining());
+        CipherContext context = getDecryptionContext();
+        byte[] nonce = context.computeNonce(getWriteIV(), packetNumber);
+        try {
+            Cipher aeadCipher = context.init(getWriteKeySpec(), createAeadParameterSpec(nonce));
+            aeadCipher.updateAAD(associatedData);
+            return aeadCipher.doFinal(message, output);
+        }
+        catch (AEADBadTagException decryptError) {
+            throw new DecryptionException();
+        }
+        catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
+            // Programming error
+            throw new RuntimeException();
+        }
+    }
+
+    private void checkCiphertextLength(int length) throws DecryptionException {
+        if (length <= 16) {
+            // https://www.rfc-editor.org/rfc/rfc9001.html#name-aead-usage
+            // "These cipher suites have a 16-byte authentication tag and produce an output 16 bytes larger than their input."
+            throw new DecryptionException("ciphertext must be longer than 16 bytes");
+        }
+    }
 
     public short getKeyPhase() {
         return (short) (keyUpdateCounter % 2);
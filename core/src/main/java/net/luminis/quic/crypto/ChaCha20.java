@@ -19,26 +19,21 @@
 package net.luminis.quic.crypto;
 
 import at.favre.lib.hkdf.HKDF;
-import net.luminis.quic.impl.DecryptionException;
-import net.luminis.quic.impl.QuicRuntimeException;
 import net.luminis.quic.impl.Role;
 import net.luminis.quic.impl.Version;
 import net.luminis.quic.log.Logger;
 
-import javax.crypto.AEADBadTagException;
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.ChaCha20ParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
-import java.security.Key;
-import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
+import java.security.spec.AlgorithmParameterSpec;
 
 /**
  * https://www.rfc-editor.org/rfc/rfc9001.html#name-aead-usage
@@ -48,6 +43,12 @@ import java.util.Arrays;
  */
 public class ChaCha20 extends BaseAeadImpl {
 
+    private static final byte[] FIVE_ZEROS = new byte[5];
+
+    private CipherContext headerProtectionContext;
+    private SecretKeySpec hpKeySpec;
+    private final byte[] hpNonce = new byte[12];
+
     public ChaCha20(Version quicVersion, Role server, Logger log) {
         super(quicVersion, server, log);
     }
@@ -70,15 +71,7 @@ public class ChaCha20 extends BaseAeadImpl {
     @Override
     public Cipher getHeaderProtectionCipher() {
         if (hpCipher == null) {
-            try {
-                hpCipher = Cipher.getInstance("ChaCha20");
-            } catch (NoSuchAlgorithmException e) {
-                // Inappropriate runtime environment
-                throw new QuicRuntimeException(e);
-            } catch (NoSuchPaddingException e) {
-                // Programming error
-                throw new RuntimeException();
-            }
+            hpCipher = createCipher("ChaCha20");
         }
         return hpCipher;
     }
@@ -100,83 +93,53 @@ public class ChaCha20 extends BaseAeadImpl {
     }
 
     @Override
-    public Cipher getWriteCipher() {
-        if (writeCipher == null) {
-            try {
-                writeCipher = Cipher.getInstance("ChaCha20-Poly1305");
-            }
-            catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
-                // Inappropriate runtime environment
-                throw new QuicRuntimeException(e);
-            }
-        }
-        return writeCipher;
+    protected Cipher createAeadCipher() {
+        return createCipher("ChaCha20-Poly1305");
     }
 
     @Override
-    public byte[] aeadEncrypt(byte[] associatedData, byte[] message, byte[] nonce) {
-        try {
-            Cipher aeadCipher = getWriteCipher();
-            IvParameterSpec chacha20poly1305Spec = new IvParameterSpec(nonce);
-            Key key = getWriteKeySpec();
-            aeadCipher.init(Cipher.ENCRYPT_MODE, key, chacha20poly1305Spec);
-            aeadCipher.updateAAD(associatedData);
-            return aeadCipher.doFinal(message);
-        }
-        catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
-            // Programming error
-            throw new RuntimeException();
-        }
+    protected AlgorithmParameterSpec createAeadParameterSpec(byte[] nonce) {
+        return new IvParameterSpec(nonce);
     }
 
     @Override
-    public byte[] aeadDecrypt(byte[] associatedData, byte[] message, byte[] nonce) throws DecryptionException {
-        try {
-            Cipher aeadCipher = getWriteCipher();
-            IvParameterSpec chacha20poly1305Spec = new IvParameterSpec(nonce);
-            Key key = getWriteKeySpec();
-            aeadCipher.init(Cipher.DECRYPT_MODE, key, chacha20poly1305Spec);
-            aeadCipher.updateAAD(associatedData);
-            return aeadCipher.doFinal(message);
-        }
-        catch (AEADBadTagException decryptError) {
-            throw new DecryptionException();
-        }
-        catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException e) {
-            // Programming error
-            throw new RuntimeException();
-        }
+    public byte[] createHeaderProtectionMask(byte[] sample) {
+        byte[] mask = new byte[5];
+        createHeaderProtectionMask(sample, 0, mask);
+        return mask;
     }
 
     @Override
-    public byte[] createHeaderProtectionMask(byte[] sample) {
+    public void createHeaderProtectionMask(ByteBuffer buffer, int sampleOffset, byte[] mask) {
+        // The mask array is large enough to hold the sample, so use it for both input and output
+        for (int i = 0; i < 16; i++) {
+            mask[i] = buffer.get(sampleOffset + i);
+        }
+        createHeaderProtectionMask(mask, 0, mask);
+    }
+
+    private void createHeaderProtectionMask(byte[] sample, int sampleOffset, byte[] mask) {
+        if (headerProtectionContext == null) {
+            headerProtectionContext = CipherContext.forHeaderProtection(() -> createCipher("ChaCha20"));
+            hpKeySpec = new SecretKeySpec(hp, "ChaCha20");
+        }
         try {
-            Cipher hpCipher = Cipher.getInstance("ChaCha20");
-            byte[] nonce = Arrays.copyOfRange(sample, 4, 16);
-            byte[] counterBytes = new byte[4];
-            counterBytes[0] = sample[3];
-            counterBytes[1] = sample[2];
-            counterBytes[2] = sample[1];
-            counterBytes[3] = sample[0];
-            int counter = ByteBuffer.wrap(counterBytes).getInt();
-            ChaCha20ParameterSpec chaCha20ParameterSpec = new ChaCha20ParameterSpec(nonce, counter);
-            SecretKeySpec key = new SecretKeySpec(hp, "ChaCha20");
-            hpCipher.init(Cipher.ENCRYPT_MODE, key, chaCha20ParameterSpec);
-            byte[] mask = hpCipher.doFinal(new byte[]{ 0, 0, 0, 0, 0 });
-            return mask;
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
-            // Inappropriate runtime environment
-            throw new QuicRuntimeException(e);
+            // https://www.rfc-editor.org/rfc/rfc9001.html#name-chacha20-based-header-prote
+            // "The first 4 bytes of the sampled ciphertext are the block counter. (...) The remaining 12 bytes are used
+            //  as the nonce."
+            System.arraycopy(sample, sampleOffset + 4, hpNonce, 0, 12);
+            int counter = (sample[sampleOffset] & 0xff)
+                    | (sample[sampleOffset + 1] & 0xff) << 8
+                    | (sample[sampleOffset + 2] & 0xff) << 16
+                    | (sample[sampleOffset + 3] & 0xff) << 24;
+            Cipher hpCipher = headerProtectionContext.init(hpKeySpec, new ChaCha20ParameterSpec(hpNonce, counter));
+            // "mask = ChaCha20(hp_key, counter, nonce, {0,0,0,0,0})"
+            hpCipher.doFinal(FIVE_ZEROS, 0, FIVE_ZEROS.length, mask, 0);
         } catch (InvalidKeyException e) {
             // Programming error
             throw new RuntimeException();
-        } catch (BadPaddingException e) {
-            throw new RuntimeException();
-        } catch (IllegalBlockSizeException e) {
-            throw new RuntimeException();
-        } catch (InvalidAlgorithmParameterException e) {
+        } catch (BadPaddingException | IllegalBlockSizeException | InvalidAlgorithmParameterException | ShortBufferException e) {
             throw new RuntimeException();
         }
     }
 }
-
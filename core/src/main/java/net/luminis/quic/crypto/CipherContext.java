@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.crypto;
+
+import javax.crypto.Cipher;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.function.Supplier;
+
+/**
+ * The cipher state for one direction of packet protection (encryption or decryption) or for header protection.
+ * Each context owns its Cipher object and nonce buffer, so encryption and decryption never share mutable state, and
+ * apart from the parameter spec JCE requires for each new nonce, no objects are created per packet.
+ * Not thread-safe; a context must be used by one thread at a time.
+ */
+class CipherContext {
+
+    private final int mode;
+    private final Supplier<Cipher> cipherFactory;
+    private final boolean repeatedParametersAllowed;
+    private final byte[] nonce = new byte[12];
+    private Cipher cipher;
+
+    static CipherContext forEncryption(Supplier<Cipher> cipherFactory) {
+        return new CipherContext(Cipher.ENCRYPT_MODE, cipherFactory, false);
+    }
+
+    /**
+     * Creates a context for decryption. Note that a received packet can be a duplicate, so it must be possible to
+     * decrypt with the same key and nonce more than once.
+     */
+    static CipherContext forDecryption(Supplier<Cipher> cipherFactory) {
+        return new CipherContext(Cipher.DECRYPT_MODE, cipherFactory, true);
+    }
+
+    /**
+     * Creates a context for computing header protection masks, for which the same input (sample) can occur more than
+     * once, e.g. when receiving duplicate packets.
+     */
+    static CipherContext forHeaderProtection(Supplier<Cipher> cipherFactory) {
+        return new CipherContext(Cipher.ENCRYPT_MODE, cipherFactory, true);
+    }
+
+    private CipherContext(int mode, Supplier<Cipher> cipherFactory, boolean repeatedParametersAllowed) {
+        this.mode = mode;
+        this.cipherFactory = cipherFactory;
+        this.repeatedParametersAllowed = repeatedParametersAllowed;
+    }
+
+    /**
+     * Computes the AEAD nonce for the given packet number, using a buffer that is owned by this context. The returned
+     * array is only valid until the next call.
+     * @param iv            the packet protection IV
+     * @param packetNumber  the (full, i.e. not truncated) packet number
+     * @return
+     */
+    byte[] computeNonce(byte[] iv, long packetNumber) {
+        // https://www.rfc-editor.org/rfc/rfc9001.html#name-aead-usage
+        // "The nonce, N, is formed by combining the packet protection IV with the packet number. The 62 bits of the
+        //  reconstructed QUIC packet number in network byte order are left-padded with zeros to the size of the IV.
+        //  The exclusive OR of the padded packet number and the IV forms the AEAD nonce."
+        System.arraycopy(iv, 0, nonce, 0, nonce.length);
+        for (int i = 0; i < 8; i++) {
+            nonce[nonce.length - 1 - i] ^= (byte) (packetNumber >> (8 * i));
+        }
+        return nonce;
+    }
+
+    /**
+     * Returns the cipher of this context, initialized with the given key and parameters.
+     */
+    Cipher init(Key key, AlgorithmParameterSpec parameterSpec) throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if (cipher == null) {
+            cipher = cipherFactory.get();
+        }
+        try {
+            cipher.init(mode, key, parameterSpec);
+        }
+        catch (InvalidKeyException rejected) {
+            if (!repeatedParametersAllowed) {
+                throw rejected;
+            }
+            // Some implementations (e.g. ChaCha20 of the JDK) refuse to be re-initialized with the same key and nonce
+            // (which is only a problem for encryption); a fresh instance does not have this restriction.
+            cipher = cipherFactory.get();
+            cipher.init(mode, key, parameterSpec);
+        }
+        return cipher;
+    }
+}
@@ -27,6 +27,7 @@ import net.luminis.quic.packet.QuicPacket;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -181,7 +182,8 @@ public class AckFrame extends QuicFrame {
     }
 
     /**
-     * Returns the acked packet numbers in reverse sorted order (so largest first)
+     * Returns the acked packet numbers in reverse sorted order (so largest first).
+     * Note that this expands all ranges into individual (boxed) packet numbers; for processing acks, use the ranges.
      * @return
      */
     public Stream<Long> getAckedPacketNumbers() {
@@ -196,6 +198,31 @@ public class AckFrame extends QuicFrame {
         return acknowledgedRanges;
     }
 
+    /**
+     * Returns the acked ranges limited to the given window, in reverse sorted order (so largest first). Ranges outside
+     * the window are skipped, ranges partly outside the window are truncated.
+     * @param smallest  smallest packet number of the window (inclusive)
+     * @param largest  largest packet number of the window (inclusive)
+     * @return
+     */
+    public List<Range> getAcknowledgedRanges(long smallest, long largest) {
+        if (smallest > largest) {
+            return Collections.emptyList();
+        }
+        Range window = new Range(smallest, largest);
+        List<Range> ranges = new ArrayList<>();
+        for (Range range: acknowledgedRanges) {
+            if (range.getSmallest() > largest) {
+                continue;
+            }
+            if (range.getLargest() < smallest) {
+                break;
+            }
+            range.intersect(window).ifPresent(ranges::add);
+        }
+        return ranges;
+    }
+
     @Override
     public String toString() {
         if (stringRepresentation == null) {
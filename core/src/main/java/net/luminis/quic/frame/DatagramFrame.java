@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.frame;
+
+import net.luminis.quic.generic.InvalidIntegerEncodingException;
+import net.luminis.quic.generic.VariableLengthInteger;
+import net.luminis.quic.log.Logger;
+import net.luminis.quic.packet.QuicPacket;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * Represents a datagram frame, see https://www.rfc-editor.org/rfc/rfc9221.html#name-datagram-frame-types
+ */
+public class DatagramFrame extends QuicFrame {
+
+    private byte[] data;
+    // Frames created for sending always include the length, so other frames can follow in the same packet.
+    private boolean withLength = true;
+
+    public DatagramFrame() {
+    }
+
+    /**
+     * Creates a datagram frame carrying the remaining bytes of the given buffer (which are copied).
+     * @param data
+     */
+    public DatagramFrame(ByteBuffer data) {
+        this.data = new byte[data.remaining()];
+        data.get(this.data);
+    }
+
+    public DatagramFrame parse(ByteBuffer buffer, Logger log) throws InvalidIntegerEncodingException {
+        // https://www.rfc-editor.org/rfc/rfc9221.html#name-datagram-frame-types
+        // "The LEN bit (0x01) of the DATAGRAM frame type indicates whether there is a Length field present: if this bit
+        //  is set to 0, the Length field is absent and the Datagram Data field extends to the end of the packet; if this
+        //  bit is set to 1, the Length field is present."
+        int frameType = buffer.get();
+        withLength = (frameType & 0x01) == 0x01;
+        int length;
+        if (withLength) {
+            length = VariableLengthInteger.parse(buffer);
+            // Check before allocating, as the length is controlled by the peer.
+            if (length > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+        }
+        else {
+            length = buffer.remaining();
+        }
+        data = new byte[length];
+        buffer.get(data);
+        return this;
+    }
+
+    @Override
+    public int getFrameLength() {
+        return 1 + (withLength? VariableLengthInteger.bytesNeeded(data.length): 0) + data.length;
+    }
+
+    @Override
+    public void serialize(ByteBuffer buffer) {
+        if (withLength) {
+            buffer.put((byte) 0x31);
+            VariableLengthInteger.encode(data.length, buffer);
+        }
+        else {
+            buffer.put((byte) 0x30);
+        }
+        buffer.put(data);
+    }
+
+    @Override
+    public String toString() {
+        return "DatagramFrame[" + data.length + "]";
+    }
+
+    @Override
+    public void accept(FrameProcessor frameProcessor, QuicPacket packet, Instant timeReceived) {
+        frameProcessor.process(this, packet, timeReceived);
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getDataLength() {
+        return data.length;
+    }
+}
@@ -21,6 +21,7 @@ package net.luminis.quic.frame;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
@@ -203,6 +204,25 @@ public class Range {
         return this.from <= other.from && this.to >= other.to;
     }
 
+    /**
+     * Returns the intersection of this range with the given range, i.e. the range of numbers present in both.
+     * @param other
+     * @return  the intersection, or empty when the ranges do not overlap.
+     */
+    public Optional<Range> intersect(Range other) {
+        long intersectionFrom = Long.max(this.from, other.from);
+        long intersectionTo = Long.min(this.to, other.to);
+        if (intersectionFrom > intersectionTo) {
+            return Optional.empty();
+        }
+        else if (intersectionFrom == this.from && intersectionTo == this.to) {
+            return Optional.of(this);
+        }
+        else {
+            return Optional.of(new Range(intersectionFrom, intersectionTo));
+        }
+    }
+
     /**
      * Returns true when this range contains the given range, but the range bounds (from and to) neither do match.
      * @param other
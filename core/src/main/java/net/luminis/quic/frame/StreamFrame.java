@@ -24,7 +24,9 @@ import net.luminis.quic.impl.Version;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.packet.QuicPacket;
 import net.luminis.quic.stream.StreamElement;
+import net.luminis.quic.util.ReferenceCountedBuffer;
 
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.Arrays;
@@ -38,7 +40,11 @@ public class StreamFrame extends QuicFrame implements StreamElement {
     private int streamId;
     private long offset;
     private int length;
+    // Stream data is either held in an array, or in a (read-only) slice of the (decrypted) packet payload.
     private byte[] streamData;
+    private ByteBuffer streamDataBuffer;
+    // When not null, the shared buffer that the stream data buffer is a slice of.
+    private volatile ReferenceCountedBuffer payload;
     private boolean isFinal;
     private int frameLength;
 
@@ -62,14 +68,33 @@ public class StreamFrame extends QuicFrame implements StreamElement {
     }
 
     public StreamFrame(Version quicVersion, int streamId, long streamOffset, byte[] applicationData, int dataOffset, int dataLength, boolean fin) {
-        streamType = Stream.of(StreamType.values()).filter(t -> t.value == (streamId & 0x03)).findFirst().get();
-        this.streamId = streamId;
-        this.offset = streamOffset;
         this.streamData = new byte[dataLength];
         // This implementation copies the application data, which would not be necessary if the caller guarantees
         // it will not reuse the data buffer (or at least, the range that is used by this frame) and its content
-        // will never change.
+        // will never change; if so, use the constructor that takes a ByteBuffer.
         ByteBuffer.wrap(streamData).put(applicationData, dataOffset, dataLength);
+        init(streamId, streamOffset, dataLength, fin);
+    }
+
+    /**
+     * Creates a stream frame that refers to the given data, without copying it. The caller must guarantee that the
+     * content of the buffer (i.e. its remaining bytes) will not change as long as the frame is in use, which includes
+     * the time it takes for the frame to be acknowledged (as the frame can be retransmitted).
+     * @param quicVersion
+     * @param streamId
+     * @param streamOffset
+     * @param applicationData  the data, from position to limit
+     * @param fin
+     */
+    public StreamFrame(Version quicVersion, int streamId, long streamOffset, ByteBuffer applicationData, boolean fin) {
+        this.streamDataBuffer = applicationData.slice().asReadOnlyBuffer();
+        init(streamId, streamOffset, streamDataBuffer.remaining(), fin);
+    }
+
+    private void init(int streamId, long streamOffset, int dataLength, boolean fin) {
+        streamType = Stream.of(StreamType.values()).filter(t -> t.value == (streamId & 0x03)).findFirst().get();
+        this.streamId = streamId;
+        this.offset = streamOffset;
         this.length = dataLength;
         isFinal = fin;
 
@@ -95,7 +120,12 @@ public class StreamFrame extends QuicFrame implements StreamElement {
         VariableLengthInteger.encode(streamId, buffer);
         VariableLengthInteger.encode(offset, buffer);
         VariableLengthInteger.encode(length, buffer);
-        buffer.put(streamData);
+        if (streamData != null) {
+            buffer.put(streamData);
+        }
+        else {
+            buffer.put(streamDataBuffer.duplicate());
+        }
     }
 
     @Override
@@ -104,6 +134,21 @@ public class StreamFrame extends QuicFrame implements StreamElement {
     }
 
     public StreamFrame parse(ByteBuffer buffer, Logger log) throws InvalidIntegerEncodingException {
+        return parse(buffer, null, log);
+    }
+
+    /**
+     * Parses a stream frame. When a (shared) payload buffer is given, the stream data is not copied, but the frame
+     * refers to the data in the payload buffer, which is retained until the frame is released (see {@link #release()}).
+     * Small frames are always copied though, as retaining a whole payload buffer for a few bytes of stream data would
+     * let a peer (sending many small out-of-order frames) pin much more memory than flow control allows.
+     * @param buffer  the buffer to parse the frame from
+     * @param payload  the shared buffer that holds the content of the buffer that is parsed, or null when data must be copied
+     * @param log
+     * @return
+     * @throws InvalidIntegerEncodingException
+     */
+    public StreamFrame parse(ByteBuffer buffer, ReferenceCountedBuffer payload, Logger log) throws InvalidIntegerEncodingException {
         int startPosition = buffer.position();
 
         int frameType = buffer.get();
@@ -124,12 +169,25 @@ public class StreamFrame extends QuicFrame implements StreamElement {
             length = buffer.limit() - buffer.position();
         }
 
-        streamData = new byte[length];
-        buffer.get(streamData);
+        if (payload != null && length >= payload.capacity() / 2) {
+            if (length > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            ByteBuffer slice = buffer.duplicate();
+            slice.limit(buffer.position() + length);
+            streamDataBuffer = slice.slice().asReadOnlyBuffer();
+            buffer.position(buffer.position() + length);
+            payload.retain();
+            this.payload = payload;
+            log.decrypted("Stream data", streamDataBuffer.duplicate(), 0, length);
+        }
+        else {
+            streamData = new byte[length];
+            buffer.get(streamData);
+            log.decrypted("Stream data", streamData);
+        }
         frameLength = buffer.position() - startPosition;
 
-        log.decrypted("Stream data", streamData);
-
         return this;
     }
 
@@ -147,7 +205,7 @@ public class StreamFrame extends QuicFrame implements StreamElement {
                 offset == that.offset &&
                 length == that.length &&
                 isFinal == that.isFinal &&
-                Arrays.equals(streamData, that.streamData);
+                Arrays.equals(getStreamData(), that.getStreamData());
     }
 
     @Override
@@ -177,10 +235,44 @@ public class StreamFrame extends QuicFrame implements StreamElement {
         return length;
     }
 
+    /**
+     * Returns the stream data. Note that when the frame refers to data in the packet payload, calling this method
+     * implies copying the data; use {@link #getStreamDataBuffer()} to avoid copying.
+     * @return
+     */
     public byte[] getStreamData() {
+        if (streamData == null) {
+            byte[] data = new byte[length];
+            streamDataBuffer.duplicate().get(data);
+            streamData = data;
+        }
         return streamData;
     }
 
+    @Override
+    public ByteBuffer getStreamDataBuffer() {
+        if (streamData != null) {
+            return ByteBuffer.wrap(streamData).asReadOnlyBuffer();
+        }
+        else {
+            return streamDataBuffer.duplicate();
+        }
+    }
+
+    /**
+     * Releases the packet payload this frame refers to (if any). After the frame is released, the stream data must not
+     * be accessed anymore.
+     */
+    @Override
+    public synchronized void release() {
+        // Synchronized, as a frame can be released concurrently by the receive buffer when its data is discarded.
+        ReferenceCountedBuffer referenced = payload;
+        if (referenced != null) {
+            payload = null;
+            referenced.release();
+        }
+    }
+
     @Override
     public long getUpToOffset() {
         return offset + length;
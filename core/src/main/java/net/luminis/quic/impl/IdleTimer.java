@@ -18,48 +18,60 @@
  */
 package net.luminis.quic.impl;
 
-import net.luminis.quic.concurrent.DaemonThreadFactory;
+import net.luminis.quic.concurrent.TimerWheel;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.packet.QuicPacket;
 
 import java.time.Clock;
 import java.time.Instant;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executor;
 import java.util.function.IntSupplier;
 
+/**
+ * Closes the connection when it has been idle for longer than the idle timeout.
+ * Instead of polling, the timer is scheduled at the moment the connection would become idle if no further activity
+ * takes place; when it expires and there has been activity meanwhile, it is rescheduled. So registering activity
+ * (which happens for each packet) is cheap: it only updates the time of the last action.
+ */
 public class IdleTimer {
 
     private final Clock clock;
-    private final ScheduledExecutorService timer;
-    private final int timerResolution;
+    private final TimerWheel.Timeout timerTask;
     private volatile long timeout;
     private final QuicConnectionImpl connection;
     private final Logger log;
     private volatile IntSupplier ptoSupplier;
     private volatile Instant lastAction;
     private volatile boolean enabled;
-    private ScheduledFuture<?> timerTask;
+    private volatile boolean stopped;
 
 
     public IdleTimer(QuicConnectionImpl connection, Logger logger) {
-        this(connection, logger, 1000);
+        this(connection, logger, null);
+    }
+
+    /**
+     * Creates an idle timer that runs its timeout check with the given executor.
+     * @param connection
+     * @param logger
+     * @param executor  the executor (e.g. the event loop of the connection) to execute the timeout check with, or null
+     *                  to execute it on the (shared) timer thread
+     */
+    public IdleTimer(QuicConnectionImpl connection, Logger logger, Executor executor) {
+        this(Clock.systemUTC(), connection, logger, TimerWheel.shared(), executor);
     }
 
-    public IdleTimer(QuicConnectionImpl connection, Logger logger, int timerResolution) {
-        this(Clock.systemUTC(), connection, logger, timerResolution);
+    public IdleTimer(Clock clock, QuicConnectionImpl connection, Logger logger, TimerWheel timerWheel) {
+        this(clock, connection, logger, timerWheel, null);
     }
 
-    public IdleTimer(Clock clock, QuicConnectionImpl connection, Logger logger, int timerResolution) {
+    IdleTimer(Clock clock, QuicConnectionImpl connection, Logger logger, TimerWheel timerWheel, Executor executor) {
         this.clock = clock;
         this.connection = connection;
         this.ptoSupplier = () -> 0;
         this.log = logger;
-        this.timerResolution = timerResolution;
 
-        timer = Executors.newScheduledThreadPool(1, new DaemonThreadFactory("idle-timer"));
+        timerTask = timerWheel.newTimeout(this::checkIdle, executor);
         lastAction = clock.instant();
     }
 
@@ -68,10 +80,7 @@ public class IdleTimer {
         if (! enabled) {
             enabled = true;
         }
-        else {
-            timerTask.cancel(true);
-        }
-        timerTask = timer.scheduleAtFixedRate(() -> checkIdle(), timerResolution, timerResolution, TimeUnit.MILLISECONDS);
+        scheduleCheck();
     }
 
     long getIdleTimeout() {
@@ -87,7 +96,7 @@ public class IdleTimer {
     }
 
     private void checkIdle() {
-        if (enabled) {
+        if (enabled && !stopped) {
             Instant now = clock.instant();
             if (lastAction.plusMillis(timeout).isBefore(now)) {
                 int currentPto = ptoSupplier.getAsInt();
@@ -95,10 +104,22 @@ public class IdleTimer {
                 // To avoid excessively small idle timeout periods, endpoints MUST increase the idle timeout period
                 // to be at least three times the current Probe Timeout (PTO)
                 if (lastAction.plusMillis(3L * currentPto).isBefore(now)) {
-                    timer.shutdown();
+                    stopped = true;
                     connection.silentlyCloseConnection(timeout + currentPto);
+                    return;
                 }
-            }}
+            }
+            // Not idle (anymore), check again at the time connection would be idle if nothing happens meanwhile.
+            scheduleCheck();
+        }
+    }
+
+    private void scheduleCheck() {
+        long idlePeriod = Long.max(timeout, 3L * ptoSupplier.getAsInt());
+        // Idle is defined as "longer than", hence the extra millisecond.
+        if (! stopped) {
+            timerTask.schedule(lastAction.plusMillis(idlePeriod + 1));
+        }
     }
 
     public void packetProcessed() {
@@ -121,9 +142,7 @@ public class IdleTimer {
     }
 
     public void shutdown() {
-        if (enabled) {
-            timer.shutdown();
-        }
+        stopped = true;
+        timerTask.cancel();
     }
 }
-
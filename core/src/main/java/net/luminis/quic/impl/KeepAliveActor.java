@@ -18,15 +18,15 @@
  */
 package net.luminis.quic.impl;
 
+import net.luminis.quic.concurrent.TimerWheel;
 import net.luminis.quic.frame.PingFrame;
 import net.luminis.quic.send.Sender;
 
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import static java.time.temporal.ChronoUnit.SECONDS;
 import static net.luminis.quic.common.EncryptionLevel.App;
@@ -39,26 +39,31 @@ public class KeepAliveActor {
     private final int keepAliveTime;
     private final Sender sender;
     private final Instant started;
-    private final ScheduledExecutorService scheduler;
+    private final TimerWheel.Timeout pingTask;
     private final int pingInterval;
-    private volatile ScheduledFuture<?> scheduledTask;
+    private volatile boolean stopped;
 
     /**
      * @param quicVersion
      * @param keepAliveTime       the time the connection should be kept alive in seconds
      * @param peerIdleTimeout     the idle timeout of the peer, in milliseconds
      * @param sender
+     * @param executor            the executor to send the pings with, or null to send them from the (shared) timer thread
      */
-    public KeepAliveActor(VersionHolder quicVersion, int keepAliveTime, int peerIdleTimeout, Sender sender) {
-        this(Clock.systemUTC(), quicVersion, keepAliveTime, peerIdleTimeout, sender, Executors.newScheduledThreadPool(1));
+    public KeepAliveActor(VersionHolder quicVersion, int keepAliveTime, int peerIdleTimeout, Sender sender, Executor executor) {
+        this(Clock.systemUTC(), quicVersion, keepAliveTime, peerIdleTimeout, sender, TimerWheel.shared(), executor);
     }
 
-    KeepAliveActor(Clock clock, VersionHolder quicVersion, int keepAliveTime, int peerIdleTimeout, Sender sender, ScheduledExecutorService scheduler) {
+    KeepAliveActor(Clock clock, VersionHolder quicVersion, int keepAliveTime, int peerIdleTimeout, Sender sender, TimerWheel timerWheel) {
+        this(clock, quicVersion, keepAliveTime, peerIdleTimeout, sender, timerWheel, null);
+    }
+
+    KeepAliveActor(Clock clock, VersionHolder quicVersion, int keepAliveTime, int peerIdleTimeout, Sender sender, TimerWheel timerWheel, Executor executor) {
         this.clock = clock;
         this.quicVersion = quicVersion;
         this.keepAliveTime = keepAliveTime;
         this.sender = sender;
-        this.scheduler = scheduler;
+        pingTask = timerWheel.newTimeout(this::ping, executor);
 
         started = clock.instant();
         pingInterval = peerIdleTimeout / 1000 / 2;
@@ -67,6 +72,9 @@ public class KeepAliveActor {
     }
 
     private void ping() {
+        if (stopped) {
+            return;
+        }
         sender.send(new PingFrame(quicVersion.getVersion()), App);
         sender.flush();
 
@@ -76,11 +84,12 @@ public class KeepAliveActor {
     private void scheduleNextPing() {
         Instant now = clock.instant();
         if (Duration.between(started, now).compareTo(Duration.of(keepAliveTime - pingInterval, SECONDS)) < 0) {
-            scheduledTask = scheduler.schedule(() -> ping(), pingInterval, java.util.concurrent.TimeUnit.SECONDS);
+            pingTask.schedule(pingInterval, TimeUnit.SECONDS);
         }
     }
 
     public void shutdown() {
-        scheduler.shutdown();
+        stopped = true;
+        pingTask.cancel();
     }
 }
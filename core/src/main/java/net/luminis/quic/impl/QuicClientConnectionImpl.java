@@ -18,10 +18,12 @@
  */
 package net.luminis.quic.impl;
 
+import net.luminis.quic.ConnectionConfig.CongestionControlAlgorithm;
 import net.luminis.quic.DatagramSocketFactory;
 import net.luminis.quic.QuicClientConnection;
 import net.luminis.quic.QuicSessionTicket;
 import net.luminis.quic.QuicStream;
+import net.luminis.quic.TokenCache;
 import net.luminis.quic.ack.GlobalAckGenerator;
 import net.luminis.quic.cid.ConnectionIdInfo;
 import net.luminis.quic.cid.ConnectionIdManager;
@@ -34,8 +36,11 @@ import net.luminis.quic.frame.*;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.log.NullLogger;
 import net.luminis.quic.packet.*;
+import net.luminis.quic.receive.DatagramBufferPool;
+import net.luminis.quic.receive.DatagramChannelReceiver;
 import net.luminis.quic.receive.RawPacket;
 import net.luminis.quic.receive.Receiver;
+import net.luminis.quic.send.Pacer;
 import net.luminis.quic.send.SenderImpl;
 import net.luminis.quic.stream.EarlyDataStream;
 import net.luminis.quic.stream.FlowControl;
@@ -78,6 +83,7 @@ import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import static net.luminis.quic.QuicConstants.TransportErrorCode.FRAME_ENCODING_ERROR;
 import static net.luminis.quic.QuicConstants.TransportErrorCode.PROTOCOL_VIOLATION;
 import static net.luminis.quic.QuicConstants.TransportErrorCode.TRANSPORT_PARAMETER_ERROR;
 import static net.luminis.quic.QuicConstants.TransportErrorCode.VERSION_NEGOTIATION_ERROR;
@@ -142,6 +148,7 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
     private final long connectTimeout;
     private final ClientConnectionConfig connectionProperties;
     private volatile byte[] token;
+    private TokenCache tokenCache;
     private final CountDownLatch handshakeFinishedCondition = new CountDownLatch(1);
     private volatile TransportParameters peerTransportParams;
     private KeepAliveActor keepAliveActor;
@@ -161,7 +168,7 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
     private QuicClientConnectionImpl(String host, int port, String applicationProtocol, long connectTimeout,
                                      ClientConnectionConfig connectionProperties, QuicSessionTicket sessionTicket,
                                      Version originalVersion, Version preferredVersion, Logger log,
-                                     String proxyHost, Path secretsFile, Integer initialRtt, Integer cidLength,
+                                     String proxyHost, Path secretsFile, Integer initialRtt, CongestionControlAlgorithm congestionControl, Integer cidLength,
                                      List<TlsConstants.CipherSuite> cipherSuites,
                                      X509Certificate clientCertificate, PrivateKey clientCertificateKey,
                                      DatagramSocketFactory socketFactory) throws UnknownHostException, SocketException {
@@ -179,18 +186,24 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
         this.cipherSuites = cipherSuites;
         this.clientCertificate = clientCertificate;
         this.clientCertificateKey = clientCertificateKey;
-        this.socketFactory = socketFactory != null? socketFactory: (address) -> new DatagramSocket();
+        this.socketFactory = socketFactory != null? socketFactory: (address) -> DatagramChannelReceiver.createSocket(null);
 
         socket = this.socketFactory.createSocket(serverAddress);
 
-        idleTimer = new IdleTimer(this, log);
+        idleTimer = new IdleTimer(this, log, getTimerExecutor());
         sender = new SenderImpl(quicVersion, getMaxPacketSize(), socket, new InetSocketAddress(serverAddress, port),
-                        this, "", initialRtt, log);
+                        this, "", initialRtt, congestionControl, log);
         sender.enableAllLevels();
         idleTimer.setPtoSupplier(sender::getPto);
         ackGenerator = sender.getGlobalAckGenerator();
 
-        receiver = new Receiver(socket, log, this::abortConnection, createPacketFilter());
+        if (DatagramChannelReceiver.isSupported(socket)) {
+            receiver = new DatagramChannelReceiver(socket, new DatagramBufferPool(), log, this::abortConnection,
+                    address -> address.getAddress().equals(serverAddress) && address.getPort() == serverPort);
+        }
+        else {
+            receiver = new Receiver(socket, log, this::abortConnection, createPacketFilter());
+        }
 
         streamManager = new StreamManager(this, Role.Client, log, connectionProperties);
 
@@ -320,6 +333,9 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
         else {
             throw new IllegalArgumentException("maxUdpPayloadSize must be set");
         }
+
+        parameters.setMaxDatagramFrameSize(connectionProperties.getMaxDatagramFrameSize());
+        maxDatagramFrameSize = connectionProperties.getMaxDatagramFrameSize();
         return parameters;
     }
 
@@ -362,6 +378,12 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
 
         log.info(String.format("Original destination connection id: %s (scid: %s)", bytesToHex(connectionIdManager.getOriginalDestinationConnectionId()), bytesToHex(connectionIdManager.getInitialConnectionId())));
         generateInitialKeys();
+        if (tokenCache != null) {
+            // https://www.rfc-editor.org/rfc/rfc9000.html#name-address-validation-for-futu
+            // "The client MUST include the token in all Initial packets it sends, unless a Retry replaces the token with
+            //  a newer one."
+            tokenCache.take(host).ifPresent(sender::setInitialToken);
+        }
 
         receiver.start();
         sender.start(connectionSecrets);
@@ -443,7 +465,7 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
         }
 
         if (idleTimer.isEnabled()) {
-            keepAliveActor = new KeepAliveActor(quicVersion, seconds, (int) idleTimer.getIdleTimeout(), sender);
+            keepAliveActor = new KeepAliveActor(quicVersion, seconds, (int) idleTimer.getIdleTimeout(), sender, getTimerExecutor());
         }
     }
 
@@ -481,7 +503,12 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
                     log.debug("Processing delay for packet #" + receivedPacketCounter + ": " + processDelay.toMillis() + " ms");
 
                     PacketMetaData metaData = new PacketMetaData(rawPacket.getTimeReceived(), null, receivedPacketCounter);
-                    datagramProcessingChain.processDatagram(rawPacket.getData(), metaData);
+                    try {
+                        datagramProcessingChain.processDatagram(rawPacket.getData(), metaData);
+                    }
+                    finally {
+                        rawPacket.release();
+                    }
 
                     sender.datagramProcessed(receiver.hasMore());
                 }
@@ -754,6 +781,16 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
 
     @Override
     public void process(NewTokenFrame newTokenFrame, QuicPacket packet, Instant timeReceived) {
+        // https://www.rfc-editor.org/rfc/rfc9000.html#name-new_token-frames
+        // "A client MUST treat receipt of a NEW_TOKEN frame with an empty Token field as a connection error of type
+        //  FRAME_ENCODING_ERROR."
+        if (newTokenFrame.getToken().length == 0) {
+            immediateCloseWithError(App, FRAME_ENCODING_ERROR.value, "empty token in NEW_TOKEN frame");
+            return;
+        }
+        if (tokenCache != null) {
+            tokenCache.put(host, newTokenFrame.getToken());
+        }
     }
 
     @Override
@@ -1285,12 +1322,15 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
         private String host;
         private int port;
         private QuicSessionTicket sessionTicket;
+        private TokenCache tokenCache;
         private QuicVersion quicVersion = QuicVersion.V1;
         private QuicVersion preferredVersion;
         private Logger log = new NullLogger();
         private String proxyHost;
         private Path secretsFile;
         private Integer initialRtt;
+        private CongestionControlAlgorithm congestionControl = CongestionControlAlgorithm.NewReno;
+        private int pacingBurstAllowance = Pacer.DEFAULT_BURST_ALLOWANCE;
         private Integer connectionIdLength;
         private List<TlsConstants.CipherSuite> cipherSuites = new ArrayList<>();
         private boolean omitCertificateCheck;
@@ -1325,9 +1365,12 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
 
             QuicClientConnectionImpl quicConnection =
                     new QuicClientConnectionImpl(host, port, applicationProtocol, connectTimeoutInMillis, connectionProperties, sessionTicket, Version.of(quicVersion),
-                            Version.of(preferredVersion), log, proxyHost, secretsFile, initialRtt, connectionIdLength,
+                            Version.of(preferredVersion), log, proxyHost, secretsFile, initialRtt, congestionControl, connectionIdLength,
                             cipherSuites, clientCertificate, clientCertificateKey, socketFactory);
 
+            quicConnection.sender.setPacingBurstAllowance(pacingBurstAllowance);
+            quicConnection.tokenCache = tokenCache;
+
             if (omitCertificateCheck) {
                 quicConnection.trustAnyServerCertificate();
             }
@@ -1462,6 +1505,12 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
             return this;
         }
 
+        @Override
+        public Builder tokenCache(TokenCache tokenCache) {
+            this.tokenCache = tokenCache;
+            return this;
+        }
+
         @Override
         public Builder proxy(String host) {
             proxyHost = host;
@@ -1496,6 +1545,42 @@ public class QuicClientConnectionImpl extends QuicConnectionImpl implements Quic
             return this;
         }
 
+        @Override
+        public Builder congestionControlAlgorithm(CongestionControlAlgorithm algorithm) {
+            this.congestionControl = Objects.requireNonNull(algorithm);
+            return this;
+        }
+
+        @Override
+        public Builder pacingBurstAllowance(int datagrams) {
+            if (datagrams < 0) {
+                throw new IllegalArgumentException("Pacing burst allowance cannot be negative");
+            }
+            this.pacingBurstAllowance = datagrams;
+            return this;
+        }
+
+        @Override
+        public Builder receiveWindowAutoTuning(long maxStreamReceiveWindow, long maxConnectionReceiveWindow) {
+            if (maxStreamReceiveWindow < 0 || maxConnectionReceiveWindow < 0) {
+                throw new IllegalArgumentException("Maximum receive window cannot be negative");
+            }
+            if (maxConnectionReceiveWindow < maxStreamReceiveWindow) {
+                throw new IllegalArgumentException("Maximum connection receive window can't be less than maximum stream receive window");
+            }
+            connectionProperties.setReceiveWindowAutoTuning(maxStreamReceiveWindow, maxConnectionReceiveWindow);
+            return this;
+        }
+
+        @Override
+        public Builder maxDatagramFrameSize(int maxDatagramFrameSize) {
+            if (maxDatagramFrameSize < 0) {
+                throw new IllegalArgumentException("Maximum datagram frame size cannot be negative");
+            }
+            connectionProperties.setMaxDatagramFrameSize(maxDatagramFrameSize);
+            return this;
+        }
+
         @Override
         public Builder cipherSuite(TlsConstants.CipherSuite cipherSuite) {
             cipherSuites.add(Objects.requireNonNull(cipherSuite));
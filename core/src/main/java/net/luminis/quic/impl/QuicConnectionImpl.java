@@ -24,18 +24,19 @@ import net.luminis.quic.QuicStream;
 import net.luminis.quic.Statistics;
 import net.luminis.quic.ack.GlobalAckGenerator;
 import net.luminis.quic.cid.ConnectionIdManager;
-import net.luminis.quic.concurrent.DaemonThreadFactory;
+import net.luminis.quic.concurrent.SerialExecutor;
+import net.luminis.quic.concurrent.TimerWheel;
 import net.luminis.quic.common.EncryptionLevel;
 import net.luminis.quic.common.PnSpace;
 import net.luminis.quic.crypto.ConnectionSecrets;
 import net.luminis.quic.crypto.CryptoStream;
 import net.luminis.quic.frame.*;
+import net.luminis.quic.generic.VariableLengthInteger;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.packet.BasePacketFilter;
 import net.luminis.quic.packet.PacketFilter;
 import net.luminis.quic.packet.PacketMetaData;
 import net.luminis.quic.packet.QuicPacket;
-import net.luminis.quic.recovery.RecoveryManager;
 import net.luminis.quic.send.SenderImpl;
 import net.luminis.quic.stream.FlowControl;
 import net.luminis.quic.stream.StreamManager;
@@ -45,21 +46,21 @@ import net.luminis.tls.TlsProtocolException;
 import net.luminis.tls.alert.ErrorAlert;
 import net.luminis.tls.engine.TlsEngine;
 
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.Executors;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 import static net.luminis.quic.QuicConstants.TransportErrorCode.INTERNAL_ERROR;
 import static net.luminis.quic.QuicConstants.TransportErrorCode.NO_ERROR;
+import static net.luminis.quic.QuicConstants.TransportErrorCode.PROTOCOL_VIOLATION;
 import static net.luminis.quic.common.EncryptionLevel.App;
 import static net.luminis.quic.common.EncryptionLevel.Initial;
 import static net.luminis.quic.impl.QuicConnectionImpl.ErrorType.APPLICATION_ERROR;
@@ -116,6 +117,12 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
     // https://www.rfc-editor.org/rfc/rfc9000.html#name-transport-parameter-definit
     // "If this value is absent, a default value of 3 is assumed (indicating a multiplier of 8)."
     protected volatile int peerAckDelayExponent = 3;
+    // The max_datagram_frame_size transport parameter sent to the peer, 0 when receiving datagrams is not supported.
+    protected volatile long maxDatagramFrameSize;
+    // https://www.rfc-editor.org/rfc/rfc9221.html#name-transport-parameter
+    // "The default for this parameter is 0, which indicates that the endpoint does not support DATAGRAM frames."
+    protected volatile long peerMaxDatagramFrameSize;
+    private volatile Consumer<ByteBuffer> datagramReceivedCallback = data -> {};
 
     protected volatile FlowControl flowController;
     protected long[] largestPacketNumber = new long[PnSpace.values().length];
@@ -123,10 +130,23 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
     protected volatile Status connectionState;
 
     private RateLimiter closeFramesSendRateLimiter;
-    private final ScheduledExecutorService scheduler;
+    private final TimerWheel timerWheel;
+    private final Executor timerExecutor;
 
 
     protected QuicConnectionImpl(Version originalVersion, Role role, Path secretsFile, Logger log) {
+        this(originalVersion, role, secretsFile, null, log);
+    }
+
+    /**
+     * @param originalVersion
+     * @param role
+     * @param secretsFile
+     * @param timerExecutor  executor (e.g. the event loop of the connection) for executing timer tasks, or null to
+     *                       execute them with a serial executor of its own (backed by a shared pool)
+     * @param log
+     */
+    protected QuicConnectionImpl(Version originalVersion, Role role, Path secretsFile, Executor timerExecutor, Logger log) {
         this.quicVersion = new VersionHolder(originalVersion);
         this.role = role;
         this.log = log;
@@ -137,11 +157,14 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
 
         connectionState = Status.Created;
         closeFramesSendRateLimiter = new ProgressivelyIncreasingRateLimiter();
-        scheduler = Executors.newScheduledThreadPool(1, new DaemonThreadFactory("scheduler"));
+        timerWheel = TimerWheel.shared();
+        // Timer tasks (like closing the connection) should never run on the shared timer thread, as that would delay
+        // the timers of all other connections.
+        this.timerExecutor = timerExecutor != null? timerExecutor: new SerialExecutor(SerialExecutor.sharedPool());
     }
 
-    public void addHandshakeStateListener(RecoveryManager recoveryManager) {
-        handshakeStateListeners.add(recoveryManager);
+    public void addHandshakeStateListener(HandshakeStateListener listener) {
+        handshakeStateListeners.add(listener);
     }
 
     /**
@@ -186,6 +209,38 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
         return getStreamManager().createStream(bidirectional);
     }
 
+    @Override
+    public void sendDatagram(ByteBuffer data) {
+        if (peerMaxDatagramFrameSize == 0) {
+            throw new IllegalStateException("Peer does not support datagrams");
+        }
+        if (data.remaining() > getMaxDatagramSize()) {
+            throw new IllegalArgumentException("Datagram too large (max size is " + getMaxDatagramSize() + ")");
+        }
+        // https://www.rfc-editor.org/rfc/rfc9221.html#name-behavior-and-usage
+        // "DATAGRAM frames MUST NOT be retransmitted"
+        send(new DatagramFrame(data), f -> {}, true);
+    }
+
+    @Override
+    public int getMaxDatagramSize() {
+        if (peerMaxDatagramFrameSize == 0) {
+            return 0;
+        }
+        // https://www.rfc-editor.org/rfc/rfc9221.html#name-transport-parameter
+        // "This limit (...) does not include the packet header or other frames.". Also, a DATAGRAM frame cannot be
+        // fragmented, so it must fit in a single packet.
+        long maxFrameSize = Math.min(peerMaxDatagramFrameSize, getSender().getMaxPacketSize() - getMaxShortHeaderPacketOverhead());
+        // Frame type (1 byte) and length field
+        int maxDataSize = (int) maxFrameSize - 1 - VariableLengthInteger.bytesNeeded(maxFrameSize);
+        return Integer.max(maxDataSize, 0);
+    }
+
+    @Override
+    public void setDatagramReceivedCallback(Consumer<ByteBuffer> datagramConsumer) {
+        datagramReceivedCallback = datagramConsumer != null? datagramConsumer: data -> {};
+    }
+
     public void datagramProcessed() {
         // Processed all packets in the datagram, so not expecting more.
         getSender().packetProcessed(false);
@@ -194,6 +249,15 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
         runPostProcessingActions();
     }
 
+    /**
+     * Notifies the connection that a received datagram is completely processed, which enables the sender to coalesce
+     * responses when more datagrams are about to be processed.
+     * @param expectingMore  whether more datagrams are about to be processed (e.g. as part of the same batch)
+     */
+    public void datagramProcessed(boolean expectingMore) {
+        getSender().datagramProcessed(expectingMore);
+    }
+
     protected void runPostProcessingActions() {
         postProcessingActions.forEach(action -> action.run());
         postProcessingActions.clear();
@@ -237,6 +301,8 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
         getSender().setReceiverMaxAckDelay(peerTransportParams.getMaxAckDelay());
 
         getSender().registerMaxUdpPayloadSize(peerTransportParams.getMaxUdpPayloadSize());
+
+        peerMaxDatagramFrameSize = peerTransportParams.getMaxDatagramFrameSize();
     }
 
     @Override
@@ -292,6 +358,25 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
         log.warn("Received " + dataBlockedFrame);
     }
 
+    @Override
+    public void process(DatagramFrame datagramFrame, QuicPacket packet, Instant timeReceived) {
+        // https://www.rfc-editor.org/rfc/rfc9221.html#name-transport-parameter
+        // "An endpoint that receives a DATAGRAM frame when it has not indicated support via the transport parameter
+        //  MUST terminate the connection with an error of type PROTOCOL_VIOLATION. Similarly, an endpoint that receives
+        //  a DATAGRAM frame that is larger than the value it sent in its max_datagram_frame_size transport parameter
+        //  MUST terminate the connection with an error of type PROTOCOL_VIOLATION."
+        if (maxDatagramFrameSize == 0 || datagramFrame.getFrameLength() > maxDatagramFrameSize) {
+            immediateCloseWithError(EncryptionLevel.App, PROTOCOL_VIOLATION.value, "unexpected datagram frame");
+            return;
+        }
+        try {
+            datagramReceivedCallback.accept(ByteBuffer.wrap(datagramFrame.getData()));
+        }
+        catch (RuntimeException error) {
+            log.error("Datagram received callback failed", error);
+        }
+    }
+
     @Override
     public void process(MaxDataFrame maxDataFrame, QuicPacket packet, Instant timeReceived) {
         flowController.process(maxDataFrame);
@@ -586,7 +671,6 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
         idleTimer.shutdown();
         getSender().shutdown(postSenderShutdownAction);
         connectionState = Status.Closed;
-        scheduler.shutdown();
     }
 
     protected int quicError(TlsProtocolException tlsError) {
@@ -670,12 +754,7 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
     }
 
     private void schedule(Runnable command, int delay, TimeUnit unit) {
-        try {
-            scheduler.schedule(command, delay, unit);
-        }
-        catch (RejectedExecutionException rejected) {
-            // Can happen when already terminated; don't bother
-        }
+        timerWheel.schedule(command, delay, unit, timerExecutor);
     }
 
     @Override
@@ -683,6 +762,13 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
         return new Statistics(getSender().getStatistics());
     }
 
+    /**
+     * @return  the current smoothed round trip time estimate in milliseconds.
+     */
+    public int getSmoothedRtt() {
+        return getSender().getSmoothedRtt();
+    }
+
     @Override
     public QuicVersion getQuicVersion() {
         return quicVersion.getVersion().toQuicVersion();
@@ -725,6 +811,13 @@ public abstract class QuicConnectionImpl implements QuicConnection, PacketProces
      */
     public abstract byte[] getDestinationConnectionId();
 
+    /**
+     * @return  the executor that executes the timer tasks of this connection.
+     */
+    public Executor getTimerExecutor() {
+        return timerExecutor;
+    }
+
     public IdleTimer getIdleTimer() {
         return idleTimer;
     }
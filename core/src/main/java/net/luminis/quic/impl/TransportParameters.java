@@ -45,6 +45,7 @@ public class TransportParameters {
     private int maxUdpPayloadSize;
     private byte[] statelessResetToken;
     private VersionInformation versionInformation;
+    private long maxDatagramFrameSize;
 
     public TransportParameters() {
         setDefaults();
@@ -215,6 +216,19 @@ public class TransportParameters {
         this.statelessResetToken = statelessResetToken;
     }
 
+    /**
+     * https://www.rfc-editor.org/rfc/rfc9221.html#name-transport-parameter
+     * @return  the maximum size of a datagram frame the endpoint is willing to receive, 0 when datagram frames are
+     * not supported.
+     */
+    public long getMaxDatagramFrameSize() {
+        return maxDatagramFrameSize;
+    }
+
+    public void setMaxDatagramFrameSize(long maxDatagramFrameSize) {
+        this.maxDatagramFrameSize = maxDatagramFrameSize;
+    }
+
     @Override
     public String toString() {
         return "\n- original destination connection id\t" + formatCid(originalDestinationConnectionId) +
@@ -231,7 +245,8 @@ public class TransportParameters {
                 "\n- disable migration\t\t\t" + disableMigration +
                 "\n- active connection id limit\t\t" + activeConnectionIdLimit +
                 "\n- initial source connection id\t\t" + formatCid(initialSourceConnectionId) +
-                "\n- retry source connection id\t\t" + formatCid(retrySourceConnectionId);
+                "\n- retry source connection id\t\t" + formatCid(retrySourceConnectionId) +
+                "\n- max datagram frame size\t\t" + maxDatagramFrameSize;
     }
 
     private String formatCid(byte[] data) {
@@ -98,6 +98,8 @@ public interface Logger {
 
     void decrypted(String message, byte[] data, int length);
 
+    void decrypted(String message, ByteBuffer data, int offset, int length);
+
     void decrypted(String message);
 
     void encrypted(String message, byte[] data);
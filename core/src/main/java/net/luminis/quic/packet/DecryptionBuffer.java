@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.packet;
+
+import net.luminis.quic.util.ReferenceCountedBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Scratch space for removing packet protection, owned by one connection (i.e. its packet parser) and reused for every
+ * packet parsed, so that decrypting a packet does not require allocating new buffers. Not thread-safe; the packets of
+ * a connection are parsed by one thread at a time.
+ * The plaintext buffer is reference counted: frames that refer to the decrypted payload (i.e. stream frames, which
+ * avoid copying their data) hold a reference until the data is consumed. As long as the plaintext buffer is referenced
+ * by frames, it cannot be reused for the next packet, so another one is taken from a (small) pool of buffers that
+ * have been released by all their holders.
+ */
+class DecryptionBuffer {
+
+    static final int MAX_POOLED_BUFFERS = 32;
+
+    // https://www.rfc-editor.org/rfc/rfc9001.html#name-header-protection-applicati
+    // "The output of this algorithm is a 5-byte mask", but as the sample is 16 bytes, the array is large enough to
+    // hold the sample as well.
+    private final byte[] mask = new byte[16];
+    private final int bufferSize;
+    // Thread safety: buffers are released (and thus recycled) by the threads consuming the frames.
+    private final BlockingQueue<ReferenceCountedBuffer> pool = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+    private ReferenceCountedBuffer plaintext;
+
+    DecryptionBuffer() {
+        this(QuicPacket.MAX_PACKET_SIZE);
+    }
+
+    DecryptionBuffer(int initialCapacity) {
+        bufferSize = initialCapacity;
+        plaintext = new ReferenceCountedBuffer(ByteBuffer.allocate(initialCapacity), this::recycle);
+    }
+
+    byte[] mask() {
+        return mask;
+    }
+
+    /**
+     * Returns the (cleared) buffer to decrypt into, which is guaranteed to have at least the given capacity.
+     * @param minimumCapacity
+     * @return
+     */
+    ByteBuffer plaintext(int minimumCapacity) {
+        if (plaintext.references() > 1 || plaintext.capacity() < minimumCapacity) {
+            // Still referenced by frames of a previous packet (or too small), so give up (own reference to) current one.
+            plaintext.release();
+            plaintext = acquire(minimumCapacity);
+        }
+        ByteBuffer buffer = plaintext.buffer();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns the reference counted buffer that holds the plaintext returned by the last call to plaintext(int).
+     * Frames that refer to the plaintext must retain it, and release it when the data is not used anymore.
+     * @return
+     */
+    ReferenceCountedBuffer payload() {
+        return plaintext;
+    }
+
+    private ReferenceCountedBuffer acquire(int minimumCapacity) {
+        if (minimumCapacity <= bufferSize) {
+            ReferenceCountedBuffer pooled = pool.poll();
+            if (pooled != null) {
+                pooled.reuse();
+                return pooled;
+            }
+        }
+        return new ReferenceCountedBuffer(ByteBuffer.allocate(Integer.max(bufferSize, minimumCapacity)), this::recycle);
+    }
+
+    private void recycle(ReferenceCountedBuffer buffer) {
+        if (buffer.capacity() == bufferSize) {
+            pool.offer(buffer);
+        }
+    }
+
+    // For testing only
+    int pooled() {
+        return pool.size();
+    }
+}
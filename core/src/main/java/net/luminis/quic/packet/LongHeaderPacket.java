@@ -30,6 +30,7 @@ import net.luminis.quic.log.Logger;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -110,27 +111,49 @@ public abstract class LongHeaderPacket extends QuicPacket {
 
     @Override
     public byte[] generatePacketBytes(Aead aead) {
-        assert(packetNumber >= 0);
-
         ByteBuffer packetBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
-        generateFrameHeaderInvariant(packetBuffer);
-        generateAdditionalFields(packetBuffer);
-        byte[] encodedPacketNumber = encodePacketNumber(packetNumber);
-        ByteBuffer frameBytes = generatePayloadBytes(encodedPacketNumber.length);
-        addLength(packetBuffer, encodedPacketNumber.length, frameBytes.limit());
-        packetBuffer.put(encodedPacketNumber);
+        generatePacketBytes(aead, packetBuffer);
+        return Arrays.copyOf(packetBuffer.array(), packetBuffer.position());
+    }
 
-        protectPacketNumberAndPayload(packetBuffer, encodedPacketNumber.length, frameBytes, 0, aead);
+    @Override
+    public int generatePacketBytes(Aead aead, ByteBuffer buffer) {
+        assert(packetNumber >= 0);
 
-        packetBuffer.limit(packetBuffer.position());
-        packetSize = packetBuffer.limit();
+        int packetStart = buffer.position();
+        generateFrameHeaderInvariant(buffer);
+        generateAdditionalFields(buffer);
 
-        byte[] packetBytes = new byte[packetBuffer.position()];
-        packetBuffer.rewind();
-        packetBuffer.get(packetBytes);
+        // The length field precedes the packet number and payload, but its value is only known after the frames are
+        // serialized. To avoid serializing into a separate buffer, the length field is sized according to the frame
+        // lengths, which are exact in practice; only if they are not, the payload is moved to make room.
+        int packetNumberSize = computePacketNumberSize(packetNumber);
+        int lengthFieldOffset = buffer.position();
+        int lengthFieldSize = VariableLengthInteger.bytesNeeded(computePacketLength(packetNumberSize, estimatePayloadLength(packetNumberSize)));
+        int packetNumberOffset = lengthFieldOffset + lengthFieldSize;
+        buffer.position(packetNumberOffset);
+        encodePacketNumber(packetNumber, buffer);
+        int payloadLength = serializeFrames(buffer, packetNumberSize);
+
+        int packetLength = computePacketLength(packetNumberSize, payloadLength);
+        int requiredLengthFieldSize = VariableLengthInteger.bytesNeeded(packetLength);
+        if (requiredLengthFieldSize != lengthFieldSize) {
+            byte[] packetNumberAndPayload = new byte[packetNumberSize + payloadLength];
+            buffer.position(packetNumberOffset);
+            buffer.get(packetNumberAndPayload);
+            packetNumberOffset = lengthFieldOffset + requiredLengthFieldSize;
+            buffer.position(packetNumberOffset);
+            buffer.put(packetNumberAndPayload);
+        }
+        int payloadEnd = buffer.position();
+        buffer.position(lengthFieldOffset);
+        VariableLengthInteger.encode(packetLength, buffer);
+        buffer.position(payloadEnd);
+
+        protectPacketNumberAndPayload(buffer, packetStart, packetNumberOffset, packetNumberSize, payloadLength, aead);
 
-        packetSize = packetBytes.length;
-        return packetBytes;
+        packetSize = buffer.position() - packetStart;
+        return packetSize;
     }
 
     @Override
@@ -189,9 +212,17 @@ public abstract class LongHeaderPacket extends QuicPacket {
 
     protected abstract int estimateAdditionalFieldsLength();
 
-    private void addLength(ByteBuffer packetBuffer, int packetNumberLength, int payloadSize) {
-        int packetLength = payloadSize + 16 + packetNumberLength;   // 16 is what encryption adds, note that final length is larger due to adding packet length
-        VariableLengthInteger.encode(packetLength, packetBuffer);
+    private int estimatePayloadLength(int packetNumberLength) {
+        int framesLength = 0;
+        for (QuicFrame frame: frames) {
+            framesLength += frame.getFrameLength();
+        }
+        // Same padding as applied by serializeFrames
+        return Integer.max(framesLength, 4 - packetNumberLength);
+    }
+
+    private int computePacketLength(int packetNumberLength, int payloadSize) {
+        return packetNumberLength + payloadSize + 16;   // 16 is what encryption adds
     }
 
     @Override
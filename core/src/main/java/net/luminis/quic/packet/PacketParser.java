@@ -44,6 +44,7 @@ public abstract class PacketParser {
     private final Role role;
     protected long[] largestPacketNumber;
     private BiFunction<ByteBuffer, Exception, Boolean> handleUnprotectPacketFailureFunction;
+    private final DecryptionBuffer decryptionBuffer;
 
 
     public PacketParser(ConnectionSecrets secrets, VersionHolder quicVersion, int cidLength, PacketFilter processor, Role role, Logger logger) {
@@ -67,6 +68,7 @@ public abstract class PacketParser {
         this.log = logger;
 
         largestPacketNumber = new long[PnSpace.values().length];
+        decryptionBuffer = new DecryptionBuffer();
     }
 
     public void parseAndProcessPackets(ByteBuffer data, PacketMetaData metaData) {
@@ -145,7 +147,13 @@ public abstract class PacketParser {
         if (packet.getEncryptionLevel() != null) {
             Aead aead = getAead(packet, data);
             long largestPN = packet.getPnSpace() != null? largestPacketNumber[packet.getPnSpace().ordinal()]: 0;
-            packet.parse(data, aead, largestPN, log, cidLength);
+            if (packet instanceof ShortHeaderPacket) {
+                // By far the most common packet type, which is therefore decrypted without allocating buffers.
+                ((ShortHeaderPacket) packet).parse(data, aead, largestPN, log, cidLength, decryptionBuffer);
+            }
+            else {
+                packet.parse(data, aead, largestPN, log, cidLength);
+            }
         }
         else {
             // Packet has no encryption level, i.e. a VersionNegotiationPacket
@@ -25,7 +25,9 @@ import net.luminis.quic.frame.*;
 import net.luminis.quic.generic.InvalidIntegerEncodingException;
 import net.luminis.quic.impl.*;
 import net.luminis.quic.log.Logger;
+import net.luminis.quic.util.ReferenceCountedBuffer;
 
+import java.nio.BufferOverflowException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.time.Instant;
@@ -80,6 +82,23 @@ abstract public class QuicPacket {
         }
     }
 
+    /**
+     * Writes the (truncated) packet number into the buffer, using the same encoding as encodePacketNumber(long).
+     * @param packetNumber
+     * @param buffer
+     * @return  the number of bytes written
+     */
+    static int encodePacketNumber(long packetNumber, ByteBuffer buffer) {
+        if (packetNumber > 0xffffffffL) {
+            throw new NotYetImplementedException("cannot encode pn > 4 bytes");
+        }
+        int packetNumberSize = computePacketNumberSize(packetNumber);
+        for (int i = packetNumberSize - 1; i >= 0; i--) {
+            buffer.put((byte) (packetNumber >> (8 * i)));
+        }
+        return packetNumberSize;
+    }
+
     /**
      * Updates the given flags byte to encode the packet number length that is used for encoding the given packet number.
      * @param flags
@@ -204,6 +223,92 @@ abstract public class QuicPacket {
         parseFrames(frameBytes, log);
     }
 
+    /**
+     * Removes packet protection like parsePacketNumberAndPayload(ByteBuffer, byte, int, Aead, long, Logger), but
+     * without copying the header or payload: header protection is removed in place (so the header in the buffer can
+     * serve as associated data) and the payload is decrypted into the (reusable) decryption buffer. When decryption
+     * fails, the header is restored, so the packet data is left unaltered for further inspection (e.g. for detecting a
+     * stateless reset).
+     * Just like the copying variant, this method requires the packet to start at position 0 in the buffer.
+     */
+    void parsePacketNumberAndPayload(ByteBuffer buffer, byte flags, int remainingLength, Aead aead, long largestPacketNumber, Logger log,
+                                     DecryptionBuffer decryptionBuffer) throws DecryptionException, InvalidPacketException {
+        if (buffer.remaining() < remainingLength) {
+            throw new InvalidPacketException();
+        }
+
+        // https://www.rfc-editor.org/rfc/rfc9001.html#name-header-protection-sample
+        // "in sampling the packet ciphertext for header protection, the Packet Number field is assumed to be 4 bytes
+        //  long (...) This algorithm samples 16 bytes from the packet ciphertext."
+        int packetNumberOffset = buffer.position();
+        if (buffer.remaining() < 4 + 16) {
+            throw new InvalidPacketException();
+        }
+        byte[] mask = decryptionBuffer.mask();
+        aead.createHeaderProtectionMask(buffer, packetNumberOffset + 4, mask);
+
+        // https://www.rfc-editor.org/rfc/rfc9001.html#name-header-protection-applicati
+        // "The least significant bits of the first byte of the packet are masked by the least significant bits of the
+        //  first mask byte, and the packet number is masked with the remaining bytes."
+        byte decryptedFlags;
+        if ((flags & 0x80) == 0x80) {
+            // Long header: 4 bits masked
+            decryptedFlags = (byte) (flags ^ mask[0] & 0x0f);
+        }
+        else {
+            // Short header: 5 bits masked
+            decryptedFlags = (byte) (flags ^ mask[0] & 0x1f);
+        }
+        setUnprotectedHeader(decryptedFlags);
+
+        // "pn_length = (packet[0] & 0x03) + 1"
+        int packetNumberLength = (decryptedFlags & 0x03) + 1;
+        int encryptedPayloadLength = remainingLength - packetNumberLength;
+        if (encryptedPayloadLength < 1) {
+            throw new InvalidPacketException();
+        }
+        long protectedPacketNumber = 0;
+        long truncatedPacketNumber = 0;
+        for (int i = 0; i < packetNumberLength; i++) {
+            byte protectedByte = buffer.get(packetNumberOffset + i);
+            byte unprotectedByte = (byte) (protectedByte ^ mask[1 + i]);
+            protectedPacketNumber = (protectedPacketNumber << 8) | (protectedByte & 0xff);
+            truncatedPacketNumber = (truncatedPacketNumber << 8) | (unprotectedByte & 0xff);
+            buffer.put(packetNumberOffset + i, unprotectedByte);
+        }
+        buffer.put(0, decryptedFlags);
+        packetNumber = decodePacketNumber(truncatedPacketNumber, largestPacketNumber, packetNumberLength * 8);
+        log.decrypted("Unprotected packet number: " + packetNumber);
+
+        // https://www.rfc-editor.org/rfc/rfc9001.html#name-aead-usage
+        // "The associated data, A, for the AEAD is the contents of the QUIC header, starting from the first byte of
+        //  either the short or long header, up to and including the unprotected packet number."
+        int headerLength = packetNumberOffset + packetNumberLength;
+        ByteBuffer associatedData = buffer.duplicate();
+        associatedData.position(0).limit(headerLength);
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(headerLength).limit(headerLength + encryptedPayloadLength);
+        buffer.position(headerLength + encryptedPayloadLength);
+
+        ByteBuffer frameBytes = decryptionBuffer.plaintext(encryptedPayloadLength);
+        try {
+            decryptPayload(payload, associatedData, frameBytes, packetNumber, aead);
+        }
+        catch (DecryptionException cantDecrypt) {
+            buffer.put(0, flags);
+            for (int i = packetNumberLength - 1; i >= 0; i--) {
+                buffer.put(packetNumberOffset + i, (byte) protectedPacketNumber);
+                protectedPacketNumber >>= 8;
+            }
+            throw cantDecrypt;
+        }
+        frameBytes.flip();
+        log.decrypted("Decrypted payload", frameBytes.array(), frameBytes.limit());
+
+        frames = new ArrayList<>();
+        parseFrames(frameBytes, decryptionBuffer.payload(), log);
+    }
+
     protected void setUnprotectedHeader(byte decryptedFlags) {}
 
     byte[] createHeaderProtectionMask(byte[] sample, Aead aead) {
@@ -224,44 +329,23 @@ abstract public class QuicPacket {
         return aead.createHeaderProtectionMask(sample);
     }
 
-    byte[] encryptPayload(byte[] message, byte[] associatedData, long packetNumber, Aead aead) {
-
-        // From https://tools.ietf.org/html/draft-ietf-quic-tls-16#section-5.3:
-        // "The nonce, N, is formed by combining the packet
-        //   protection IV with the packet number.  The 64 bits of the
-        //   reconstructed QUIC packet number in network byte order are left-
-        //   padded with zeros to the size of the IV.  The exclusive OR of the
-        //   padded packet number and the IV forms the AEAD nonce"
-        byte[] writeIV = aead.getWriteIV();
-        ByteBuffer nonceInput = ByteBuffer.allocate(writeIV.length);
-        for (int i = 0; i < nonceInput.capacity() - 8; i++)
-            nonceInput.put((byte) 0x00);
-        nonceInput.putLong(packetNumber);
-
-        byte[] nonce = new byte[12];
-        int i = 0;
-        for (byte b : nonceInput.array())
-            nonce[i] = (byte) (b ^ writeIV[i++]);
-
-        return aead.aeadEncrypt(associatedData, message, nonce);
+    int encryptPayload(ByteBuffer message, ByteBuffer associatedData, ByteBuffer output, long packetNumber, Aead aead) {
+        return aead.aeadEncrypt(associatedData, message, output, packetNumber);
     }
 
     byte[] decryptPayload(byte[] message, byte[] associatedData, long packetNumber, Aead aead) throws DecryptionException {
-        ByteBuffer nonceInput = ByteBuffer.allocate(12);
-        nonceInput.putInt(0);
-        nonceInput.putLong(packetNumber);
+        // https://www.rfc-editor.org/rfc/rfc9001.html#name-aead-usage
+        // "These cipher suites have a 16-byte authentication tag and produce an output 16 bytes larger than their input."
+        byte[] plaintext = new byte[Integer.max(0, message.length - 16)];
+        decryptPayload(ByteBuffer.wrap(message), ByteBuffer.wrap(associatedData), ByteBuffer.wrap(plaintext), packetNumber, aead);
+        return plaintext;
+    }
 
+    void decryptPayload(ByteBuffer message, ByteBuffer associatedData, ByteBuffer output, long packetNumber, Aead aead) throws DecryptionException {
         if (this instanceof ShortHeaderPacket) {
             aead.checkKeyPhase(((ShortHeaderPacket) this).keyPhaseBit);
         }
-
-        byte[] writeIV = aead.getWriteIV();
-        byte[] nonce = new byte[12];
-        int i = 0;
-        for (byte b : nonceInput.array())
-            nonce[i] = (byte) (b ^ writeIV[i++]);
-
-        return aead.aeadDecrypt(associatedData, message, nonce);
+        aead.aeadDecrypt(associatedData, message, output, packetNumber);
     }
 
     static long decodePacketNumber(long truncatedPacketNumber, long largestPacketNumber, int bits) {
@@ -284,8 +368,22 @@ abstract public class QuicPacket {
     }
 
     protected void parseFrames(byte[] frameBytes, Logger log) throws InvalidPacketException {
-        ByteBuffer buffer = ByteBuffer.wrap(frameBytes);
+        parseFrames(ByteBuffer.wrap(frameBytes), log);
+    }
 
+    protected void parseFrames(ByteBuffer buffer, Logger log) throws InvalidPacketException {
+        parseFrames(buffer, null, log);
+    }
+
+    /**
+     * Parses the frames in the given buffer.
+     * @param buffer
+     * @param payload  when not null, the (shared) buffer holding the frame bytes; stream frames will refer to their
+     *                 data in this buffer instead of copying it (and retain the buffer until released).
+     * @param log
+     * @throws InvalidPacketException
+     */
+    protected void parseFrames(ByteBuffer buffer, ReferenceCountedBuffer payload, Logger log) throws InvalidPacketException {
         int frameType = -1;
         try {
             while (buffer.remaining() > 0) {
@@ -356,9 +454,13 @@ abstract public class QuicPacket {
                     case 0x1e:
                         frames.add(new HandshakeDoneFrame(quicVersion).parse(buffer, log));
                         break;
+                    case 0x30:
+                    case 0x31:
+                        frames.add(new DatagramFrame().parse(buffer, log));
+                        break;
                     default:
                         if ((frameType >= 0x08) && (frameType <= 0x0f)) {
-                            frames.add(new StreamFrame().parse(buffer, log));
+                            frames.add(new StreamFrame().parse(buffer, payload, log));
                         }
                         else {
                             // https://tools.ietf.org/html/draft-ietf-quic-transport-24#section-12.4
@@ -401,57 +503,72 @@ abstract public class QuicPacket {
         packetNumber = pn;
     }
 
-    protected ByteBuffer generatePayloadBytes(int encodedPacketNumberLength) {
-        ByteBuffer frameBytes = ByteBuffer.allocate(MAX_PACKET_SIZE);
-        frames.stream().forEachOrdered(frame -> frame.serialize(frameBytes));
-        int serializeFramesLength = frameBytes.position();
-        // https://tools.ietf.org/html/draft-ietf-quic-tls-27#section-5.4.2
-        // "To ensure that sufficient data is available for sampling, packets are
-        //   padded so that the combined lengths of the encoded packet number and
-        //   protected payload is at least 4 bytes longer than the sample required
-        //   for header protection."
-
+    /**
+     * Serializes the frames of this packet into the buffer, starting at its current position.
+     * @param buffer
+     * @param encodedPacketNumberLength
+     * @return  the length of the (unprotected) payload, including padding that might be added
+     */
+    protected int serializeFrames(ByteBuffer buffer, int encodedPacketNumberLength) {
+        int payloadStart = buffer.position();
+        frames.forEach(frame -> frame.serialize(buffer));
+        int serializeFramesLength = buffer.position() - payloadStart;
+        // https://www.rfc-editor.org/rfc/rfc9001.html#name-header-protection-sample
         // "To ensure that sufficient data is available for sampling, packets are padded so that the combined lengths
         //   of the encoded packet number and protected payload is at least 4 bytes longer than the sample required
         //   for header protection. (...). This results in needing at least 3 bytes of frames in the unprotected payload
         //   if the packet number is encoded on a single byte, or 2 bytes of frames for a 2-byte packet number encoding."
         if (encodedPacketNumberLength + serializeFramesLength < 4) {
-            Padding padding = new Padding(4 - encodedPacketNumberLength - frameBytes.position());
+            Padding padding = new Padding(4 - encodedPacketNumberLength - serializeFramesLength);
             frames.add(padding);
-            padding.serialize(frameBytes);
+            padding.serialize(buffer);
         }
-        frameBytes.flip();
-        return frameBytes;
+        return buffer.position() - payloadStart;
     }
 
-    protected void protectPacketNumberAndPayload(ByteBuffer packetBuffer, int packetNumberSize, ByteBuffer payload, int paddingSize, Aead aead) {
-        int packetNumberPosition = packetBuffer.position() - packetNumberSize;
-
-        // From https://tools.ietf.org/html/draft-ietf-quic-tls-16#section-5.3:
-        // "The associated data, A, for the AEAD is the contents of the QUIC
-        //   header, starting from the flags octet in either the short or long
-        //   header, up to and including the unprotected packet number."
-        int additionalDataSize = packetBuffer.position();
-        byte[] additionalData = new byte[additionalDataSize];
-        packetBuffer.flip();  // Prepare for reading from start
-        packetBuffer.get(additionalData);  // Position is now where it was at start of this method.
-        packetBuffer.limit(packetBuffer.capacity());  // Ensure we can continue writing
-
-        byte[] paddedPayload = new byte[payload.limit() + paddingSize];
-        payload.get(paddedPayload, 0, payload.limit());
-        byte[] encryptedPayload = encryptPayload(paddedPayload, additionalData, packetNumber, aead);
-        packetBuffer.put(encryptedPayload);
-
-        byte[] protectedPacketNumber;
-        byte[] encodedPacketNumber = encodePacketNumber(packetNumber);
-        byte[] mask = createHeaderProtectionMask(encryptedPayload, encodedPacketNumber.length, aead);
-
-        protectedPacketNumber = new byte[encodedPacketNumber.length];
-        for (int i = 0; i < encodedPacketNumber.length; i++) {
-            protectedPacketNumber[i] = (byte) (encodedPacketNumber[i] ^ mask[1+i]);
-        }
-
-        byte flags = packetBuffer.get(0);
+    /**
+     * Applies packet protection to a packet that has been written (unprotected) into the buffer: the payload is
+     * encrypted in place, after which header protection is applied. On return, the buffer is positioned directly after
+     * the authentication tag, i.e. at the end of the packet.
+     * @param buffer               buffer containing the packet
+     * @param packetStart          (absolute) offset of the first byte of the packet in the buffer
+     * @param packetNumberOffset   (absolute) offset of the packet number field
+     * @param packetNumberSize     length of the packet number field
+     * @param payloadLength        length of the (unprotected) payload that follows the packet number
+     * @param aead
+     */
+    protected void protectPacketNumberAndPayload(ByteBuffer buffer, int packetStart, int packetNumberOffset, int packetNumberSize, int payloadLength, Aead aead) {
+        int payloadOffset = packetNumberOffset + packetNumberSize;
+
+        // https://www.rfc-editor.org/rfc/rfc9001.html#name-aead-usage
+        // "The associated data, A, for the AEAD is the contents of the QUIC header, starting from the first byte of
+        //  either the short or long header, up to and including the unprotected packet number."
+        ByteBuffer associatedData = buffer.duplicate();
+        associatedData.limit(payloadOffset).position(packetStart);
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(payloadOffset + payloadLength).position(payloadOffset);
+        // "The output ciphertext, C, of the AEAD is transmitted in place of P."
+        ByteBuffer output = buffer.duplicate();
+        output.position(payloadOffset);
+        if (output.remaining() < payloadLength + 16) {
+            throw new BufferOverflowException();
+        }
+        int encryptedPayloadLength = encryptPayload(payload, associatedData, output, packetNumber, aead);
+        buffer.position(payloadOffset + encryptedPayloadLength);
+
+        // https://www.rfc-editor.org/rfc/rfc9001.html#name-header-protection-sample
+        // "in sampling the packet ciphertext for header protection, the Packet Number field is assumed to be 4 bytes
+        //  long (its maximum possible encoded length)."
+        byte[] mask = new byte[16];
+        aead.createHeaderProtectionMask(buffer, packetNumberOffset + 4, mask);
+
+        // https://www.rfc-editor.org/rfc/rfc9001.html#name-header-protection-applicati
+        // "The least significant bits of the first byte of the packet are masked by the least significant bits of the
+        //  first mask byte, and the packet number is masked with the remaining bytes."
+        for (int i = 0; i < packetNumberSize; i++) {
+            buffer.put(packetNumberOffset + i, (byte) (buffer.get(packetNumberOffset + i) ^ mask[1 + i]));
+        }
+        byte flags = buffer.get(packetStart);
         if ((flags & 0x80) == 0x80) {
             // Long header: 4 bits masked
             flags ^= (byte) (mask[0] & 0x0f);
@@ -460,12 +577,7 @@ abstract public class QuicPacket {
             // Short header: 5 bits masked
             flags ^= (byte) (mask[0] & 0x1f);
         }
-        packetBuffer.put(0, flags);
-
-        int currentPosition = packetBuffer.position();
-        packetBuffer.position(packetNumberPosition);
-        packetBuffer.put(protectedPacketNumber);
-        packetBuffer.position(currentPosition);
+        buffer.put(packetStart, flags);
     }
 
     static long bytesToInt(byte[] data) {
@@ -511,6 +623,21 @@ abstract public class QuicPacket {
 
     public abstract byte[] generatePacketBytes(Aead aead);
 
+    /**
+     * Generates the bytes of this packet, including packet protection, directly into the given buffer, starting at
+     * its current position; on return, the buffer is positioned directly after the packet. This enables building a
+     * datagram (that might contain coalesced packets) without intermediate buffers.
+     * @param aead
+     * @param buffer
+     * @return  the number of bytes written, i.e. the size of the packet
+     * @throws BufferOverflowException  if the buffer has not enough room for the packet
+     */
+    public int generatePacketBytes(Aead aead, ByteBuffer buffer) {
+        byte[] packetBytes = generatePacketBytes(aead);
+        buffer.put(packetBytes);
+        return packetBytes.length;
+    }
+
     public abstract void parse(ByteBuffer data, Aead aead, long largestPacketNumber, Logger log, int sourceConnectionIdLength) throws DecryptionException, InvalidPacketException;
 
     public List<QuicFrame> getFrames() {
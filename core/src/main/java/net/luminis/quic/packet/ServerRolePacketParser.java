@@ -25,8 +25,6 @@ import net.luminis.quic.impl.VersionHolder;
 import net.luminis.quic.crypto.Aead;
 import net.luminis.quic.crypto.ConnectionSecrets;
 import net.luminis.quic.crypto.MissingKeysException;
-import net.luminis.quic.generic.InvalidIntegerEncodingException;
-import net.luminis.quic.generic.VariableLengthInteger;
 import net.luminis.quic.log.Logger;
 
 import java.nio.ByteBuffer;
@@ -40,38 +38,17 @@ import static net.luminis.quic.impl.QuicConnectionImpl.VersionNegotiationStatus.
  */
 public class ServerRolePacketParser extends PacketParser {
 
-    private final boolean retryRequired;
     private final Supplier<QuicConnectionImpl.VersionNegotiationStatus> versionNegotiationStatusSupplier;
 
-    public ServerRolePacketParser(ConnectionSecrets secrets, VersionHolder quicVersion, int cidLength, boolean retryRequired,
+    public ServerRolePacketParser(ConnectionSecrets secrets, VersionHolder quicVersion, int cidLength,
                                   PacketFilter processor, Supplier<QuicConnectionImpl.VersionNegotiationStatus> versionNegotiationStatusSupplier, Logger logger) {
         super(secrets, quicVersion, cidLength, processor, Role.Server, logger);
-        this.retryRequired = retryRequired;
         this.versionNegotiationStatusSupplier = versionNegotiationStatusSupplier;
     }
 
     protected Aead getAead(QuicPacket packet, ByteBuffer data) throws MissingKeysException, InvalidPacketException {
         Aead aead;
 
-        if (retryRequired && packet instanceof InitialPacket) {
-            // Check whether the packet has a (retry) token
-            data.mark();
-            int destCidLength = data.get(5) & 0xff;
-            int srcCidLength = data.get(6 + destCidLength) & 0xff;
-            data.position(7 + destCidLength + srcCidLength);
-            int tokenLength;
-            try {
-                tokenLength = VariableLengthInteger.parse(data);
-            } catch (InvalidIntegerEncodingException e) {
-                throw new InvalidPacketException();
-            }
-            data.reset();
-            if (tokenLength == 0) {
-                // If the packet has no token, it uses the secrets based on the original destination connection id.
-                return connectionSecrets.getOriginalClientInitialAead();
-            }
-        }
-
         if (packet.getVersion().equals(quicVersion.getVersion())) {
             aead = connectionSecrets.getPeerAead(packet.getEncryptionLevel());
         }
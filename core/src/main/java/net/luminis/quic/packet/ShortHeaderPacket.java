@@ -32,6 +32,7 @@ import net.luminis.quic.util.Bytes;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.stream.Collectors;
 
 public class ShortHeaderPacket extends QuicPacket {
@@ -63,6 +64,15 @@ public class ShortHeaderPacket extends QuicPacket {
 
     @Override
     public void parse(ByteBuffer buffer, Aead aead, long largestPacketNumber, Logger log, int sourceConnectionIdLength) throws DecryptionException, InvalidPacketException {
+        parse(buffer, aead, largestPacketNumber, log, sourceConnectionIdLength, new DecryptionBuffer(buffer.remaining()));
+    }
+
+    /**
+     * Parses the packet, decrypting the payload into the given decryption buffer, which is meant to be reused for all
+     * packets of the connection. Note that header protection is removed in place, i.e. the header bytes in the given
+     * buffer are altered when the packet is successfully decrypted.
+     */
+    void parse(ByteBuffer buffer, Aead aead, long largestPacketNumber, Logger log, int sourceConnectionIdLength, DecryptionBuffer decryptionBuffer) throws DecryptionException, InvalidPacketException {
         log.debug("Parsing " + this.getClass().getSimpleName());
         if (buffer.remaining() < 1 + sourceConnectionIdLength) {
             throw new InvalidPacketException();
@@ -85,7 +95,7 @@ public class ShortHeaderPacket extends QuicPacket {
         log.debug("Destination connection id", packetConnectionId);
 
         try {
-            parsePacketNumberAndPayload(buffer, flags, buffer.limit() - buffer.position(), aead, largestPacketNumber, log);
+            parsePacketNumberAndPayload(buffer, flags, buffer.limit() - buffer.position(), aead, largestPacketNumber, log, decryptionBuffer);
             aead.confirmKeyUpdateIfInProgress();
         }
         catch (DecryptionException cantDecrypt) {
@@ -129,9 +139,16 @@ public class ShortHeaderPacket extends QuicPacket {
 
     @Override
     public byte[] generatePacketBytes(Aead aead) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+        generatePacketBytes(aead, buffer);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    @Override
+    public int generatePacketBytes(Aead aead, ByteBuffer buffer) {
         assert(packetNumber >= 0);
 
-        ByteBuffer buffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+        int packetStart = buffer.position();
         byte flags;
         // https://tools.ietf.org/html/draft-ietf-quic-transport-17#section-17.3
         // "|0|1|S|R|R|K|P P|"
@@ -146,21 +163,14 @@ public class ShortHeaderPacket extends QuicPacket {
         buffer.put(flags);
         buffer.put(destinationConnectionId);
 
-        byte[] encodedPacketNumber = encodePacketNumber(packetNumber);
-        buffer.put(encodedPacketNumber);
-
-        ByteBuffer frameBytes = generatePayloadBytes(encodedPacketNumber.length);
-        protectPacketNumberAndPayload(buffer, encodedPacketNumber.length, frameBytes, 0, aead);
-
-        buffer.limit(buffer.position());
-        packetSize = buffer.limit();
-        byte[] packetBytes = new byte[packetSize];
-        buffer.rewind();
-        buffer.get(packetBytes);
+        int packetNumberOffset = buffer.position();
+        int packetNumberSize = encodePacketNumber(packetNumber, buffer);
 
-        packetSize = packetBytes.length;
+        int payloadLength = serializeFrames(buffer, packetNumberSize);
+        protectPacketNumberAndPayload(buffer, packetStart, packetNumberOffset, packetNumberSize, payloadLength, aead);
 
-        return packetBytes;
+        packetSize = buffer.position() - packetStart;
+        return packetSize;
     }
 
     @Override
@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.receive;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded pool of (direct) buffers for receiving datagrams. Buffers are allocated lazily: when the pool is empty, a
+ * new buffer is allocated, so acquiring a buffer never blocks. When a buffer is released while the pool is full, it is
+ * not retained, which bounds the amount of memory kept by the pool.
+ */
+public class DatagramBufferPool {
+
+    public static final int DEFAULT_POOL_SIZE = 256;
+
+    private final int bufferSize;
+    private final BlockingQueue<ByteBuffer> availableBuffers;
+
+    public DatagramBufferPool() {
+        this(DEFAULT_POOL_SIZE, Receiver.MAX_DATAGRAM_SIZE);
+    }
+
+    /**
+     * @param maxPooledBuffers  the maximum number of buffers retained by the pool
+     * @param bufferSize  the size of the buffers
+     */
+    public DatagramBufferPool(int maxPooledBuffers, int bufferSize) {
+        if (maxPooledBuffers < 1 || bufferSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.bufferSize = bufferSize;
+        availableBuffers = new ArrayBlockingQueue<>(maxPooledBuffers);
+    }
+
+    /**
+     * Returns a cleared buffer; the caller becomes owner of the buffer until it is released.
+     * @return
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = availableBuffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must not be used anymore by the caller.
+     * @param buffer
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() == bufferSize) {
+            buffer.clear();
+            availableBuffers.offer(buffer);
+        }
+    }
+
+    /**
+     * @return  the number of buffers that are currently available in the pool.
+     */
+    public int available() {
+        return availableBuffers.size();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.receive;
+
+import net.luminis.quic.log.Logger;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Receiver that uses the {@link DatagramChannel} of the socket to receive datagrams into buffers taken from a
+ * {@link DatagramBufferPool}, avoiding the allocation of a new buffer and datagram packet for each datagram received.
+ * The received packets must be released (see {@link RawPacket#release()}) when processed, to return the buffer to
+ * the pool.
+ * Can only be used with sockets that have an associated channel, i.e. sockets created with
+ * <code>DatagramChannel.open().socket()</code>; the channel must be in blocking mode.
+ * Note that interrupting the receiver thread (which happens when the receiver is shut down) closes the channel.
+ */
+public class DatagramChannelReceiver extends Receiver {
+
+    private final DatagramBufferPool bufferPool;
+    private final Predicate<InetSocketAddress> sourceFilter;
+
+    public DatagramChannelReceiver(DatagramSocket socket, Logger log, Consumer<Throwable> abortCallback) {
+        this(socket, new DatagramBufferPool(), log, abortCallback, address -> true);
+    }
+
+    public DatagramChannelReceiver(DatagramSocket socket, DatagramBufferPool bufferPool, Logger log, Consumer<Throwable> abortCallback,
+                                   Predicate<InetSocketAddress> sourceFilter) {
+        super(socket, log, abortCallback);
+        if (socket.getChannel() == null) {
+            throw new IllegalArgumentException("socket has no associated channel");
+        }
+        this.bufferPool = Objects.requireNonNull(bufferPool);
+        this.sourceFilter = Objects.requireNonNull(sourceFilter);
+    }
+
+    /**
+     * Creates a socket that can be used with this receiver, i.e. a socket backed by a (blocking) datagram channel.
+     * @param bindAddress  the local address to bind to, or null to bind to an automatically assigned address
+     * @return
+     * @throws SocketException  if the channel cannot be opened or bound
+     */
+    public static DatagramSocket createSocket(InetSocketAddress bindAddress) throws SocketException {
+        try {
+            return DatagramChannel.open().bind(bindAddress).socket();
+        }
+        catch (SocketException socketException) {
+            throw socketException;
+        }
+        catch (IOException ioError) {
+            SocketException socketException = new SocketException(ioError.getMessage());
+            socketException.initCause(ioError);
+            throw socketException;
+        }
+    }
+
+    /**
+     * @return  whether the given socket can be used with this receiver.
+     */
+    public static boolean isSupported(DatagramSocket socket) {
+        return socket.getChannel() != null;
+    }
+
+    @Override
+    protected RawPacket receive(int number) throws IOException {
+        DatagramChannel channel = socket.getChannel();
+        ByteBuffer buffer = bufferPool.acquire();
+        try {
+            InetSocketAddress sourceAddress = (InetSocketAddress) channel.receive(buffer);
+            if (sourceAddress != null && sourceFilter.test(sourceAddress)) {
+                buffer.flip();
+                RawPacket rawPacket = new RawPacket(buffer, sourceAddress, Instant.now(), number, bufferPool::release);
+                buffer = null;
+                return rawPacket;
+            }
+            else {
+                return null;
+            }
+        }
+        finally {
+            if (buffer != null) {
+                bufferPool.release(buffer);
+            }
+        }
+    }
+
+    @Override
+    public void changeAddress(DatagramSocket newSocket) {
+        if (newSocket.getChannel() == null) {
+            throw new IllegalArgumentException("socket has no associated channel");
+        }
+        super.changeAddress(newSocket);
+    }
+}
@@ -20,27 +20,50 @@ package net.luminis.quic.receive;
 
 import java.net.DatagramPacket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.time.Instant;
+import java.util.function.Consumer;
 
 /**
  * Wraps a datagram in order to keep additional data like the time the datagram was received or sent.
  */
 public class RawPacket {
 
-    private final DatagramPacket receivedPacket;
+    private final InetAddress address;
+    private final int port;
     private final Instant timeReceived;
     private final int number;
     private final ByteBuffer data;
+    private Consumer<ByteBuffer> releaseCallback;
 
     public RawPacket(DatagramPacket receivedPacket, Instant timeReceived, int number) {
-        this.receivedPacket = receivedPacket;
+        this.address = receivedPacket.getAddress();
+        this.port = receivedPacket.getPort();
         this.timeReceived = timeReceived;
         this.number = number;
 
         data = ByteBuffer.wrap(receivedPacket.getData(), 0, receivedPacket.getLength());
     }
 
+    /**
+     * Creates a raw packet for a datagram that is received in a (pooled) buffer that must be returned when the
+     * datagram has been processed.
+     * @param data  the buffer holding the datagram, positioned at the start of the datagram, limit set to its end
+     * @param sourceAddress
+     * @param timeReceived
+     * @param number
+     * @param releaseCallback  callback for returning the buffer when it is released
+     */
+    public RawPacket(ByteBuffer data, InetSocketAddress sourceAddress, Instant timeReceived, int number, Consumer<ByteBuffer> releaseCallback) {
+        this.address = sourceAddress.getAddress();
+        this.port = sourceAddress.getPort();
+        this.timeReceived = timeReceived;
+        this.number = number;
+        this.data = data;
+        this.releaseCallback = releaseCallback;
+    }
+
     public Instant getTimeReceived() {
         return timeReceived;
     }
@@ -58,10 +81,46 @@ public class RawPacket {
     }
 
     public InetAddress getAddress() {
-        return receivedPacket.getAddress();
+        return address;
     }
 
     public int getPort() {
-        return receivedPacket.getPort();
+        return port;
+    }
+
+    /**
+     * @return  whether the data of this packet is held by a pooled buffer, that will be reused after release.
+     */
+    public boolean isPooled() {
+        return releaseCallback != null;
+    }
+
+    /**
+     * Transfers the responsibility for releasing the buffer holding the data of this packet to the caller: after this
+     * call, {@link #release()} has no effect.
+     * @return  callback that releases the buffer, or null when the packet is not pooled (or already released)
+     */
+    public Runnable transferRelease() {
+        if (releaseCallback != null) {
+            Consumer<ByteBuffer> callback = releaseCallback;
+            releaseCallback = null;
+            return () -> callback.accept(data);
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * Releases the buffer holding the data of this packet. Must be called by the thread that processes the packet,
+     * when processing is finished; after release, the data of this packet must not be accessed anymore. Calling release
+     * on a packet that is not pooled (or that is already released) has no effect.
+     */
+    public void release() {
+        if (releaseCallback != null) {
+            Consumer<ByteBuffer> callback = releaseCallback;
+            releaseCallback = null;
+            callback.accept(data);
+        }
     }
 }
@@ -25,7 +25,9 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedChannelException;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -40,8 +42,8 @@ public class Receiver {
 
     public static final int MAX_DATAGRAM_SIZE = 1500;
 
-    private volatile DatagramSocket socket;
-    private final Logger log;
+    protected volatile DatagramSocket socket;
+    protected final Logger log;
     private final Consumer<Throwable> abortCallback;
     private final Predicate<DatagramPacket> packetFilter;
     private final Thread receiverThread;
@@ -97,26 +99,40 @@ public class Receiver {
         return receivedPacketsQueue.poll(timeout, TimeUnit.SECONDS);
     }
 
+    /**
+     * Retrieves up to the given number of received packets: waits (at most the given timeout) for a packet to become
+     * available and then adds all packets that are available (without waiting), up to the maximum.
+     * @param target  the collection to add the received packets to
+     * @param maxPackets  the maximum number of packets to retrieve
+     * @param timeout  the wait timeout in seconds
+     * @return  the number of packets added to the target collection
+     * @throws InterruptedException
+     */
+    public int drainTo(Collection<? super RawPacket> target, int maxPackets, int timeout) throws InterruptedException {
+        RawPacket first = receivedPacketsQueue.poll(timeout, TimeUnit.SECONDS);
+        if (first == null) {
+            return 0;
+        }
+        target.add(first);
+        return 1 + receivedPacketsQueue.drainTo(target, maxPackets - 1);
+    }
+
     private void run() {
         int counter = 0;
 
         try {
             while (! isClosing) {
-                byte[] receiveBuffer = new byte[MAX_DATAGRAM_SIZE];
-                DatagramPacket receivedPacket = new DatagramPacket(receiveBuffer, receiveBuffer.length);
                 try {
-                    socket.receive(receivedPacket);
-
-                    if (packetFilter.test(receivedPacket)) {
-                        Instant timeReceived = Instant.now();
-                        RawPacket rawPacket = new RawPacket(receivedPacket, timeReceived, counter++);
+                    RawPacket rawPacket = receive(counter);
+                    if (rawPacket != null) {
+                        counter++;
                         receivedPacketsQueue.add(rawPacket);
                     }
                 }
                 catch (SocketTimeoutException timeout) {
                     // Impossible, as no socket timeout set
                 }
-                catch (SocketException socketError) {
+                catch (SocketException | ClosedChannelException socketError) {
                     if (changing) {
                         // Expected
                         log.debug("Ignoring socket closed exception, because changing socket", socketError);
@@ -146,6 +162,26 @@ public class Receiver {
         }
     }
 
+    /**
+     * Receives one datagram (blocking until one is available).
+     * @param number  the sequence number to assign to the received datagram
+     * @return  the received datagram, or null when it is not accepted by the filter.
+     * @throws IOException
+     */
+    protected RawPacket receive(int number) throws IOException {
+        byte[] receiveBuffer = new byte[MAX_DATAGRAM_SIZE];
+        DatagramPacket receivedPacket = new DatagramPacket(receiveBuffer, receiveBuffer.length);
+        socket.receive(receivedPacket);
+
+        if (packetFilter.test(receivedPacket)) {
+            Instant timeReceived = Instant.now();
+            return new RawPacket(receivedPacket, timeReceived, number);
+        }
+        else {
+            return null;
+        }
+    }
+
     public void changeAddress(DatagramSocket newSocket) {
         DatagramSocket oldSocket = socket;
         socket = newSocket;
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.recovery;
+
+import net.luminis.quic.cc.RateSample;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Generates delivery rate samples, following https://datatracker.ietf.org/doc/html/draft-cheng-iccrg-delivery-rate-estimation:
+ * for each packet sent, a snapshot of the connection's delivery state is recorded; when a packet is acknowledged, the
+ * delivery rate is computed from the data delivered since that snapshot.
+ * One estimator is shared by the loss detectors of all packet number spaces, as the congestion controller is.
+ */
+public class DeliveryRateEstimator {
+
+    private final RttEstimator rttEstimator;
+
+    // "C.delivered: The total amount of data (tracked in octets or in packets) delivered so far over the lifetime of
+    //  the transport connection."
+    private long delivered;
+    // "C.delivered_time: The wall clock time when C.delivered was last updated."
+    private Instant deliveredTime;
+    // "C.first_sent_time: If packets are in flight, then this holds the send time of the packet that was most recently
+    //  marked as delivered. Else, if the connection was recently idle, then this holds the send time of most recently
+    //  sent packet."
+    private Instant firstSentTime;
+    // "C.app_limited: The index of the last transmitted packet marked as application-limited, or 0 if the connection
+    //  is not currently application-limited." Here: the value of delivered that ends the app-limited phase.
+    private long appLimited;
+
+    DeliveryRateEstimator(RttEstimator rttEstimator) {
+        this.rttEstimator = rttEstimator;
+    }
+
+    /**
+     * Records the delivery state in the packet status of the packet that is sent.
+     * @param packetStatus
+     * @param bytesInFlight  bytes in flight before the packet was sent
+     */
+    synchronized void onPacketSent(PacketStatus packetStatus, long bytesInFlight) {
+        // "If there are no packets in flight yet, then we can start the delivery rate interval at the current time,
+        //  since we know that any ACKs after now indicate that the network was able to deliver those packets completely
+        //  in the sampling interval between now and the next ACK."
+        if (bytesInFlight == 0 || deliveredTime == null) {
+            firstSentTime = packetStatus.timeSent();
+            deliveredTime = packetStatus.timeSent();
+        }
+        packetStatus.setDeliveryState(delivered, deliveredTime, firstSentTime, appLimited != 0, bytesInFlight + packetStatus.packet().getSize());
+    }
+
+    /**
+     * Updates the delivery state with the packets acknowledged by one ack and generates a rate sample.
+     * @param newlyAcked  the (in-flight) packets newly acknowledged by the ack
+     * @param now  the time the ack was received
+     * @return  the rate sample, or null when no sample could be generated. The sample is marked invalid when its interval
+     * is shorter than the minimum RTT, as it then overestimates the delivery rate (e.g. due to ack compression).
+     */
+    synchronized RateSample onPacketsAcked(List<PacketStatus> newlyAcked, Instant now) {
+        PacketStatus newest = null;
+        for (PacketStatus packetStatus: newlyAcked) {
+            if (!packetStatus.hasDeliveryState()) {
+                continue;
+            }
+            delivered += packetStatus.packet().getSize();
+            deliveredTime = now;
+            // "Update info using the newest packet:"
+            if (newest == null || packetStatus.priorDelivered() > newest.priorDelivered()
+                    || (packetStatus.priorDelivered() == newest.priorDelivered() && packetStatus.timeSent().isAfter(newest.timeSent()))) {
+                newest = packetStatus;
+            }
+        }
+        if (newest == null) {
+            return null;
+        }
+        firstSentTime = newest.timeSent();
+
+        // "Mark the packet as delivered once it's SACKed to avoid being used again when it's cumulatively acked."
+        if (appLimited != 0 && delivered > appLimited) {
+            appLimited = 0;
+        }
+
+        // "Use the longer of the send_elapsed and ack_elapsed"
+        Duration sendElapsed = Duration.between(newest.firstSentTime(), newest.timeSent());
+        Duration ackElapsed = Duration.between(newest.deliveredTime(), deliveredTime);
+        Duration interval = sendElapsed.compareTo(ackElapsed) > 0? sendElapsed: ackElapsed;
+        // "Normally we expect interval >= MinRTT."  "if (rs.interval < MinRTT(tp)) rs.interval = -1; return false /* no reliable sample */"
+        boolean valid = interval.toMillis() >= rttEstimator.getMinRtt();
+        return new RateSample(delivered - newest.priorDelivered(), interval, newest.priorDelivered(), delivered,
+                Duration.between(newest.timeSent(), now), newest.bytesInFlightAtSend(), newest.isAppLimited(), valid);
+    }
+
+    /**
+     * Marks the connection as application limited, i.e. sending is not limited by the congestion window but because
+     * there is nothing to send.
+     * @param bytesInFlight
+     */
+    synchronized void onAppLimited(long bytesInFlight) {
+        // "C.app_limited = (C.delivered + packets_in_flight) ? : 1"
+        appLimited = delivered + bytesInFlight > 0? delivered + bytesInFlight: 1;
+    }
+
+    synchronized long getDelivered() {
+        return delivered;
+    }
+}
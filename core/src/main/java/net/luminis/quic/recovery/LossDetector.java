@@ -19,17 +19,17 @@
 package net.luminis.quic.recovery;
 
 import net.luminis.quic.cc.CongestionController;
+import net.luminis.quic.cc.RateSample;
 import net.luminis.quic.frame.AckFrame;
+import net.luminis.quic.frame.Range;
 import net.luminis.quic.log.QLog;
 import net.luminis.quic.packet.PacketInfo;
 import net.luminis.quic.packet.QuicPacket;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -45,7 +45,8 @@ public class LossDetector {
     private final QLog qLog;
     private float kTimeThreshold = 9f/8f;
     private int kPacketThreshold = 3;
-    private final Map<Long, PacketStatus> packetSentLog;
+    private final DeliveryRateEstimator deliveryRateEstimator;
+    private final SentPacketLog packetSentLog;
     private final AtomicInteger ackElicitingInFlight;
     private volatile long largestAcked = -1;
     private volatile long lost;
@@ -59,7 +60,13 @@ public class LossDetector {
     }
 
     public LossDetector(Clock clock, RecoveryManager recoveryManager, RttEstimator rttEstimator, CongestionController congestionController, Runnable postProcessLostCallback, QLog qLog) {
+        this(clock, recoveryManager, rttEstimator, congestionController, new DeliveryRateEstimator(rttEstimator), postProcessLostCallback, qLog);
+    }
+
+    LossDetector(Clock clock, RecoveryManager recoveryManager, RttEstimator rttEstimator, CongestionController congestionController,
+                 DeliveryRateEstimator deliveryRateEstimator, Runnable postProcessLostCallback, QLog qLog) {
         this.clock = clock;
+        this.deliveryRateEstimator = deliveryRateEstimator;
         this.recoveryManager = recoveryManager;
         this.rttEstimater = rttEstimator;
         this.congestionController = congestionController;
@@ -67,15 +74,21 @@ public class LossDetector {
         this.qLog = qLog;
 
         ackElicitingInFlight = new AtomicInteger();
-        packetSentLog = new ConcurrentHashMap<>();
+        packetSentLog = new SentPacketLog();
+    }
+
+    public void packetSent(QuicPacket packet, Instant sent, Consumer<QuicPacket> lostPacketCallback) {
+        packetSent(packet, sent, lostPacketCallback, p -> {});
     }
 
-    public synchronized void packetSent(QuicPacket packet, Instant sent, Consumer<QuicPacket> lostPacketCallback) {
+    public synchronized void packetSent(QuicPacket packet, Instant sent, Consumer<QuicPacket> lostPacketCallback, Consumer<QuicPacket> ackedPacketCallback) {
         if (isReset) {
             return;
         }
 
+        PacketStatus packetStatus = new PacketStatus(sent, packet, lostPacketCallback, ackedPacketCallback);
         if (packet.isInflightPacket()) {  // Redundant: caller checked
+            deliveryRateEstimator.onPacketSent(packetStatus, congestionController.getBytesInFlight());
             congestionController.registerInFlight(packet);
         }
 
@@ -85,7 +98,9 @@ public class LossDetector {
         }
 
         // This method is synchronized, because during a reset operation, no new packets must be logged as sent.
-        packetSentLog.put(packet.getPacketNumber(), new PacketStatus(sent, packet, lostPacketCallback));
+        synchronized (packetSentLog) {
+            packetSentLog.add(packetStatus);
+        }
     }
 
     public void onAckReceived(AckFrame ackFrame, Instant timeReceived) {
@@ -95,12 +110,21 @@ public class LossDetector {
 
         largestAcked = Long.max(largestAcked, ackFrame.getLargestAcknowledged());
 
-        List<PacketStatus> newlyAcked = ackFrame.getAckedPacketNumbers()
-                .filter(pn -> packetSentLog.containsKey(pn) && !packetSentLog.get(pn).acked())
-                .map(pn -> packetSentLog.get(pn))
-                .filter(packetStatus -> packetStatus != null)      // Could be null when reset is executed concurrently.
-                .filter(packetStatus -> packetStatus.setAcked())   // Only keep the ones that actually got set to acked
-                .collect(Collectors.toList());
+        // Only the part of the ack ranges that overlaps with the log needs to be examined; packet numbers below the start
+        // of the log are already acked (or lost), so the cost of processing an ack does not grow with its ranges' sizes.
+        // Newly acked packets are collected in reverse sorted order (so largest first).
+        List<PacketStatus> newlyAcked = new ArrayList<>();
+        synchronized (packetSentLog) {
+            for (Range range: ackFrame.getAcknowledgedRanges(packetSentLog.start(), packetSentLog.end() - 1)) {
+                for (long pn = range.getLargest(); pn >= range.getSmallest(); pn--) {
+                    PacketStatus packetStatus = packetSentLog.get(pn);
+                    // Only keep the ones that actually got set to acked
+                    if (packetStatus != null && packetStatus.setAcked()) {
+                        newlyAcked.add(packetStatus);
+                    }
+                }
+            }
+        }
 
         // Possible optimization: everything that follows only if newlyAcked not empty
 
@@ -108,26 +132,40 @@ public class LossDetector {
         assert ackedAckEliciting <= ackElicitingInFlight.get();
         ackElicitingInFlight.getAndAdd(-1 * ackedAckEliciting);
 
-        congestionController.registerAcked(filterInFlight(newlyAcked));
+        // The RTT is updated first, as the delivery rate estimator depends on the minimum RTT.
+        rttEstimater.ackReceived(ackFrame, timeReceived, newlyAcked);
+
+        List<PacketStatus> newlyAckedInFlight = filterInFlight(newlyAcked);
+        RateSample rateSample = deliveryRateEstimator.onPacketsAcked(newlyAckedInFlight, timeReceived);
+        if (rateSample != null) {
+            congestionController.registerRateSample(rateSample);
+        }
+        congestionController.registerAcked(newlyAckedInFlight);
+
+        // Notify senders of the acknowledged frames (in packet number order), e.g. to release data kept for retransmission.
+        for (int i = newlyAcked.size() - 1; i >= 0; i--) {
+            PacketStatus packetStatus = newlyAcked.get(i);
+            packetStatus.ackedPacketCallback().accept(packetStatus.packet());
+        }
 
         detectLostPackets();
 
         recoveryManager.setLossDetectionTimer();
 
-        rttEstimater.ackReceived(ackFrame, timeReceived, newlyAcked);
-
         // Cleanup
-        newlyAcked.stream().forEach(p -> packetSentLog.remove(p.packet().getPacketNumber()));
+        removeFromLog(newlyAcked);
     }
 
     public synchronized void reset() {
-        List<PacketStatus> inflightPackets = packetSentLog.values().stream()
+        List<PacketStatus> inflightPackets = logValues().stream()
                 .filter(packet -> packet.inFlight())
                 .filter(packetStatus -> packetStatus.setLost())   // Only keep the ones that actually were set to lost
                 .collect(Collectors.toList());
         congestionController.discard(inflightPackets);
         ackElicitingInFlight.set(0);
-        packetSentLog.clear();
+        synchronized (packetSentLog) {
+            packetSentLog.clear();
+        }
         lossTime = null;
         lastAckElicitingSent = null;
         isReset = true;
@@ -153,24 +191,38 @@ public class LossDetector {
         // "In-flight:  Packets are considered in-flight when they have been sent
         //      and neither acknowledged nor declared lost, and they are not ACK-
         //      only."
-        List<PacketStatus> lostPackets = packetSentLog.values().stream()
-                .filter(p -> p.inFlight())
-                .filter(p -> pnTooOld(p) || sentTimeTooLongAgo(p, lostSendTime))
-                .filter(p -> !p.packet().isAckOnly())
-                .collect(Collectors.toList());
+        // As packet numbers and send times are monotonically increasing, the first packet that is not lost ends the scan:
+        // no later packet can meet either condition. Being the oldest remaining, it determines the loss time.
+        List<PacketStatus> lostPackets = new ArrayList<>();
+        Instant earliestSentTime = null;
+        synchronized (packetSentLog) {
+            long scanEnd = Long.min(largestAcked + 1, packetSentLog.end());
+            for (long pn = packetSentLog.start(); pn < scanEnd; pn++) {
+                PacketStatus p = packetSentLog.get(pn);
+                if (p == null || !p.inFlight()) {
+                    continue;
+                }
+                if (pnTooOld(p) || p.timeSent().isBefore(lostSendTime)) {
+                    if (p.packet().isAckOnly()) {
+                        // Ack-only packets are never declared lost, but they will most probably never be acked either.
+                        packetSentLog.remove(pn);
+                    }
+                    else {
+                        lostPackets.add(p);
+                    }
+                }
+                else if (!p.packet().isAckOnly()) {
+                    earliestSentTime = p.timeSent();
+                    break;
+                }
+            }
+        }
         if (!lostPackets.isEmpty()) {
             declareLost(lostPackets);
         }
 
-        Optional<Instant> earliestSentTime = packetSentLog.values().stream()
-                .filter(p -> p.inFlight())
-                .filter(p -> p.packet().getPacketNumber() <= largestAcked)
-                .filter(p -> !p.packet().isAckOnly())
-                .map(p -> p.timeSent())
-                .min(Instant::compareTo);
-
-        if (earliestSentTime.isPresent() && earliestSentTime.get().isAfter(lostSendTime)) {
-            lossTime = earliestSentTime.get().plusMillis(lossDelay);
+        if (earliestSentTime != null && earliestSentTime.isAfter(lostSendTime)) {
+            lossTime = earliestSentTime.plusMillis(lossDelay);
         }
         else {
             lossTime = null;
@@ -192,7 +244,7 @@ public class LossDetector {
     }
 
     List<QuicPacket> unAcked() {
-        return packetSentLog.values().stream()
+        return logValues().stream()
                 .filter(p -> p.inFlight())
                 .filter(p -> !p.packet().isAckOnly())
                 .map(p -> p.packet())
@@ -201,7 +253,7 @@ public class LossDetector {
 
     // For debugging only
     List<PacketInfo> getInFlight() {
-        return packetSentLog.values().stream()
+        return logValues().stream()
                 .filter(p -> !p.packet().isAckOnly())
                 .filter(p -> p.inFlight())
                 .collect(Collectors.toList());
@@ -211,8 +263,16 @@ public class LossDetector {
         return p.packet().getPacketNumber() <= largestAcked - kPacketThreshold;
     }
 
-    private boolean sentTimeTooLongAgo(PacketStatus p, Instant lostSendTime) {
-        return p.packet().getPacketNumber() <= largestAcked && p.timeSent().isBefore(lostSendTime);
+    private List<PacketStatus> logValues() {
+        synchronized (packetSentLog) {
+            return packetSentLog.values();
+        }
+    }
+
+    private void removeFromLog(List<PacketStatus> packets) {
+        synchronized (packetSentLog) {
+            packets.forEach(p -> packetSentLog.remove(p.packet().getPacketNumber()));
+        }
     }
 
     private void declareLost(List<PacketStatus> lostPacketsInfo) {
@@ -238,7 +298,7 @@ public class LossDetector {
         congestionController.registerLost(filterInFlight(lostPacketsInfo));
 
         // Cleanup
-        lostPacketsInfo.stream().forEach(p -> packetSentLog.remove(p.packet().getPacketNumber()));
+        removeFromLog(lostPacketsInfo);
     }
 
     private List<PacketStatus> filterInFlight(List<PacketStatus> packets) {
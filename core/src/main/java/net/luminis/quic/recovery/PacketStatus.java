@@ -27,11 +27,61 @@ import java.util.function.Consumer;
 
 class PacketStatus extends PacketInfo {
 
+    private final Consumer<QuicPacket> ackedPacketCallback;
     private boolean lost;
     private boolean acked;
+    // Delivery state when the packet was sent, see DeliveryRateEstimator
+    private boolean hasDeliveryState;
+    private long priorDelivered;
+    private Instant deliveredTime;
+    private Instant firstSentTime;
+    private boolean appLimited;
+    private long bytesInFlightAtSend;
 
     public PacketStatus(Instant sent, QuicPacket packet, Consumer<QuicPacket> lostPacketCallback) {
+        this(sent, packet, lostPacketCallback, p -> {});
+    }
+
+    public PacketStatus(Instant sent, QuicPacket packet, Consumer<QuicPacket> lostPacketCallback, Consumer<QuicPacket> ackedPacketCallback) {
         super(sent, packet, lostPacketCallback);
+        this.ackedPacketCallback = ackedPacketCallback;
+    }
+
+    Consumer<QuicPacket> ackedPacketCallback() {
+        return ackedPacketCallback;
+    }
+
+    void setDeliveryState(long delivered, Instant deliveredTime, Instant firstSentTime, boolean appLimited, long bytesInFlight) {
+        this.priorDelivered = delivered;
+        this.deliveredTime = deliveredTime;
+        this.firstSentTime = firstSentTime;
+        this.appLimited = appLimited;
+        this.bytesInFlightAtSend = bytesInFlight;
+        hasDeliveryState = true;
+    }
+
+    boolean hasDeliveryState() {
+        return hasDeliveryState;
+    }
+
+    long priorDelivered() {
+        return priorDelivered;
+    }
+
+    Instant deliveredTime() {
+        return deliveredTime;
+    }
+
+    Instant firstSentTime() {
+        return firstSentTime;
+    }
+
+    boolean isAppLimited() {
+        return appLimited;
+    }
+
+    long bytesInFlightAtSend() {
+        return bytesInFlightAtSend;
     }
 
     public synchronized boolean acked() {
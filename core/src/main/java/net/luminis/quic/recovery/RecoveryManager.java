@@ -19,7 +19,7 @@
 package net.luminis.quic.recovery;
 
 import net.luminis.quic.cc.CongestionController;
-import net.luminis.quic.concurrent.DaemonThreadFactory;
+import net.luminis.quic.concurrent.TimerWheel;
 import net.luminis.quic.common.EncryptionLevel;
 import net.luminis.quic.common.PnSpace;
 import net.luminis.quic.frame.AckFrame;
@@ -40,7 +40,8 @@ import java.time.format.DateTimeFormatter;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -101,11 +102,12 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
     private final Role role;
     private final RttEstimator rttEstimater;
     private final LossDetector[] lossDetectors = new LossDetector[PnSpace.values().length];
+    private final CongestionController congestionController;
+    private final DeliveryRateEstimator deliveryRateEstimator;
     private final Sender sender;
     private final Logger log;
-    private final ScheduledExecutorService scheduler;
     private int receiverMaxAckDelay;
-    private ScheduledFuture<?> lossDetectionFuture;  // Concurrency: guarded by scheduleLock
+    private final TimerWheel.Timeout lossDetectionTimer;  // Concurrency: (re)scheduling guarded by scheduleLock
     private final Object scheduleLock = new Object();
     private volatile int ptoCount;
     private volatile Instant timerExpiration;
@@ -117,19 +119,38 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
     }
 
     public RecoveryManager(Clock clock, Role role, RttEstimator rttEstimater, CongestionController congestionController, Sender sender, Logger logger) {
+        this(clock, role, rttEstimater, congestionController, sender, null, logger);
+    }
+
+    /**
+     * Creates a recovery manager that executes its loss detection timeout handler with the given executor.
+     * @param clock
+     * @param role
+     * @param rttEstimater
+     * @param congestionController
+     * @param sender
+     * @param executor  the executor (e.g. the event loop of the connection) to execute the loss detection timeout
+     *                  handler with, or null to execute it on the (shared) timer thread
+     * @param logger
+     */
+    public RecoveryManager(Clock clock, Role role, RttEstimator rttEstimater, CongestionController congestionController, Sender sender, Executor executor, Logger logger) {
+        this(clock, role, rttEstimater, congestionController, sender, TimerWheel.shared(), executor, logger);
+    }
+
+    RecoveryManager(Clock clock, Role role, RttEstimator rttEstimater, CongestionController congestionController, Sender sender,
+                    TimerWheel timerWheel, Executor executor, Logger logger) {
         this.clock = clock;
         this.role = role;
         this.rttEstimater = rttEstimater;
+        this.congestionController = congestionController;
+        deliveryRateEstimator = new DeliveryRateEstimator(rttEstimater);
         for (PnSpace pnSpace: PnSpace.values()) {
-            lossDetectors[pnSpace.ordinal()] = new LossDetector(clock ,this, rttEstimater, congestionController, () -> sender.flush(), logger.getQLog());
+            lossDetectors[pnSpace.ordinal()] = new LossDetector(clock ,this, rttEstimater, congestionController, deliveryRateEstimator, () -> sender.flush(), logger.getQLog());
         }
         this.sender = sender;
         log = logger;
 
-        scheduler = Executors.newScheduledThreadPool(1, new DaemonThreadFactory("loss-detection"));
-        synchronized (scheduleLock) {
-            lossDetectionFuture = new NullScheduledFuture();
-        }
+        lossDetectionTimer = timerWheel.newTimeout(this::runLossDetectionTimeout, executor);
     }
 
     void setLossDetectionTimer() {
@@ -229,7 +250,7 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
     }
 
     private void lossDetectionTimeout() {
-        // Because cancelling the ScheduledExecutor task quite often fails, double check whether the timer should expire.
+        // Because cancelling might race with the timer expiring, double check whether the timer should expire.
         Instant expiration = timerExpiration;
         if (expiration == null) {
             // Timer was cancelled, but it still fired; ignore
@@ -385,25 +406,21 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
     }
 
     void rescheduleLossDetectionTimeout(Instant scheduledTime) {
-        try {
-            synchronized (scheduleLock) {
-                // Cancelling the current future and setting the new must be in a sync'd block to ensure the right future is cancelled
-                lossDetectionFuture.cancel(false);
-                timerExpiration = scheduledTime;
-                long delay = Duration.between(clock.instant(), scheduledTime).toMillis();
-                // Delay can be 0 or negative, but that's no problem for ScheduledExecutorService: "Zero and negative delays are also allowed, and are treated as requests for immediate execution."
-                lossDetectionFuture = scheduler.schedule(this::runLossDetectionTimeout, delay, TimeUnit.MILLISECONDS);
-            }
-        }
-        catch (RejectedExecutionException taskRejected) {
-            // Can happen if has been reset concurrently
-            if (!hasBeenReset) {
-                throw taskRejected;
-            }
+        synchronized (scheduleLock) {
+            // Setting the expiration and rescheduling must be in a sync'd block to ensure they match
+            timerExpiration = scheduledTime;
+            long delay = Duration.between(clock.instant(), scheduledTime).toMillis();
+            // Delay can be 0 or negative, which means the timer will expire in the next tick. Rescheduling is a cheap
+            // operation (the timeout is just moved to another bucket of the timer wheel).
+            lossDetectionTimer.schedule(delay, TimeUnit.MILLISECONDS);
         }
     }
 
     private void runLossDetectionTimeout() {
+        if (hasBeenReset) {
+            // Timeout might have expired concurrently with the reset.
+            return;
+        }
         try {
             lossDetectionTimeout();
         } catch (Exception error) {
@@ -420,7 +437,7 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
     private Runnable createLossDetectionTimeoutRunnerWithTooEarlyDetection(final Instant scheduledTime) {
         return () -> {
             Instant now = clock.instant();
-            // Allow for 1 ms difference, as Instant has much more precision than the ScheduledExecutorService
+            // Allow for 1 ms difference, as Instant has much more precision than the timer
             if (now.plusMillis(1).isBefore(scheduledTime)) {
                 log.error(String.format("Task scheduled for %s is running already at %s (%s ms too early)", scheduledTime, now, Duration.between(now, scheduledTime).toMillis()));
             }
@@ -429,7 +446,7 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
     }
 
     void unschedule() {
-        lossDetectionFuture.cancel(true);
+        lossDetectionTimer.cancel();
         timerExpiration = null;
     }
 
@@ -450,14 +467,28 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
     }
 
     public void packetSent(QuicPacket packet, Instant sent, Consumer<QuicPacket> packetLostCallback) {
+        packetSent(packet, sent, packetLostCallback, p -> {});
+    }
+
+    public void packetSent(QuicPacket packet, Instant sent, Consumer<QuicPacket> packetLostCallback, Consumer<QuicPacket> packetAckedCallback) {
         if (! hasBeenReset) {
             if (packet.isInflightPacket()) {
-                lossDetectors[packet.getPnSpace().ordinal()].packetSent(packet, sent, packetLostCallback);
+                lossDetectors[packet.getPnSpace().ordinal()].packetSent(packet, sent, packetLostCallback, packetAckedCallback);
                 setLossDetectionTimer();
             }
         }
     }
 
+    /**
+     * Notifies the recovery manager that sending is limited by the application (i.e. there is nothing to send) instead
+     * of by the congestion window, so delivery rate samples taken meanwhile are marked as application limited.
+     */
+    public void applicationLimited() {
+        if (! hasBeenReset) {
+            deliveryRateEstimator.onAppLimited(congestionController.getBytesInFlight());
+        }
+    }
+
     private boolean ackElicitingInFlight() {
         return Stream.of(lossDetectors).anyMatch(detector -> detector.ackElicitingInFlight());
     }
@@ -470,7 +501,6 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
         if (! hasBeenReset) {
             hasBeenReset = true;
             unschedule();
-            scheduler.shutdown();
             for (PnSpace pnSpace: PnSpace.values()) {
                 lossDetectors[pnSpace.ordinal()].reset();
             }
@@ -510,43 +540,6 @@ public class RecoveryManager implements FrameReceivedListener<AckFrame>, Handsha
         onAckReceived(frame, pnSpace, timeReceived);
     }
 
-    private static class NullScheduledFuture implements ScheduledFuture<Void> {
-        @Override
-        public int compareTo(Delayed o) {
-            return 0;
-        }
-
-        @Override
-        public long getDelay(TimeUnit unit) {
-            return 0;
-        }
-
-        @Override
-        public boolean cancel(boolean mayInterruptIfRunning) {
-            return false;
-        }
-
-        @Override
-        public boolean isCancelled() {
-            return false;
-        }
-
-        @Override
-        public boolean isDone() {
-            return false;
-        }
-
-        @Override
-        public Void get() throws InterruptedException, ExecutionException {
-            return null;
-        }
-
-        @Override
-        public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-            return null;
-        }
-    }
-
     private void repeatSend(int count, Runnable task) {
         for (int i = 0; i < count; i++) {
             task.run();
@@ -24,7 +24,6 @@ import net.luminis.quic.log.Logger;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
-import java.util.Optional;
 
 
 public class RttEstimator {
@@ -105,6 +104,13 @@ public class RttEstimator {
         }
     }
 
+    /**
+     * @return  the minimum RTT observed so far, or 0 when there is no RTT sample yet.
+     */
+    public int getMinRtt() {
+        return minRtt == Integer.MAX_VALUE? 0: minRtt;
+    }
+
     public int getRttVar() {
         // Rtt-var is only used for computing PTO.
         // https://tools.ietf.org/html/draft-ietf-quic-recovery-23#section-5.3
@@ -121,17 +127,20 @@ public class RttEstimator {
         }
     }
 
+    /**
+     * Processes a received ack.
+     * @param ack
+     * @param timeReceived
+     * @param newlyAcked  the packets newly acknowledged by the ack, in reverse sorted order (so largest first)
+     */
     public void ackReceived(AckFrame ack, Instant timeReceived, List<PacketStatus> newlyAcked) {
         // https://tools.ietf.org/html/draft-ietf-quic-recovery-33#section-5.1
         // "An endpoint generates an RTT sample on receiving an ACK frame that meets the following two conditions:
         //   *  the largest acknowledged packet number is newly acknowledged, and
         //   *  at least one of the newly acknowledged packets was ack-eliciting."
-        Optional<PacketStatus> largestAcked = newlyAcked.stream()
-                .filter(s -> s.packet().getPacketNumber() == ack.getLargestAcknowledged())  // Possible optimization: isn't newlyAcked sorted, so only checking first will do?
-                .findFirst();
-        if (largestAcked.isPresent()) {
+        if (!newlyAcked.isEmpty() && newlyAcked.get(0).packet().getPacketNumber() == ack.getLargestAcknowledged()) {
             if (newlyAcked.stream().anyMatch(s -> s.packet().isAckEliciting())) {
-                addSample(timeReceived, largestAcked.get().timeSent(), ack.getAckDelay());
+                addSample(timeReceived, newlyAcked.get(0).timeSent(), ack.getAckDelay());
             }
         }
     }
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.recovery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Log of sent packets (of one packet number space), indexed by packet number. As packet numbers are monotonically
+ * increasing and (mostly) contiguous, packets are stored in a circular array, which is (only) enlarged when the range
+ * between the oldest and the newest packet does not fit. Packets that are removed leave an empty slot; the start of the
+ * log is advanced to the oldest packet that is still present.
+ * Not thread-safe: callers must synchronize access.
+ */
+class SentPacketLog {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private PacketStatus[] packets;
+    private int mask;
+    // Lowest packet number that can be present: all lower packet numbers are not in the log.
+    private long start;
+    // One more than the highest packet number that can be present.
+    private long end;
+    private int size;
+
+    SentPacketLog() {
+        packets = new PacketStatus[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+    }
+
+    void add(PacketStatus packetStatus) {
+        long packetNumber = packetStatus.packet().getPacketNumber();
+        if (size == 0) {
+            start = packetNumber;
+            end = packetNumber + 1;
+        }
+        else {
+            long newStart = Long.min(start, packetNumber);
+            long newEnd = Long.max(end, packetNumber + 1);
+            ensureCapacity(newStart, newEnd);
+            start = newStart;
+            end = newEnd;
+        }
+        int index = (int) (packetNumber & mask);
+        if (packets[index] == null) {
+            size++;
+        }
+        packets[index] = packetStatus;
+    }
+
+    PacketStatus get(long packetNumber) {
+        if (packetNumber < start || packetNumber >= end) {
+            return null;
+        }
+        return packets[(int) (packetNumber & mask)];
+    }
+
+    PacketStatus remove(long packetNumber) {
+        PacketStatus removed = get(packetNumber);
+        if (removed != null) {
+            packets[(int) (packetNumber & mask)] = null;
+            size--;
+            if (size == 0) {
+                start = end;
+            }
+            else if (packetNumber == start) {
+                while (packets[(int) (start & mask)] == null) {
+                    start++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return  the packet number of the oldest packet in the log, i.e. the position to start a scan.
+     */
+    long start() {
+        return start;
+    }
+
+    /**
+     * @return  one more than the packet number of the newest packet in the log, i.e. the (exclusive) end of a scan.
+     */
+    long end() {
+        return end;
+    }
+
+    int size() {
+        return size;
+    }
+
+    List<PacketStatus> values() {
+        List<PacketStatus> values = new ArrayList<>(size);
+        for (long packetNumber = start; packetNumber < end; packetNumber++) {
+            PacketStatus packetStatus = packets[(int) (packetNumber & mask)];
+            if (packetStatus != null) {
+                values.add(packetStatus);
+            }
+        }
+        return values;
+    }
+
+    void clear() {
+        packets = new PacketStatus[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+        start = end;
+        size = 0;
+    }
+
+    private void ensureCapacity(long newStart, long newEnd) {
+        long required = newEnd - newStart;
+        if (required > packets.length) {
+            int capacity = packets.length;
+            while (capacity < required) {
+                capacity *= 2;
+            }
+            PacketStatus[] enlarged = new PacketStatus[capacity];
+            int newMask = capacity - 1;
+            for (long packetNumber = start; packetNumber < end; packetNumber++) {
+                enlarged[(int) (packetNumber & newMask)] = packets[(int) (packetNumber & mask)];
+            }
+            packets = enlarged;
+            mask = newMask;
+        }
+    }
+}
@@ -28,11 +28,17 @@ class FrameSupplierSendRequest implements SendRequest {
     private int estimatedSize;
     private Function<Integer, QuicFrame> frameSupplier;
     private Consumer<QuicFrame> lostCallback;
+    private Consumer<QuicFrame> ackedCallback;
 
     public FrameSupplierSendRequest(int estimatedSize, Function<Integer, QuicFrame> frameSupplier, Consumer<QuicFrame> lostCallback) {
+        this(estimatedSize, frameSupplier, lostCallback, null);
+    }
+
+    public FrameSupplierSendRequest(int estimatedSize, Function<Integer, QuicFrame> frameSupplier, Consumer<QuicFrame> lostCallback, Consumer<QuicFrame> ackedCallback) {
         this.estimatedSize = estimatedSize;
         this.frameSupplier = frameSupplier;
         this.lostCallback = lostCallback;
+        this.ackedCallback = ackedCallback;
     }
 
     public int getEstimatedSize() {
@@ -46,5 +52,10 @@ class FrameSupplierSendRequest implements SendRequest {
     public Consumer<QuicFrame> getLostCallback() {
         return lostCallback;
     }
+
+    @Override
+    public Consumer<QuicFrame> getAckedCallback() {
+        return ackedCallback;
+    }
 }
 
@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.send;
+
+import net.luminis.quic.cc.CongestionController;
+import net.luminis.quic.recovery.RttEstimator;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Paces the sending of packets, to avoid sending a complete congestion window in one burst after an ack opens the window.
+ * https://www.rfc-editor.org/rfc/rfc9002.html#name-pacing
+ * "A sender SHOULD pace sending of all in-flight packets based on input from the congestion controller."
+ * Implemented as a token bucket (in bytes) that is filled at the pacing rate and holds at most the burst allowance.
+ * The rate is taken from the congestion controller if it determines one, otherwise it is derived from the congestion
+ * window and smoothed RTT. Only datagrams carrying in-flight packets are paced.
+ */
+public class Pacer {
+
+    // https://www.rfc-editor.org/rfc/rfc9002.html#name-pacing
+    // "Senders SHOULD limit bursts to the initial congestion window"
+    public static final int DEFAULT_BURST_ALLOWANCE = 10;
+
+    // "rate = N * congestion_window / smoothed_rtt"  "Using a value for N that is small, but at least 1 (for example,
+    //  1.25) ensures that variations in RTT do not result in underutilization of the congestion window."
+    private static final double N = 1.25;
+    // The sender cannot wake up more often than the tick of the timer wheel (1 ms) and a timeout can expire up to one
+    // tick late, so at high rates the bucket must at least hold the number of bytes that can be sent during two ticks,
+    // or the pacer would limit the throughput.
+    private static final long TIMER_GRANULARITY_NANOS = 1_000_000;
+
+    private final Clock clock;
+    private final CongestionController congestionController;
+    private final RttEstimator rttEstimator;
+    private volatile int burstAllowance;
+    // Thread-confined: only accessed by the sender
+    private double tokens;
+    private Instant lastUpdate;
+
+    /**
+     * @param clock
+     * @param congestionController
+     * @param rttEstimator
+     * @param burstAllowance  the maximum number of datagrams that can be sent in one burst; 0 disables pacing.
+     */
+    public Pacer(Clock clock, CongestionController congestionController, RttEstimator rttEstimator, int burstAllowance) {
+        this.clock = clock;
+        this.congestionController = congestionController;
+        this.rttEstimator = rttEstimator;
+        setBurstAllowance(burstAllowance);
+        tokens = Double.MAX_VALUE;
+        lastUpdate = clock.instant();
+    }
+
+    /**
+     * Determines whether a datagram containing in-flight packets may be sent now.
+     * @param maxDatagramSize
+     * @return
+     */
+    public boolean maySend(int maxDatagramSize) {
+        if (burstAllowance == 0) {
+            return true;
+        }
+        refill(maxDatagramSize);
+        return tokens > 0;
+    }
+
+    /**
+     * Registers that a datagram (containing in-flight packets) has been sent.
+     * @param datagramSize
+     */
+    public void onDatagramSent(int datagramSize) {
+        if (burstAllowance > 0) {
+            tokens -= datagramSize;
+        }
+    }
+
+    /**
+     * @return  the time at which the next datagram can be sent, rounded up to the timer granularity.
+     */
+    public Instant nextSendTime() {
+        Instant now = clock.instant();
+        if (burstAllowance == 0 || tokens > 0) {
+            return now;
+        }
+        long waitNanos = (long) Math.ceil(-tokens * 1e9 / getPacingRate()) - Duration.between(lastUpdate, now).toNanos();
+        long ticks = Long.max(1, (waitNanos + TIMER_GRANULARITY_NANOS - 1) / TIMER_GRANULARITY_NANOS);
+        return now.plusNanos(ticks * TIMER_GRANULARITY_NANOS);
+    }
+
+    /**
+     * @return  the pacing rate in bytes per second.
+     */
+    public long getPacingRate() {
+        long rate = congestionController.getPacingRate();
+        if (rate > 0) {
+            return rate;
+        }
+        int smoothedRtt = Integer.max(rttEstimator.getSmoothedRtt(), 1);
+        return Long.max((long) (N * congestionController.getWindowSize() * 1000 / smoothedRtt), 1);
+    }
+
+    public void setBurstAllowance(int burstAllowance) {
+        if (burstAllowance < 0) {
+            throw new IllegalArgumentException("burst allowance cannot be negative");
+        }
+        this.burstAllowance = burstAllowance;
+    }
+
+    private void refill(int maxDatagramSize) {
+        Instant now = clock.instant();
+        long elapsedNanos = Duration.between(lastUpdate, now).toNanos();
+        lastUpdate = now;
+        long rate = getPacingRate();
+        double maxTokens = Double.max((double) burstAllowance * maxDatagramSize, rate * 2 * TIMER_GRANULARITY_NANOS / 1e9);
+        tokens = Double.min(tokens + elapsedNanos * rate / 1e9, maxTokens);
+    }
+}
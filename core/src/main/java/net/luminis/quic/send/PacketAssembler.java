@@ -77,6 +77,7 @@ public class PacketAssembler {
 
         QuicPacket packet = createPacket(sourceConnectionId, destinationConnectionId);
         List<Consumer<QuicFrame>> callbacks = new ArrayList<>();
+        List<Runnable> ackedCallbacks = new ArrayList<>();
 
         AckFrame ackFrame = null;
         // Check for an explicit ack, i.e. an ack on ack-eliciting packet that cannot be delayed (any longer)
@@ -156,6 +157,10 @@ public class PacketAssembler {
                     estimatedSize += nextFrame.getFrameLength();
                     packet.addFrame(nextFrame);
                     callbacks.add(next.get().getLostCallback());
+                    Consumer<QuicFrame> ackedCallback = next.get().getAckedCallback();
+                    if (ackedCallback != null) {
+                        ackedCallbacks.add(() -> ackedCallback.accept(nextFrame));
+                    }
 
                     // If there was an optional ack (which was not added yet)...
                     if (optionalAckSize > 0 && estimatedSize + optionalAckSize <= available) {
@@ -185,7 +190,7 @@ public class PacketAssembler {
             assembledItem = Optional.empty();
         }
         else {
-            assembledItem = Optional.of(new SendItem(packet, createPacketLostCallback(packet, callbacks)));
+            assembledItem = Optional.of(new SendItem(packet, createPacketLostCallback(packet, callbacks), createPacketAckedCallback(ackedCallbacks)));
         }
 
         if (stopping && requestQueue.isEmpty(false)) {
@@ -219,6 +224,13 @@ public class PacketAssembler {
         };
     }
 
+    private Consumer<QuicPacket> createPacketAckedCallback(List<Runnable> ackedCallbacks) {
+        if (ackedCallbacks.isEmpty()) {
+            return SendItem.EMPTY_CALLBACK;
+        }
+        return ackedPacket -> ackedCallbacks.forEach(Runnable::run);
+    }
+
     protected QuicPacket createPacket(byte[] sourceConnectionId, byte[] destinationConnectionId) {
         QuicPacket packet;
         switch (level) {
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.send;
+
+import net.luminis.quic.StreamPriority;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Schedules stream send requests based on stream priority, modeled after the Extensible Prioritization Scheme for HTTP,
+ * see https://www.rfc-editor.org/rfc/rfc9218.html#name-server-scheduling.
+ * Requests of streams with the highest urgency (lowest urgency value) are served first. Within one urgency level,
+ * non-incremental streams are served before incremental streams; non-incremental streams are served one at a time, in
+ * order of stream id, incremental streams are served round-robin. As a stream frame supplier queues a new request when
+ * it has more data to send after producing a frame, round-robin follows from serving the incremental requests in
+ * the order in which they were queued.
+ * The priority of a stream is determined at the time a request is added, so a change of priority takes effect from
+ * the next request on.
+ */
+public class PriorityScheduler {
+
+    private final UrgencyLevel[] urgencyLevels = new UrgencyLevel[StreamPriority.LOWEST_URGENCY + 1];
+    private int size;
+
+    public PriorityScheduler() {
+        for (int i = 0; i < urgencyLevels.length; i++) {
+            urgencyLevels[i] = new UrgencyLevel();
+        }
+    }
+
+    public synchronized void add(SendRequest request, int streamId, StreamPriority priority) {
+        UrgencyLevel urgencyLevel = urgencyLevels[priority.getUrgency()];
+        if (priority.isIncremental()) {
+            urgencyLevel.incremental.addLast(request);
+        }
+        else {
+            urgencyLevel.nonIncremental.computeIfAbsent(streamId, id -> new ArrayDeque<>()).addLast(request);
+        }
+        size++;
+    }
+
+    /**
+     * Returns the request with the highest priority that fits in the given frame length, removing it from the scheduler.
+     * @param maxFrameLength
+     * @return
+     */
+    public synchronized Optional<SendRequest> next(int maxFrameLength) {
+        if (size == 0) {
+            return Optional.empty();
+        }
+        for (UrgencyLevel urgencyLevel: urgencyLevels) {
+            for (Iterator<Map.Entry<Integer, Deque<SendRequest>>> streams = urgencyLevel.nonIncremental.entrySet().iterator(); streams.hasNext(); ) {
+                Deque<SendRequest> streamRequests = streams.next().getValue();
+                SendRequest request = removeFirstFitting(streamRequests, maxFrameLength);
+                if (streamRequests.isEmpty()) {
+                    streams.remove();
+                }
+                if (request != null) {
+                    return Optional.of(request);
+                }
+            }
+            SendRequest request = removeFirstFitting(urgencyLevel.incremental, maxFrameLength);
+            if (request != null) {
+                return Optional.of(request);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private SendRequest removeFirstFitting(Deque<SendRequest> requests, int maxFrameLength) {
+        for (Iterator<SendRequest> iterator = requests.iterator(); iterator.hasNext(); ) {
+            SendRequest request = iterator.next();
+            if (request.getEstimatedSize() <= maxFrameLength) {
+                iterator.remove();
+                size--;
+                return request;
+            }
+        }
+        return null;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized void clear() {
+        for (UrgencyLevel urgencyLevel: urgencyLevels) {
+            urgencyLevel.nonIncremental.clear();
+            urgencyLevel.incremental.clear();
+        }
+        size = 0;
+    }
+
+    private static class UrgencyLevel {
+        // Requests of non-incremental streams, sorted by stream id
+        final TreeMap<Integer, Deque<SendRequest>> nonIncremental = new TreeMap<>();
+        // Requests of incremental streams, in order of arrival
+        final Deque<SendRequest> incremental = new ArrayDeque<>();
+    }
+}
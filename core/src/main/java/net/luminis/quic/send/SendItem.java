@@ -23,7 +23,7 @@ import net.luminis.quic.packet.QuicPacket;
 import java.util.function.Consumer;
 
 /**
- * Simple holder object for a packet (to send) and its packet-lost callback function.
+ * Simple holder object for a packet (to send) and its packet-lost and packet-acked callback functions.
  */
 public class SendItem {
 
@@ -31,19 +31,26 @@ public class SendItem {
 
     private final QuicPacket packet;
     private final Consumer<QuicPacket> packetLostCallback;
+    private final Consumer<QuicPacket> packetAckedCallback;
 
     public SendItem(QuicPacket packet) {
         this.packet = packet;
         this.packetLostCallback = EMPTY_CALLBACK;
+        this.packetAckedCallback = EMPTY_CALLBACK;
     }
 
     public SendItem(QuicPacket packet, Consumer<QuicPacket> packetLostCallback) {
-        if (packet == null || packetLostCallback == null) {
+        this(packet, packetLostCallback, EMPTY_CALLBACK);
+    }
+
+    public SendItem(QuicPacket packet, Consumer<QuicPacket> packetLostCallback, Consumer<QuicPacket> packetAckedCallback) {
+        if (packet == null || packetLostCallback == null || packetAckedCallback == null) {
             throw new IllegalArgumentException();
         }
 
         this.packet = packet;
         this.packetLostCallback = packetLostCallback;
+        this.packetAckedCallback = packetAckedCallback;
     }
 
     public QuicPacket getPacket() {
@@ -54,6 +61,10 @@ public class SendItem {
         return packetLostCallback;
     }
 
+    public Consumer<QuicPacket> getPacketAckedCallback() {
+        return packetAckedCallback;
+    }
+
     @Override
     public String toString() {
         return packet.toString();
@@ -30,4 +30,12 @@ public interface SendRequest {
     QuicFrame getFrame(int maxSize);
 
     Consumer<QuicFrame> getLostCallback();
+
+    /**
+     * Returns the callback to call when the frame is acknowledged by the peer.
+     * @return the callback, or null when the requester is not interested in acknowledgements
+     */
+    default Consumer<QuicFrame> getAckedCallback() {
+        return null;
+    }
 }
@@ -19,6 +19,7 @@
 package net.luminis.quic.send;
 
 
+import net.luminis.quic.frame.DatagramFrame;
 import net.luminis.quic.frame.PathResponseFrame;
 import net.luminis.quic.frame.PingFrame;
 import net.luminis.quic.frame.QuicFrame;
@@ -35,9 +36,14 @@ import java.util.function.Function;
 public class SendRequestQueue {
 
     public static final int MAX_QUEUED_PATH_RESPONSE_FRAMES = 256;
+    public static final int MAX_QUEUED_DATAGRAM_FRAMES = 256;
     private final Clock clock;
     private final EncryptionLevel encryptionLevel;
     private Deque<SendRequest> requestQueue = new ConcurrentLinkedDeque<>();
+    // Requests for stream frames are scheduled on stream priority.
+    private final PriorityScheduler streamScheduler = new PriorityScheduler();
+    // Datagrams are queued separately, so the queue can be bounded without affecting other frames.
+    private Deque<SendRequest> datagramQueue = new ConcurrentLinkedDeque<>();
     private Deque<List<QuicFrame>> probeQueue = new ConcurrentLinkedDeque<>();
     private final Object ackLock = new Object();
     private Instant nextAckTime;
@@ -64,6 +70,19 @@ public class SendRequestQueue {
             }
         }
 
+        if (fixedFrame instanceof DatagramFrame) {
+            // https://www.rfc-editor.org/rfc/rfc9221.html#name-congestion-control
+            // "If a DATAGRAM frame is prevented from being sent due to congestion control, the implementation can
+            //  either delay sending the frame or discard it."
+            // When congestion control prevents sending faster than the application produces datagrams, the oldest
+            // (most likely to be outdated) datagrams are discarded.
+            if (datagramQueue.size() >= MAX_QUEUED_DATAGRAM_FRAMES) {
+                datagramQueue.pollFirst();
+            }
+            datagramQueue.addLast(new FixedFrameSendRequest(fixedFrame, lostCallback));
+            return;
+        }
+
         requestQueue.addLast(new FixedFrameSendRequest(fixedFrame, lostCallback));
     }
 
@@ -162,11 +181,18 @@ public class SendRequestQueue {
      * @param lostCallback
      */
     public void addRequest(Function<Integer, QuicFrame> frameSupplier, int estimatedSize, Consumer<QuicFrame> lostCallback) {
-        requestQueue.addLast(new FrameSupplierSendRequest(estimatedSize, frameSupplier, lostCallback));
+        if (frameSupplier instanceof StreamFrameSupplier) {
+            StreamFrameSupplier streamFrameSupplier = (StreamFrameSupplier) frameSupplier;
+            streamScheduler.add(new FrameSupplierSendRequest(estimatedSize, frameSupplier, lostCallback, streamFrameSupplier::frameAcknowledged),
+                    streamFrameSupplier.getStreamId(), streamFrameSupplier.getPriority());
+        }
+        else {
+            requestQueue.addLast(new FrameSupplierSendRequest(estimatedSize, frameSupplier, lostCallback));
+        }
     }
 
     public boolean hasRequests() {
-        return !requestQueue.isEmpty();
+        return !requestQueue.isEmpty() || !datagramQueue.isEmpty() || !streamScheduler.isEmpty();
     }
     
     public Optional<SendRequest> next(int maxFrameLength) {
@@ -183,8 +209,18 @@ public class SendRequestQueue {
                     return Optional.of(next);
                 }
             }
-            // Couldn't find one.
-            return Optional.empty();
+            // Datagrams are not retransmitted, so their latency is only determined by how long they are queued; hence they
+            // go before stream data.
+            for (Iterator<SendRequest> iterator = datagramQueue.iterator(); iterator.hasNext(); ) {
+                SendRequest next = iterator.next();
+                if (next.getEstimatedSize() <= maxFrameLength) {
+                    iterator.remove();
+                    return Optional.of(next);
+                }
+            }
+            // Other requests (control frames, retransmissions) and datagrams go before new stream data, which is served in
+            // order of priority.
+            return streamScheduler.next(maxFrameLength);
         }
         catch (ConcurrentModificationException concurrentModificationException) {
             if (cleared) {
@@ -204,6 +240,8 @@ public class SendRequestQueue {
     public void clear(boolean dropAcks) {
         cleared = true;
         requestQueue.clear();
+        datagramQueue.clear();
+        streamScheduler.clear();
         probeQueue.clear();
         if (dropAcks) {
             synchronized (ackLock) {
@@ -218,11 +256,11 @@ public class SendRequestQueue {
 
     public boolean isEmpty(boolean ignoreAcks) {
         if (ignoreAcks) {
-            return requestQueue.isEmpty();
+            return requestQueue.isEmpty() && datagramQueue.isEmpty() && streamScheduler.isEmpty();
         }
         else {
             synchronized (ackLock) {
-                return requestQueue.isEmpty() && nextAckTime == null;
+                return requestQueue.isEmpty() && datagramQueue.isEmpty() && streamScheduler.isEmpty() && nextAckTime == null;
             }
         }
     }
@@ -18,10 +18,14 @@
  */
 package net.luminis.quic.send;
 
+import net.luminis.quic.ConnectionConfig.CongestionControlAlgorithm;
 import net.luminis.quic.ack.GlobalAckGenerator;
+import net.luminis.quic.cc.BbrCongestionController;
 import net.luminis.quic.cc.CongestionControlEventListener;
 import net.luminis.quic.cc.CongestionController;
+import net.luminis.quic.cc.CubicCongestionController;
 import net.luminis.quic.cc.NewRenoCongestionController;
+import net.luminis.quic.concurrent.TimerWheel;
 import net.luminis.quic.crypto.Aead;
 import net.luminis.quic.crypto.ConnectionSecrets;
 import net.luminis.quic.crypto.MissingKeysException;
@@ -35,7 +39,6 @@ import net.luminis.quic.impl.VersionHolder;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.log.QLog;
 import net.luminis.quic.packet.QuicPacket;
-import net.luminis.quic.packet.RetryPacket;
 import net.luminis.quic.packet.ShortHeaderPacket;
 import net.luminis.quic.recovery.RecoveryManager;
 import net.luminis.quic.recovery.RttEstimator;
@@ -54,6 +57,10 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -79,6 +86,11 @@ import static java.lang.Long.max;
  * - probe request
  * - delayed ack timeout
  * - congestion controller becoming unblocked due to timer-induced loss detection
+ * - pacer allowing the next (in-flight) datagram to be sent
+ *
+ * By default, the sender uses its own thread for waiting on these conditions and sending packets. When created with
+ * an event loop, the sender does not create a thread, but executes sending as a task on the event loop, which is
+ * (re)scheduled whenever one of the conditions above occurs.
  */
 public class SenderImpl implements Sender, CongestionControlEventListener {
 
@@ -89,6 +101,7 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
     private final QuicConnectionImpl connection;
     private final CongestionController congestionController;
     private final RttEstimator rttEstimater;
+    private final Pacer pacer;
     private final Logger log;
     private final QLog qlog;
     private final SendRequestQueue[] sendRequestQueue = new SendRequestQueue[EncryptionLevel.values().length];
@@ -97,6 +110,10 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
     private final RecoveryManager recoveryManager;
     private final IdleTimer idleTimer;
     private final Thread senderThread;
+    private final Executor eventLoop;
+    private final AtomicBoolean sendTaskQueued = new AtomicBoolean();
+    private final TimerWheel.Timeout delayedSendTimer;
+    private volatile boolean expectingMoreDatagrams;
     private final boolean[] discardedSpaces = new boolean[PnSpace.values().length];
     private ConnectionSecrets connectionSecrets;
     private final Object condition = new Object();
@@ -113,19 +130,49 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
     private volatile long packetsSent;
     private AtomicInteger subsequentZeroDelays = new AtomicInteger();
     private volatile boolean lastDelayWasZero = false;
+    private volatile boolean pacingLimited;
     private volatile int antiAmplificationLimit = -1;
     private volatile Runnable shutdownHook;
+    // Reused for every datagram sent; max packet size can only decrease, so initial size is sufficient.
+    private final ByteBuffer datagramBuffer;
 
 
     public SenderImpl(VersionHolder version, int maxPacketSize, DatagramSocket socket, InetSocketAddress peerAddress,
-                      QuicConnectionImpl connection, String id, Integer initialRtt, Logger log) {
-        this(Clock.systemUTC(), version, maxPacketSize, socket, peerAddress, connection, id, initialRtt, log);
+                      QuicConnectionImpl connection, String id, Integer initialRtt, CongestionControlAlgorithm congestionControl, Logger log) {
+        this(Clock.systemUTC(), version, maxPacketSize, socket, peerAddress, connection, id, initialRtt, congestionControl, null, log);
+    }
+
+    /**
+     * Creates a sender that does not create its own thread(s), but executes all sending and timer tasks on the given
+     * event loop.
+     * @param version
+     * @param maxPacketSize
+     * @param socket
+     * @param peerAddress
+     * @param connection
+     * @param id
+     * @param initialRtt
+     * @param congestionControl  the congestion control algorithm to use
+     * @param eventLoop  the (single threaded) event loop the connection is pinned to
+     * @param log
+     */
+    public SenderImpl(VersionHolder version, int maxPacketSize, DatagramSocket socket, InetSocketAddress peerAddress,
+                      QuicConnectionImpl connection, String id, Integer initialRtt, CongestionControlAlgorithm congestionControl,
+                      Executor eventLoop, Logger log) {
+        this(Clock.systemUTC(), version, maxPacketSize, socket, peerAddress, connection, id, initialRtt, congestionControl, eventLoop, log);
     }
 
     public SenderImpl(Clock clock, VersionHolder version, int maxPacketSize, DatagramSocket socket, InetSocketAddress peerAddress,
                       QuicConnectionImpl connection, String id, Integer initialRtt, Logger log) {
+        this(clock, version, maxPacketSize, socket, peerAddress, connection, id, initialRtt, CongestionControlAlgorithm.NewReno, null, log);
+    }
+
+    SenderImpl(Clock clock, VersionHolder version, int maxPacketSize, DatagramSocket socket, InetSocketAddress peerAddress,
+               QuicConnectionImpl connection, String id, Integer initialRtt, CongestionControlAlgorithm congestionControl,
+               Executor eventLoop, Logger log) {
         this.clock = clock;
         this.maxPacketSize = maxPacketSize;
+        this.datagramBuffer = ByteBuffer.allocate(maxPacketSize);
         this.socket = socket;
         this.peerAddress = peerAddress;
         this.connection = connection;
@@ -139,22 +186,39 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
         globalAckGenerator = new GlobalAckGenerator(this);
         packetAssembler = new GlobalPacketAssembler(version, sendRequestQueue, globalAckGenerator);
 
-        congestionController = new NewRenoCongestionController(log, this);
         rttEstimater = (initialRtt == null)? new RttEstimator(log): new RttEstimator(log, initialRtt);
-
-        recoveryManager = new RecoveryManager(connection.getRole(), rttEstimater, congestionController, this, log);
+        congestionController = createCongestionController(congestionControl);
+        pacer = new Pacer(clock, congestionController, rttEstimater, Pacer.DEFAULT_BURST_ALLOWANCE);
+        congestionController.setPaced(Pacer.DEFAULT_BURST_ALLOWANCE > 0);
+
+        this.eventLoop = eventLoop;
+        // The timer only wakes up the sender (thread or task), so there is no need to run it on the event loop.
+        delayedSendTimer = TimerWheel.shared().newTimeout(this::wakeUpSenderLoop);
+        // Without event loop, recovery timer tasks run with the connection's timer executor, not on the timer thread.
+        Executor timerExecutor = eventLoop != null? eventLoop: connection.getTimerExecutor();
+        recoveryManager = new RecoveryManager(clock, connection.getRole(), rttEstimater, congestionController, this, timerExecutor, log);
         connection.addHandshakeStateListener(recoveryManager);
         connection.addAckFrameReceivedListener(recoveryManager);
 
         idleTimer = connection.getIdleTimer();
 
-        senderThread = new Thread(() -> sendLoop(), "sender" + (!id.isBlank()? "-" + id: ""));
-        senderThread.setDaemon(true);
+        if (eventLoop == null) {
+            senderThread = new Thread(() -> sendLoop(), "sender" + (!id.isBlank()? "-" + id: ""));
+            senderThread.setDaemon(true);
+        }
+        else {
+            senderThread = null;
+        }
     }
 
     public void start(ConnectionSecrets secrets) {
         connectionSecrets = secrets;
-        senderThread.start();
+        if (eventLoop == null) {
+            senderThread.start();
+        }
+        else {
+            running = true;
+        }
     }
 
     @Override
@@ -172,14 +236,6 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
         sendRequestQueue[level.ordinal()].addRequest(frameSupplier, minimumSize, lostCallback);
     }
 
-    public void send(RetryPacket retryPacket) {
-        try {
-            send(List.of(new SendItem(retryPacket)));
-        } catch (IOException e) {
-            log.error("Sending packet failed: " + retryPacket);
-        }
-    }
-
     @Override
     public void setInitialToken(byte[] token) {
         if (token != null) {
@@ -228,12 +284,19 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
 
     @Override
     public void packetProcessed(boolean expectingMore) {
-        wakeUpSenderLoop();  // If you change this, review this.sendAck()!
+        // When more datagrams are about to be processed, waking up is postponed until the last one is processed, so
+        // responses (and acks) for all these datagrams can be coalesced.
+        if (! expectingMoreDatagrams) {
+            wakeUpSenderLoop();  // If you change this, review this.sendAck()!
+        }
     }
 
     @Override
     public void datagramProcessed(boolean expectingMore) {
-        // Nothing, current implementation flushes when packet processed
+        expectingMoreDatagrams = expectingMore;
+        if (! expectingMore) {
+            wakeUpSenderLoop();
+        }
     }
 
     @Override
@@ -276,7 +339,9 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
 
         shutdownHook = postShutdownAction;
         stopping = true;
-        senderThread.interrupt();
+        // Do not interrupt the sender thread: when it is interrupted while sending on a channel backed socket, the
+        // channel (which might be shared by a server's connections) is closed.
+        wakeUpSenderLoop();
     }
 
     @Override
@@ -304,6 +369,7 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
                 log.warn("Ignoring " + fatalError + " because sender is shutting down.");
             }
         }
+        delayedSendTimer.cancel();
         if (shutdownHook != null) {
             shutdownHook.run();
         }
@@ -315,6 +381,8 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
                 if (! signalled) {
                     long timeout = determineMaximumWaitTime();
                     if (timeout > 0) {
+                        // Bounded wait, so the sender thread wakes up by itself when the wait time is over (e.g. for
+                        // sending a delayed ack), without depending on the shared timer.
                         condition.wait(timeout);
                     }
                 }
@@ -336,27 +404,108 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
 
     void sendIfAny() throws IOException {
         List<SendItem> items;
+        boolean paced;
         do {
-            items = assemblePacket();
+            // When the pacer does not allow sending yet, only packets that are not congestion controlled (ack-only and
+            // probes) can be sent.
+            paced = !pacer.maySend(maxPacketSize);
+            items = assemblePacket(paced);
             if (!items.isEmpty()) {
                 send(items);
             }
         }
         while (!items.isEmpty());
+        pacingLimited = paced && congestionController.remainingCwnd() > 0;
+
+        if (!paced && congestionController.remainingCwnd() >= maxPacketSize) {
+            // Not limited by the congestion window, so rate samples taken meanwhile will underestimate the bandwidth.
+            recoveryManager.applicationLimited();
+        }
     }
 
     private void wakeUpSenderLoop() {
+        if (eventLoop != null) {
+            queueSendTask();
+            return;
+        }
         synchronized (condition) {
             signalled = true;
             condition.notify();
         }
     }
 
+    private void queueSendTask() {
+        // Coalesce wake-ups: when a send task is already queued, it will pick up whatever has been queued meanwhile.
+        if (sendTaskQueued.compareAndSet(false, true)) {
+            try {
+                eventLoop.execute(this::runSendTask);
+            }
+            catch (RejectedExecutionException rejected) {
+                // Can happen when the event loop is shut down; nothing to send anymore.
+                sendTaskQueued.set(false);
+            }
+        }
+    }
+
+    /**
+     * Event loop counterpart of sendLoop(): executes one iteration and schedules the next one, based on the maximum
+     * wait time.
+     */
+    private void runSendTask() {
+        sendTaskQueued.set(false);
+        if (! running) {
+            return;
+        }
+        try {
+            // Determine whether sending must be ended _before_ composing packets, see doLoopIteration()
+            if (stopping) {
+                running = false;
+            }
+            sendIfAny();
+        }
+        catch (Throwable fatalError) {
+            if (running) {
+                running = false;
+                log.error("Sender task aborted with exception", fatalError);
+                connection.abortConnection(fatalError);
+            }
+            else {
+                log.warn("Ignoring " + fatalError + " because sender is shutting down.");
+            }
+        }
+
+        if (running) {
+            long timeout = determineMaximumWaitTime();
+            if (timeout > 0) {
+                delayedSendTimer.schedule(timeout, TimeUnit.MILLISECONDS);
+            }
+            else {
+                queueSendTask();
+            }
+        }
+        else {
+            delayedSendTimer.cancel();
+            if (shutdownHook != null) {
+                shutdownHook.run();
+            }
+        }
+    }
+
     /**
      * Determines the maximum wait (sleep) time before the sender must check again if there is something to send.
      * @return
      */
     long determineMaximumWaitTime() {
+        long waitTime = determineDelayedSendWaitTime();
+        if (pacingLimited) {
+            // Rounded up, as waking up before the pacer allows sending would only lead to a busy wait.
+            long pacingDelayNanos = Duration.between(clock.instant(), pacer.nextSendTime()).toNanos();
+            return Long.min(waitTime, max((pacingDelayNanos + 999_999) / 1_000_000, 1));
+        }
+        return waitTime;
+    }
+
+    private long determineDelayedSendWaitTime() {
         Optional<Instant> nextDelayedSendTime = packetAssembler.nextDelayedSendTime();
         if (nextDelayedSendTime.isPresent()) {
             long delay = max(Duration.between(clock.instant(), nextDelayedSendTime.get()).toMillis(), 0);
@@ -388,17 +537,18 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
     }
 
     void send(List<SendItem> itemsToSend) throws IOException {
-        byte[] datagramData = new byte[maxPacketSize];
-        ByteBuffer buffer = ByteBuffer.wrap(datagramData);
+        ByteBuffer buffer = datagramBuffer;
+        buffer.clear().limit(maxPacketSize);
         try {
             Iterator<SendItem> packetIterator = itemsToSend.iterator();
             while (packetIterator.hasNext()) {
                 QuicPacket packet = packetIterator.next().getPacket();
                 try {
                     Aead aead = connectionSecrets.getOwnAead(packet.getEncryptionLevel());
-                    byte[] packetData = packet.generatePacketBytes(aead);
-                    buffer.put(packetData);
-                    log.raw("packet sent, pn: " + packet.getPacketNumber(), packetData);
+                    // Packets are generated directly into the datagram buffer, so coalesced packets need no copying.
+                    int packetStart = buffer.position();
+                    int packetSize = packet.generatePacketBytes(aead, buffer);
+                    log.raw("packet sent, pn: " + packet.getPacketNumber(), buffer, packetStart, packetSize);
                 }
                 catch (MissingKeysException e) {
                     if (e.getMissingKeysCause() == MissingKeysException.Cause.DiscardedKeys) {
@@ -421,17 +571,20 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
             return;
         }
         
-        DatagramPacket datagram = new DatagramPacket(datagramData, buffer.position(), peerAddress.getAddress(), peerAddress.getPort());
+        DatagramPacket datagram = new DatagramPacket(buffer.array(), buffer.position(), peerAddress.getAddress(), peerAddress.getPort());
 
         Instant timeSent = clock.instant();
         socket.send(datagram);
+        if (itemsToSend.stream().anyMatch(item -> item.getPacket().isInflightPacket())) {
+            pacer.onDatagramSent(buffer.position());
+        }
         datagramsSent++;
         packetsSent += itemsToSend.size();
         bytesSent += buffer.position();
 
         itemsToSend.stream()
                 .forEach(item -> {
-                    recoveryManager.packetSent(item.getPacket(), timeSent, item.getPacketLostCallback());
+                    recoveryManager.packetSent(item.getPacket(), timeSent, item.getPacketLostCallback(), item.getPacketAckedCallback());
                     idleTimer.packetSent(item.getPacket(), timeSent);
                 });
 
@@ -441,8 +594,8 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
         qlog.emitPacketSentEvent(packetsSent, timeSent);
     }
 
-    private List<SendItem> assemblePacket() {
-        int remainingCwnd = (int) congestionController.remainingCwnd();
+    private List<SendItem> assemblePacket(boolean paced) {
+        int remainingCwnd = paced? 0: (int) congestionController.remainingCwnd();
         int currentMaxPacketSize = maxPacketSize;
         if (antiAmplificationLimit >= 0) {
             if (bytesSent < antiAmplificationLimit) {
@@ -490,10 +643,35 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
                 rttEstimater.getSmoothedRtt(), rttEstimater.getRttVar(), rttEstimater.getLatestRtt());
     }
 
+    public int getSmoothedRtt() {
+        return rttEstimater.getSmoothedRtt();
+    }
+
     public int getPto() {
         return rttEstimater.getSmoothedRtt() + 4 * rttEstimater.getRttVar() + receiverMaxAckDelay;
     }
 
+    private CongestionController createCongestionController(CongestionControlAlgorithm algorithm) {
+        switch (algorithm) {
+            case Cubic:
+                return new CubicCongestionController(clock, log, this, rttEstimater);
+            case Bbr:
+                return new BbrCongestionController(clock, log, this, rttEstimater);
+            case NewReno:
+            default:
+                return new NewRenoCongestionController(log, this);
+        }
+    }
+
+    /**
+     * Sets the maximum number of datagrams that can be sent in one burst, i.e. without pacing.
+     * @param burstAllowance  number of datagrams; 0 disables pacing.
+     */
+    public void setPacingBurstAllowance(int burstAllowance) {
+        pacer.setBurstAllowance(burstAllowance);
+        congestionController.setPaced(burstAllowance > 0);
+    }
+
     public CongestionController getCongestionController() {
         return congestionController;
     }
@@ -524,6 +702,10 @@ public class SenderImpl implements Sender, CongestionControlEventListener {
         packetAssembler.enableAppLevel();
     }
 
+    public int getMaxPacketSize() {
+        return maxPacketSize;
+    }
+
     public void registerMaxUdpPayloadSize(int maxUdpPayloadSize) {
         if (maxUdpPayloadSize < maxPacketSize) {
             maxPacketSize = maxUdpPayloadSize;
@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.send;
+
+import net.luminis.quic.StreamPriority;
+import net.luminis.quic.frame.QuicFrame;
+
+import java.util.function.Function;
+
+/**
+ * Frame supplier that produces stream frames for a given stream. Send requests using such a supplier are scheduled
+ * based on the priority of the stream (see {@link PriorityScheduler}). The supplier is notified of the frames that are
+ * acknowledged, so it does not need to keep copies of the frames that are in flight.
+ */
+public interface StreamFrameSupplier extends Function<Integer, QuicFrame> {
+
+    int getStreamId();
+
+    StreamPriority getPriority();
+
+    /**
+     * Called when a frame produced by this supplier is acknowledged by the peer.
+     * @param frame  the acknowledged frame
+     */
+    void frameAcknowledged(QuicFrame frame);
+}
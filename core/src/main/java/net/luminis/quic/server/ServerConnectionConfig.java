@@ -19,18 +19,74 @@
 package net.luminis.quic.server;
 
 import net.luminis.quic.ConnectionConfig;
+import net.luminis.quic.send.Pacer;
 import net.luminis.quic.server.impl.ServerConnectionConfigImpl;
 
 public interface ServerConnectionConfig extends ConnectionConfig {
 
-    enum RetryRequired { Always, Never }
+    /**
+     * Whether clients must be validated with a Retry packet before a connection is created: Always, Never, or Adaptive,
+     * meaning only when the server is under load (see {@link Builder#adaptiveRetry(int, int, int, int)}).
+     */
+    enum RetryRequired { Always, Never, Adaptive }
 
     int connectionIdLength();
 
     RetryRequired retryRequired();
 
+    /**
+     * @return  with adaptive Retry, the number of pending handshakes above which Retry is required
+     */
+    default int adaptiveRetryMaxPendingHandshakes() {
+        return ServerConnectionConfigImpl.DEFAULT_ADAPTIVE_RETRY_MAX_PENDING_HANDSHAKES;
+    }
+
+    /**
+     * @return  with adaptive Retry, the number of Initial packets per second above which Retry is required
+     */
+    default int adaptiveRetryMaxInitialRate() {
+        return ServerConnectionConfigImpl.DEFAULT_ADAPTIVE_RETRY_MAX_INITIAL_RATE;
+    }
+
+    /**
+     * @return  with adaptive Retry, the number of Initial packets per second from one source address prefix above which
+     * Retry is required for clients with that prefix
+     */
+    default int adaptiveRetryMaxInitialRatePerSourcePrefix() {
+        return ServerConnectionConfigImpl.DEFAULT_ADAPTIVE_RETRY_MAX_INITIAL_RATE_PER_SOURCE_PREFIX;
+    }
+
+    /**
+     * @return  with adaptive Retry, the number of connection ids registered by the server above which Retry is required
+     */
+    default int adaptiveRetryMaxRegisteredConnectionIds() {
+        return ServerConnectionConfigImpl.DEFAULT_ADAPTIVE_RETRY_MAX_REGISTERED_CONNECTION_IDS;
+    }
+
     int initialRtt();
 
+    /**
+     * @return  the congestion control algorithm used for connections; NewReno by default.
+     */
+    default CongestionControlAlgorithm congestionControlAlgorithm() {
+        return CongestionControlAlgorithm.NewReno;
+    }
+
+    /**
+     * @return  the maximum number of datagrams that are sent in one burst, i.e. without pacing; 0 means no pacing.
+     */
+    default int pacingBurstAllowance() {
+        return Pacer.DEFAULT_BURST_ALLOWANCE;
+    }
+
+    /**
+     * @return  the maximum size of a datagram frame (https://www.rfc-editor.org/rfc/rfc9221.html) the peer may send;
+     * 0 (the default) means receiving datagrams is not supported.
+     */
+    default int maxDatagramFrameSize() {
+        return 0;
+    }
+
     ServerConnectionConfig merge(ApplicationProtocolSettings protocol);
 
     static Builder builder() {
@@ -58,10 +114,42 @@ public interface ServerConnectionConfig extends ConnectionConfig {
 
         Builder retryRequired(RetryRequired retryRequired);
 
+        /**
+         * Enables adaptive Retry: clients are only required to validate their address with a Retry packet when one of
+         * the given thresholds is exceeded. Rates are measured over a sliding window of one second; the rate per
+         * source prefix is tracked per /24 (IPv4) or /48 (IPv6) prefix.
+         * @param maxPendingHandshakes  maximum number of connections that have not yet completed the handshake
+         * @param maxInitialRate  maximum number of Initial packets per second
+         * @param maxInitialRatePerSourcePrefix  maximum number of Initial packets per second from one source prefix
+         * @param maxRegisteredConnectionIds  maximum number of connection ids registered by the server
+         * @return
+         */
+        Builder adaptiveRetry(int maxPendingHandshakes, int maxInitialRate, int maxInitialRatePerSourcePrefix, int maxRegisteredConnectionIds);
+
         Builder connectionIdLength(int connectionIdLength);
 
         Builder maxTotalPeerInitiatedUnidirectionalStreams(long max);
 
         Builder maxTotalPeerInitiatedBidirectionalStreams(long max);
+
+        Builder congestionControlAlgorithm(CongestionControlAlgorithm algorithm);
+
+        Builder pacingBurstAllowance(int datagrams);
+
+        /**
+         * Enables receive window auto-tuning: stream and connection receive windows start at the configured buffer
+         * sizes and grow (when the application reads fast enough) up to the given maximums.
+         * @param maxStreamReceiveWindow  maximum receive window per stream
+         * @param maxConnectionReceiveWindow  maximum receive window for the connection
+         * @return
+         */
+        Builder receiveWindowAutoTuning(long maxStreamReceiveWindow, long maxConnectionReceiveWindow);
+
+        /**
+         * Enables receiving (unreliable) datagrams (https://www.rfc-editor.org/rfc/rfc9221.html).
+         * @param maxDatagramFrameSize  the maximum size of a datagram frame the peer may send, 0 to disable
+         * @return
+         */
+        Builder maxDatagramFrameSize(int maxDatagramFrameSize);
     }
 }
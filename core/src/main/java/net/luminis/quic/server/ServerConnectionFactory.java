@@ -18,11 +18,13 @@
  */
 package net.luminis.quic.server;
 
+import net.luminis.quic.concurrent.EventLoopGroup;
 import net.luminis.quic.impl.Version;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.packet.InitialPacket;
 import net.luminis.quic.packet.PacketMetaData;
 import net.luminis.quic.server.impl.ApplicationProtocolRegistry;
+import net.luminis.quic.server.impl.ServerConnectionEventLoopProxy;
 import net.luminis.quic.server.impl.ServerConnectionImpl;
 import net.luminis.quic.server.impl.ServerConnectionProxy;
 import net.luminis.quic.server.impl.ServerConnectionThread;
@@ -32,6 +34,7 @@ import net.luminis.tls.engine.TlsServerEngineFactory;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Consumer;
 
 import static net.luminis.quic.server.Constants.MAXIMUM_CONNECTION_ID_LENGTH;
@@ -47,10 +50,31 @@ public class ServerConnectionFactory {
     private final Consumer<ServerConnectionImpl> closeCallback;
     private final ServerConnectionRegistry connectionRegistry;
     private final ServerConnectionConfig configuration;
+    private final EventLoopGroup eventLoopGroup;
 
     public ServerConnectionFactory(DatagramSocket serverSocket, TlsServerEngineFactory tlsServerEngineFactory,
                                    ServerConnectionConfig configuration, ApplicationProtocolRegistry applicationProtocolRegistry,
                                    ServerConnectionRegistry connectionRegistry, Consumer<ServerConnectionImpl> closeCallback, Logger log)
+    {
+        this(serverSocket, tlsServerEngineFactory, configuration, applicationProtocolRegistry, connectionRegistry, closeCallback, null, log);
+    }
+
+    /**
+     * Creates a factory for server connections that, when an event loop group is given, are pinned to one of the
+     * event loops of the group, instead of running on threads of their own.
+     * @param serverSocket
+     * @param tlsServerEngineFactory
+     * @param configuration
+     * @param applicationProtocolRegistry
+     * @param connectionRegistry
+     * @param closeCallback
+     * @param eventLoopGroup  the event loops to run connections on, or null for thread-per-connection mode
+     * @param log
+     */
+    public ServerConnectionFactory(DatagramSocket serverSocket, TlsServerEngineFactory tlsServerEngineFactory,
+                                   ServerConnectionConfig configuration, ApplicationProtocolRegistry applicationProtocolRegistry,
+                                   ServerConnectionRegistry connectionRegistry, Consumer<ServerConnectionImpl> closeCallback,
+                                   EventLoopGroup eventLoopGroup, Logger log)
     {
         if (configuration.connectionIdLength() > MAXIMUM_CONNECTION_ID_LENGTH || configuration.connectionIdLength() < MINIMUM_CONNECTION_ID_LENGTH) {
             throw new IllegalArgumentException();
@@ -62,6 +86,7 @@ public class ServerConnectionFactory {
         this.closeCallback = closeCallback;
         this.log = log;
         this.serverSocket = serverSocket;
+        this.eventLoopGroup = eventLoopGroup;
     }
 
     /**
@@ -73,8 +98,22 @@ public class ServerConnectionFactory {
      * @return
      */
     public ServerConnectionImpl createNewConnection(Version version, InetSocketAddress clientAddress, byte[] scid, byte[] originalDcid) {
+        return createNewConnection(version, clientAddress, scid, originalDcid, null);
+    }
+
+    /**
+     * Creates new server connection for a client whose address has been validated with a Retry packet.
+     * @param version  quic version used
+     * @param clientAddress  the address of the client
+     * @param scid  the source connection id used by the client
+     * @param originalDcid  the original destination id used by the client
+     * @param retrySourceCid  the source connection id of the Retry packet, or null when no Retry was sent
+     * @return
+     */
+    public ServerConnectionImpl createNewConnection(Version version, InetSocketAddress clientAddress, byte[] scid, byte[] originalDcid, byte[] retrySourceCid) {
+        ScheduledExecutorService eventLoop = eventLoopGroup != null? eventLoopGroup.select(originalDcid): null;
         ServerConnectionImpl connection = new ServerConnectionImpl(version, serverSocket, clientAddress, scid, originalDcid,
-                tlsServerEngineFactory, configuration, applicationProtocolRegistry, connectionRegistry, closeCallback, log);
+                retrySourceCid, tlsServerEngineFactory, configuration, applicationProtocolRegistry, connectionRegistry, closeCallback, eventLoop, log);
 
         log.info("Creating new connection with version " + version + " for odcid " + Bytes.bytesToHex(originalDcid)
                 + " with " + clientAddress.getAddress().getHostAddress() + ": " + Bytes.bytesToHex(connection.getInitialConnectionId()));
@@ -83,6 +122,13 @@ public class ServerConnectionFactory {
     }
 
     public ServerConnectionProxy createServerConnectionProxy(ServerConnectionImpl connection, InitialPacket initialPacket, ByteBuffer data, PacketMetaData metaData) {
-        return new ServerConnectionThread(connection, initialPacket, data, metaData);
+        if (eventLoopGroup != null) {
+            // Connection is pinned to the event loop selected by its original destination connection id, see createNewConnection()
+            ScheduledExecutorService eventLoop = eventLoopGroup.select(connection.getOriginalDestinationConnectionId());
+            return new ServerConnectionEventLoopProxy(connection, eventLoop, initialPacket, data, metaData);
+        }
+        else {
+            return new ServerConnectionThread(connection, initialPacket, data, metaData);
+        }
     }
 }
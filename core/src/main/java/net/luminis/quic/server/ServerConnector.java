@@ -27,6 +27,7 @@ import java.net.DatagramSocket;
 import java.net.SocketException;
 import java.security.KeyStore;
 import java.security.cert.CertificateException;
+import java.time.Duration;
 import java.util.List;
 import java.util.Set;
 
@@ -41,6 +42,13 @@ public interface ServerConnector {
 
     void start();
 
+    /**
+     * Returns the number of received packets that are waiting to be processed by the handshake workers, which is an
+     * indication of the load caused by new connections.
+     * @return
+     */
+    int getHandshakeQueueDepth();
+
     static Builder builder() {
         return new ServerConnectorImpl.BuilderImpl();
     }
@@ -78,6 +86,53 @@ public interface ServerConnector {
 
         Builder withLogger(Logger log);
 
+        /**
+         * Enables the shared event loop mode: instead of using a number of threads per connection (for receiving,
+         * sending and timers), all connections are executed on a fixed number of event loop workers, each connection
+         * being pinned to one worker. This reduces the number of threads from O(connections) to O(workers).
+         * Note that in this mode, application protocol callbacks are executed on the event loop too, so they should
+         * not block.
+         * @param numberOfWorkers  the number of event loop workers, typically the number of available processors;
+         *                         0 disables event loop mode (the default).
+         * @return
+         */
+        Builder withEventLoopWorkers(int numberOfWorkers);
+
+        /**
+         * Enables batched receive: all datagrams that are ready (up to the given maximum) are taken from the receiver
+         * at once and the datagrams for each connection are passed to that connection as one batch, which reduces
+         * thread handoffs and lets connections coalesce their responses over the batch.
+         * @param maxDatagrams  maximum number of datagrams in one batch; 1 disables batching (the default).
+         * @return
+         */
+        Builder withReceiveBatchSize(int maxDatagrams);
+
+        /**
+         * Sets the number of workers that process the first packets of new connections, which includes decrypting
+         * the client Initial and creating the connection (and its TLS engine). The packets of one connection
+         * candidate are always processed by the same worker, so they are processed in order, while different
+         * candidates are processed in parallel. With more than one worker, the rate at which new connections can be
+         * established scales with the number of cores.
+         * @param numberOfWorkers  the number of handshake workers, at least 1 (the default)
+         * @return
+         */
+        Builder withHandshakeWorkers(int numberOfWorkers);
+
+        /**
+         * Enables admission control for new connections, to keep handshake latency bounded for admitted clients when
+         * the server is overloaded. New connections are not admitted when the number of handshakes in progress
+         * (connections that have not completed the handshake plus packets waiting for the handshake workers) has
+         * reached the given maximum; Initial packets that have been waiting longer than the given time for a handshake
+         * worker are discarded before any cryptographic processing is done.
+         * @param maxHandshakesInProgress  maximum number of handshakes in progress
+         * @param maxInitialQueueTime  maximum time an Initial packet may wait for processing, or null for no limit
+         * @param refuseWhenOverBudget  whether connection attempts that are not admitted are answered with a
+         *                              CONNECTION_CLOSE (with error CONNECTION_REFUSED) instead of being dropped silently;
+         *                              the number of refusals is limited to 100 per second
+         * @return
+         */
+        Builder withHandshakeAdmissionControl(int maxHandshakesInProgress, Duration maxInitialQueueTime, boolean refuseWhenOverBudget);
+
         /**
          * Builds the server connector.
          * @return
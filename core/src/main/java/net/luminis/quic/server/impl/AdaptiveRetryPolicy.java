@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import net.luminis.quic.server.ServerConnectionConfig;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * Decides whether a client must validate its address with a Retry packet, based on the load of the server: Retry is
+ * only required when the number of pending handshakes, the rate of Initial packets (in total or from the client's
+ * source address prefix), or the number of registered connection ids exceeds the configured threshold.
+ * This way, clients can complete the handshake in one round trip under normal conditions, while the server is
+ * protected when under stress (e.g. an Initial flood with spoofed addresses).
+ * https://www.rfc-editor.org/rfc/rfc9000.html#name-address-validation-during-c
+ * "A server might wish to validate the client address before starting the cryptographic handshake. (...) A server
+ *  can also use a Retry packet to defer the state and processing costs of connection establishment."
+ * Not thread-safe: must be called from one thread (or synchronized externally).
+ */
+public class AdaptiveRetryPolicy {
+
+    static final int WINDOW_MILLIS = 1000;
+    static final int WINDOW_BUCKETS = 10;
+    /** The maximum number of source prefixes for which rates are tracked, to bound memory usage when under attack. */
+    static final int MAX_TRACKED_PREFIXES = 10_000;
+
+    private final Clock clock;
+    private final int maxPendingHandshakes;
+    private final int maxInitialRate;
+    private final int maxInitialRatePerSourcePrefix;
+    private final int maxRegisteredConnectionIds;
+    private final IntSupplier pendingHandshakes;
+    private final IntSupplier registeredConnectionIds;
+    private final SlidingWindowCounter initialRate;
+    // Access ordered, so the least recently seen prefix comes first.
+    private final LinkedHashMap<ByteBuffer, SlidingWindowCounter> initialRatePerPrefix;
+
+    public AdaptiveRetryPolicy(ServerConnectionConfig config, IntSupplier pendingHandshakes, IntSupplier registeredConnectionIds) {
+        this(Clock.systemUTC(), config.adaptiveRetryMaxPendingHandshakes(), config.adaptiveRetryMaxInitialRate(),
+                config.adaptiveRetryMaxInitialRatePerSourcePrefix(), config.adaptiveRetryMaxRegisteredConnectionIds(),
+                pendingHandshakes, registeredConnectionIds);
+    }
+
+    public AdaptiveRetryPolicy(Clock clock, int maxPendingHandshakes, int maxInitialRate, int maxInitialRatePerSourcePrefix,
+                               int maxRegisteredConnectionIds, IntSupplier pendingHandshakes, IntSupplier registeredConnectionIds) {
+        this.clock = clock;
+        this.maxPendingHandshakes = maxPendingHandshakes;
+        this.maxInitialRate = maxInitialRate;
+        this.maxInitialRatePerSourcePrefix = maxInitialRatePerSourcePrefix;
+        this.maxRegisteredConnectionIds = maxRegisteredConnectionIds;
+        this.pendingHandshakes = pendingHandshakes;
+        this.registeredConnectionIds = registeredConnectionIds;
+        initialRate = new SlidingWindowCounter();
+        initialRatePerPrefix = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Registers the receipt of an Initial packet that might start a new connection and determines whether the client
+     * must be sent a Retry.
+     * @param clientAddress  the source address of the Initial packet
+     * @return  true if Retry is required
+     */
+    public boolean retryRequired(InetSocketAddress clientAddress) {
+        long now = clock.millis();
+        int totalRate = initialRate.increment(now);
+        int prefixRate = incrementPrefixRate(sourcePrefix(clientAddress), now);
+
+        return totalRate > maxInitialRate
+                || prefixRate > maxInitialRatePerSourcePrefix
+                || pendingHandshakes.getAsInt() >= maxPendingHandshakes
+                || registeredConnectionIds.getAsInt() >= maxRegisteredConnectionIds;
+    }
+
+    private int incrementPrefixRate(ByteBuffer prefix, long now) {
+        SlidingWindowCounter counter = initialRatePerPrefix.get(prefix);
+        if (counter == null) {
+            if (initialRatePerPrefix.size() >= MAX_TRACKED_PREFIXES) {
+                // Only the least recently seen prefix needs to be checked (instead of scanning all): when it is still
+                // active within the window, all others are too.
+                Iterator<SlidingWindowCounter> leastRecentlySeen = initialRatePerPrefix.values().iterator();
+                if (leastRecentlySeen.next().count(now) == 0) {
+                    leastRecentlySeen.remove();
+                }
+                else {
+                    // Too many different sources within the window to track: treat as exceeding the rate.
+                    return Integer.MAX_VALUE;
+                }
+            }
+            counter = new SlidingWindowCounter();
+            initialRatePerPrefix.put(prefix, counter);
+        }
+        return counter.increment(now);
+    }
+
+    static ByteBuffer sourcePrefix(InetSocketAddress clientAddress) {
+        byte[] address = clientAddress.getAddress().getAddress();
+        // IPv4: /24, IPv6: /48
+        int prefixLength = address.length == 4? 3: 6;
+        return ByteBuffer.wrap(address, 0, prefixLength).slice();
+    }
+
+    int trackedPrefixes() {
+        return initialRatePerPrefix.size();
+    }
+
+    /**
+     * Counts events within a sliding window, which is approximated by a ring of buckets each covering a fraction of
+     * the window.
+     */
+    static class SlidingWindowCounter {
+
+        private static final int BUCKET_MILLIS = WINDOW_MILLIS / WINDOW_BUCKETS;
+
+        private final int[] buckets = new int[WINDOW_BUCKETS];
+        private long currentBucket;
+
+        int increment(long nowMillis) {
+            advance(nowMillis);
+            buckets[(int) (currentBucket % WINDOW_BUCKETS)]++;
+            return sum();
+        }
+
+        int count(long nowMillis) {
+            advance(nowMillis);
+            return sum();
+        }
+
+        private void advance(long nowMillis) {
+            long bucket = nowMillis / BUCKET_MILLIS;
+            if (bucket > currentBucket) {
+                long elapsed = Long.min(bucket - currentBucket, WINDOW_BUCKETS);
+                for (long i = 1; i <= elapsed; i++) {
+                    buckets[(int) ((currentBucket + i) % WINDOW_BUCKETS)] = 0;
+                }
+                currentBucket = bucket;
+            }
+        }
+
+        private int sum() {
+            int sum = 0;
+            for (int count: buckets) {
+                sum += count;
+            }
+            return sum;
+        }
+    }
+}
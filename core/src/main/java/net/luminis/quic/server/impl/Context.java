@@ -18,12 +18,35 @@
  */
 package net.luminis.quic.server.impl;
 
+import java.time.Instant;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
 public interface Context {
 
-    ExecutorService getSharedServerExecutor();
+    /**
+     * Returns the executor for processing the packets of a connection candidate (i.e. parsing and decrypting the
+     * client Initial and creating the connection). For a given original destination connection id, this method always
+     * returns the same single threaded executor, so all tasks for one candidate execute in order, while different
+     * candidates can be processed in parallel.
+     * @param originalDcid  the original destination connection id of the connection candidate
+     * @return
+     */
+    ExecutorService getHandshakeExecutor(byte[] originalDcid);
 
     ScheduledExecutorService getSharedScheduledExecutor();
+
+    /**
+     * Determines whether an Initial packet for a connection candidate has been waiting too long for processing, in
+     * which case it should be discarded without doing any (expensive) cryptographic processing.
+     * @param timeReceived  the time the packet was received
+     * @return
+     */
+    boolean isQueuedTooLong(Instant timeReceived);
+
+    /**
+     * Notifies the server that a connection candidate has led to the creation of a new connection.
+     * @param connection  the new connection
+     */
+    void connectionCreated(ServerConnectionImpl connection);
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Admission control for new connections, to keep handshake latency bounded for admitted clients when the server is
+ * overloaded, instead of letting all handshakes slow down until clients time out.
+ * Two limits are applied:
+ * - the number of handshakes in progress: when it is reached, no new connections are admitted;
+ * - the time an Initial packet has been waiting for processing by a handshake worker: packets that waited too long
+ *   are discarded before doing any cryptographic work, as the client might have given up already, or, if not, will
+ *   retransmit the Initial anyway.
+ * Refusing a connection (with CONNECTION_REFUSED) costs the server a key derivation and packet encryption, so the
+ * number of refusals per second is limited; when the limit is reached, connection attempts are silently dropped.
+ */
+public class HandshakeAdmissionControl {
+
+    public static final HandshakeAdmissionControl UNLIMITED = new HandshakeAdmissionControl(Integer.MAX_VALUE, null, false);
+    public static final int DEFAULT_MAX_REFUSALS_PER_SECOND = 100;
+
+    private final int maxHandshakesInProgress;
+    private final Duration maxInitialQueueTime;
+    private final boolean refuseWhenOverBudget;
+    private final int maxRefusalsPerSecond;
+
+    /**
+     * Creates an admission control policy.
+     * @param maxHandshakesInProgress  the maximum number of handshakes that can be in progress concurrently
+     * @param maxInitialQueueTime  the maximum time an Initial packet can wait for processing, or null for no limit
+     * @param refuseWhenOverBudget  whether connection attempts that are not admitted are answered with a
+     *                              CONNECTION_CLOSE with error CONNECTION_REFUSED (or just dropped)
+     */
+    public HandshakeAdmissionControl(int maxHandshakesInProgress, Duration maxInitialQueueTime, boolean refuseWhenOverBudget) {
+        this(maxHandshakesInProgress, maxInitialQueueTime, refuseWhenOverBudget, DEFAULT_MAX_REFUSALS_PER_SECOND);
+    }
+
+    HandshakeAdmissionControl(int maxHandshakesInProgress, Duration maxInitialQueueTime, boolean refuseWhenOverBudget, int maxRefusalsPerSecond) {
+        if (maxHandshakesInProgress < 1) {
+            throw new IllegalArgumentException("maximum number of handshakes in progress must be at least 1");
+        }
+        if (maxInitialQueueTime != null && (maxInitialQueueTime.isNegative() || maxInitialQueueTime.isZero())) {
+            throw new IllegalArgumentException("maximum initial queue time must be positive");
+        }
+        this.maxHandshakesInProgress = maxHandshakesInProgress;
+        this.maxInitialQueueTime = maxInitialQueueTime;
+        this.refuseWhenOverBudget = refuseWhenOverBudget;
+        this.maxRefusalsPerSecond = maxRefusalsPerSecond;
+    }
+
+    /**
+     * Determines whether a new connection can be admitted.
+     * @param handshakesInProgress  the number of handshakes currently in progress
+     * @return
+     */
+    public boolean admit(int handshakesInProgress) {
+        return handshakesInProgress < maxHandshakesInProgress;
+    }
+
+    /**
+     * Determines whether an Initial packet has been waiting too long to be processed.
+     * @param timeReceived  the time the packet was received
+     * @param now  the current time
+     * @return
+     */
+    public boolean isQueuedTooLong(Instant timeReceived, Instant now) {
+        return maxInitialQueueTime != null && timeReceived != null
+                && Duration.between(timeReceived, now).compareTo(maxInitialQueueTime) > 0;
+    }
+
+    public boolean refuseWhenOverBudget() {
+        return refuseWhenOverBudget;
+    }
+
+    /**
+     * @return  the maximum number of connection attempts that are refused per second.
+     */
+    public int maxRefusalsPerSecond() {
+        return maxRefusalsPerSecond;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Creates and validates the address validation tokens that are sent to clients in NEW_TOKEN frames, so they can be
+ * used by the client to skip address validation on a future connection.
+ * https://www.rfc-editor.org/rfc/rfc9000.html#name-address-validation-for-futu
+ * "A server MAY provide clients with an address validation token during one connection that can be used on a
+ *  subsequent connection."
+ * Like Retry tokens, these tokens are self-contained and sealed with a server key; they contain the time they were
+ * issued and are bound to the client IP address. Contrary to Retry tokens, they are not bound to the port, as
+ * "clients are likely to use a different port for a subsequent connection", nor to a connection id.
+ * https://www.rfc-editor.org/rfc/rfc9000.html#name-address-validation-token-in
+ * "A token issued with NEW_TOKEN MUST NOT include information that would allow values to be linked by an observer
+ *  to the connection on which it was issued."
+ * As the content is encrypted and the nonce is random, tokens cannot be linked to each other or to the connection.
+ */
+public class NewTokenManager {
+
+    public static final Duration DEFAULT_TOKEN_LIFETIME = Duration.ofHours(24);
+
+    static final byte TOKEN_TYPE = 0x4e;
+
+    private final Clock clock;
+    private final Duration tokenLifetime;
+    private final TokenCipher tokenCipher;
+
+    public NewTokenManager() {
+        this(Clock.systemUTC(), DEFAULT_TOKEN_LIFETIME);
+    }
+
+    /**
+     * Creates a token manager that rotates its key each token lifetime.
+     * @param clock
+     * @param tokenLifetime  the maximum age of a token to be considered valid
+     */
+    public NewTokenManager(Clock clock, Duration tokenLifetime) {
+        this.clock = clock;
+        this.tokenLifetime = tokenLifetime;
+        tokenCipher = new TokenCipher(clock, tokenLifetime);
+    }
+
+    /**
+     * Creates a token for use with a future connection.
+     * @param clientAddress  the (validated) address of the client
+     * @return  the token
+     */
+    public byte[] createToken(InetAddress clientAddress) {
+        ByteBuffer content = ByteBuffer.allocate(Long.BYTES);
+        content.putLong(clock.millis());
+        return tokenCipher.seal(TOKEN_TYPE, content.array(), clientAddress.getAddress());
+    }
+
+    /**
+     * Validates a token that was received in a client Initial.
+     * @param token  the token from the client Initial
+     * @param clientAddress  the address the client Initial was received from
+     * @return  whether the token is valid
+     */
+    public boolean validateToken(byte[] token, InetAddress clientAddress) {
+        Instant now = clock.instant();
+        Optional<byte[]> content = tokenCipher.open(TOKEN_TYPE, token, clientAddress.getAddress());
+        if (content.isEmpty() || content.get().length != Long.BYTES) {
+            return false;
+        }
+        Instant issued = Instant.ofEpochMilli(ByteBuffer.wrap(content.get()).getLong());
+        return !issued.isAfter(now) && !issued.plus(tokenLifetime).isBefore(now);
+    }
+
+    /**
+     * Returns whether the given token is (claimed to be) a token issued in a NEW_TOKEN frame; whether it is valid is
+     * not checked.
+     */
+    public static boolean isNewToken(byte[] token) {
+        return token != null && token.length > 0 && token[0] == TOKEN_TYPE;
+    }
+}
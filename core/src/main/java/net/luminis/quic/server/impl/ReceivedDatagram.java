@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * A datagram received by the server connector, for passing on (as part of a batch) to a connection.
+ * The data of a datagram can be held by a pooled buffer; the connection that processes the datagram must release it
+ * (see {@link #release()}) when the datagram is processed or dropped.
+ */
+public class ReceivedDatagram {
+
+    private final int datagramNumber;
+    private final Instant timeReceived;
+    private final ByteBuffer data;
+    private final InetSocketAddress sourceAddress;
+    private Runnable releaseCallback;
+
+    public ReceivedDatagram(int datagramNumber, Instant timeReceived, ByteBuffer data, InetSocketAddress sourceAddress) {
+        this(datagramNumber, timeReceived, data, sourceAddress, null);
+    }
+
+    /**
+     * @param datagramNumber
+     * @param timeReceived
+     * @param data
+     * @param sourceAddress
+     * @param releaseCallback  callback for returning the buffer holding the data, or null when the data is not pooled
+     */
+    public ReceivedDatagram(int datagramNumber, Instant timeReceived, ByteBuffer data, InetSocketAddress sourceAddress, Runnable releaseCallback) {
+        this.datagramNumber = datagramNumber;
+        this.timeReceived = timeReceived;
+        this.data = data;
+        this.sourceAddress = sourceAddress;
+        this.releaseCallback = releaseCallback;
+    }
+
+    public int datagramNumber() {
+        return datagramNumber;
+    }
+
+    public Instant timeReceived() {
+        return timeReceived;
+    }
+
+    public ByteBuffer data() {
+        return data;
+    }
+
+    public InetSocketAddress sourceAddress() {
+        return sourceAddress;
+    }
+
+    /**
+     * Returns the data of this datagram in a buffer that can be retained after the datagram is released, i.e. a copy
+     * of the data when it is held by a pooled buffer.
+     * @return
+     */
+    public ByteBuffer retainableData() {
+        if (releaseCallback != null) {
+            ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+            copy.put(data.duplicate());
+            copy.flip();
+            return copy;
+        }
+        else {
+            return data;
+        }
+    }
+
+    /**
+     * Transfers the responsibility for releasing the buffer holding the data to the caller: after this call,
+     * {@link #release()} has no effect.
+     * @return  callback that releases the buffer, or null when the data is not pooled
+     */
+    public Runnable transferRelease() {
+        Runnable callback = releaseCallback;
+        releaseCallback = null;
+        return callback;
+    }
+
+    /**
+     * Releases the buffer holding the data of this datagram; after release, the data must not be accessed anymore.
+     * Calling release on a datagram that is not pooled (or that is already released) has no effect.
+     */
+    public void release() {
+        Runnable callback = transferRelease();
+        if (callback != null) {
+            callback.run();
+        }
+    }
+}
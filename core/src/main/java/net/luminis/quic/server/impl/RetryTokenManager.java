@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Creates and validates Retry tokens without keeping any state per client: all information the server needs when the
+ * client returns the token is contained in the token itself, sealed (encrypted and authenticated) with a server key.
+ * https://www.rfc-editor.org/rfc/rfc9000.html#name-address-validation-using-re
+ * "A token sent in a Retry packet (...) could include information about the claimed client address (including IP
+ *  address and port), a timestamp, and any information the server might need to validate the token in the future."
+ * The token contains the original destination connection id and the time it was issued; the client address and the
+ * connection id the client must use in its next Initial (the Retry's source connection id) are bound to the token as
+ * associated data. The server key is rotated periodically; tokens sealed with the current or the previous key are
+ * accepted, so the rotation interval must not be shorter than the token lifetime.
+ */
+public class RetryTokenManager {
+
+    public static final Duration DEFAULT_TOKEN_LIFETIME = Duration.ofSeconds(10);
+    public static final Duration DEFAULT_KEY_ROTATION_INTERVAL = Duration.ofMinutes(1);
+
+    static final byte TOKEN_TYPE = 0x52;
+
+    private final Clock clock;
+    private final Duration tokenLifetime;
+    private final TokenCipher tokenCipher;
+
+    public RetryTokenManager() {
+        this(Clock.systemUTC(), DEFAULT_TOKEN_LIFETIME, DEFAULT_KEY_ROTATION_INTERVAL);
+    }
+
+    public RetryTokenManager(Clock clock, Duration tokenLifetime, Duration keyRotationInterval) {
+        if (keyRotationInterval.compareTo(tokenLifetime) < 0) {
+            throw new IllegalArgumentException("key rotation interval must not be shorter than token lifetime");
+        }
+        this.clock = clock;
+        this.tokenLifetime = tokenLifetime;
+        tokenCipher = new TokenCipher(clock, keyRotationInterval);
+    }
+
+    /**
+     * Creates a Retry token.
+     * @param clientAddress  the address the client Initial was received from
+     * @param originalDcid  the destination connection id of the client Initial
+     * @param retrySourceCid  the source connection id of the Retry packet, i.e. the destination connection id the client
+     *                        will use in its next Initial
+     * @return  the token
+     */
+    public byte[] createToken(InetSocketAddress clientAddress, byte[] originalDcid, byte[] retrySourceCid) {
+        ByteBuffer content = ByteBuffer.allocate(Long.BYTES + originalDcid.length);
+        content.putLong(clock.millis());
+        content.put(originalDcid);
+        return tokenCipher.seal(TOKEN_TYPE, content.array(), associatedData(clientAddress, retrySourceCid));
+    }
+
+    /**
+     * Validates a Retry token.
+     * @param token  the token from the client Initial
+     * @param clientAddress  the address the client Initial was received from
+     * @param dcid  the destination connection id of the client Initial
+     * @return  the original destination connection id when the token is valid, empty otherwise
+     */
+    public Optional<byte[]> validateToken(byte[] token, InetSocketAddress clientAddress, byte[] dcid) {
+        if (token == null || token.length < TokenCipher.OVERHEAD + Long.BYTES) {
+            return Optional.empty();
+        }
+        Instant now = clock.instant();
+        return tokenCipher.open(TOKEN_TYPE, token, associatedData(clientAddress, dcid))
+                .filter(content -> {
+                    Instant issued = Instant.ofEpochMilli(ByteBuffer.wrap(content).getLong());
+                    return !issued.isAfter(now) && !issued.plus(tokenLifetime).isBefore(now);
+                })
+                .map(content -> Arrays.copyOfRange(content, Long.BYTES, content.length));
+    }
+
+    /**
+     * Returns whether the given token is (claimed to be) a Retry token; whether it is valid is not checked.
+     */
+    public static boolean isRetryToken(byte[] token) {
+        return token != null && token.length > 0 && token[0] == TOKEN_TYPE;
+    }
+
+    private static byte[] associatedData(InetSocketAddress clientAddress, byte[] connectionId) {
+        byte[] address = clientAddress.getAddress().getAddress();
+        ByteBuffer associatedData = ByteBuffer.allocate(address.length + 2 + connectionId.length);
+        associatedData.put(address);
+        associatedData.putShort((short) clientAddress.getPort());
+        associatedData.put(connectionId);
+        return associatedData.array();
+    }
+}
@@ -18,6 +18,7 @@
  */
 package net.luminis.quic.server.impl;
 
+import net.luminis.quic.common.EncryptionLevel;
 import net.luminis.quic.crypto.Aead;
 import net.luminis.quic.crypto.ConnectionSecrets;
 import net.luminis.quic.crypto.MissingKeysException;
@@ -54,6 +55,9 @@ public class ServerConnectionCandidate implements ServerConnectionProxy, Datagra
     private final Version quicVersion;
     private final InetSocketAddress clientAddress;
     private final byte[] dcid;
+    private final byte[] originalDcid;
+    private final byte[] retrySourceCid;
+    private final boolean addressValidated;
     private final ServerConnectionFactory serverConnectionFactory;
     private final ServerConnectionRegistry connectionRegistry;
     private final Logger log;
@@ -61,15 +65,61 @@ public class ServerConnectionCandidate implements ServerConnectionProxy, Datagra
     private volatile ServerConnectionProxy registeredConnection;
     private final ExecutorService executor;
     private final ScheduledExecutorService scheduledExecutor;
+    private final Context context;
+    // Concurrency: only accessed by the handshake executor thread for this candidate
+    private Aead initialPeerAead;
+    private boolean removalScheduled;
 
 
     public ServerConnectionCandidate(Context context, Version version, InetSocketAddress clientAddress, byte[] scid, byte[] dcid,
                                      ServerConnectionFactory serverConnectionFactory, ServerConnectionRegistry connectionRegistry, Logger log) {
-        this.executor = context.getSharedServerExecutor();
+        this(context, version, clientAddress, scid, dcid, null, serverConnectionFactory, connectionRegistry, log);
+    }
+
+    /**
+     * Creates a connection candidate for a client Initial that is sent in response to a Retry packet.
+     * @param context
+     * @param version
+     * @param clientAddress
+     * @param scid  the source connection id of the client Initial
+     * @param originalDcid  the destination connection id of the client Initial that caused the Retry to be sent
+     * @param retrySourceCid  the source connection id of the Retry, i.e. the destination connection id of the client
+     *                        Initial, or null if no Retry was sent
+     * @param serverConnectionFactory
+     * @param connectionRegistry
+     * @param log
+     */
+    public ServerConnectionCandidate(Context context, Version version, InetSocketAddress clientAddress, byte[] scid, byte[] originalDcid, byte[] retrySourceCid,
+                                     ServerConnectionFactory serverConnectionFactory, ServerConnectionRegistry connectionRegistry, Logger log) {
+        this(context, version, clientAddress, scid, originalDcid, retrySourceCid, false, serverConnectionFactory, connectionRegistry, log);
+    }
+
+    /**
+     * Creates a connection candidate for a client Initial.
+     * @param context
+     * @param version
+     * @param clientAddress
+     * @param scid  the source connection id of the client Initial
+     * @param originalDcid  the destination connection id of the client Initial that caused the Retry to be sent
+     * @param retrySourceCid  the source connection id of the Retry, i.e. the destination connection id of the client
+     *                        Initial, or null if no Retry was sent
+     * @param addressValidated  whether the client address is already validated by a token the client received in a
+     *                          NEW_TOKEN frame on a previous connection
+     * @param serverConnectionFactory
+     * @param connectionRegistry
+     * @param log
+     */
+    public ServerConnectionCandidate(Context context, Version version, InetSocketAddress clientAddress, byte[] scid, byte[] originalDcid, byte[] retrySourceCid,
+                                     boolean addressValidated, ServerConnectionFactory serverConnectionFactory, ServerConnectionRegistry connectionRegistry, Logger log) {
+        this.context = context;
+        this.executor = context.getHandshakeExecutor(originalDcid);
         this.scheduledExecutor = context.getSharedScheduledExecutor();
         this.quicVersion = version;
         this.clientAddress = clientAddress;
-        this.dcid = dcid;
+        this.dcid = retrySourceCid != null? retrySourceCid: originalDcid;
+        this.originalDcid = originalDcid;
+        this.retrySourceCid = retrySourceCid;
+        this.addressValidated = addressValidated;
         this.serverConnectionFactory = serverConnectionFactory;
         this.connectionRegistry = connectionRegistry;
         this.log = log;
@@ -79,7 +129,7 @@ public class ServerConnectionCandidate implements ServerConnectionProxy, Datagra
 
     @Override
     public byte[] getOriginalDestinationConnectionId() {
-        return dcid;
+        return originalDcid;
     }
 
     @Override
@@ -94,6 +144,12 @@ public class ServerConnectionCandidate implements ServerConnectionProxy, Datagra
                     registeredConnection.parsePackets(datagramNumber, timeReceived, data, sourceAddress);
                     return;
                 }
+                if (context.isQueuedTooLong(timeReceived)) {
+                    // Server is overloaded; the client might have given up already, or else will retransmit.
+                    log.debug("Dropped initial packet that waited too long for processing (no connection created)");
+                    scheduleRemovalIfNoConnectionCreated();
+                    return;
+                }
 
                 PacketMetaData metaData = new PacketMetaData(timeReceived, sourceAddress, datagramNumber);
                 filterChain.processDatagram(data, metaData);
@@ -125,22 +181,33 @@ public class ServerConnectionCandidate implements ServerConnectionProxy, Datagra
             // delayed until connection setup is over.
             // The delay should be longer then the maximum connection timeout clients (are likely to) use.
             // It can be fairly large because the removal is only needed to avoid unused connection candidates pile up.
-            scheduledExecutor.schedule(() -> {
-                        // But only if no connection is created in the meantime (which will do the cleanup)
-                        if (registeredConnection == null) {
-                            connectionRegistry.deregisterConnection(this, dcid);
-                        }
-                    },
-                    30, TimeUnit.SECONDS);
+            scheduleRemovalIfNoConnectionCreated();
         } catch (Exception error) {
             log.error("error while parsing or processing initial packet", error);
         }
     }
 
+    private void scheduleRemovalIfNoConnectionCreated() {
+        if (removalScheduled) {
+            return;
+        }
+        removalScheduled = true;
+        scheduledExecutor.schedule(() -> {
+                    // But only if no connection is created in the meantime (which will do the cleanup)
+                    if (registeredConnection == null) {
+                        connectionRegistry.deregisterConnection(this, dcid);
+                    }
+                },
+                30, TimeUnit.SECONDS);
+    }
+
     private void createAndRegisterServerConnection(InitialPacket initialPacket, PacketMetaData metaData, ByteBuffer datagramData) {
         Version quicVersion = initialPacket.getVersion();
-        byte[] originalDcid = initialPacket.getDestinationConnectionId();
-        ServerConnectionImpl connection = serverConnectionFactory.createNewConnection(quicVersion, clientAddress, initialPacket.getSourceConnectionId(), originalDcid);
+        ServerConnectionImpl connection = serverConnectionFactory.createNewConnection(quicVersion, clientAddress, initialPacket.getSourceConnectionId(), originalDcid, retrySourceCid);
+        if (addressValidated) {
+            connection.setAddressValidated();
+        }
+        context.connectionCreated(connection);
 
         // Pass the initial packet for processing, so it is processed on the server thread (enabling thread confinement concurrency strategy)
         ServerConnectionProxy connectionProxy = serverConnectionFactory.createServerConnectionProxy(connection, initialPacket, datagramData, metaData);
@@ -155,10 +222,8 @@ public class ServerConnectionCandidate implements ServerConnectionProxy, Datagra
     }
 
     private ServerConnectionProxy wrapWithFilters(ServerConnectionProxy connection, Consumer<Integer> receivedPayloadBytesCounterFunction, Runnable postProcessingFunction) {
-        DatagramFilter adapter = (data, metaData) -> connection.parsePackets(metaData.datagramNumber(), metaData.timeReceived(), data, metaData.sourceAddress());
-
         // The wrapper takes care of propagating other (non-filter) methods to the connection proxy.
-        return new ServerConnectionWrapper(connection, log,
+        return new ServerConnectionWrapper(connection, log, adapter ->
                         // The anti amplification tracking filter is added first, because it must count any packet that makes it to the connection.
                         new AntiAmplificationTrackingFilter(receivedPayloadBytesCounterFunction,
                                 new ClientAddressFilter(clientAddress, log,
@@ -194,19 +259,27 @@ public class ServerConnectionCandidate implements ServerConnectionProxy, Datagra
         // "An Initial packet uses long headers with a type value of 0x0."
         if (InitialPacket.isInitial((flags & 0x30) >> 4, quicVersion)) {
             InitialPacket packet = new InitialPacket(quicVersion);
+            packet.parse(data, getInitialPeerAead(), 0, new NullLogger(), 0);
+            return packet;
+        }
+        throw new InvalidPacketException();
+    }
+
+    private Aead getInitialPeerAead() {
+        // The initial keys only depend on the destination connection id, so they are derived (which involves several
+        // HKDF operations) only once per candidate, instead of for each (retransmitted or duplicated) Initial packet.
+        if (initialPeerAead == null) {
             ConnectionSecrets connectionSecrets = new ConnectionSecrets(new VersionHolder(quicVersion), Role.Server, null, new NullLogger());
-            byte[] originalDcid = dcid;
-            connectionSecrets.computeInitialKeys(originalDcid);
+            connectionSecrets.computeInitialKeys(dcid);
             try {
-                Aead aead = connectionSecrets.getPeerAead(packet.getEncryptionLevel());
-                packet.parse(data, aead, 0, new NullLogger(), 0);
-                return packet;
-            } catch (MissingKeysException e) {
+                initialPeerAead = connectionSecrets.getPeerAead(EncryptionLevel.Initial);
+            }
+            catch (MissingKeysException e) {
                 // Impossible, as initial keys have just been computed.
                 throw new RuntimeException(e);
             }
         }
-        throw new InvalidPacketException();
+        return initialPeerAead;
     }
 
     @Override
@@ -18,9 +18,12 @@
  */
 package net.luminis.quic.server.impl;
 
+import net.luminis.quic.send.Pacer;
 import net.luminis.quic.server.ApplicationProtocolSettings;
 import net.luminis.quic.server.ServerConnectionConfig;
 
+import java.util.Objects;
+
 import static java.lang.Long.max;
 import static java.lang.Long.min;
 import static net.luminis.quic.server.ApplicationProtocolSettings.NOT_SPECIFIED;
@@ -32,6 +35,10 @@ public class ServerConnectionConfigImpl implements ServerConnectionConfig {
 
     private static final int DEFAULT_MAX_IDLE_TIMEOUT = 30_000;
     private static final int DEFAULT_CONNECTION_ID_LENGTH = 8;
+    public static final int DEFAULT_ADAPTIVE_RETRY_MAX_PENDING_HANDSHAKES = 100;
+    public static final int DEFAULT_ADAPTIVE_RETRY_MAX_INITIAL_RATE = 1000;
+    public static final int DEFAULT_ADAPTIVE_RETRY_MAX_INITIAL_RATE_PER_SOURCE_PREFIX = 50;
+    public static final int DEFAULT_ADAPTIVE_RETRY_MAX_REGISTERED_CONNECTION_IDS = 50_000;
 
     private int maxIdleTimeout = DEFAULT_MAX_IDLE_TIMEOUT;
     private int maxOpenUnidirectionalStreams;
@@ -42,7 +49,17 @@ public class ServerConnectionConfigImpl implements ServerConnectionConfig {
     private long maxUnidirectionalStreamBufferSize;
     private long maxBidirectionalStreamBufferSize;
     private ServerConnectionConfig.RetryRequired retryRequired;
+    private int adaptiveRetryMaxPendingHandshakes = DEFAULT_ADAPTIVE_RETRY_MAX_PENDING_HANDSHAKES;
+    private int adaptiveRetryMaxInitialRate = DEFAULT_ADAPTIVE_RETRY_MAX_INITIAL_RATE;
+    private int adaptiveRetryMaxInitialRatePerSourcePrefix = DEFAULT_ADAPTIVE_RETRY_MAX_INITIAL_RATE_PER_SOURCE_PREFIX;
+    private int adaptiveRetryMaxRegisteredConnectionIds = DEFAULT_ADAPTIVE_RETRY_MAX_REGISTERED_CONNECTION_IDS;
     private int connectionIdLength = DEFAULT_CONNECTION_ID_LENGTH;
+    private CongestionControlAlgorithm congestionControlAlgorithm = CongestionControlAlgorithm.NewReno;
+    private int pacingBurstAllowance = Pacer.DEFAULT_BURST_ALLOWANCE;
+    private boolean receiveWindowAutoTuning;
+    private long maxStreamReceiveWindow;
+    private long maxConnectionReceiveWindow;
+    private int maxDatagramFrameSize;
 
     private ServerConnectionConfigImpl() {
     }
@@ -87,6 +104,21 @@ public class ServerConnectionConfigImpl implements ServerConnectionConfig {
         return maxBidirectionalStreamBufferSize;
     }
 
+    @Override
+    public boolean receiveWindowAutoTuning() {
+        return receiveWindowAutoTuning;
+    }
+
+    @Override
+    public long maxStreamReceiveWindow() {
+        return maxStreamReceiveWindow;
+    }
+
+    @Override
+    public long maxConnectionReceiveWindow() {
+        return maxConnectionReceiveWindow;
+    }
+
     public int connectionIdLength() {
         return connectionIdLength;
     }
@@ -95,10 +127,45 @@ public class ServerConnectionConfigImpl implements ServerConnectionConfig {
         return retryRequired;
     }
 
+    @Override
+    public int adaptiveRetryMaxPendingHandshakes() {
+        return adaptiveRetryMaxPendingHandshakes;
+    }
+
+    @Override
+    public int adaptiveRetryMaxInitialRate() {
+        return adaptiveRetryMaxInitialRate;
+    }
+
+    @Override
+    public int adaptiveRetryMaxInitialRatePerSourcePrefix() {
+        return adaptiveRetryMaxInitialRatePerSourcePrefix;
+    }
+
+    @Override
+    public int adaptiveRetryMaxRegisteredConnectionIds() {
+        return adaptiveRetryMaxRegisteredConnectionIds;
+    }
+
     public int initialRtt() {
         return 100;
     }
 
+    @Override
+    public CongestionControlAlgorithm congestionControlAlgorithm() {
+        return congestionControlAlgorithm;
+    }
+
+    @Override
+    public int pacingBurstAllowance() {
+        return pacingBurstAllowance;
+    }
+
+    @Override
+    public int maxDatagramFrameSize() {
+        return maxDatagramFrameSize;
+    }
+
     @Override
     public ServerConnectionConfig merge(ApplicationProtocolSettings protocol) {
         ServerConnectionConfig.Builder configBuilder = ServerConnectionConfig.builder();
@@ -126,7 +193,17 @@ public class ServerConnectionConfigImpl implements ServerConnectionConfig {
         configBuilder.maxTotalPeerInitiatedUnidirectionalStreams(protocol.maxTotalPeerInitiatedUnidirectionalStreams());
         configBuilder.maxTotalPeerInitiatedBidirectionalStreams(protocol.maxTotalPeerInitiatedBidirectionalStreams());
         configBuilder.retryRequired(this.retryRequired());
+        if (this.retryRequired() == RetryRequired.Adaptive) {
+            configBuilder.adaptiveRetry(this.adaptiveRetryMaxPendingHandshakes(), this.adaptiveRetryMaxInitialRate(),
+                    this.adaptiveRetryMaxInitialRatePerSourcePrefix(), this.adaptiveRetryMaxRegisteredConnectionIds());
+        }
         configBuilder.connectionIdLength(this.connectionIdLength());
+        configBuilder.congestionControlAlgorithm(this.congestionControlAlgorithm());
+        configBuilder.pacingBurstAllowance(this.pacingBurstAllowance());
+        if (this.receiveWindowAutoTuning()) {
+            configBuilder.receiveWindowAutoTuning(this.maxStreamReceiveWindow(), this.maxConnectionReceiveWindow());
+        }
+        configBuilder.maxDatagramFrameSize(this.maxDatagramFrameSize());
 
         return configBuilder.build();
     }
@@ -277,6 +354,19 @@ public class ServerConnectionConfigImpl implements ServerConnectionConfig {
             return this;
         }
 
+        @Override
+        public Builder adaptiveRetry(int maxPendingHandshakes, int maxInitialRate, int maxInitialRatePerSourcePrefix, int maxRegisteredConnectionIds) {
+            if (maxPendingHandshakes <= 0 || maxInitialRate <= 0 || maxInitialRatePerSourcePrefix <= 0 || maxRegisteredConnectionIds <= 0) {
+                throw new IllegalArgumentException("Adaptive retry thresholds must be positive");
+            }
+            config.retryRequired = RetryRequired.Adaptive;
+            config.adaptiveRetryMaxPendingHandshakes = maxPendingHandshakes;
+            config.adaptiveRetryMaxInitialRate = maxInitialRate;
+            config.adaptiveRetryMaxInitialRatePerSourcePrefix = maxInitialRatePerSourcePrefix;
+            config.adaptiveRetryMaxRegisteredConnectionIds = maxRegisteredConnectionIds;
+            return this;
+        }
+
         @Override
         public Builder connectionIdLength(int connectionIdLength) {
             if (connectionIdLength < MINIMUM_CONNECTION_ID_LENGTH || connectionIdLength > MAXIMUM_CONNECTION_ID_LENGTH) {
@@ -297,5 +387,43 @@ public class ServerConnectionConfigImpl implements ServerConnectionConfig {
             config.maxTotalBidirectionalStreams = max;
             return this;
         }
+
+        @Override
+        public Builder congestionControlAlgorithm(CongestionControlAlgorithm algorithm) {
+            config.congestionControlAlgorithm = Objects.requireNonNull(algorithm);
+            return this;
+        }
+
+        @Override
+        public Builder pacingBurstAllowance(int datagrams) {
+            if (datagrams < 0) {
+                throw new IllegalArgumentException("Pacing burst allowance cannot be negative");
+            }
+            config.pacingBurstAllowance = datagrams;
+            return this;
+        }
+
+        @Override
+        public Builder receiveWindowAutoTuning(long maxStreamReceiveWindow, long maxConnectionReceiveWindow) {
+            if (maxStreamReceiveWindow < 0 || maxConnectionReceiveWindow < 0) {
+                throw new IllegalArgumentException();
+            }
+            if (maxConnectionReceiveWindow < maxStreamReceiveWindow) {
+                throw new IllegalArgumentException("Maximum connection receive window can't be less than maximum stream receive window");
+            }
+            config.receiveWindowAutoTuning = true;
+            config.maxStreamReceiveWindow = maxStreamReceiveWindow;
+            config.maxConnectionReceiveWindow = maxConnectionReceiveWindow;
+            return this;
+        }
+
+        @Override
+        public Builder maxDatagramFrameSize(int maxDatagramFrameSize) {
+            if (maxDatagramFrameSize < 0) {
+                throw new IllegalArgumentException("Maximum datagram frame size cannot be negative");
+            }
+            config.maxDatagramFrameSize = maxDatagramFrameSize;
+            return this;
+        }
     }
 }
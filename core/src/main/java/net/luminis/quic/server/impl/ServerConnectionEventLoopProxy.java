@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import net.luminis.quic.packet.DatagramParserFilter;
+import net.luminis.quic.packet.InitialPacket;
+import net.luminis.quic.packet.PacketMetaData;
+import net.luminis.quic.util.Bytes;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Proxy for server connection that ensures that all processing of received datagrams is executed on the (single
+ * threaded) event loop the connection is pinned to. As the connection's sender and timers execute on the same event
+ * loop, the methods that execute as part of processing received datagrams can use thread-confinement strategy for
+ * concurrency control, just like with {@link ServerConnectionThread}, but without creating a thread per connection.
+ */
+public class ServerConnectionEventLoopProxy implements ServerConnectionProxy {
+
+    private final ServerConnectionImpl serverConnection;
+    private final Executor eventLoop;
+    private final DatagramParserFilter datagramProcessingChain;
+    private volatile boolean disposed;
+
+    public ServerConnectionEventLoopProxy(ServerConnectionImpl serverConnection, Executor eventLoop, InitialPacket firstInitialPacket,
+                                          ByteBuffer remainingDatagramData, PacketMetaData initialPacketMetaData) {
+        this.serverConnection = serverConnection;
+        this.eventLoop = eventLoop;
+        datagramProcessingChain = new DatagramParserFilter(serverConnection.createParser());
+
+        execute(() -> {
+            if (firstInitialPacket != null) {
+                serverConnection.getPacketProcessorChain().processPacket(firstInitialPacket, initialPacketMetaData);
+            }
+            if (remainingDatagramData.hasRemaining()) {
+                datagramProcessingChain.processDatagram(remainingDatagramData.slice(), initialPacketMetaData);
+            }
+        });
+    }
+
+    @Override
+    public byte[] getOriginalDestinationConnectionId() {
+        return serverConnection.getOriginalDestinationConnectionId();
+    }
+
+    @Override
+    public void parsePackets(int datagramNumber, Instant timeReceived, ByteBuffer data, InetSocketAddress sourceAddress) {
+        execute(() -> {
+            PacketMetaData metaData = new PacketMetaData(timeReceived, sourceAddress, datagramNumber);
+            datagramProcessingChain.processDatagram(data, metaData);
+            serverConnection.datagramProcessed(false);
+        });
+    }
+
+    @Override
+    public void parsePackets(List<ReceivedDatagram> datagrams) {
+        execute(() -> {
+            for (int i = 0; i < datagrams.size(); i++) {
+                ReceivedDatagram datagram = datagrams.get(i);
+                PacketMetaData metaData = new PacketMetaData(datagram.timeReceived(), datagram.sourceAddress(), datagram.datagramNumber());
+                try {
+                    datagramProcessingChain.processDatagram(datagram.data(), metaData);
+                }
+                finally {
+                    datagram.release();
+                }
+                serverConnection.datagramProcessed(i < datagrams.size() - 1);
+            }
+        }, () -> datagrams.forEach(ReceivedDatagram::release));
+    }
+
+    @Override
+    public boolean isClosed() {
+        return serverConnection.isClosed();
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+    }
+
+    private void execute(Runnable task) {
+        execute(task, () -> {});
+    }
+
+    /**
+     * @param task
+     * @param discardAction  action to execute when the task is not run, because the connection is disposed
+     */
+    private void execute(Runnable task, Runnable discardAction) {
+        try {
+            eventLoop.execute(() -> {
+                if (disposed) {
+                    discardAction.run();
+                    return;
+                }
+                try {
+                    task.run();
+                }
+                catch (Throwable error) {
+                    // Of course, this should never happen. But if it does, there is no point in going on with this connection.
+                    disposed = true;
+                    serverConnection.abortConnection(error);
+                }
+            });
+        }
+        catch (RejectedExecutionException rejected) {
+            // Event loop is shut down, so the server is shutting down; nothing to process anymore.
+            discardAction.run();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ServerConnectionEventLoopProxy[" + Bytes.bytesToHex(getOriginalDestinationConnectionId()) + "]";
+    }
+}
@@ -62,16 +62,16 @@ import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
-import java.security.SecureRandom;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
-import static net.luminis.quic.QuicConstants.TransportErrorCode.INVALID_TOKEN;
+import static net.luminis.quic.QuicConstants.TransportErrorCode.PROTOCOL_VIOLATION;
 import static net.luminis.quic.QuicConstants.TransportErrorCode.TRANSPORT_PARAMETER_ERROR;
 import static net.luminis.quic.impl.QuicConnectionImpl.Status.Connected;
 import static net.luminis.quic.impl.QuicConnectionImpl.VersionNegotiationStatus.VersionChangeUnconfirmed;
@@ -79,23 +79,21 @@ import static net.luminis.quic.impl.QuicConnectionImpl.VersionNegotiationStatus.
 
 public class ServerConnectionImpl extends QuicConnectionImpl implements ServerConnection, TlsStatusEventHandler {
 
-    private static final int TOKEN_SIZE = 37;
-    private final Random random;
     private final SenderImpl sender;
     private final Version originalVersion;
     private final InetSocketAddress initialClientAddress;
-    private final boolean retryRequired;
+    private final byte[] retrySourceConnectionId;
     private final GlobalAckGenerator ackGenerator;
     private final TlsServerEngine tlsEngine;
     private volatile ServerConnectionConfig configuration;
     private final ApplicationProtocolRegistry applicationProtocolRegistry;
     private final Consumer<ServerConnectionImpl> closeCallback;
     private final StreamManager streamManager;
-    private final byte[] token;
     private final ConnectionIdManager connectionIdManager;
     private volatile String negotiatedApplicationProtocol;
     private volatile long bytesReceived;
     private volatile boolean addressValidated;
+    private volatile Function<InetAddress, byte[]> newTokenIssuer;
     private boolean acceptEarlyData = true;
     private boolean acceptedEarlyData = false;
     private int allowedClientConnectionIds = 3;
@@ -120,10 +118,66 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
                                 byte[] peerCid, byte[] originalDcid, TlsServerEngineFactory tlsServerEngineFactory,
                                 ServerConnectionConfig configuration, ApplicationProtocolRegistry applicationProtocolRegistry,
                                 ServerConnectionRegistry connectionRegistry, Consumer<ServerConnectionImpl> closeCallback, Logger log) {
-        super(originalVersion, Role.Server, null, new LogProxy(log, originalDcid));
+        this(originalVersion, serverSocket, initialClientAddress, peerCid, originalDcid, tlsServerEngineFactory, configuration,
+                applicationProtocolRegistry, connectionRegistry, closeCallback, null, log);
+    }
+
+    /**
+     * Creates a server connection implementation that executes all its tasks (sending, timers) on the given event loop.
+     *
+     * @param originalVersion             quic version used for this connection
+     * @param serverSocket                the socket that is used for sending packets
+     * @param initialClientAddress        the initial client address (after handshake, clients can move to different address)
+     * @param peerCid                     the connection id of the client
+     * @param originalDcid                the original destination connection id used by the client
+     * @param tlsServerEngineFactory      factory for creating tls engine
+     * @param configuration               connection configuration settings
+     * @param applicationProtocolRegistry the registry for application protocols this server supports
+     * @param connectionRegistry          the registry for server connections
+     * @param closeCallback               callback for notifying interested parties this connection is closed
+     * @param eventLoop                   the event loop this connection is pinned to, or null when the connection
+     *                                    should create its own threads
+     * @param log                         logger
+     */
+    public ServerConnectionImpl(Version originalVersion, DatagramSocket serverSocket, InetSocketAddress initialClientAddress,
+                                byte[] peerCid, byte[] originalDcid, TlsServerEngineFactory tlsServerEngineFactory,
+                                ServerConnectionConfig configuration, ApplicationProtocolRegistry applicationProtocolRegistry,
+                                ServerConnectionRegistry connectionRegistry, Consumer<ServerConnectionImpl> closeCallback,
+                                ScheduledExecutorService eventLoop, Logger log) {
+        this(originalVersion, serverSocket, initialClientAddress, peerCid, originalDcid, null, tlsServerEngineFactory,
+                configuration, applicationProtocolRegistry, connectionRegistry, closeCallback, eventLoop, log);
+    }
+
+    /**
+     * Creates a server connection implementation for a client that has already been sent a Retry packet and that
+     * returned a valid Retry token.
+     *
+     * @param originalVersion             quic version used for this connection
+     * @param serverSocket                the socket that is used for sending packets
+     * @param initialClientAddress        the initial client address (after handshake, clients can move to different address)
+     * @param peerCid                     the connection id of the client
+     * @param originalDcid                the original destination connection id used by the client
+     * @param retrySourceCid              the source connection id of the Retry packet sent to the client (which
+     *                                    becomes the initial connection id of this connection), or null when no Retry
+     *                                    was sent
+     * @param tlsServerEngineFactory      factory for creating tls engine
+     * @param configuration               connection configuration settings
+     * @param applicationProtocolRegistry the registry for application protocols this server supports
+     * @param connectionRegistry          the registry for server connections
+     * @param closeCallback               callback for notifying interested parties this connection is closed
+     * @param eventLoop                   the event loop this connection is pinned to, or null when the connection
+     *                                    should create its own threads
+     * @param log                         logger
+     */
+    public ServerConnectionImpl(Version originalVersion, DatagramSocket serverSocket, InetSocketAddress initialClientAddress,
+                                byte[] peerCid, byte[] originalDcid, byte[] retrySourceCid, TlsServerEngineFactory tlsServerEngineFactory,
+                                ServerConnectionConfig configuration, ApplicationProtocolRegistry applicationProtocolRegistry,
+                                ServerConnectionRegistry connectionRegistry, Consumer<ServerConnectionImpl> closeCallback,
+                                ScheduledExecutorService eventLoop, Logger log) {
+        super(originalVersion, Role.Server, null, eventLoop, new LogProxy(log, originalDcid));
         this.originalVersion = originalVersion;
         this.initialClientAddress = initialClientAddress;
-        this.retryRequired = configuration.retryRequired() == ServerConnectionConfig.RetryRequired.Always;
+        this.retrySourceConnectionId = retrySourceCid;
         this.configuration = configuration;
         this.applicationProtocolRegistry = applicationProtocolRegistry;
         this.closeCallback = closeCallback;
@@ -137,31 +191,38 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
                 // TlsConstants.CipherSuite.TLS_AES_128_CCM_8_SHA256 not used in QUIC!
         ));
 
-        idleTimer = new IdleTimer(this, log);
-        sender = new SenderImpl(quicVersion, getMaxPacketSize(), serverSocket, initialClientAddress,this, Bytes.bytesToHex(originalDcid), configuration.initialRtt(), this.log);
-        if (! retryRequired) {
+        if (eventLoop != null) {
+            idleTimer = new IdleTimer(this, log, eventLoop);
+            sender = new SenderImpl(quicVersion, getMaxPacketSize(), serverSocket, initialClientAddress, this, Bytes.bytesToHex(originalDcid), configuration.initialRtt(), configuration.congestionControlAlgorithm(), eventLoop, this.log);
+        }
+        else {
+            idleTimer = new IdleTimer(this, log, getTimerExecutor());
+            sender = new SenderImpl(quicVersion, getMaxPacketSize(), serverSocket, initialClientAddress, this, Bytes.bytesToHex(originalDcid), configuration.initialRtt(), configuration.congestionControlAlgorithm(), this.log);
+        }
+        sender.setPacingBurstAllowance(configuration.pacingBurstAllowance());
+        if (retrySourceCid == null) {
             sender.setAntiAmplificationLimit(0);
         }
+        else {
+            // https://www.rfc-editor.org/rfc/rfc9000.html#name-address-validation-using-re
+            // "A server MAY use Retry packets to validate the client's address"; the connection is only created after
+            // the client has returned a valid Retry token, so its address is validated.
+            addressValidated = true;
+        }
         idleTimer.setPtoSupplier(sender::getPto);
 
         BiConsumer<Integer, String> closeWithErrorFunction = (error, reason) -> {
             immediateCloseWithError(EncryptionLevel.App, error, reason);
         };
-        connectionIdManager = new ConnectionIdManager(peerCid, originalDcid, configuration.connectionIdLength(), allowedClientConnectionIds, connectionRegistry, sender, closeWithErrorFunction, log);
+        connectionIdManager = new ConnectionIdManager(peerCid, originalDcid, retrySourceCid, configuration.connectionIdLength(), allowedClientConnectionIds, connectionRegistry, sender, closeWithErrorFunction, log);
 
 
         ackGenerator = sender.getGlobalAckGenerator();
 
-        if (retryRequired) {
-            random = new SecureRandom();
-            token = new byte[TOKEN_SIZE];
-            random.nextBytes(token);
-        }
-        else {
-            random = null;
-            token = null;
-        }
-        connectionSecrets.computeInitialKeys(originalDcid);
+        // https://www.rfc-editor.org/rfc/rfc9001.html#name-initial-secrets
+        // "This secret is determined by using HKDF-Extract (...) with a salt of 0x38762cf7f55934b34d179ae6a4c80cadccbb7f0a
+        //  and the input keying material (IKM) of the Destination Connection ID field."
+        connectionSecrets.computeInitialKeys(retrySourceCid != null? retrySourceCid: originalDcid);
         sender.start(connectionSecrets);
 
         streamManager = new StreamManager(this, Role.Server, log, configuration);
@@ -180,7 +241,7 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
     }
 
     PacketParser createParser() {
-        return new ServerRolePacketParser(connectionSecrets, quicVersion, getSourceConnectionIdLength(), retryRequired,
+        return new ServerRolePacketParser(connectionSecrets, quicVersion, getSourceConnectionIdLength(),
                 processorChain, () -> versionNegotiationStatus, log);
     }
 
@@ -280,6 +341,12 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
         // https://tools.ietf.org/html/draft-ietf-quic-tls-32#section-4.9.2
         // "The server MUST send a HANDSHAKE_DONE frame as soon as it completes the handshake."
         sendHandshakeDone(new HandshakeDoneFrame(quicVersion.getVersion()));
+        if (newTokenIssuer != null) {
+            // https://www.rfc-editor.org/rfc/rfc9000.html#name-address-validation-for-futu
+            // "A server MAY provide clients with an address validation token during one connection that can be used on
+            //  a subsequent connection."
+            sendNewToken(new NewTokenFrame(newTokenIssuer.apply(initialClientAddress.getAddress())));
+        }
         connectionState = Connected;
 
         synchronized (handshakeStateLock) {
@@ -303,6 +370,12 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
         send(frame, this::sendHandshakeDone);
     }
 
+    private void sendNewToken(QuicFrame frame) {
+        // https://www.rfc-editor.org/rfc/rfc9000.html#name-retransmission-of-informati
+        // "A new token is sent in a NEW_TOKEN frame and is retransmitted if the packet containing it is lost."
+        send(frame, this::sendNewToken);
+    }
+
     @Override
     public void newSessionTicketReceived(NewSessionTicket ticket) {
     }
@@ -361,8 +434,8 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
         serverTransportParams.setDisableMigration(true);
         serverTransportParams.setInitialSourceConnectionId(connectionIdManager.getInitialConnectionId());
         serverTransportParams.setOriginalDestinationConnectionId(connectionIdManager.getOriginalDestinationConnectionId());
-        if (retryRequired) {
-            serverTransportParams.setRetrySourceConnectionId(connectionIdManager.getInitialConnectionId());
+        if (retrySourceConnectionId != null) {
+            serverTransportParams.setRetrySourceConnectionId(retrySourceConnectionId);
         }
         tlsEngine.setSelectedApplicationLayerProtocol(negotiatedApplicationProtocol);
         tlsEngine.addServerExtensions(new QuicTransportParametersExtension(quicVersion.getVersion(), serverTransportParams, Role.Server));
@@ -392,6 +465,8 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
         parameters.setInitialMaxData(configuration.maxConnectionBufferSize());
         parameters.setInitialMaxStreamsBidi(configuration.maxOpenPeerInitiatedBidirectionalStreams());
         parameters.setInitialMaxStreamsUni(configuration.maxOpenPeerInitiatedUnidirectionalStreams());
+        parameters.setMaxDatagramFrameSize(configuration.maxDatagramFrameSize());
+        maxDatagramFrameSize = configuration.maxDatagramFrameSize();
         return parameters;
     }
 
@@ -421,6 +496,24 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
     }
 
 
+    /**
+     * Marks the client address as validated, for example because the client presented a valid token it received on a
+     * previous connection; from then on, the amount of data sent is not limited by the anti-amplification limit.
+     */
+    void setAddressValidated() {
+        addressValidated = true;
+        sender.unsetAntiAmplificationLimit();
+    }
+
+    /**
+     * Sets the function that creates the address validation tokens this connection sends to the client when the
+     * handshake is completed; when not set, no token is sent.
+     * @param newTokenIssuer  function that creates a token for the given client address
+     */
+    void setNewTokenIssuer(Function<InetAddress, byte[]> newTokenIssuer) {
+        this.newTokenIssuer = newTokenIssuer;
+    }
+
     void increaseAntiAmplificationLimit(int increment) {
         bytesReceived += increment;
         if (! addressValidated) {
@@ -443,37 +536,8 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
     public ProcessResult process(InitialPacket packet, Instant time) {
         assert(Arrays.equals(packet.getDestinationConnectionId(), connectionIdManager.getInitialConnectionId()) || Arrays.equals(packet.getDestinationConnectionId(), connectionIdManager.getOriginalDestinationConnectionId()));
 
-        if (retryRequired) {
-            if (packet.getToken() == null) {
-                sendRetry();
-                connectionSecrets.recomputeInitialKeys(connectionIdManager.getInitialConnectionId());
-                return ProcessResult.Abort;  // No further packet processing (e.g. ack generation).
-            }
-            else if (!Arrays.equals(packet.getToken(), token)) {
-                // https://tools.ietf.org/html/draft-ietf-quic-transport-33#section-8.1.2
-                // "If a server receives a client Initial that can be unprotected but contains an invalid Retry token,
-                // (...), the server SHOULD immediately close (Section 10.2) the connection with an INVALID_TOKEN error."
-                immediateCloseWithError(EncryptionLevel.Initial, INVALID_TOKEN.value, null);
-                return ProcessResult.Abort;
-            }
-            else {
-                // Receiving a valid token implies address is validated.
-                addressValidated = true;
-                sender.unsetAntiAmplificationLimit();
-                // Valid token, proceed as usual.
-                processFrames(packet, time);
-                return ProcessResult.Continue;
-            }
-        }
-        else {
-            processFrames(packet, time);
-            return ProcessResult.Continue;
-        }
-    }
-
-    private void sendRetry() {
-        RetryPacket retry = new RetryPacket(quicVersion.getVersion(), connectionIdManager.getInitialConnectionId(), getDestinationConnectionId(), getOriginalDestinationConnectionId(), token);
-        sender.send(retry);
+        processFrames(packet, time);
+        return ProcessResult.Continue;
     }
 
     @Override
@@ -543,6 +607,9 @@ public class ServerConnectionImpl extends QuicConnectionImpl implements ServerCo
 
     @Override
     public void process(NewTokenFrame newTokenFrame, QuicPacket packet, Instant timeReceived) {
+        // https://www.rfc-editor.org/rfc/rfc9000.html#name-new_token-frames
+        // "Servers MUST treat receipt of a NEW_TOKEN frame as a connection error of type PROTOCOL_VIOLATION."
+        immediateCloseWithError(EncryptionLevel.App, PROTOCOL_VIOLATION.value, "NEW_TOKEN frame received by server");
     }
 
     @Override
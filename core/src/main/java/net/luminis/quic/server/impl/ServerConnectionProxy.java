@@ -21,6 +21,7 @@ package net.luminis.quic.server.impl;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.time.Instant;
+import java.util.List;
 
 
 public interface ServerConnectionProxy {
@@ -29,6 +30,21 @@ public interface ServerConnectionProxy {
 
     void parsePackets(int datagramNumber, Instant timeReceived, ByteBuffer data, InetSocketAddress sourceAddress);
 
+    /**
+     * Parses a batch of datagrams that were received in one go. Implementations that process datagrams on a different
+     * thread should hand over the batch as a whole, so the connection can coalesce its responses for the whole batch.
+     * The implementation is responsible for releasing the datagrams (see {@link ReceivedDatagram#release()}) when
+     * processed or dropped.
+     * @param datagrams
+     */
+    default void parsePackets(List<ReceivedDatagram> datagrams) {
+        // Processing of a single datagram can be asynchronous, so the data must be retainable after release.
+        datagrams.forEach(datagram -> {
+            parsePackets(datagram.datagramNumber(), datagram.timeReceived(), datagram.retainableData(), datagram.sourceAddress());
+            datagram.release();
+        });
+    }
+
     boolean isClosed();
 
     /**
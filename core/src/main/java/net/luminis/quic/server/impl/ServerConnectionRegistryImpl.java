@@ -94,6 +94,13 @@ public class ServerConnectionRegistryImpl implements ServerConnectionRegistry {
         return removedConnections.stream().findAny().orElse(removed);
     }
 
+    /**
+     * @return  the number of registered connection ids (including original destination connection ids)
+     */
+    int size() {
+        return currentConnections.size();
+    }
+
     boolean isEmpty() {
         return currentConnections.isEmpty();
     }
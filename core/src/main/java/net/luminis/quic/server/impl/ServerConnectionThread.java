@@ -26,6 +26,7 @@ import net.luminis.quic.util.Bytes;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.time.Instant;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -37,7 +38,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 public class ServerConnectionThread implements ServerConnectionProxy {
 
     private final ServerConnectionImpl serverConnection;
-    private final BlockingQueue<ReceivedDatagram> queue;
+    private final BlockingQueue<List<ReceivedDatagram>> queue;
     private final Thread connectionReceiverThread;
     private final InitialPacket firstInitialPacket;
     private final ByteBuffer data;
@@ -63,7 +64,13 @@ public class ServerConnectionThread implements ServerConnectionProxy {
 
     @Override
     public void parsePackets(int datagramNumber, Instant timeReceived, ByteBuffer data, InetSocketAddress sourceAddress) {
-        queue.add(new ReceivedDatagram(datagramNumber, timeReceived, data, sourceAddress));
+        queue.add(List.of(new ReceivedDatagram(datagramNumber, timeReceived, data, sourceAddress)));
+    }
+
+    @Override
+    public void parsePackets(List<ReceivedDatagram> datagrams) {
+        // Hand over the batch as a whole, to avoid a queue handoff for each individual datagram.
+        queue.add(datagrams);
     }
 
     @Override
@@ -89,9 +96,18 @@ public class ServerConnectionThread implements ServerConnectionProxy {
             }
 
             while (! connectionReceiverThread.isInterrupted()) {
-                ReceivedDatagram datagram = queue.take();
-                PacketMetaData metaData = new PacketMetaData(datagram.timeReceived, datagram.sourceAddress, datagram.datagramNumber);
-                datagramProcessingChain.processDatagram(datagram.data, metaData);
+                List<ReceivedDatagram> datagrams = queue.take();
+                for (int i = 0; i < datagrams.size(); i++) {
+                    ReceivedDatagram datagram = datagrams.get(i);
+                    PacketMetaData metaData = new PacketMetaData(datagram.timeReceived(), datagram.sourceAddress(), datagram.datagramNumber());
+                    try {
+                        datagramProcessingChain.processDatagram(datagram.data(), metaData);
+                    }
+                    finally {
+                        datagram.release();
+                    }
+                    serverConnection.datagramProcessed(i < datagrams.size() - 1 || !queue.isEmpty());
+                }
             }
         }
         catch (InterruptedException e) {
@@ -107,19 +123,4 @@ public class ServerConnectionThread implements ServerConnectionProxy {
     public String toString() {
         return "ServerConnectionThread[" + Bytes.bytesToHex(getOriginalDestinationConnectionId()) + "]";
     }
-
-    static class ReceivedDatagram {
-
-        final int datagramNumber;
-        final Instant timeReceived;
-        final ByteBuffer data;
-        final InetSocketAddress sourceAddress;
-
-        public ReceivedDatagram(int datagramNumber, Instant timeReceived, ByteBuffer data, InetSocketAddress sourceAddress) {
-            this.datagramNumber = datagramNumber;
-            this.timeReceived = timeReceived;
-            this.data = data;
-            this.sourceAddress = sourceAddress;
-        }
-    }
 }
@@ -25,17 +25,28 @@ import net.luminis.quic.packet.PacketMetaData;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
 
 public class ServerConnectionWrapper implements ServerConnectionProxy {
 
     private final ServerConnectionProxy connection;
     private final Logger log;
+    private final Function<DatagramFilter, DatagramFilter> filterChainFactory;
     private final DatagramFilter filter;
 
-    public ServerConnectionWrapper(ServerConnectionProxy connection, Logger log, DatagramFilter filter) {
+    /**
+     * @param connection
+     * @param log
+     * @param filterChainFactory  function that creates the filter chain, given the filter that ends the chain
+     */
+    public ServerConnectionWrapper(ServerConnectionProxy connection, Logger log, Function<DatagramFilter, DatagramFilter> filterChainFactory) {
         this.connection = connection;
         this.log = log;
-        this.filter = filter;
+        this.filterChainFactory = filterChainFactory;
+        this.filter = filterChainFactory.apply((data, metaData) ->
+                connection.parsePackets(metaData.datagramNumber(), metaData.timeReceived(), data, metaData.sourceAddress()));
     }
 
     @Override
@@ -48,6 +59,24 @@ public class ServerConnectionWrapper implements ServerConnectionProxy {
         filter.processDatagram(data, new PacketMetaData(timeReceived, sourceAddress, datagramNumber));
     }
 
+    @Override
+    public void parsePackets(List<ReceivedDatagram> datagrams) {
+        // Collect the datagrams that pass the filters, so they can be passed to the connection as one batch. Accepted
+        // datagrams are released by the connection, dropped datagrams are released here.
+        List<ReceivedDatagram> accepted = new ArrayList<>(datagrams.size());
+        ReceivedDatagram[] current = new ReceivedDatagram[1];
+        DatagramFilter batchFilter = filterChainFactory.apply((data, metaData) ->
+                accepted.add(new ReceivedDatagram(metaData.datagramNumber(), metaData.timeReceived(), data, metaData.sourceAddress(), current[0].transferRelease())));
+        for (ReceivedDatagram datagram: datagrams) {
+            current[0] = datagram;
+            batchFilter.processDatagram(datagram.data(), new PacketMetaData(datagram.timeReceived(), datagram.sourceAddress(), datagram.datagramNumber()));
+            datagram.release();
+        }
+        if (! accepted.isEmpty()) {
+            connection.parsePackets(accepted);
+        }
+    }
+
     @Override
     public boolean isClosed() {
         return connection.isClosed();
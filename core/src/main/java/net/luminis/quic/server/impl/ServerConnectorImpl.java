@@ -20,10 +20,21 @@ package net.luminis.quic.server.impl;
 
 import net.luminis.quic.QuicConnection;
 import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.concurrent.EventLoopGroup;
+import net.luminis.quic.crypto.ConnectionSecrets;
+import net.luminis.quic.crypto.MissingKeysException;
+import net.luminis.quic.frame.ConnectionCloseFrame;
+import net.luminis.quic.impl.Role;
 import net.luminis.quic.impl.Version;
+import net.luminis.quic.impl.VersionHolder;
 import net.luminis.quic.log.Logger;
+import net.luminis.quic.log.NullLogger;
+import net.luminis.quic.generic.InvalidIntegerEncodingException;
+import net.luminis.quic.generic.VariableLengthInteger;
 import net.luminis.quic.packet.InitialPacket;
+import net.luminis.quic.packet.RetryPacket;
 import net.luminis.quic.packet.VersionNegotiationPacket;
+import net.luminis.quic.receive.DatagramChannelReceiver;
 import net.luminis.quic.receive.RawPacket;
 import net.luminis.quic.receive.Receiver;
 import net.luminis.quic.server.ApplicationProtocolConnectionFactory;
@@ -39,22 +50,29 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.security.KeyStore;
+import java.security.SecureRandom;
 import java.security.cert.CertificateException;
 import java.security.spec.InvalidKeySpecException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.Collectors;
 
+import static net.luminis.quic.QuicConstants.TransportErrorCode.CONNECTION_REFUSED;
+
 /**
  * Listens for QUIC connections on a given port. Requires server certificate and corresponding private key.
  */
@@ -70,11 +88,24 @@ public class ServerConnectorImpl implements ServerConnector {
     private TlsServerEngineFactory tlsEngineFactory;
     private final ServerConnectionFactory serverConnectionFactory;
     private ApplicationProtocolRegistry applicationProtocolRegistry;
-    private final ExecutorService sharedExecutor = Executors.newSingleThreadExecutor();
+    private final SecureRandom random = new SecureRandom();
     private final ScheduledExecutorService sharedScheduledExecutor = Executors.newSingleThreadScheduledExecutor();
     private Context context;
     private ServerConnectionRegistryImpl connectionRegistry;
     private int connectionIdLength;
+    private final ServerConnectionConfig.RetryRequired retryRequired;
+    private final RetryTokenManager retryTokenManager;
+    private final NewTokenManager newTokenManager;
+    private final AdaptiveRetryPolicy adaptiveRetryPolicy;
+    private final Set<ServerConnectionImpl> connectionsInHandshake = ConcurrentHashMap.newKeySet();
+    private final EventLoopGroup eventLoopGroup;
+    private final EventLoopGroup handshakeWorkers;
+    private final HandshakeAdmissionControl admissionControl;
+    // Concurrency: guarded by this
+    private final AdaptiveRetryPolicy.SlidingWindowCounter refusalRate = new AdaptiveRetryPolicy.SlidingWindowCounter();
+    private final int receiveBatchSize;
+    // Concurrency: only accessed by the receive loop thread
+    private Map<ServerConnectionProxy, List<ReceivedDatagram>> pendingBatches;
 
     /**
      * @deprecated use {@link ServerConnector.Builder} instead
@@ -88,7 +119,7 @@ public class ServerConnectorImpl implements ServerConnector {
      */
     @Deprecated
     public ServerConnectorImpl(int port, InputStream certificateFile, InputStream certificateKeyFile, List<QuicConnection.QuicVersion> supportedVersions, boolean requireRetry, Logger log) throws Exception {
-        this(new DatagramSocket(port), certificateFile, certificateKeyFile, supportedVersions, requireRetry, log);
+        this(DatagramChannelReceiver.createSocket(new InetSocketAddress(port)), certificateFile, certificateKeyFile, supportedVersions, requireRetry, log);
     }
 
     /**
@@ -115,22 +146,42 @@ public class ServerConnectorImpl implements ServerConnector {
     }
 
     private ServerConnectorImpl(DatagramSocket socket, TlsServerEngineFactory tlsEngineFactory, List<QuicConnection.QuicVersion> supportedVersions, ServerConnectionConfig configuration, Logger log) {
+        this(socket, tlsEngineFactory, supportedVersions, configuration, 0, 1, 1, HandshakeAdmissionControl.UNLIMITED, log);
+    }
+
+    private ServerConnectorImpl(DatagramSocket socket, TlsServerEngineFactory tlsEngineFactory, List<QuicConnection.QuicVersion> supportedVersions,
+                                ServerConnectionConfig configuration, int eventLoopWorkers, int receiveBatchSize, int handshakeWorkers,
+                                HandshakeAdmissionControl admissionControl, Logger log) {
         this.serverSocket = socket;
         this.tlsEngineFactory = tlsEngineFactory;
         this.supportedVersions = supportedVersions;
         this.log = Objects.requireNonNull(log);
         connectionIdLength = configuration.connectionIdLength();
+        retryRequired = configuration.retryRequired() != null? configuration.retryRequired(): ServerConnectionConfig.RetryRequired.Never;
+        retryTokenManager = new RetryTokenManager();
+        newTokenManager = new NewTokenManager();
+        this.receiveBatchSize = receiveBatchSize;
 
         applicationProtocolRegistry = new ApplicationProtocolRegistry();
         connectionRegistry = new ServerConnectionRegistryImpl(log);
+        adaptiveRetryPolicy = retryRequired == ServerConnectionConfig.RetryRequired.Adaptive?
+                new AdaptiveRetryPolicy(configuration, connectionsInHandshake::size, connectionRegistry::size): null;
+        eventLoopGroup = eventLoopWorkers > 0? new EventLoopGroup(eventLoopWorkers): null;
+        this.handshakeWorkers = new EventLoopGroup(handshakeWorkers, "handshake");
+        this.admissionControl = admissionControl;
         serverConnectionFactory = new ServerConnectionFactory(serverSocket, tlsEngineFactory,
-                configuration, applicationProtocolRegistry, connectionRegistry, this::closed, log);
+                configuration, applicationProtocolRegistry, connectionRegistry, this::closed, eventLoopGroup, log);
 
         supportedVersionIds = supportedVersions.stream()
                 .map(Version::of)
                 .map(Version::getId)
                 .collect(Collectors.toList());
-        receiver = new Receiver(serverSocket, log, exception -> System.exit(9));
+        if (DatagramChannelReceiver.isSupported(serverSocket)) {
+            receiver = new DatagramChannelReceiver(serverSocket, log, exception -> System.exit(9));
+        }
+        else {
+            receiver = new Receiver(serverSocket, log, exception -> System.exit(9));
+        }
         context = new ServerConnectorContext();
     }
 
@@ -156,15 +207,29 @@ public class ServerConnectorImpl implements ServerConnector {
         return applicationProtocolRegistry.getRegisteredApplicationProtocols();
     }
 
+    /**
+     * Returns the number of received packets that are waiting to be processed by the handshake workers.
+     * @return
+     */
+    @Override
+    public int getHandshakeQueueDepth() {
+        return handshakeWorkers.queuedTasks();
+    }
+
     public void start() {
         receiver.start();
 
         new Thread(this::receiveLoop, "server receive loop").start();
         log.info("Kwik server connector started on port " + serverSocket.getLocalPort()+ "; supported application protocols: "
-                + applicationProtocolRegistry.getRegisteredApplicationProtocols());
+                + applicationProtocolRegistry.getRegisteredApplicationProtocols()
+                + (eventLoopGroup != null? "; using " + eventLoopGroup.size() + " event loop workers": ""));
     }
 
     protected void receiveLoop() {
+        if (receiveBatchSize > 1) {
+            batchedReceiveLoop();
+            return;
+        }
         while (true) {
             try {
                 RawPacket rawPacket = receiver.get((int) Duration.ofDays(10 * 365).toSeconds());
@@ -180,18 +245,70 @@ public class ServerConnectorImpl implements ServerConnector {
         }
     }
 
+    private void batchedReceiveLoop() {
+        List<RawPacket> rawPackets = new ArrayList<>(receiveBatchSize);
+        while (true) {
+            try {
+                receiver.drainTo(rawPackets, receiveBatchSize, (int) Duration.ofDays(10 * 365).toSeconds());
+                process(rawPackets);
+            }
+            catch (InterruptedException e) {
+                log.error("receiver loop interrupted and terminated");
+                break;
+            }
+            catch (Exception runtimeError) {
+                log.error("Uncaught exception in server receive loop", runtimeError);
+            }
+            finally {
+                rawPackets.clear();
+            }
+        }
+    }
+
+    /**
+     * Processes a batch of received datagrams: the datagrams are dispatched to the connections they belong to after
+     * all datagrams in the batch have been processed, so each connection receives its datagrams in one batch.
+     * @param rawPackets
+     */
+    protected void process(List<RawPacket> rawPackets) {
+        pendingBatches = new LinkedHashMap<>();
+        try {
+            for (RawPacket rawPacket: rawPackets) {
+                try {
+                    process(rawPacket);
+                }
+                catch (RuntimeException runtimeError) {
+                    log.error("Uncaught exception in server receive loop", runtimeError);
+                }
+            }
+        }
+        finally {
+            Map<ServerConnectionProxy, List<ReceivedDatagram>> batches = pendingBatches;
+            pendingBatches = null;
+            batches.forEach((connection, datagrams) -> connection.parsePackets(datagrams));
+        }
+    }
+
     protected void process(RawPacket rawPacket) {
-        ByteBuffer data = rawPacket.getData();
+        try {
+            process(rawPacket.getData(), new InetSocketAddress(rawPacket.getAddress(), rawPacket.getPort()), rawPacket);
+        }
+        finally {
+            rawPacket.release();
+        }
+    }
+
+    private void process(ByteBuffer data, InetSocketAddress clientAddress, RawPacket rawPacket) {
         int flags = data.get();
         data.rewind();
         if ((flags & 0b1100_0000) == 0b1100_0000) {
             // https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-17.2
             // "Header Form:  The most significant bit (0x80) of byte 0 (the first byte) is set to 1 for long headers."
-            processLongHeaderPacket(new InetSocketAddress(rawPacket.getAddress(), rawPacket.getPort()), data);
+            processLongHeaderPacket(clientAddress, data, rawPacket);
         } else if ((flags & 0b1100_0000) == 0b0100_0000) {
             // https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-17.3
             // "Header Form:  The most significant bit (0x80) of byte 0 is set to 0 for the short header.
-            processShortHeaderPacket(new InetSocketAddress(rawPacket.getAddress(), rawPacket.getPort()), data);
+            processShortHeaderPacket(clientAddress, data, rawPacket);
         } else {
             // https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-17.2
             // https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-17.3
@@ -201,7 +318,7 @@ public class ServerConnectorImpl implements ServerConnector {
         }
     }
 
-    private void processLongHeaderPacket(InetSocketAddress clientAddress, ByteBuffer data) {
+    private void processLongHeaderPacket(InetSocketAddress clientAddress, ByteBuffer data, RawPacket rawPacket) {
         if (data.remaining() >= MINIMUM_LONG_HEADER_LENGTH) {
             data.position(1);
             int version = data.getInt();
@@ -232,8 +349,14 @@ public class ServerConnectorImpl implements ServerConnector {
                     Optional<ServerConnectionProxy> connection = connectionRegistry.isExistingConnection(clientAddress, dcid);
                     if (connection.isEmpty()) {
                         synchronized (this) {
-                            if (mightStartNewConnection(data, version, dcid) && connectionRegistry.isExistingConnection(clientAddress, dcid).isEmpty()) {
-                                connection = Optional.of(createNewConnection(version, clientAddress, scid, dcid));
+                            if (retryRequired != ServerConnectionConfig.RetryRequired.Never && isInitialWithSupportedVersion(data, version)) {
+                                connection = processInitialWithAddressValidation(clientAddress, data, version, dcid, scid);
+                            }
+                            else if (mightStartNewConnection(data, version, dcid) && connectionRegistry.isExistingConnection(clientAddress, dcid).isEmpty()) {
+                                if (admitNewConnection(clientAddress, data, version, dcid, scid)) {
+                                    boolean addressValidated = isInitialWithSupportedVersion(data, version) && hasValidNewToken(clientAddress, data, dcid, scid);
+                                    connection = Optional.of(createNewConnection(version, clientAddress, scid, dcid, null, addressValidated));
+                                }
                             } else if (initialWithUnspportedVersion(data, version)) {
                                 log.received(Instant.now(), 0, EncryptionLevel.Initial, dcid, scid);
                                 // https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-6
@@ -242,22 +365,35 @@ public class ServerConnectorImpl implements ServerConnector {
                             }
                         }
                     }
-                    connection.ifPresent(c -> c.parsePackets(0, Instant.now(), data, clientAddress));
+                    connection.ifPresent(c -> dispatch(c, data, clientAddress, rawPacket));
                 }
             }
         }
     }
 
-    private void processShortHeaderPacket(InetSocketAddress clientAddress, ByteBuffer data) {
+    private void processShortHeaderPacket(InetSocketAddress clientAddress, ByteBuffer data, RawPacket rawPacket) {
         byte[] dcid = new byte[connectionIdLength];
         data.position(1);
         data.get(dcid);
         data.rewind();
         Optional<ServerConnectionProxy> connection = connectionRegistry.isExistingConnection(clientAddress, dcid);
-        connection.ifPresentOrElse(c -> c.parsePackets(0, Instant.now(), data, clientAddress),
+        connection.ifPresentOrElse(c -> dispatch(c, data, clientAddress, rawPacket),
                 () -> log.warn("Discarding short header packet addressing non existent connection " + Bytes.bytesToHex(dcid)));
     }
 
+    private void dispatch(ServerConnectionProxy connection, ByteBuffer data, InetSocketAddress clientAddress, RawPacket rawPacket) {
+        // The time the datagram was received by the receiver (instead of now), so time spent in the receive queue is
+        // accounted for, e.g. by handshake admission control. The (pooled) buffer is handed over to the connection,
+        // which releases it when the datagram is processed.
+        ReceivedDatagram datagram = new ReceivedDatagram(0, rawPacket.getTimeReceived(), data, clientAddress, rawPacket.transferRelease());
+        if (pendingBatches != null) {
+            pendingBatches.computeIfAbsent(connection, c -> new ArrayList<>()).add(datagram);
+        }
+        else {
+            connection.parsePackets(List.of(datagram));
+        }
+    }
+
     private boolean mightStartNewConnection(ByteBuffer packetBytes, int version, byte[] dcid) {
         // https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-7.2
         // "This Destination Connection ID MUST be at least 8 bytes in length."
@@ -283,15 +419,190 @@ public class ServerConnectorImpl implements ServerConnector {
         return false;
     }
 
-    private ServerConnectionProxy createNewConnection(int versionValue, InetSocketAddress clientAddress, byte[] scid, byte[] originalDcid) {
+    private boolean isInitialWithSupportedVersion(ByteBuffer packetBytes, int version) {
+        if (supportedVersionIds.contains(version)) {
+            int type = (packetBytes.get(0) & 0x30) >> 4;
+            return InitialPacket.isInitial(type, Version.parse(version));
+        }
+        return false;
+    }
+
+    /**
+     * Handles an Initial packet that might start a new connection when address validation with Retry is (or might be)
+     * required. Without keeping any state: when the packet has a valid Retry token or a valid token from a NEW_TOKEN
+     * frame, a connection (candidate) is created for a validated address; when it has an invalid Retry token, the
+     * packet is dropped; otherwise, a Retry is sent when required or else a connection (candidate) is created.
+     * @return  the new connection candidate, if created
+     */
+    private Optional<ServerConnectionProxy> processInitialWithAddressValidation(InetSocketAddress clientAddress, ByteBuffer data, int version, byte[] dcid, byte[] scid) {
+        // https://www.rfc-editor.org/rfc/rfc9000.html#name-initial-datagram-size
+        // "A server MUST discard an Initial packet that is carried in a UDP datagram with a payload that is smaller than
+        //  the smallest allowed maximum datagram size of 1200 bytes."
+        if (data.limit() < 1200) {
+            return Optional.empty();
+        }
+        byte[] token = parseToken(data, dcid.length, scid.length);
+        if (token == null) {
+            return Optional.empty();
+        }
+        if (!RetryTokenManager.isRetryToken(token)) {
+            // https://www.rfc-editor.org/rfc/rfc9000.html#name-address-validation-for-futu
+            // "If the token is invalid, then the server SHOULD proceed as if the client did not have a validated
+            //  address, including potentially sending a Retry packet."
+            boolean addressValidated = token.length > 0 && newTokenManager.validateToken(token, clientAddress.getAddress());
+            // https://www.rfc-editor.org/rfc/rfc9000.html#name-negotiating-connection-ids
+            // "This Destination Connection ID MUST be at least 8 bytes in length."
+            if (dcid.length < 8) {
+                return Optional.empty();
+            }
+            if (!addressValidated && isRetryRequired(clientAddress)) {
+                sendRetry(Version.parse(version), clientAddress, dcid, scid);
+                return Optional.empty();
+            }
+            if (connectionRegistry.isExistingConnection(clientAddress, dcid).isPresent()) {
+                return Optional.empty();
+            }
+            if (!admitNewConnection(clientAddress, data, version, dcid, scid)) {
+                return Optional.empty();
+            }
+            return Optional.of(createNewConnection(version, clientAddress, scid, dcid, null, addressValidated));
+        }
+
+        Optional<byte[]> originalDcid = retryTokenManager.validateToken(token, clientAddress, dcid);
+        if (originalDcid.isEmpty()) {
+            // https://www.rfc-editor.org/rfc/rfc9000.html#name-address-validation-using-re
+            // "If a server receives a client Initial that contains an invalid Retry token but is otherwise valid, (...)
+            //  The server can discard such a packet and allow the client to time out to detect handshake failure"
+            // Closing the connection would require the server to decrypt the packet and keep state, which is exactly
+            // what stateless Retry aims to avoid for (possibly spoofed) packets that fail address validation.
+            log.warn("Dropping initial packet with invalid token from " + clientAddress);
+            return Optional.empty();
+        }
+        if (connectionRegistry.isExistingConnection(clientAddress, dcid).isPresent()) {
+            return Optional.empty();
+        }
+        if (!admitNewConnection(clientAddress, data, version, dcid, scid)) {
+            return Optional.empty();
+        }
+        return Optional.of(createNewConnection(version, clientAddress, scid, originalDcid.get(), dcid, false));
+    }
+
+    private boolean hasValidNewToken(InetSocketAddress clientAddress, ByteBuffer data, byte[] dcid, byte[] scid) {
+        byte[] token = parseToken(data, dcid.length, scid.length);
+        return NewTokenManager.isNewToken(token) && newTokenManager.validateToken(token, clientAddress.getAddress());
+    }
+
+    private boolean isRetryRequired(InetSocketAddress clientAddress) {
+        if (retryRequired == ServerConnectionConfig.RetryRequired.Adaptive) {
+            return adaptiveRetryPolicy.retryRequired(clientAddress);
+        }
+        return true;
+    }
+
+    private byte[] parseToken(ByteBuffer data, int dcidLength, int scidLength) {
+        try {
+            data.position(1 + 4 + 1 + dcidLength + 1 + scidLength);
+            int tokenLength = VariableLengthInteger.parse(data);
+            if (tokenLength > data.remaining()) {
+                return null;
+            }
+            byte[] token = new byte[tokenLength];
+            data.get(token);
+            return token;
+        }
+        catch (InvalidIntegerEncodingException | IllegalArgumentException | BufferUnderflowException invalidPacket) {
+            return null;
+        }
+        finally {
+            data.rewind();
+        }
+    }
+
+    private void sendRetry(Version version, InetSocketAddress clientAddress, byte[] originalDcid, byte[] clientScid) {
+        // https://www.rfc-editor.org/rfc/rfc9000.html#name-retry-packet
+        // "The server populates the Destination Connection ID with the connection ID that the client included in the
+        //  Source Connection ID of the Initial packet. The server includes a connection ID of its choice in the Source
+        //  Connection ID field."
+        byte[] retrySourceCid = new byte[connectionIdLength];
+        random.nextBytes(retrySourceCid);
+        byte[] token = retryTokenManager.createToken(clientAddress, originalDcid, retrySourceCid);
+        RetryPacket retryPacket = new RetryPacket(version, retrySourceCid, clientScid, originalDcid, token);
+        byte[] packetBytes = retryPacket.generatePacketBytes(null);
+        DatagramPacket datagram = new DatagramPacket(packetBytes, packetBytes.length, clientAddress.getAddress(), clientAddress.getPort());
+        try {
+            serverSocket.send(datagram);
+            log.sent(Instant.now(), retryPacket);
+        } catch (IOException e) {
+            log.error("Sending retry packet failed", e);
+        }
+    }
+
+    /**
+     * Applies admission control: when the number of handshakes in progress (connections that have not yet completed
+     * the handshake plus packets waiting to be processed by the handshake workers) is over budget, the connection
+     * attempt is refused (if configured so) or else silently dropped. As refusing requires deriving Initial keys and
+     * encrypting a packet, the refusal is built and sent by a handshake worker (not the receive thread, which holds the
+     * connector lock) and the rate of refusals is limited; when exceeded, attempts are dropped.
+     * @return  whether a new connection can be created
+     */
+    private boolean admitNewConnection(InetSocketAddress clientAddress, ByteBuffer data, int version, byte[] dcid, byte[] scid) {
+        if (admissionControl.admit(connectionsInHandshake.size() + handshakeWorkers.queuedTasks())) {
+            return true;
+        }
+        log.debug("Server overloaded, not admitting new connection from " + clientAddress);
+        if (admissionControl.refuseWhenOverBudget() && isInitialWithSupportedVersion(data, version)) {
+            long now = System.currentTimeMillis();
+            if (refusalRate.count(now) < admissionControl.maxRefusalsPerSecond()) {
+                refusalRate.increment(now);
+                Version refusedVersion = Version.parse(version);
+                context.getHandshakeExecutor(dcid).submit(() -> sendConnectionRefused(refusedVersion, clientAddress, dcid, scid));
+            }
+        }
+        return false;
+    }
+
+    private void sendConnectionRefused(Version version, InetSocketAddress clientAddress, byte[] dcid, byte[] clientScid) {
+        // https://www.rfc-editor.org/rfc/rfc9000.html#name-transport-error-codes
+        // "CONNECTION_REFUSED (0x02):  The server refused to accept a new connection."
+        // As no connection state is created, the packet is protected with the Initial keys derived from the client's
+        // dcid and sent with a fresh source connection id (the client accepts any in the first server Initial).
+        ConnectionSecrets connectionSecrets = new ConnectionSecrets(new VersionHolder(version), Role.Server, null, new NullLogger());
+        connectionSecrets.computeInitialKeys(dcid);
+        byte[] scid = new byte[connectionIdLength];
+        random.nextBytes(scid);
+        InitialPacket initialPacket = new InitialPacket(version, scid, clientScid, null,
+                new ConnectionCloseFrame(version, CONNECTION_REFUSED.value, null));
+        initialPacket.setPacketNumber(0);
+        try {
+            byte[] packetBytes = initialPacket.generatePacketBytes(connectionSecrets.getOwnAead(EncryptionLevel.Initial));
+            serverSocket.send(new DatagramPacket(packetBytes, packetBytes.length, clientAddress.getAddress(), clientAddress.getPort()));
+            log.sent(Instant.now(), initialPacket);
+        }
+        catch (MissingKeysException e) {
+            // Impossible, as initial keys have just been computed.
+            throw new RuntimeException(e);
+        }
+        catch (IOException e) {
+            log.error("Sending connection close packet failed", e);
+        }
+    }
+
+    /**
+     * Creates a new connection (candidate).
+     * @param retrySourceCid  the source connection id of the Retry that was sent, or null when no Retry was sent
+     * @param addressValidated  whether the client address is validated by a token from a NEW_TOKEN frame
+     */
+    private ServerConnectionProxy createNewConnection(int versionValue, InetSocketAddress clientAddress, byte[] scid, byte[] originalDcid,
+                                                      byte[] retrySourceCid, boolean addressValidated) {
         Version version = Version.parse(versionValue);
-        ServerConnectionProxy connectionCandidate = new ServerConnectionCandidate(context, version, clientAddress, scid, originalDcid,
-                serverConnectionFactory, connectionRegistry, log);
+        ServerConnectionProxy connectionCandidate = new ServerConnectionCandidate(context, version, clientAddress, scid, originalDcid, retrySourceCid,
+                addressValidated, serverConnectionFactory, connectionRegistry, log);
         // Register new connection now with the original connection id, as retransmitted initial packets with the
         // same original dcid might be received (for example when the server response does not reach the client).
         // Such packets must _not_ lead to new connection candidate. Moreover, if it is an initial packet, it must be
         // passed to the connection, because (if valid) it will change the anti-amplification limit.
-        connectionRegistry.registerConnection(new InitialPacketFilterProxy(connectionCandidate, version, log), originalDcid);
+        // When a Retry was sent, the client uses the Retry's source connection id instead.
+        connectionRegistry.registerConnection(new InitialPacketFilterProxy(connectionCandidate, version, log), retrySourceCid != null? retrySourceCid: originalDcid);
 
         return connectionCandidate;
     }
@@ -325,6 +636,7 @@ public class ServerConnectorImpl implements ServerConnector {
     }
 
     private void closed(ServerConnectionImpl connection) {
+        connectionsInHandshake.remove(connection);
         ServerConnectionProxy removedConnection = connectionRegistry.removeConnection(connection);
         removedConnection.dispose();
     }
@@ -332,14 +644,30 @@ public class ServerConnectorImpl implements ServerConnector {
     private class ServerConnectorContext implements Context {
 
         @Override
-        public ExecutorService getSharedServerExecutor() {
-            return sharedExecutor;
+        public ExecutorService getHandshakeExecutor(byte[] originalDcid) {
+            return handshakeWorkers.select(originalDcid);
+        }
+
+        @Override
+        public boolean isQueuedTooLong(Instant timeReceived) {
+            return admissionControl.isQueuedTooLong(timeReceived, Instant.now());
         }
 
         @Override
         public ScheduledExecutorService getSharedScheduledExecutor() {
             return sharedScheduledExecutor;
         }
+
+        @Override
+        public void connectionCreated(ServerConnectionImpl connection) {
+            connection.setNewTokenIssuer(newTokenManager::createToken);
+            connectionsInHandshake.add(connection);
+            connection.addHandshakeStateListener(state -> {
+                if (state.isConfirmed()) {
+                    connectionsInHandshake.remove(connection);
+                }
+            });
+        }
     }
 
     public static class BuilderImpl implements Builder {
@@ -355,6 +683,10 @@ public class ServerConnectorImpl implements ServerConnector {
         private String certificateAlias;
         private char[] privateKeyPassword;
         private String ecCurve;
+        private int eventLoopWorkers;
+        private int receiveBatchSize = 1;
+        private int handshakeWorkers = 1;
+        private HandshakeAdmissionControl admissionControl = HandshakeAdmissionControl.UNLIMITED;
 
         @Override
         public ServerConnector.Builder withPort(int port) {
@@ -426,6 +758,39 @@ public class ServerConnectorImpl implements ServerConnector {
             return this;
         }
 
+        @Override
+        public ServerConnector.Builder withEventLoopWorkers(int numberOfWorkers) {
+            if (numberOfWorkers < 0) {
+                throw new IllegalArgumentException("number of event loop workers cannot be negative");
+            }
+            this.eventLoopWorkers = numberOfWorkers;
+            return this;
+        }
+
+        @Override
+        public ServerConnector.Builder withReceiveBatchSize(int maxDatagrams) {
+            if (maxDatagrams < 1) {
+                throw new IllegalArgumentException("receive batch size must be at least 1");
+            }
+            this.receiveBatchSize = maxDatagrams;
+            return this;
+        }
+
+        @Override
+        public ServerConnector.Builder withHandshakeWorkers(int numberOfWorkers) {
+            if (numberOfWorkers < 1) {
+                throw new IllegalArgumentException("number of handshake workers must be at least 1");
+            }
+            this.handshakeWorkers = numberOfWorkers;
+            return this;
+        }
+
+        @Override
+        public ServerConnector.Builder withHandshakeAdmissionControl(int maxHandshakesInProgress, Duration maxInitialQueueTime, boolean refuseWhenOverBudget) {
+            this.admissionControl = new HandshakeAdmissionControl(maxHandshakesInProgress, maxInitialQueueTime, refuseWhenOverBudget);
+            return this;
+        }
+
         @Override
         public ServerConnector build() throws SocketException, CertificateException {
             if (port == 0) {
@@ -436,7 +801,7 @@ public class ServerConnectorImpl implements ServerConnector {
             }
 
             if (socket == null) {
-                socket = new DatagramSocket(port);
+                socket = DatagramChannelReceiver.createSocket(new InetSocketAddress(port));
             }
 
             try {
@@ -447,7 +812,7 @@ public class ServerConnectorImpl implements ServerConnector {
                 else {
                     tlsEngineFactory = new TlsServerEngineFactory(certificateFile, certificateKeyFile);
                 }
-                return new ServerConnectorImpl(socket, tlsEngineFactory, supportedVersions, configuration, log);
+                return new ServerConnectorImpl(socket, tlsEngineFactory, supportedVersions, configuration, eventLoopWorkers, receiveBatchSize, handshakeWorkers, admissionControl, log);
             }
             catch (IOException e) {
                 // Impossible, exception is never thrown by TlsServerEngineFactory constructor.
@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import net.luminis.quic.impl.QuicRuntimeException;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Seals (encrypts and authenticates) and opens address validation tokens with a periodically rotated server key.
+ * Tokens sealed with the current or the previous key can be opened, so the rotation interval must not be shorter than
+ * the lifetime of the tokens. Token layout: token type, key id, nonce, sealed content (including authentication tag).
+ * The token type is not encrypted, so the server can tell different types of tokens apart before opening them, but it
+ * is authenticated (as part of the associated data).
+ */
+class TokenCipher {
+
+    private static final String AES_GCM_NOPADDING = "AES/GCM/NoPadding";
+    private static final int KEY_LENGTH = 128;
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_LENGTH = 16;
+    private static final int HEADER_LENGTH = 2 + NONCE_LENGTH;
+    static final int OVERHEAD = HEADER_LENGTH + TAG_LENGTH;
+
+    private final Clock clock;
+    private final Duration keyRotationInterval;
+    private final SecureRandom random;
+    private final KeyGenerator keyGenerator;
+    private SecretKey currentKey;
+    private SecretKey previousKey;
+    private byte currentKeyId;
+    private Instant currentKeyCreated;
+
+    TokenCipher(Clock clock, Duration keyRotationInterval) {
+        this.clock = clock;
+        this.keyRotationInterval = keyRotationInterval;
+        random = new SecureRandom();
+        try {
+            keyGenerator = KeyGenerator.getInstance("AES");
+            keyGenerator.init(KEY_LENGTH, random);
+        }
+        catch (GeneralSecurityException e) {
+            // Inappropriate runtime environment
+            throw new QuicRuntimeException(e);
+        }
+        currentKey = keyGenerator.generateKey();
+        currentKeyCreated = clock.instant();
+    }
+
+    byte[] seal(byte tokenType, byte[] content, byte[] associatedData) {
+        byte keyId;
+        SecretKey key;
+        synchronized (this) {
+            rotateKeyIfNeeded(clock.instant());
+            keyId = currentKeyId;
+            key = currentKey;
+        }
+        ByteBuffer token = ByteBuffer.allocate(OVERHEAD + content.length);
+        token.put(tokenType);
+        token.put(keyId);
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        token.put(nonce);
+        try {
+            Cipher cipher = Cipher.getInstance(AES_GCM_NOPADDING);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+            cipher.updateAAD(new byte[] { tokenType });
+            cipher.updateAAD(associatedData);
+            token.put(cipher.doFinal(content));
+            return token.array();
+        }
+        catch (GeneralSecurityException e) {
+            throw new QuicRuntimeException(e);
+        }
+    }
+
+    /**
+     * Opens a sealed token.
+     * @param tokenType  the expected token type
+     * @param token  the token
+     * @param associatedData  the data the token is expected to be bound to
+     * @return  the content of the token, or empty when the token is not of the expected type, not sealed with a known
+     * key, or has been tampered with or bound to other associated data
+     */
+    Optional<byte[]> open(byte tokenType, byte[] token, byte[] associatedData) {
+        if (token == null || token.length < OVERHEAD || token[0] != tokenType) {
+            return Optional.empty();
+        }
+        SecretKey key;
+        synchronized (this) {
+            rotateKeyIfNeeded(clock.instant());
+            if (token[1] == currentKeyId) {
+                key = currentKey;
+            }
+            else if (token[1] == (byte) (currentKeyId - 1) && previousKey != null) {
+                key = previousKey;
+            }
+            else {
+                return Optional.empty();
+            }
+        }
+        try {
+            Cipher cipher = Cipher.getInstance(AES_GCM_NOPADDING);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, Arrays.copyOfRange(token, 2, HEADER_LENGTH)));
+            cipher.updateAAD(new byte[] { tokenType });
+            cipher.updateAAD(associatedData);
+            return Optional.of(cipher.doFinal(token, HEADER_LENGTH, token.length - HEADER_LENGTH));
+        }
+        catch (AEADBadTagException invalidToken) {
+            // Forged, corrupted, or bound to different associated data
+            return Optional.empty();
+        }
+        catch (GeneralSecurityException e) {
+            throw new QuicRuntimeException(e);
+        }
+    }
+
+    private void rotateKeyIfNeeded(Instant now) {
+        if (!now.isBefore(currentKeyCreated.plus(keyRotationInterval))) {
+            // When no tokens were sealed or opened for a longer period, the current key might be outdated for more
+            // than one rotation interval; it can still be kept as previous key, as token expiry is checked separately.
+            previousKey = currentKey;
+            currentKey = keyGenerator.generateKey();
+            currentKeyId++;
+            currentKeyCreated = now;
+        }
+    }
+}
@@ -30,6 +30,9 @@ public class ConnectionConfigImpl implements ConnectionConfig {
     private final long maxConnectionBufferSize;
     private final long maxUnidirectionalStreamBufferSize;
     private final long maxBidirectionalStreamBufferSize;
+    private final boolean receiveWindowAutoTuning;
+    private final long maxStreamReceiveWindow;
+    private final long maxConnectionReceiveWindow;
 
     public static ConnectionConfig cloneWithMaxUnidirectionalStreamReceiveBufferSize(ConnectionConfig config, long maxUnidirectionalStreamBufferSize) {
         return new ConnectionConfigImpl(
@@ -40,7 +43,10 @@ public class ConnectionConfigImpl implements ConnectionConfig {
                 config.maxTotalPeerInitiatedBidirectionalStreams(),
                 config.maxConnectionBufferSize(),
                 maxUnidirectionalStreamBufferSize,
-                config.maxBidirectionalStreamBufferSize());
+                config.maxBidirectionalStreamBufferSize(),
+                config.receiveWindowAutoTuning(),
+                config.maxStreamReceiveWindow(),
+                config.maxConnectionReceiveWindow());
     }
 
     public static ConnectionConfig cloneWithMaxBidirectionalStreamReceiveBufferSize(ConnectionConfig config, long maxBidirectionalStreamBufferSize) {
@@ -52,14 +58,18 @@ public class ConnectionConfigImpl implements ConnectionConfig {
                 config.maxTotalPeerInitiatedBidirectionalStreams(),
                 config.maxConnectionBufferSize(),
                 config.maxUnidirectionalStreamBufferSize(),
-                maxBidirectionalStreamBufferSize);
+                maxBidirectionalStreamBufferSize,
+                config.receiveWindowAutoTuning(),
+                config.maxStreamReceiveWindow(),
+                config.maxConnectionReceiveWindow());
     }
 
     private ConnectionConfigImpl(int maxIdleTimeout,
                                  int maxOpenUnidirectionalStreams, long maxTotalUnidirectionalStreams,
                                  int maxOpenBidirectionalStreams, long maxTotalBidirectionalStreams,
                                  long maxConnectionBufferSize,
-                                 long maxUnidirectionalStreamBufferSize, long maxBidirectionalStreamBufferSize) {
+                                 long maxUnidirectionalStreamBufferSize, long maxBidirectionalStreamBufferSize,
+                                 boolean receiveWindowAutoTuning, long maxStreamReceiveWindow, long maxConnectionReceiveWindow) {
         this.maxIdleTimeout = maxIdleTimeout;
         this.maxOpenUnidirectionalStreams = maxOpenUnidirectionalStreams;
         this.maxTotalUnidirectionalStreams = maxTotalUnidirectionalStreams;
@@ -68,6 +78,9 @@ public class ConnectionConfigImpl implements ConnectionConfig {
         this.maxConnectionBufferSize = maxConnectionBufferSize;
         this.maxUnidirectionalStreamBufferSize = maxUnidirectionalStreamBufferSize;
         this.maxBidirectionalStreamBufferSize = maxBidirectionalStreamBufferSize;
+        this.receiveWindowAutoTuning = receiveWindowAutoTuning;
+        this.maxStreamReceiveWindow = maxStreamReceiveWindow;
+        this.maxConnectionReceiveWindow = maxConnectionReceiveWindow;
     }
 
     @Override
@@ -109,4 +122,19 @@ public class ConnectionConfigImpl implements ConnectionConfig {
     public long maxBidirectionalStreamBufferSize() {
         return maxBidirectionalStreamBufferSize;
     }
+
+    @Override
+    public boolean receiveWindowAutoTuning() {
+        return receiveWindowAutoTuning;
+    }
+
+    @Override
+    public long maxStreamReceiveWindow() {
+        return maxStreamReceiveWindow;
+    }
+
+    @Override
+    public long maxConnectionReceiveWindow() {
+        return maxConnectionReceiveWindow;
+    }
 }
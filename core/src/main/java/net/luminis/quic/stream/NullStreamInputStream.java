@@ -22,6 +22,10 @@ import net.luminis.quic.frame.StreamFrame;
 import net.luminis.quic.impl.TransportError;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class NullStreamInputStream extends StreamInputStream {
 
@@ -52,4 +56,14 @@ public class NullStreamInputStream extends StreamInputStream {
     public int read() throws IOException {
         return -1;
     }
+
+    @Override
+    public List<ByteBuffer> readBuffers() throws IOException {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public CompletableFuture<Integer> readAsync(ByteBuffer buffer) {
+        return CompletableFuture.completedFuture(-1);
+    }
 }
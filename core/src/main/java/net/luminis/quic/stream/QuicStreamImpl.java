@@ -20,6 +20,7 @@ package net.luminis.quic.stream;
 
 import net.luminis.quic.QuicConstants;
 import net.luminis.quic.QuicStream;
+import net.luminis.quic.StreamPriority;
 import net.luminis.quic.frame.StreamFrame;
 import net.luminis.quic.impl.QuicConnectionImpl;
 import net.luminis.quic.impl.Role;
@@ -30,6 +31,10 @@ import net.luminis.quic.log.NullLogger;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 import java.util.concurrent.locks.ReentrantLock;
 
 
@@ -46,6 +51,9 @@ public class QuicStreamImpl implements QuicStream {
     private volatile boolean outputClosed;
     private volatile boolean inputClosed;
     private final ReentrantLock stateLock;
+    private volatile StreamPriority priority = StreamPriority.DEFAULT;
+    private final StreamPublisher publisher;
+    private final StreamSubscriber subscriber;
 
 
     public QuicStreamImpl(int streamId, Role role, QuicConnectionImpl connection, StreamManager streamManager, FlowControl flowController) {
@@ -69,7 +77,8 @@ public class QuicStreamImpl implements QuicStream {
         this.log = log;
 
         if (isBidirectional() || isUnidirectional() && isPeerInitiated()) {
-            inputStream = new StreamInputStreamImpl(this, determineInitialReceiveBufferSize());
+            long receiveBufferSize = determineInitialReceiveBufferSize();
+            inputStream = new StreamInputStreamImpl(this, receiveBufferSize, streamManager.createReceiveWindowTuner(receiveBufferSize));
         }
         else {
             inputStream = new NullStreamInputStream();
@@ -83,6 +92,8 @@ public class QuicStreamImpl implements QuicStream {
         }
 
         stateLock = new ReentrantLock();
+        publisher = new StreamPublisher(this);
+        subscriber = new StreamSubscriber(this);
     }
 
     private long determineInitialReceiveBufferSize() {
@@ -104,6 +115,26 @@ public class QuicStreamImpl implements QuicStream {
         return outputStream;
     }
 
+    @Override
+    public CompletableFuture<Integer> readAsync(ByteBuffer buffer) {
+        return inputStream.readAsync(buffer);
+    }
+
+    @Override
+    public CompletableFuture<Void> writeAsync(ByteBuffer data) {
+        return outputStream.writeAsync(data);
+    }
+
+    @Override
+    public Flow.Publisher<ByteBuffer> getPublisher() {
+        return publisher;
+    }
+
+    @Override
+    public Flow.Subscriber<ByteBuffer> getSubscriber() {
+        return subscriber;
+    }
+
     /**
      * Adds data from a newly received frame to the stream.
      *
@@ -175,6 +206,16 @@ public class QuicStreamImpl implements QuicStream {
         outputStream.reset(errorCode);
     }
 
+    @Override
+    public void setPriority(StreamPriority priority) {
+        this.priority = Objects.requireNonNull(priority);
+    }
+
+    @Override
+    public StreamPriority getPriority() {
+        return priority;
+    }
+
     @Override
     public String toString() {
         return "Stream " + streamId;
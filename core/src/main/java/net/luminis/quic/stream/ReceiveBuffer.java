@@ -19,6 +19,7 @@
 package net.luminis.quic.stream;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * A receive buffer that buffers incoming stream data until it is read,
@@ -62,6 +63,14 @@ public interface ReceiveBuffer {
      */
     int read(ByteBuffer buffer);
 
+    /**
+     * Reads all available bytes from the buffer without copying: the returned buffers (read-only) refer to the
+     * received data. The returned buffers remain valid until the next call to one of the read methods.
+     * This method never blocks: when no bytes are available, an empty list is returned.
+     * @return  buffers holding the bytes read, in stream order
+     */
+    List<ByteBuffer> readBuffers();
+
     /**
      * Returns whether all data of the stream is received (irrespective of whether it is read).
      * For streams that have no defined end (e.g. crypto streams), this method always returns false.
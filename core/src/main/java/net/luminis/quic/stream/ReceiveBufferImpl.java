@@ -19,11 +19,14 @@
 package net.luminis.quic.stream;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NavigableSet;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 /**
@@ -42,6 +45,9 @@ public class ReceiveBufferImpl implements ReceiveBuffer {
 
     private final NavigableSet<StreamElement> outOfOrderFrames = new ConcurrentSkipListSet<>();
     private final Queue<StreamElement> contiguousFrames = new ConcurrentLinkedQueue<>();
+    // Frames of which the data is handed out by readBuffers, which are released with the next read.
+    // Thread safety: only used by consumer thread.
+    private final List<StreamElement> handedOutFrames = new ArrayList<>();
     private volatile long contiguousUpToOffset = 0;
     private volatile long readUpToOffset = 0;
     private volatile long streamEndOffset = -1;
@@ -84,21 +90,50 @@ public class ReceiveBufferImpl implements ReceiveBuffer {
             return -1;
         }
 
+        releaseHandedOutFrames();
         int totalBytesRead = 0;
         StreamElement nextFrame = contiguousFrames.peek();
         while (nextFrame != null && buffer.hasRemaining()) {
             int bytesToRead = (int) Long.min(buffer.remaining(), nextFrame.getUpToOffset() - readUpToOffset);
-            buffer.put(nextFrame.getStreamData(), (int) (readUpToOffset - nextFrame.getOffset()), bytesToRead);
+            ByteBuffer data = nextFrame.getStreamDataBuffer();
+            data.position((int) (readUpToOffset - nextFrame.getOffset()));
+            data.limit(data.position() + bytesToRead);
+            buffer.put(data);
             readUpToOffset += bytesToRead;
             totalBytesRead += bytesToRead;
             if (readUpToOffset == nextFrame.getUpToOffset()) {
                 contiguousFrames.remove();
+                nextFrame.release();
                 nextFrame = contiguousFrames.peek();
             }
         }
         return totalBytesRead;
     }
 
+    @Override
+    public List<ByteBuffer> readBuffers() {
+        releaseHandedOutFrames();
+        List<ByteBuffer> buffers = new ArrayList<>();
+        StreamElement nextFrame = contiguousFrames.peek();
+        while (nextFrame != null) {
+            ByteBuffer data = nextFrame.getStreamDataBuffer();
+            data.position((int) (readUpToOffset - nextFrame.getOffset()));
+            buffers.add(data.slice());
+            readUpToOffset = nextFrame.getUpToOffset();
+            contiguousFrames.remove();
+            handedOutFrames.add(nextFrame);
+            nextFrame = contiguousFrames.peek();
+        }
+        return buffers;
+    }
+
+    private void releaseHandedOutFrames() {
+        if (!handedOutFrames.isEmpty()) {
+            handedOutFrames.forEach(StreamElement::release);
+            handedOutFrames.clear();
+        }
+    }
+
     @Override
     public boolean allDataReceived() {
         return streamEndOffset >= 0 && contiguousUpToOffset == streamEndOffset;
@@ -132,6 +167,10 @@ public class ReceiveBufferImpl implements ReceiveBuffer {
                     contiguousUpToOffset = nextFrame.getUpToOffset();
                     bufferedOutOfOrderData -= nextFrame.getLength();
                 }
+                else {
+                    // Data is already in contiguous frames (or even read), so not needed anymore.
+                    nextFrame.release();
+                }
             }
             return contiguousUpToOffset > previousContiguousUpToOffset;
         }
@@ -187,6 +226,9 @@ public class ReceiveBufferImpl implements ReceiveBuffer {
         if (outOfOrderFrames.add(combinedWithAfter)) {
             bufferedOutOfOrderData += combinedWithAfter.getLength();
         }
+        else {
+            combinedWithAfter.release();
+        }
     }
 
     StreamElement combineWithElementsAfter(StreamElement frameToAdd) {
@@ -216,29 +258,35 @@ public class ReceiveBufferImpl implements ReceiveBuffer {
         return Long.max(frame1.getUpToOffset(), frame2.getUpToOffset()) - Long.min(frame1.getOffset(), frame2.getOffset());
     }
 
+    /**
+     * Combines two overlapping frames into one. The frames passed in are consumed, i.e. the caller must not use them
+     * anymore (other than the one returned, if it is returned); frames that are not returned are released.
+     */
     static StreamElement combine(StreamElement frame1, StreamElement frame2) {
         assert frame1.getOffset() <= frame2.getOffset();
         assert frame1.getUpToOffset() > frame2.getOffset();
 
         if (contains(frame1, frame2)) {
+            frame2.release();
             return frame1;
         }
         if (contains(frame2, frame1)) {
+            frame1.release();
             return frame2;
         }
 
         int overlap = (int) (frame1.getUpToOffset() - frame2.getOffset());
         int newLength = frame1.getLength() + frame2.getLength() - overlap;
-        byte[] combinedData = new byte[newLength];
-        System.arraycopy(frame1.getStreamData(), 0, combinedData, 0, frame1.getLength());
-        System.arraycopy(
-                frame2.getStreamData(),
-                overlap,
-                combinedData,
-                frame1.getLength(),
-                (int) (frame2.getLength() - overlap));
-
-        return new SimpleStreamElement(frame1.getOffset(), combinedData, frame1.isFinal() || frame2.isFinal());
+        ByteBuffer combinedData = ByteBuffer.allocate(newLength);
+        combinedData.put(frame1.getStreamDataBuffer());
+        ByteBuffer frame2Data = frame2.getStreamDataBuffer();
+        frame2Data.position(overlap);
+        combinedData.put(frame2Data);
+        combinedData.flip();
+
+        frame1.release();
+        frame2.release();
+        return new SimpleStreamElement(frame1.getOffset(), combinedData, frame1.isFinal() || frame2.isFinal(), null);
     }
 
     private static StreamElement shrinkFrame(StreamElement frame, long newStartOffset, long newUpToOffset) {
@@ -251,9 +299,11 @@ public class ReceiveBufferImpl implements ReceiveBuffer {
         if (newLength == frame.getLength()) {
             return frame;
         }
-        byte[] limitedData = new byte[newLength];
-        System.arraycopy(frame.getStreamData(), (int) (newStartOffset - frame.getOffset()), limitedData, 0, newLength);
-        return new SimpleStreamElement(newStartOffset, limitedData, frame.isFinal());
+        // No need to copy, the shrunk frame refers to the data of the original frame (and releases it when released).
+        ByteBuffer limitedData = frame.getStreamDataBuffer();
+        limitedData.position((int) (newStartOffset - frame.getOffset()));
+        limitedData.limit(limitedData.position() + newLength);
+        return new SimpleStreamElement(newStartOffset, limitedData.slice(), frame.isFinal(), frame);
     }
 
 
@@ -305,20 +355,34 @@ public class ReceiveBufferImpl implements ReceiveBuffer {
 
     public void discardAllData() {
         discarded = true;
-        outOfOrderFrames.clear();
+        // Frames are removed one by one, so each frame is released once, even when add or read is executed concurrently
+        // (which may release the same frame as well, but releasing is idempotent).
+        StreamElement frame;
+        while ((frame = outOfOrderFrames.pollFirst()) != null) {
+            frame.release();
+        }
         bufferedOutOfOrderData = 0;
-        contiguousFrames.clear();
+        while ((frame = contiguousFrames.poll()) != null) {
+            frame.release();
+        }
+        // The frames handed out by readBuffers are only accessed by the consumer thread, which releases them with the
+        // next read (if any); not releasing them is harmless, apart from that their buffers are not reused.
+        handedOutFrames.clear();
     }
 
     private static class SimpleStreamElement implements StreamElement {
         private final long offset;
-        private final byte[] data;
+        private final ByteBuffer data;
         private final boolean isFinal;
+        // The element holding the data that this element refers to, if any
+        private final StreamElement source;
+        private final AtomicBoolean released = new AtomicBoolean();
 
-        public SimpleStreamElement(long offset, byte[] data, boolean isFinal) {
+        public SimpleStreamElement(long offset, ByteBuffer data, boolean isFinal, StreamElement source) {
             this.offset = offset;
             this.data = data;
             this.isFinal = isFinal;
+            this.source = source;
         }
 
         @Override
@@ -328,17 +392,24 @@ public class ReceiveBufferImpl implements ReceiveBuffer {
 
         @Override
         public int getLength() {
-            return data.length;
+            return data.remaining();
         }
 
         @Override
         public byte[] getStreamData() {
-            return data;
+            byte[] bytes = new byte[data.remaining()];
+            data.duplicate().get(bytes);
+            return bytes;
+        }
+
+        @Override
+        public ByteBuffer getStreamDataBuffer() {
+            return data.duplicate();
         }
 
         @Override
         public long getUpToOffset() {
-            return offset + data.length;
+            return offset + data.remaining();
         }
 
         @Override
@@ -346,18 +417,25 @@ public class ReceiveBufferImpl implements ReceiveBuffer {
             return isFinal;
         }
 
+        @Override
+        public void release() {
+            if (source != null && released.compareAndSet(false, true)) {
+                source.release();
+            }
+        }
+
         public int compareTo(StreamElement other) {
             if (this.offset != other.getOffset()) {
                 return Long.compare(this.offset, other.getOffset());
             }
             else {
-                return Integer.compare(this.data.length, other.getLength());
+                return Integer.compare(getLength(), other.getLength());
             }
         }
 
         @Override
         public String toString() {
-            return "" + offset + ".." + (offset + data.length - 1);
+            return "" + offset + ".." + (getUpToOffset() - 1);
         }
     }
 }
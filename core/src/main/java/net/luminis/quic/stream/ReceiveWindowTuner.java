@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.IntSupplier;
+
+/**
+ * Tunes the size of a receive window (i.e. the flow control credit given to the peer), similar to TCP receive buffer
+ * auto-tuning. Each round trip, the amount of data consumed by the application is measured; as this is an estimate of
+ * the bandwidth-delay product, the window is grown to twice that amount, so that the peer is not blocked by flow
+ * control while updates of the limit are in transit. The window never shrinks and never grows beyond the maximum.
+ * When the application is slow in reading data, the window is not increased, so it will only use more memory when
+ * that is necessary to achieve a higher throughput.
+ * This class is not thread-safe; callers must ensure it is not accessed concurrently.
+ */
+class ReceiveWindowTuner {
+
+    private final Clock clock;
+    private final long maxWindow;
+    // Supplies the current (smoothed) round trip time in milliseconds.
+    private final IntSupplier rttSupplier;
+    private long window;
+    private Instant measurementStart;
+    private long consumedSinceMeasurementStart;
+
+    ReceiveWindowTuner(long initialWindow, long maxWindow, IntSupplier rttSupplier) {
+        this(Clock.systemUTC(), initialWindow, maxWindow, rttSupplier);
+    }
+
+    ReceiveWindowTuner(Clock clock, long initialWindow, long maxWindow, IntSupplier rttSupplier) {
+        this.clock = clock;
+        this.window = initialWindow;
+        this.maxWindow = maxWindow;
+        this.rttSupplier = rttSupplier;
+    }
+
+    long getWindow() {
+        return window;
+    }
+
+    /**
+     * Registers that the application has consumed (read) the given number of bytes.
+     * @param bytes  number of bytes consumed
+     * @return  the window size, which might have grown due to this call
+     */
+    long dataConsumed(long bytes) {
+        if (window >= maxWindow) {
+            return window;
+        }
+        Instant now = clock.instant();
+        if (measurementStart == null) {
+            // As it is unknown how long it took to receive the data that is consumed first, it does not count.
+            measurementStart = now;
+            return window;
+        }
+
+        consumedSinceMeasurementStart += bytes;
+        int rtt = rttSupplier.getAsInt();
+        long elapsed = Duration.between(measurementStart, now).toMillis();
+        if (rtt > 0 && elapsed >= rtt) {
+            long consumedPerRtt = consumedSinceMeasurementStart * rtt / elapsed;
+            if (2 * consumedPerRtt > window) {
+                window = Long.min(2 * consumedPerRtt, maxWindow);
+            }
+            measurementStart = now;
+            consumedSinceMeasurementStart = 0;
+        }
+        return window;
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import net.luminis.quic.frame.StreamFrame;
+import net.luminis.quic.impl.Version;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A send buffer that retains the data written to a stream until it is acknowledged by the peer, so that lost data can
+ * be retransmitted from the buffer, instead of keeping (copies of) the stream frames that are in flight.
+ * Stream frames are created on demand: data is sent for the first time in stream order, ranges that are lost are
+ * re-framed from the buffer, split or coalesced to fit the frame size requested. As soon as all data up to a certain
+ * offset is acknowledged, it is released.
+ * The buffer keeps the data in the segments (buffers) as they were added, so data is not copied, except when a frame
+ * spans more than one segment.
+ * This implementation is thread-safe.
+ */
+class SendBuffer {
+
+    private final Version quicVersion;
+    private final int streamId;
+    // Segments holding the data that is not yet acknowledged, indexed by the stream offset of the first byte in the
+    // segment. The segments cover a contiguous range of stream data, starting at (or before) the acknowledged offset.
+    private final TreeMap<Long, ByteBuffer> segments = new TreeMap<>();
+    // Ranges above the acknowledged offset that are acknowledged; maps start offset to end offset (exclusive).
+    private final TreeMap<Long, Long> acknowledgedRanges = new TreeMap<>();
+    // Ranges that are lost and not yet retransmitted; maps start offset to end offset (exclusive).
+    private final TreeMap<Long, Long> lostRanges = new TreeMap<>();
+    // All data before the acknowledged offset is acknowledged.
+    private long acknowledgedOffset;
+    // The offset of the next byte that will be sent for the first time.
+    private long sendOffset;
+    // The offset just after the last byte that was added.
+    private long endOffset;
+    // The final size of the stream, or -1 when the stream is not yet closed.
+    private long finalOffset = -1;
+    private boolean finalSent;
+    private boolean finalLost;
+    private boolean finalAcknowledged;
+
+    SendBuffer(Version quicVersion, int streamId) {
+        this.quicVersion = quicVersion;
+        this.streamId = streamId;
+    }
+
+    /**
+     * Adds data to the buffer; the buffer takes ownership of the given buffer, so its content must not be changed
+     * afterwards.
+     * @param data  the data to add
+     */
+    synchronized void add(ByteBuffer data) {
+        if (finalOffset >= 0) {
+            throw new IllegalStateException("stream already closed");
+        }
+        if (data.hasRemaining()) {
+            segments.put(endOffset, data);
+            endOffset += data.remaining();
+        }
+    }
+
+    /**
+     * Marks the end of the stream: the last frame sent will have the fin bit set.
+     */
+    synchronized void close() {
+        if (finalOffset < 0) {
+            finalOffset = endOffset;
+        }
+    }
+
+    /**
+     * @return  whether there is data (or the end of stream) that is not yet sent.
+     */
+    synchronized boolean hasDataToSend() {
+        return sendOffset < endOffset || (finalOffset >= 0 && !finalSent);
+    }
+
+    /**
+     * @return  whether there is lost data (or a lost end of stream) that must be retransmitted.
+     */
+    synchronized boolean hasLostData() {
+        return !lostRanges.isEmpty() || finalLost;
+    }
+
+    /**
+     * Creates a stream frame with data that has not been sent before.
+     * @param maxDataLength  the maximum number of data bytes the frame may contain
+     * @return  the frame, or null if there is nothing to send
+     */
+    synchronized StreamFrame nextFrame(int maxDataLength) {
+        int length = (int) Long.min(endOffset - sendOffset, Integer.max(maxDataLength, 0));
+        boolean fin = finalOffset >= 0 && !finalSent && sendOffset + length == finalOffset;
+        if (length == 0 && !fin) {
+            return null;
+        }
+        StreamFrame frame = createFrame(sendOffset, length, fin);
+        sendOffset += length;
+        finalSent |= fin;
+        return frame;
+    }
+
+    /**
+     * Creates a stream frame that retransmits (part of) the lost data with the lowest offset.
+     * @param maxDataLength  the maximum number of data bytes the frame may contain
+     * @return  the frame, or null if there is nothing to retransmit
+     */
+    synchronized StreamFrame nextRetransmitFrame(int maxDataLength) {
+        Map.Entry<Long, Long> lostRange = lostRanges.firstEntry();
+        if (lostRange != null) {
+            long start = lostRange.getKey();
+            int length = (int) Long.min(lostRange.getValue() - start, maxDataLength);
+            if (length <= 0) {
+                return null;
+            }
+            removeRange(lostRanges, start, start + length);
+            boolean fin = finalLost && start + length == finalOffset;
+            finalLost &= !fin;
+            return createFrame(start, length, fin);
+        }
+        else if (finalLost) {
+            finalLost = false;
+            return createFrame(finalOffset, 0, true);
+        }
+        return null;
+    }
+
+    /**
+     * Registers the data of the given frame as lost; the parts of it that are not acknowledged meanwhile will be
+     * retransmitted.
+     * @param frame  the lost frame
+     * @return  whether there is lost data to retransmit
+     */
+    synchronized boolean frameLost(StreamFrame frame) {
+        long start = Long.max(frame.getOffset(), acknowledgedOffset);
+        long end = Long.min(frame.getUpToOffset(), sendOffset);
+        if (start < end) {
+            addRange(lostRanges, start, end);
+            Long from = acknowledgedRanges.floorKey(start);
+            for (Map.Entry<Long, Long> acknowledged: acknowledgedRanges.subMap(from != null? from: start, end).entrySet()) {
+                removeRange(lostRanges, acknowledged.getKey(), acknowledged.getValue());
+            }
+        }
+        if (frame.isFinal() && finalSent && !finalAcknowledged) {
+            finalLost = true;
+        }
+        return hasLostData();
+    }
+
+    /**
+     * Registers the data of the given frame as acknowledged; data that is acknowledged (and all data before it) is
+     * released.
+     * @param frame  the acknowledged frame
+     */
+    synchronized void frameAcknowledged(StreamFrame frame) {
+        long start = Long.max(frame.getOffset(), acknowledgedOffset);
+        long end = Long.min(frame.getUpToOffset(), sendOffset);
+        if (start < end) {
+            removeRange(lostRanges, start, end);
+            addRange(acknowledgedRanges, start, end);
+            Map.Entry<Long, Long> first = acknowledgedRanges.firstEntry();
+            if (first.getKey() == acknowledgedOffset) {
+                acknowledgedRanges.pollFirstEntry();
+                acknowledgedOffset = first.getValue();
+                releaseAcknowledgedSegments();
+            }
+        }
+        if (frame.isFinal()) {
+            finalAcknowledged = true;
+            finalLost = false;
+        }
+    }
+
+    /**
+     * @return  whether all data, including the end of stream, is acknowledged.
+     */
+    synchronized boolean allAcknowledged() {
+        return finalAcknowledged && acknowledgedOffset == finalOffset;
+    }
+
+    /**
+     * @return  the number of bytes retained by the buffer (either not yet sent or not yet acknowledged).
+     */
+    synchronized long bufferedBytes() {
+        return segments.values().stream().mapToLong(ByteBuffer::remaining).sum();
+    }
+
+    /**
+     * Discards all data and resets the buffer to its initial state.
+     */
+    synchronized void clear() {
+        segments.clear();
+        acknowledgedRanges.clear();
+        lostRanges.clear();
+        acknowledgedOffset = 0;
+        sendOffset = 0;
+        endOffset = 0;
+        finalOffset = -1;
+        finalSent = false;
+        finalLost = false;
+        finalAcknowledged = false;
+    }
+
+    private StreamFrame createFrame(long offset, int length, boolean fin) {
+        if (length == 0) {
+            return new StreamFrame(quicVersion, streamId, offset, ByteBuffer.allocate(0), fin);
+        }
+        Map.Entry<Long, ByteBuffer> first = segments.floorEntry(offset);
+        int skip = (int) (offset - first.getKey());
+        ByteBuffer firstSegment = first.getValue();
+        if (skip + length <= firstSegment.remaining()) {
+            // All data for the frame is in one segment, so the frame can refer to it, no need to copy.
+            ByteBuffer data = firstSegment.duplicate();
+            data.position(data.position() + skip);
+            data.limit(data.position() + length);
+            return new StreamFrame(quicVersion, streamId, offset, data, fin);
+        }
+        else {
+            byte[] frameData = new byte[length];
+            int copied = 0;
+            for (ByteBuffer segment: segments.tailMap(first.getKey()).values()) {
+                ByteBuffer data = segment.duplicate();
+                data.position(data.position() + skip);
+                int count = Integer.min(data.remaining(), length - copied);
+                data.get(frameData, copied, count);
+                copied += count;
+                skip = 0;
+                if (copied == length) {
+                    break;
+                }
+            }
+            return new StreamFrame(quicVersion, streamId, offset, ByteBuffer.wrap(frameData), fin);
+        }
+    }
+
+    private void releaseAcknowledgedSegments() {
+        Map.Entry<Long, ByteBuffer> first;
+        while ((first = segments.firstEntry()) != null && first.getKey() + first.getValue().remaining() <= acknowledgedOffset) {
+            segments.pollFirstEntry();
+        }
+    }
+
+    // Adds the range to the given (non-overlapping) ranges, merging it with ranges it overlaps or is adjacent to.
+    private static void addRange(TreeMap<Long, Long> ranges, long start, long end) {
+        Map.Entry<Long, Long> floor = ranges.floorEntry(start);
+        if (floor != null && floor.getValue() >= start) {
+            start = floor.getKey();
+            end = Long.max(end, floor.getValue());
+        }
+        Map.Entry<Long, Long> next;
+        while ((next = ranges.higherEntry(start)) != null && next.getKey() <= end) {
+            end = Long.max(end, next.getValue());
+            ranges.remove(next.getKey());
+        }
+        ranges.put(start, end);
+    }
+
+    // Removes the range from the given (non-overlapping) ranges, splitting ranges that partly overlap.
+    private static void removeRange(TreeMap<Long, Long> ranges, long start, long end) {
+        Map.Entry<Long, Long> lower = ranges.lowerEntry(start);
+        if (lower != null && lower.getValue() > start) {
+            ranges.put(lower.getKey(), start);
+            if (lower.getValue() > end) {
+                ranges.put(end, lower.getValue());
+                return;
+            }
+        }
+        Map.Entry<Long, Long> next;
+        while ((next = ranges.ceilingEntry(start)) != null && next.getKey() < end) {
+            ranges.remove(next.getKey());
+            if (next.getValue() > end) {
+                ranges.put(end, next.getValue());
+            }
+        }
+    }
+}
@@ -18,6 +18,8 @@
  */
 package net.luminis.quic.stream;
 
+import java.nio.ByteBuffer;
+
 
 public interface StreamElement extends Comparable<StreamElement> {
 
@@ -27,7 +29,23 @@ public interface StreamElement extends Comparable<StreamElement> {
 
     byte[] getStreamData();
 
+    /**
+     * Returns the stream data as a (read-only) buffer, positioned at the start of the data. Implementations that do
+     * not hold the data in an array, can return the data without copying.
+     * @return
+     */
+    default ByteBuffer getStreamDataBuffer() {
+        return ByteBuffer.wrap(getStreamData()).asReadOnlyBuffer();
+    }
+
     long getUpToOffset();
 
     boolean isFinal();
+
+    /**
+     * Releases the resources that hold the stream data; after the element is released, its data must not be accessed
+     * anymore.
+     */
+    default void release() {
+    }
 }
@@ -21,10 +21,33 @@ package net.luminis.quic.stream;
 import net.luminis.quic.frame.StreamFrame;
 import net.luminis.quic.impl.TransportError;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class StreamInputStream extends InputStream {
 
+    /**
+     * Reads all bytes that are available without copying them.
+     * The returned (read-only) buffers remain valid until the next call to one of the read methods, or until the
+     * stream is closed. This method blocks until at least one byte is available, the end of the stream is detected,
+     * or an exception is thrown.
+     * @return  buffers holding the bytes read, in stream order; an empty list if the end of the stream has been reached.
+     * @throws IOException
+     */
+    public abstract List<ByteBuffer> readBuffers() throws IOException;
+
+    /**
+     * Reads bytes into the given buffer, without blocking: the returned future completes as soon as at least one byte
+     * is read (or the end of the stream is reached). At most one asynchronous read can be pending.
+     * @param buffer  the buffer to read into
+     * @return  a future that completes with the number of bytes read, or -1 if the end of the stream has been reached
+     * @throws java.nio.channels.ReadPendingException  if a previous asynchronous read has not completed yet
+     */
+    public abstract CompletableFuture<Integer> readAsync(ByteBuffer buffer);
+
     abstract long addDataFrom(StreamFrame frame) throws TransportError;
 
     abstract long getCurrentReceiveOffset();
@@ -27,8 +27,12 @@ import net.luminis.quic.impl.TransportError;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ReadPendingException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static net.luminis.quic.QuicConstants.TransportErrorCode.FINAL_SIZE_ERROR;
 import static net.luminis.quic.QuicConstants.TransportErrorCode.FLOW_CONTROL_ERROR;
@@ -49,16 +53,28 @@ class StreamInputStreamImpl extends StreamInputStream {
     private final ReceiveBuffer receiveBuffer;
     private final Object addMonitor = new Object();
     private long lastCommunicatedMaxData;
-    private final long receiverMaxDataIncrement;
+    private long receiverMaxDataIncrement;
+    // Tunes the receive window when auto-tuning is enabled, null otherwise.
+    private final ReceiveWindowTuner receiveWindowTuner;
+    private long receiveWindow;
     private long largestOffsetReceived;
     private long receiverFlowControlLimit;
     private volatile boolean aborted;
     private volatile long finalSize = -1;
+    // The asynchronous read that waits for data, if any; guarded by addMonitor.
+    private CompletableFuture<Integer> pendingRead;
+    private ByteBuffer pendingReadBuffer;
 
     public StreamInputStreamImpl(QuicStreamImpl quicStream, long receiveBufferSize) {
+        this(quicStream, receiveBufferSize, null);
+    }
+
+    public StreamInputStreamImpl(QuicStreamImpl quicStream, long receiveBufferSize, ReceiveWindowTuner receiveWindowTuner) {
         this.quicStream = quicStream;
+        this.receiveWindowTuner = receiveWindowTuner;
         receiveBuffer = new ReceiveBufferImpl();
 
+        receiveWindow = receiveBufferSize;
         receiverFlowControlLimit = receiveBufferSize;
         lastCommunicatedMaxData = receiverFlowControlLimit;
         receiverMaxDataIncrement = (long) (receiverFlowControlLimit * receiverMaxDataIncrementFactor);
@@ -90,18 +106,34 @@ class StreamInputStreamImpl extends StreamInputStream {
         }
 
         if (!aborted && !closed && !reset) {
+            long largestOffsetIncrease;
+            CompletableFuture<Integer> completedRead = null;
+            int bytesRead = 0;
             synchronized (addMonitor) {
                 if (frame.getUpToOffset() > receiverFlowControlLimit) {
                     throw new TransportError(FLOW_CONTROL_ERROR);
                 }
                 receiveBuffer.add(frame);
-                long largestOffsetIncrease = Long.max(0, frame.getUpToOffset() - largestOffsetReceived);
+                largestOffsetIncrease = Long.max(0, frame.getUpToOffset() - largestOffsetReceived);
                 largestOffsetReceived = Long.max(largestOffsetReceived, frame.getUpToOffset());
                 addMonitor.notifyAll();
-                return largestOffsetIncrease;
+                if (pendingRead != null) {
+                    bytesRead = readAvailable(pendingReadBuffer);
+                    if (bytesRead != 0) {
+                        completedRead = pendingRead;
+                        pendingRead = null;
+                        pendingReadBuffer = null;
+                    }
+                }
             }
+            // Complete outside the monitor, as completing runs the (non-async) dependent actions of the future.
+            if (completedRead != null) {
+                completedRead.complete(bytesRead);
+            }
+            return largestOffsetIncrease;
         }
         else {
+            frame.release();
             return 0;
         }
     }
@@ -193,6 +225,101 @@ class StreamInputStreamImpl extends StreamInputStream {
         }
     }
 
+    @Override
+    public List<ByteBuffer> readBuffers() throws IOException {
+        Instant readAttemptStarted = Instant.now();
+        long waitPeriod = waitForNextFrameTimeout;
+        while (true) {
+            if (aborted || closed || reset) {
+                throw new IOException(aborted ? "Connection closed" : closed ? "Stream closed" : "Stream reset by peer");
+            }
+
+            synchronized (addMonitor) {
+                try {
+                    blockingReaderThread = Thread.currentThread();
+
+                    if (receiveBuffer.allRead()) {
+                        allDataRead();
+                        return Collections.emptyList();
+                    }
+                    List<ByteBuffer> buffers = receiveBuffer.readBuffers();
+                    if (!buffers.isEmpty()) {
+                        updateAllowedFlowControl(buffers.stream().mapToInt(ByteBuffer::remaining).sum());
+                        return buffers;
+                    }
+
+                    // Nothing read: block until bytes can be read, read timeout or abort
+                    try {
+                        addMonitor.wait(waitPeriod);
+                    } catch (InterruptedException e) {
+                        // Nothing to do here: read will be abort in next loop iteration with IOException
+                    }
+                } finally {
+                    blockingReaderThread = null;
+                }
+            }
+
+            if (receiveBuffer.bytesAvailable() == 0) {
+                long waited = Duration.between(readAttemptStarted, Instant.now()).toMillis();
+                if (waited > waitForNextFrameTimeout) {
+                    throw new SocketTimeoutException("Read timeout on stream " + quicStream.streamId + "; read up to " + receiveBuffer.readOffset());
+                } else {
+                    waitPeriod = Long.max(1, waitForNextFrameTimeout - waited);
+                }
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<Integer> readAsync(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        int bytesRead;
+        synchronized (addMonitor) {
+            // State is checked while holding the monitor, so an abort, close or reset either is seen here, or fails the
+            // pending read that is registered below.
+            if (aborted || closed || reset) {
+                return CompletableFuture.failedFuture(new IOException(aborted ? "Connection closed" : closed ? "Stream closed" : "Stream reset by peer"));
+            }
+            if (pendingRead != null) {
+                throw new ReadPendingException();
+            }
+            bytesRead = readAvailable(buffer);
+            if (bytesRead == 0) {
+                // Nothing available yet, the read will be completed when data is added.
+                pendingRead = new CompletableFuture<>();
+                pendingReadBuffer = buffer;
+                return pendingRead;
+            }
+        }
+        return CompletableFuture.completedFuture(bytesRead);
+    }
+
+    // Reads the bytes that are available, without blocking; caller must hold addMonitor.
+    private int readAvailable(ByteBuffer buffer) {
+        int bytesRead = receiveBuffer.read(buffer);
+        if (bytesRead > 0) {
+            updateAllowedFlowControl(bytesRead);
+        }
+        else if (bytesRead < 0) {
+            allDataRead();
+        }
+        return bytesRead;
+    }
+
+    private void failPendingRead(String reason) {
+        CompletableFuture<Integer> failedRead;
+        synchronized (addMonitor) {
+            failedRead = pendingRead;
+            pendingRead = null;
+            pendingReadBuffer = null;
+        }
+        if (failedRead != null) {
+            failedRead.completeExceptionally(new IOException(reason));
+        }
+    }
+
     private void allDataRead() {
         quicStream.inputClosed();
     }
@@ -220,6 +347,7 @@ class StreamInputStreamImpl extends StreamInputStream {
         closed = true;
         receiveBuffer.discardAllData();
         interruptBlockingReader();
+        failPendingRead("Stream closed");
         quicStream.inputClosed();
     }
 
@@ -234,6 +362,14 @@ class StreamInputStreamImpl extends StreamInputStream {
     private void updateAllowedFlowControl(int bytesRead) {
         // Slide flow control window forward (with as many bytes as are read)
         receiverFlowControlLimit += bytesRead;
+        if (receiveWindowTuner != null) {
+            long newWindow = receiveWindowTuner.dataConsumed(bytesRead);
+            if (newWindow > receiveWindow) {
+                receiverFlowControlLimit += newWindow - receiveWindow;
+                receiveWindow = newWindow;
+                receiverMaxDataIncrement = (long) (receiveWindow * receiverMaxDataIncrementFactor);
+            }
+        }
         quicStream.updateConnectionFlowControl(bytesRead);
         // Avoid sending flow control updates with every single read; check diff with last send max data
         if (receiverFlowControlLimit - lastCommunicatedMaxData > receiverMaxDataIncrement) {
@@ -278,6 +414,7 @@ class StreamInputStreamImpl extends StreamInputStream {
             quicStream.updateConnectionFlowControl(unusedFlowControlCredits);
             receiveBuffer.discardAllData();
             interruptBlockingReader();
+            failPendingRead("Stream reset by peer");
             quicStream.inputClosed();
         }
         return increment;
@@ -286,6 +423,7 @@ class StreamInputStreamImpl extends StreamInputStream {
     void abort() {
         aborted = true;
         interruptBlockingReader();
+        failPendingRead("Connection closed");
     }
 
     private void interruptBlockingReader() {
@@ -64,6 +64,9 @@ public class StreamManager {
     private volatile long flowControlMax;
     private long flowControlLastAdvertised;
     private long flowControlIncrement;
+    // Tunes the connection receive window when auto-tuning is enabled, null otherwise.
+    private ReceiveWindowTuner connectionWindowTuner;
+    private long connectionWindow;
     private final ReentrantLock maxOpenStreamsUpdateLock;
     private final ReentrantLock updateFlowControlLock;
     private final AtomicInteger nextStreamIdBidirectional;
@@ -171,6 +174,24 @@ public class StreamManager {
         flowControlMax = initialMaxData;
         flowControlLastAdvertised = flowControlMax;
         flowControlIncrement = flowControlMax / 10;
+        connectionWindow = initialMaxData;
+        if (config.receiveWindowAutoTuning()) {
+            connectionWindowTuner = new ReceiveWindowTuner(initialMaxData, config.maxConnectionReceiveWindow(), connection::getSmoothedRtt);
+        }
+    }
+
+    /**
+     * Creates a receive window tuner for a stream, if receive window auto-tuning is enabled.
+     * @param initialWindow  the initial receive window of the stream
+     * @return  the tuner, or null if receive window auto-tuning is not enabled.
+     */
+    ReceiveWindowTuner createReceiveWindowTuner(long initialWindow) {
+        if (config.receiveWindowAutoTuning()) {
+            return new ReceiveWindowTuner(initialWindow, config.maxStreamReceiveWindow(), connection::getSmoothedRtt);
+        }
+        else {
+            return null;
+        }
     }
 
     public QuicStream createStream(boolean bidirectional) {
@@ -253,9 +274,13 @@ public class StreamManager {
                 if (peerInitiatedStream != null) {
                     cumulativeReceiveOffset += peerInitiatedStream.addStreamData(frame);
                 }
+                else {
+                    frame.release();
+                }
             }
             else {
                 log.warn("Receiving frame for non-existent stream " + streamId);
+                frame.release();
             }
         }
     }
@@ -321,6 +346,14 @@ public class StreamManager {
             updateFlowControlLock.lock();
 
             flowControlMax += size;
+            if (connectionWindowTuner != null) {
+                long newWindow = connectionWindowTuner.dataConsumed(size);
+                if (newWindow > connectionWindow) {
+                    flowControlMax += newWindow - connectionWindow;
+                    connectionWindow = newWindow;
+                    flowControlIncrement = connectionWindow / 10;
+                }
+            }
             if (flowControlMax - flowControlLastAdvertised > flowControlIncrement) {
                 connection.send(new MaxDataFrame(flowControlMax), f -> {}, true);
                 flowControlLastAdvertised = flowControlMax;
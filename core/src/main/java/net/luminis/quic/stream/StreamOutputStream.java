@@ -18,10 +18,63 @@
  */
 package net.luminis.quic.stream;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class StreamOutputStream extends OutputStream {
-    
+
+    // Mapping is done in regions, to limit the size of the address space used at once (and because a mapped buffer
+    // cannot exceed Integer.MAX_VALUE).
+    static final int MAX_MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Writes the remaining bytes of the given buffer to the stream, without copying: ownership of the buffer content
+     * is transferred to the stream, so the caller must not change the content of the buffer (between position and
+     * limit) anymore.
+     * This method blocks until all data is buffered; on return, the position of the given buffer is equal to its limit.
+     * @param data
+     * @throws IOException
+     */
+    public abstract void write(ByteBuffer data) throws IOException;
+
+    /**
+     * Writes the remaining bytes of the given buffer to the stream, without blocking and without copying (see
+     * {@link #write(ByteBuffer)}): the returned future completes when all data is buffered. At most one asynchronous
+     * write can be pending.
+     * @param data
+     * @return  a future that completes when all data is buffered
+     * @throws java.nio.channels.WritePendingException  if a previous asynchronous write has not completed yet
+     */
+    public abstract CompletableFuture<Void> writeAsync(ByteBuffer data);
+
+    /**
+     * Writes a region of the given file to the stream, without copying the file data into the heap: the region is
+     * memory-mapped and the mapped buffers are written to the stream. The file region should not be changed (and
+     * certainly not be truncated) until all data is sent and acknowledged.
+     * This method blocks until all data is buffered.
+     * @param channel  the file channel to read from
+     * @param position  the position in the file to start reading
+     * @param count  the maximum number of bytes to transfer
+     * @return  the number of bytes transferred, which is less than count when the end of the file is reached
+     * @throws IOException
+     */
+    public long transferFrom(FileChannel channel, long position, long count) throws IOException {
+        if (position < 0 || count < 0) {
+            throw new IllegalArgumentException();
+        }
+        long bytesToTransfer = Long.max(0, Long.min(count, channel.size() - position));
+        long transferred = 0;
+        while (transferred < bytesToTransfer) {
+            long regionSize = Long.min(bytesToTransfer - transferred, MAX_MAPPED_REGION_SIZE);
+            write(channel.map(FileChannel.MapMode.READ_ONLY, position + transferred, regionSize));
+            transferred += regionSize;
+        }
+        return transferred;
+    }
+
     abstract void reset(long errorCode);
 
     protected abstract void resetOutputStream();
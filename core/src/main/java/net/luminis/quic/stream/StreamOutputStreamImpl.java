@@ -24,13 +24,15 @@ import net.luminis.quic.frame.ResetStreamFrame;
 import net.luminis.quic.frame.StreamDataBlockedFrame;
 import net.luminis.quic.frame.StreamFrame;
 import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.StreamPriority;
+import net.luminis.quic.send.StreamFrameSupplier;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritePendingException;
 import java.util.Arrays;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -44,12 +46,12 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
     private static final int MIN_FRAME_SIZE = 1 + 8 + 8 + 2 + 1;
 
     private final QuicStreamImpl quicStream;
-    private final ByteBuffer END_OF_STREAM_MARKER = ByteBuffer.allocate(0);
     private final Object lock = new Object();
 
-    // Send queue contains stream bytes to send in order. The position of the first byte buffer in the queue determines the next byte(s) to send.
-    private Queue<ByteBuffer> sendQueue = new ConcurrentLinkedDeque<>();
+    // Send buffer contains the stream bytes to send, and the bytes sent that are not yet acknowledged, so lost data can be retransmitted.
+    private final SendBuffer sendBuffer;
     private final int maxBufferSize;
+    // Number of bytes written that are not yet sent.
     private final AtomicInteger bufferedBytes;
     private final ReentrantLock bufferLock;
     private final Condition notFull;
@@ -68,12 +70,20 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
     // Stream offset at which the stream was last blocked, for detecting the first time stream is blocked at a certain offset.
     private long blockedOffset;
     private volatile Thread blockingWriterThread;
+    // The asynchronous write that waits for buffer space, if any; guarded by bufferLock.
+    private CompletableFuture<Void> pendingWrite;
+    private ByteBuffer pendingWriteData;
+    // Thread safety: guarded by bufferLock
+    private boolean closeAfterPendingWrite;
     protected final FlowControl flowController;
     private volatile boolean aborted;
+    // Supplies the stream frames; the supplier lets the sender schedule the frames based on the priority of the stream.
+    private final StreamFrameSupplier frameSupplier = new StreamOutputFrameSupplier();
 
 
     StreamOutputStreamImpl(QuicStreamImpl quicStream, Integer sendBufferSize, FlowControl flowControl) {
         this.quicStream = quicStream;
+        sendBuffer = new SendBuffer(quicStream.quicVersion, quicStream.streamId);
         flowController = flowControl;
         bufferedBytes = new AtomicInteger();
         bufferLock = new ReentrantLock();
@@ -116,6 +126,128 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
             return;
         }
 
+        waitForBufferSpace(len);
+        enqueue(ByteBuffer.wrap(Arrays.copyOfRange(data, off, off + len)));
+    }
+
+    // The stream frames that are sent refer to the given buffer, so it is referenced until all data is acknowledged.
+    @Override
+    public void write(ByteBuffer data) throws IOException {
+        checkState();
+        ByteBuffer remaining = data.slice();
+        data.position(data.limit());
+        if (remaining.remaining() > maxBufferSize) {
+            // Just like with writing byte arrays, split in half buffer sizes to avoid that the buffer needs to be
+            // emptied completely before a next chunk can be added.
+            int halfBuffersize = maxBufferSize / 2;
+            while (remaining.remaining() > halfBuffersize) {
+                ByteBuffer chunk = remaining.duplicate();
+                chunk.limit(chunk.position() + halfBuffersize);
+                waitForBufferSpace(halfBuffersize);
+                enqueue(chunk.slice());
+                remaining.position(remaining.position() + halfBuffersize);
+            }
+        }
+        if (remaining.hasRemaining()) {
+            waitForBufferSpace(remaining.remaining());
+            enqueue(remaining.slice());
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> writeAsync(ByteBuffer data) {
+        bufferLock.lock();
+        try {
+            // State is checked while holding the lock, so an abort or reset either is seen here, or fails the pending
+            // write that is registered below.
+            checkState();
+            if (pendingWrite != null) {
+                throw new WritePendingException();
+            }
+            ByteBuffer remaining = data.slice();
+            data.position(data.limit());
+            enqueueAvailable(remaining);
+            if (!remaining.hasRemaining()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            // The rest will be buffered when the sender has taken data from the buffer.
+            pendingWrite = new CompletableFuture<>();
+            pendingWriteData = remaining;
+            return pendingWrite;
+        }
+        catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        finally {
+            bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Buffers as much of the given data as fits in the send buffer. Just like with blocking writes, large writes are
+     * split in half buffer sizes. Caller must hold the buffer lock.
+     * @param data
+     */
+    private void enqueueAvailable(ByteBuffer data) {
+        int halfBuffersize = Integer.max(1, maxBufferSize / 2);
+        while (data.hasRemaining()) {
+            int chunkSize = Integer.min(data.remaining(), halfBuffersize);
+            if (maxBufferSize - bufferedBytes.get() < chunkSize) {
+                return;
+            }
+            ByteBuffer chunk = data.slice();
+            chunk.limit(chunkSize);
+            data.position(data.position() + chunkSize);
+            enqueue(chunk);
+        }
+    }
+
+    private void servePendingWrite() {
+        CompletableFuture<Void> completedWrite = null;
+        bufferLock.lock();
+        try {
+            if (pendingWrite != null) {
+                enqueueAvailable(pendingWriteData);
+                if (!pendingWriteData.hasRemaining()) {
+                    completedWrite = pendingWrite;
+                    pendingWrite = null;
+                    pendingWriteData = null;
+                    if (closeAfterPendingWrite) {
+                        // All data of the last write is buffered, so now the final offset can be set.
+                        closeAfterPendingWrite = false;
+                        sendBuffer.close();
+                        queueSendRequest();
+                    }
+                }
+            }
+        }
+        finally {
+            bufferLock.unlock();
+        }
+        // Complete outside the lock, as completing runs the (non-async) dependent actions of the future.
+        if (completedWrite != null) {
+            completedWrite.complete(null);
+        }
+    }
+
+    private void failPendingWrite(String reason) {
+        CompletableFuture<Void> failedWrite;
+        bufferLock.lock();
+        try {
+            failedWrite = pendingWrite;
+            pendingWrite = null;
+            pendingWriteData = null;
+            closeAfterPendingWrite = false;
+        }
+        finally {
+            bufferLock.unlock();
+        }
+        if (failedWrite != null) {
+            failedWrite.completeExceptionally(new IOException(reason));
+        }
+    }
+
+    private void waitForBufferSpace(int len) throws IOException {
         int availableBufferSpace = maxBufferSize - bufferedBytes.get();
         if (len > availableBufferSpace) {
             // Wait for enough buffer space to become available
@@ -137,13 +269,16 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
                 bufferLock.unlock();
             }
         }
+    }
 
-        sendQueue.add(ByteBuffer.wrap(Arrays.copyOfRange(data, off, off + len)));
+    private void enqueue(ByteBuffer data) {
+        int len = data.remaining();
+        sendBuffer.add(data);
         bufferedBytes.getAndAdd(len);
         synchronized (lock) {
             if (!sendRequestQueued) {
                 sendRequestQueued = true;
-                quicStream.connection.send(this::sendFrame, MIN_FRAME_SIZE, getEncryptionLevel(), this::retransmitStreamFrame, true);
+                quicStream.connection.send(frameSupplier, MIN_FRAME_SIZE, getEncryptionLevel(), this::streamFrameLost, true);
             }
         }
     }
@@ -164,13 +299,28 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
     @Override
     public void close() throws IOException {
         if (!closed && !aborted && !reset) {
-            sendQueue.add(END_OF_STREAM_MARKER);
-            closed = true;
-            synchronized (lock) {
-                if (!sendRequestQueued) {
-                    sendRequestQueued = true;
-                    quicStream.connection.send(this::sendFrame, MIN_FRAME_SIZE, getEncryptionLevel(), this::retransmitStreamFrame, true);
+            bufferLock.lock();
+            try {
+                closed = true;
+                if (pendingWrite != null) {
+                    // Closing fixes the final size, so it must wait until the data of the pending write is buffered.
+                    closeAfterPendingWrite = true;
+                    return;
                 }
+                sendBuffer.close();
+            }
+            finally {
+                bufferLock.unlock();
+            }
+            queueSendRequest();
+        }
+    }
+
+    private void queueSendRequest() {
+        synchronized (lock) {
+            if (!sendRequestQueued) {
+                sendRequestQueued = true;
+                quicStream.connection.send(frameSupplier, MIN_FRAME_SIZE, getEncryptionLevel(), this::streamFrameLost, true);
             }
         }
     }
@@ -192,42 +342,42 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
             sendRequestQueued = false;
         }
 
-        if (!sendQueue.isEmpty()) {
+        if (sendBuffer.hasLostData()) {
+            // Lost data is retransmitted before new data is sent. It is not subject to flow control, as it has been
+            // accounted for when it was sent for the first time.
+            StreamFrame dummy = new StreamFrame(quicStream.quicVersion, quicStream.streamId, currentOffset, new byte[0], false);
+            StreamFrame streamFrame = sendBuffer.nextRetransmitFrame(maxFrameSize - dummy.getFrameLength() - 1);
+            if (streamFrame != null) {
+                if (sendBuffer.hasLostData() || sendBuffer.hasDataToSend()) {
+                    synchronized (lock) {
+                        sendRequestQueued = true;
+                    }
+                    quicStream.connection.send(frameSupplier, MIN_FRAME_SIZE, getEncryptionLevel(), this::streamFrameLost, true);
+                }
+                quicStream.log.recovery("Retransmitted lost stream data " + streamFrame);
+                return streamFrame;
+            }
+        }
+
+        if (sendBuffer.hasDataToSend()) {
             long flowControlLimit = flowController.getFlowControlLimit(quicStream);
             assert (flowControlLimit >= currentOffset);
 
             int maxBytesToSend = bufferedBytes.get();
             if (flowControlLimit > currentOffset || maxBytesToSend == 0) {
-                int nrOfBytes = 0;
                 StreamFrame dummy = new StreamFrame(quicStream.quicVersion, quicStream.streamId, currentOffset, new byte[0], false);
                 maxBytesToSend = Integer.min(maxBytesToSend, maxFrameSize - dummy.getFrameLength() - 1);  // Take one byte extra for length field var int
                 int maxAllowedByFlowControl = (int) (flowController.increaseFlowControlLimit(quicStream, currentOffset + maxBytesToSend) - currentOffset);
                 maxBytesToSend = Integer.min(maxAllowedByFlowControl, maxBytesToSend);
 
-                byte[] dataToSend = new byte[maxBytesToSend];
-                boolean finalFrame = false;
-                while (nrOfBytes < maxBytesToSend && !sendQueue.isEmpty()) {
-                    ByteBuffer buffer = sendQueue.peek();
-                    int position = nrOfBytes;
-                    if (buffer.remaining() <= maxBytesToSend - nrOfBytes) {
-                        // All bytes remaining in buffer will fit in stream frame
-                        nrOfBytes += buffer.remaining();
-                        buffer.get(dataToSend, position, buffer.remaining());
-                        sendQueue.poll();
-                    } else {
-                        // Just part of the buffer will fit in (and will fill up) the stream frame
-                        buffer.get(dataToSend, position, maxBytesToSend - nrOfBytes);
-                        nrOfBytes = maxBytesToSend;  // Short form of: nrOfBytes += (maxBytesToSend - nrOfBytes)
-                    }
-                }
-                if (!sendQueue.isEmpty() && sendQueue.peek() == END_OF_STREAM_MARKER) {
-                    finalFrame = true;
-                    sendQueue.poll();
-                }
-                if (nrOfBytes == 0 && !finalFrame) {
+                // Less bytes than max can happen when not enough data is buffered to fill a stream frame, or length
+                // field is 1 byte (instead of 2 that was counted for)
+                StreamFrame streamFrame = sendBuffer.nextFrame(maxBytesToSend);
+                if (streamFrame == null) {
                     // Nothing to send really
                     return null;
                 }
+                int nrOfBytes = streamFrame.getLength();
 
                 bufferedBytes.getAndAdd(-1 * nrOfBytes);
                 bufferLock.lock();
@@ -237,20 +387,17 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
                     bufferLock.unlock();
                 }
 
-                if (nrOfBytes < maxBytesToSend) {
-                    // This can happen when not enough data is buffer to fill a stream frame, or length field is 1 byte (instead of 2 that was counted for)
-                    dataToSend = Arrays.copyOfRange(dataToSend, 0, nrOfBytes);
-                }
-                StreamFrame streamFrame = new StreamFrame(quicStream.quicVersion, quicStream.streamId, currentOffset, dataToSend, finalFrame);
                 currentOffset += nrOfBytes;
 
-                if (!sendQueue.isEmpty()) {
+                if (sendBuffer.hasDataToSend()) {
                     synchronized (lock) {
                         sendRequestQueued = true;
                     }
                     // There is more to send, so queue a new send request.
-                    quicStream.connection.send(this::sendFrame, MIN_FRAME_SIZE, getEncryptionLevel(), this::retransmitStreamFrame, true);
+                    quicStream.connection.send(frameSupplier, MIN_FRAME_SIZE, getEncryptionLevel(), this::streamFrameLost, true);
                 }
+                // Buffer space has become available, so a pending write might (partly) proceed.
+                servePendingWrite();
 
                 if (streamFrame.isFinal()) {
                     finalFrameSent();
@@ -282,7 +429,7 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
     public void streamNotBlocked(int streamId) {
         // Stream might have been blocked (or it might have filled the flow control window exactly), queue send request
         // and let sendFrame method determine whether there is more to send or not.
-        quicStream.connection.send(this::sendFrame, MIN_FRAME_SIZE, getEncryptionLevel(), this::retransmitStreamFrame, false);  // No need to flush, as this is called while processing received message
+        quicStream.connection.send(frameSupplier, MIN_FRAME_SIZE, getEncryptionLevel(), this::streamFrameLost, false);  // No need to flush, as this is called while processing received message
     }
 
     void interruptBlockingThread() {
@@ -317,14 +464,25 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
         quicStream.connection.send(this::sendBlockReason, StreamDataBlockedFrame.getMaxSize(quicStream.streamId), App, this::retransmitSendBlockReason, true);
     }
 
-    private void retransmitStreamFrame(QuicFrame frame) {
+    private void streamFrameLost(QuicFrame frame) {
         assert (frame instanceof StreamFrame);
-        if (!reset) {
-            quicStream.connection.send(frame, this::retransmitStreamFrame);
-            quicStream.log.recovery("Retransmitted lost stream frame " + frame);
+        // The lost data is not taken from the frame, but is re-framed from the send buffer when the sender asks for it,
+        // so it can be combined with other lost data or split to fit the packet.
+        if (!reset && sendBuffer.frameLost((StreamFrame) frame)) {
+            synchronized (lock) {
+                if (!sendRequestQueued) {
+                    sendRequestQueued = true;
+                    quicStream.connection.send(frameSupplier, MIN_FRAME_SIZE, getEncryptionLevel(), this::streamFrameLost, false);
+                }
+            }
         }
     }
 
+    private void streamFrameAcknowledged(QuicFrame frame) {
+        assert (frame instanceof StreamFrame);
+        sendBuffer.frameAcknowledged((StreamFrame) frame);
+    }
+
     protected EncryptionLevel getEncryptionLevel() {
         return App;
     }
@@ -337,7 +495,8 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
 
     private void restart() {
         currentOffset = 0;
-        sendQueue.clear();
+        sendBuffer.clear();
+        bufferedBytes.set(0);
         sendRequestQueued = false;
     }
 
@@ -356,12 +515,13 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
             // Use sender callback to ensure current offset used in reset frame is accessed by sender thread.
             quicStream.connection.send(this::createResetFrame, ResetStreamFrame.getMaximumFrameSize(quicStream.streamId, errorCode), App, this::retransmitResetFrame, true);
             interruptBlockingThread();
+            failPendingWrite("write failed because stream was reset");
             quicStream.outputClosed();
         }
     }
 
     private void discardAllData() {
-        sendQueue.clear();
+        sendBuffer.clear();
         bufferedBytes.set(0);
     }
 
@@ -384,5 +544,29 @@ class StreamOutputStreamImpl extends StreamOutputStream implements FlowControlUp
     void abort() {
         aborted = true;
         interruptBlockingThread();
+        failPendingWrite("write failed because stream was aborted");
+    }
+
+    private class StreamOutputFrameSupplier implements StreamFrameSupplier {
+
+        @Override
+        public QuicFrame apply(Integer maxFrameSize) {
+            return sendFrame(maxFrameSize);
+        }
+
+        @Override
+        public int getStreamId() {
+            return quicStream.streamId;
+        }
+
+        @Override
+        public StreamPriority getPriority() {
+            return quicStream.getPriority();
+        }
+
+        @Override
+        public void frameAcknowledged(QuicFrame frame) {
+            streamFrameAcknowledged(frame);
+        }
     }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import net.luminis.quic.QuicStream;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the data received on a stream to a (single) subscriber. Data is read (asynchronously) from the stream only
+ * when the subscriber has signalled demand, so back pressure is handled by the stream's flow control: data that is
+ * not read does not release flow control credit.
+ */
+class StreamPublisher implements Flow.Publisher<ByteBuffer> {
+
+    static final int DEFAULT_READ_SIZE = 16 * 1024;
+
+    private final QuicStream stream;
+    private final int readSize;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    StreamPublisher(QuicStream stream) {
+        this(stream, DEFAULT_READ_SIZE);
+    }
+
+    StreamPublisher(QuicStream stream, int readSize) {
+        this.stream = stream;
+        this.readSize = readSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new StreamSubscription(subscriber));
+        }
+        else {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {}
+
+                @Override
+                public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException("Stream publisher supports only one subscriber"));
+        }
+    }
+
+    private class StreamSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // Whether a read is in progress; only the thread that sets this flag may signal the subscriber.
+        private final AtomicBoolean reading = new AtomicBoolean();
+        private volatile boolean done;
+
+        StreamSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (done) {
+                return;
+            }
+            if (n <= 0) {
+                // https://github.com/reactive-streams/reactive-streams-jvm#3.9
+                // "While the Subscription is not cancelled, Subscription.request(long n) MUST signal onError with a
+                //  java.lang.IllegalArgumentException if the argument is <= 0."
+                done = true;
+                subscriber.onError(new IllegalArgumentException("Requested number of items must be positive"));
+                return;
+            }
+            demand.getAndAccumulate(n, (current, increment) -> current + increment < 0? Long.MAX_VALUE: current + increment);
+            readNext();
+        }
+
+        @Override
+        public void cancel() {
+            if (!done) {
+                done = true;
+                stream.abortReading(0);
+            }
+        }
+
+        private void readNext() {
+            // Loop (instead of recursion) for reads that complete immediately, i.e. when data is already available.
+            while (!done && demand.get() > 0 && reading.compareAndSet(false, true)) {
+                ByteBuffer buffer = ByteBuffer.allocate(readSize);
+                CompletableFuture<Integer> read = startRead(buffer);
+                if (read.isDone()) {
+                    readCompleted(buffer, read);
+                }
+                else {
+                    read.whenComplete((bytesRead, error) -> {
+                        readCompleted(buffer, read);
+                        readNext();
+                    });
+                    return;
+                }
+            }
+        }
+
+        private CompletableFuture<Integer> startRead(ByteBuffer buffer) {
+            try {
+                return stream.readAsync(buffer);
+            }
+            catch (RuntimeException error) {
+                return CompletableFuture.failedFuture(error);
+            }
+        }
+
+        private void readCompleted(ByteBuffer buffer, CompletableFuture<Integer> read) {
+            try {
+                int bytesRead = read.join();
+                if (bytesRead < 0) {
+                    done = true;
+                    subscriber.onComplete();
+                }
+                else if (!done) {
+                    demand.decrementAndGet();
+                    subscriber.onNext(buffer.flip());
+                }
+            }
+            catch (CompletionException error) {
+                if (!done) {
+                    done = true;
+                    subscriber.onError(error.getCause());
+                }
+            }
+            finally {
+                reading.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import net.luminis.quic.QuicStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Writes the items of a publisher to a stream. A next item is requested only when the previous one is buffered for
+ * sending, so back pressure is handled by the stream's send buffer (and thus by flow and congestion control).
+ */
+class StreamSubscriber implements Flow.Subscriber<ByteBuffer> {
+
+    private final QuicStream stream;
+    private volatile Flow.Subscription subscription;
+    // The last write; items are written one at a time, so this write is completed before a next item is received.
+    private volatile CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+
+    StreamSubscriber(QuicStream stream) {
+        this.stream = stream;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription);
+        if (this.subscription != null) {
+            // https://github.com/reactive-streams/reactive-streams-jvm#2.5
+            // "A Subscriber MUST call Subscription.cancel() on the given Subscription after an onSubscribe signal if
+            //  it already has an active Subscription."
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        lastWrite = stream.writeAsync(item).whenComplete((result, error) -> {
+            if (error == null) {
+                subscription.request(1);
+            }
+            else {
+                subscription.cancel();
+            }
+        });
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        // Note that QUIC specification does not define application protocol error codes.
+        // By absence of an application specified error code, the arbitrary code 0 is used.
+        lastWrite.whenComplete((result, error) -> stream.resetStream(0));
+    }
+
+    @Override
+    public void onComplete() {
+        // The publisher may complete before the last write is completed.
+        lastWrite.whenComplete((result, error) -> {
+            try {
+                stream.getOutputStream().close();
+            }
+            catch (IOException e) {
+                // Cannot happen, closing the stream output does not throw.
+            }
+        });
+    }
+}
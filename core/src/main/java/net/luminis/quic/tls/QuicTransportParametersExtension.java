@@ -194,6 +194,12 @@ public class QuicTransportParametersExtension extends Extension {
             }
         }
 
+        // https://www.rfc-editor.org/rfc/rfc9221.html#name-transport-parameter
+        // "The default for this parameter is 0, which indicates that the endpoint does not support DATAGRAM frames."
+        if (params.getMaxDatagramFrameSize() > 0) {
+            addTransportParameter(buffer, max_datagram_frame_size, params.getMaxDatagramFrameSize());
+        }
+
         if (discardTransportParameterSize != null) {
             // See https://github.com/quicwg/base-drafts/wiki/Quantum-Readiness-test
             addTransportParameter(buffer, (short) 0x173e, new byte[discardTransportParameterSize]);
@@ -351,9 +357,13 @@ public class QuicTransportParametersExtension extends Extension {
             }
             params.setVersionInformation(new TransportParameters.VersionInformation(Version.parse(chosenVersion), otherVersions));
         }
+        else if (parameterId == max_datagram_frame_size.value) {
+            long maxDatagramFrameSize = VariableLengthInteger.parseLong(buffer);
+            log.debug("- max datagram frame size: " + maxDatagramFrameSize);
+            params.setMaxDatagramFrameSize(maxDatagramFrameSize);
+        }
         else {
             String extension = "";
-            if (parameterId == 0x0020) extension = "datagram";
             if (parameterId == 0x0040) extension = "multi-path";
             if (parameterId == 0x1057) extension = "loss-bits";
             if (parameterId == 0x173e) extension = "discard";
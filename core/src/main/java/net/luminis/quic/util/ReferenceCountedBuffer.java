@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A buffer that can be shared by multiple holders, that is recycled when the last holder releases it. Every holder
+ * must release the buffer exactly once; after releasing, the holder must not access the buffer (or any slice of it)
+ * anymore, as its content may be overwritten when it is reused.
+ * A holder that fails to release the buffer does not cause any harm, apart from that the buffer will not be reused.
+ */
+public class ReferenceCountedBuffer {
+
+    private final ByteBuffer buffer;
+    private final AtomicInteger references;
+    private final Consumer<ReferenceCountedBuffer> recycler;
+
+    /**
+     * Creates a buffer with one reference, held by the creator.
+     * @param buffer  the underlying buffer
+     * @param recycler  called when the last reference is released
+     */
+    public ReferenceCountedBuffer(ByteBuffer buffer, Consumer<ReferenceCountedBuffer> recycler) {
+        this.buffer = buffer;
+        this.recycler = recycler;
+        references = new AtomicInteger(1);
+    }
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Adds a reference; can only be called by a holder that holds a reference itself.
+     */
+    public void retain() {
+        if (references.getAndIncrement() <= 0) {
+            throw new IllegalStateException("buffer already released");
+        }
+    }
+
+    /**
+     * Releases a reference; when this was the last reference, the buffer is recycled.
+     */
+    public void release() {
+        int remaining = references.decrementAndGet();
+        if (remaining == 0) {
+            recycler.accept(this);
+        }
+        else if (remaining < 0) {
+            throw new IllegalStateException("buffer released more often than retained");
+        }
+    }
+
+    /**
+     * Returns the current number of references.
+     * @return
+     */
+    public int references() {
+        return references.get();
+    }
+
+    /**
+     * Prepares a recycled buffer for reuse: the one who reuses the buffer becomes the (single) holder. Should only be
+     * called by the recycler.
+     */
+    public void reuse() {
+        if (!references.compareAndSet(0, 1)) {
+            throw new IllegalStateException("buffer is still in use");
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.cc;
+
+import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.impl.MockPacket;
+import net.luminis.quic.log.NullLogger;
+import net.luminis.quic.packet.PacketInfo;
+import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.recovery.RttEstimator;
+import net.luminis.quic.test.TestClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class BbrCongestionControllerTest {
+
+    private TestClock clock;
+    private BbrCongestionController congestionController;
+    private int packetNumber;
+    private long delivered;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        clock = new TestClock();
+        congestionController = new BbrCongestionController(clock, new NullLogger(), mock(CongestionControlEventListener.class), new RttEstimator(new NullLogger(), 100));
+    }
+
+    @Test
+    void initiallyModeIsStartupWithPacingRateBasedOnInitialWindow() {
+        assertThat(congestionController.getMode()).isEqualTo(BbrCongestionController.Mode.Startup);
+        assertThat(congestionController.getWindowSize()).isEqualTo(12_000);
+        // 2.77 * 12000 bytes / 100 ms
+        assertThat(congestionController.getPacingRate()).isEqualTo(332_400);
+    }
+
+    @Test
+    void bandwidthAndMinRttAreEstimatedFromRateSamples() {
+        // When
+        deliverRound(10, 100);
+
+        // Then
+        assertThat(congestionController.getMaxBandwidth()).isEqualTo(120_000);
+        assertThat(congestionController.getMinRtt()).isEqualTo(Duration.ofMillis(100));
+    }
+
+    @Test
+    void compressedAckBurstDoesNotRaiseMaxBandwidth() {
+        // Given
+        deliverRound(10, 100);
+        long pacingRate = congestionController.getPacingRate();
+
+        // When
+        // Burst of 20 packets acked within 10 ms, i.e. an interval shorter than min_rtt
+        List<PacketInfo> packets = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            QuicPacket packet = new MockPacket(packetNumber++, 1200, EncryptionLevel.App);
+            congestionController.registerInFlight(packet);
+            packets.add(new PacketInfo(clock.instant(), packet, p -> {}));
+        }
+        clock.fastForward(100);
+        long priorDelivered = delivered;
+        delivered += 20 * 1200;
+        congestionController.registerRateSample(new RateSample(delivered - priorDelivered, Duration.ofMillis(10),
+                priorDelivered, delivered, Duration.ofMillis(100), 20 * 1200, false, false));
+        congestionController.registerAcked(packets);
+
+        // Then
+        assertThat(congestionController.getMaxBandwidth()).isEqualTo(120_000);
+        assertThat(congestionController.getPacingRate()).isEqualTo(pacingRate);
+    }
+
+    @Test
+    void inStartupPacingRateIsBasedOnMaxBandwidthWithStartupGain() {
+        // When
+        deliverRound(20, 100);
+
+        // Then
+        assertThat(congestionController.getMaxBandwidth()).isEqualTo(240_000);
+        assertThat(congestionController.getPacingRate()).isEqualTo((long) (2.77 * 240_000 * 0.99));
+    }
+
+    @Test
+    void inStartupCongestionWindowGrowsWithBytesAcked() {
+        // When
+        deliverRound(10, 100);
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo(12_000 + 10 * 1200);
+    }
+
+    @Test
+    void startupIsLeftWhenBandwidthDoesNotGrowForThreeRounds() {
+        // Given
+        deliverRound(20, 100);
+        deliverRound(20, 100);
+        deliverRound(20, 100);
+        deliverRound(20, 100);
+        assertThat(congestionController.getMode()).isEqualTo(BbrCongestionController.Mode.Startup);
+
+        // When
+        deliverRound(20, 100);
+
+        // Then
+        assertThat(congestionController.getMode()).isEqualTo(BbrCongestionController.Mode.Drain);
+        assertThat(congestionController.getPacingRate()).isEqualTo((long) (0.35 * 240_000 * 0.99));
+    }
+
+    @Test
+    void startupContinuesWhileBandwidthIsGrowing() {
+        // When
+        deliverRound(10, 100);
+        deliverRound(20, 100);
+        deliverRound(40, 100);
+        deliverRound(80, 100);
+        deliverRound(160, 100);
+
+        // Then
+        assertThat(congestionController.getMode()).isEqualTo(BbrCongestionController.Mode.Startup);
+    }
+
+    @Test
+    void highLossInStartupEndsStartup() {
+        // Given
+        deliverRound(20, 100);
+
+        // When
+        loseAndDeliverRound(20, 2, 100);
+
+        // Then
+        assertThat(congestionController.getMode()).isEqualTo(BbrCongestionController.Mode.Drain);
+    }
+
+    @Test
+    void lossBelowThresholdIsIgnored() {
+        // When
+        deliverRound(100, 100);
+        loseAndDeliverRound(200, 1, 100);
+        loseAndDeliverRound(400, 1, 100);
+
+        // Then
+        assertThat(congestionController.getMode()).isEqualTo(BbrCongestionController.Mode.Startup);
+    }
+
+    @Test
+    void afterDrainProbeBwCyclesThroughDownCruiseRefillAndUp() {
+        // Given
+        fillPipe();
+        assertThat(congestionController.getMode()).isEqualTo(BbrCongestionController.Mode.Drain);
+
+        // When
+        deliverRound(20, 100);
+        // Then
+        assertThat(congestionController.getMode()).isEqualTo(BbrCongestionController.Mode.ProbeBwDown);
+
+        // When
+        deliverRound(20, 100);
+        // Then
+        assertThat(congestionController.getMode()).isEqualTo(BbrCongestionController.Mode.ProbeBwCruise);
+        assertThat(congestionController.getPacingRate()).isEqualTo((long) (240_000 * 0.99));
+
+        // When
+        clock.fastForward(3000);
+        deliverRound(20, 100);
+        // Then
+        assertThat(congestionController.getMode()).isEqualTo(BbrCongestionController.Mode.ProbeBwRefill);
+
+        // When
+        deliverRound(20, 100);
+        // Then
+        assertThat(congestionController.getMode()).isEqualTo(BbrCongestionController.Mode.ProbeBwUp);
+        assertThat(congestionController.getPacingRate()).isEqualTo((long) (1.25 * 240_000 * 0.99));
+    }
+
+    @Test
+    void whenPipeIsFilledCongestionWindowIsLimitedToTwiceBdp() {
+        // When
+        fillPipe();
+        deliverRound(20, 100);
+
+        // Then
+        // bdp = 240000 B/s * 100 ms = 24000
+        assertThat(congestionController.getWindowSize()).isEqualTo(2 * 24_000);
+    }
+
+    @Test
+    void whenMinRttExpiresProbeRttIsEntered() {
+        // Given
+        deliverRound(20, 100);
+
+        // When
+        clock.fastForward(10_001);
+        deliverRound(20, 110);
+
+        // Then
+        assertThat(congestionController.getMode()).isEqualTo(BbrCongestionController.Mode.ProbeRtt);
+        assertThat(congestionController.getMinRtt()).isEqualTo(Duration.ofMillis(110));
+        // 0.5 * bdp = 0.5 * 240000 B/s * 110 ms
+        assertThat(congestionController.getWindowSize()).isEqualTo(13_200);
+    }
+
+    @Test
+    void probeRttLastsAtLeast200msAndOneRound() {
+        // Given
+        deliverRound(20, 100);
+        long cwndBeforeProbeRtt = congestionController.getWindowSize();
+        clock.fastForward(10_001);
+        deliverRound(20, 100);
+
+        // When
+        deliverRound(4, 100);
+        // Then
+        assertThat(congestionController.getMode()).isEqualTo(BbrCongestionController.Mode.ProbeRtt);
+
+        // When
+        deliverRound(4, 100);
+        // Then
+        assertThat(congestionController.getMode()).isEqualTo(BbrCongestionController.Mode.Startup);
+        assertThat(congestionController.getWindowSize()).isGreaterThanOrEqualTo(cwndBeforeProbeRtt);
+    }
+
+    private void fillPipe() {
+        for (int i = 0; i < 5; i++) {
+            deliverRound(20, 100);
+        }
+    }
+
+    private void deliverRound(int packetCount, int rtt) {
+        loseAndDeliverRound(packetCount, 0, rtt);
+    }
+
+    /**
+     * Sends the given number of packets (of 1200 bytes) at once and acknowledges all of them (except the lost ones)
+     * after one rtt, with the corresponding rate sample.
+     */
+    private void loseAndDeliverRound(int packetCount, int lostCount, int rtt) {
+        Instant timeSent = clock.instant();
+        List<PacketInfo> packets = new ArrayList<>();
+        for (int i = 0; i < packetCount; i++) {
+            QuicPacket packet = new MockPacket(packetNumber++, 1200, EncryptionLevel.App);
+            congestionController.registerInFlight(packet);
+            packets.add(new PacketInfo(timeSent, packet, p -> {}));
+        }
+        clock.fastForward(rtt);
+        if (lostCount > 0) {
+            congestionController.registerLost(packets.subList(0, lostCount));
+        }
+        List<PacketInfo> acked = packets.subList(lostCount, packetCount);
+        long priorDelivered = delivered;
+        delivered += acked.size() * 1200;
+        congestionController.registerRateSample(new RateSample(delivered - priorDelivered, Duration.ofMillis(rtt),
+                priorDelivered, delivered, Duration.ofMillis(rtt), packetCount * 1200, false));
+        congestionController.registerAcked(acked);
+    }
+}
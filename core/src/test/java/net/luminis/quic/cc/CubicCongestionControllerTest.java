@@ -0,0 +1,311 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.cc;
+
+import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.impl.MockPacket;
+import net.luminis.quic.log.NullLogger;
+import net.luminis.quic.packet.PacketInfo;
+import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.recovery.RttEstimator;
+import net.luminis.quic.test.TestClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+
+class CubicCongestionControllerTest {
+
+    private TestClock clock;
+    private CubicCongestionController congestionController;
+    private int packetNumber;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        clock = new TestClock();
+        congestionController = new CubicCongestionController(clock, new NullLogger(), mock(CongestionControlEventListener.class), new RttEstimator(new NullLogger(), 100));
+    }
+
+    @Test
+    void initiallyModeIsSlowStart() {
+        assertThat(congestionController.getWindowSize()).isEqualTo(12_000);
+        assertThat(congestionController.getMode()).isEqualTo(CubicCongestionController.Mode.SlowStart);
+    }
+
+    @Test
+    void whenInSlowStartCwndIncreasesByNumberOfBytesAcked() {
+        // Given
+        long initialCwnd = congestionController.getWindowSize();
+
+        // When
+        sendAndAck(1100);
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo(initialCwnd + 1100);
+    }
+
+    @Test
+    void whenNotPacedIncreasePerAckInSlowStartIsLimited() {
+        // Given
+        long initialCwnd = congestionController.getWindowSize();
+
+        // When
+        sendAndAck(20 * 1200);
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo(initialCwnd + 8 * 1200);
+    }
+
+    @Test
+    void whenPacedIncreasePerAckInSlowStartIsNotLimited() {
+        // Given
+        congestionController.setPaced(true);
+        long initialCwnd = congestionController.getWindowSize();
+
+        // When
+        sendAndAck(20 * 1200);
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo(initialCwnd + 20 * 1200);
+    }
+
+    @Test
+    void whenPacketLostCongestionWindowIsReducedWithBetaFactor() {
+        // When
+        loseOnePacket();
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo(8400);
+        assertThat(congestionController.getMode()).isEqualTo(CubicCongestionController.Mode.CongestionAvoidance);
+    }
+
+    @Test
+    void lossOfPacketSentBeforeCongestionRecoveryDoesNotChangeCongestionWindow() {
+        // Given
+        Instant timeFirstPacketSent = clock.instant();
+        QuicPacket packet = new MockPacket(packetNumber++, 1200, EncryptionLevel.App);
+        congestionController.registerInFlight(packet);
+        clock.fastForward(10);
+        loseOnePacket();
+
+        // When
+        congestionController.registerLost(List.of(new PacketInfo(timeFirstPacketSent, packet, p -> {})));
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo(8400);
+    }
+
+    @Test
+    void inCongestionAvoidanceWindowGrowsConcaveTowardsWindowMaxBeforeLoss() {
+        // Given
+        loseOnePacket();
+        clock.fastForward(1000);
+
+        // When
+        sendAndAck(1200);
+
+        // Then
+        // K = cbrt((12000 - 8400) / 1200 / 0.4) = 1.957; target = W_cubic(1.1) = 0.4 * (1.1 - 1.957)^3 * 1200 + 12000 = 11698
+        // cwnd += (11698 - 8400) * 1200 / 8400
+        assertThat(congestionController.getWindowSize()).isCloseTo(8871, within(2L));
+    }
+
+    @Test
+    void inCongestionAvoidanceIncreasePerAckIsLimited() {
+        // Given
+        loseOnePacket();
+        clock.fastForward(10_000);
+
+        // When
+        sendAndAck(1200);
+
+        // Then
+        // Target is limited to 1.5 * cwnd = 12600: cwnd += (12600 - 8400) * 1200 / 8400
+        assertThat(congestionController.getWindowSize()).isEqualTo(9000);
+    }
+
+    @Test
+    void whenCongestionWindowHasReachedWindowMaxItKeepsGrowing() {
+        // Given
+        loseOnePacket();
+        clock.fastForward(2000);
+        for (int i = 0; i < 100; i++) {
+            sendAndAck(1200);
+        }
+        long cwnd = congestionController.getWindowSize();
+        assertThat(cwnd).isGreaterThanOrEqualTo(12000);
+
+        // When
+        clock.fastForward(3000);
+        sendAndAck(1200);
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isGreaterThan(cwnd);
+    }
+
+    @Test
+    void congestionWindowNeverDropsBelowMinimumWindowSize() {
+        for (int i = 0; i < 10; i++) {
+            clock.fastForward(10);
+            loseOnePacket();
+        }
+
+        assertThat(congestionController.getWindowSize()).isEqualTo(2400);
+    }
+
+    @Test
+    void whenRttIncreasesDuringSlowStartHyStartEntersConservativeSlowStart() {
+        // Given
+        roundTrip(100);
+
+        // When
+        roundTrip(120);
+
+        // Then
+        assertThat(congestionController.getMode()).isEqualTo(CubicCongestionController.Mode.ConservativeSlowStart);
+    }
+
+    @Test
+    void whenRttIncreaseIsBelowThresholdSlowStartContinues() {
+        // Given
+        roundTrip(100);
+
+        // When
+        roundTrip(110);
+
+        // Then
+        assertThat(congestionController.getMode()).isEqualTo(CubicCongestionController.Mode.SlowStart);
+    }
+
+    @Test
+    void inConservativeSlowStartCwndGrowsSlower() {
+        // Given
+        roundTrip(100);
+        roundTrip(120);
+        long cwnd = congestionController.getWindowSize();
+
+        // When
+        sendAndAck(1200, 120);
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isEqualTo(cwnd + 1200 / 4);
+    }
+
+    @Test
+    void whenRttDecreasesInConservativeSlowStartSlowStartIsResumed() {
+        // Given
+        roundTrip(100);
+        roundTrip(120);
+        assertThat(congestionController.getMode()).isEqualTo(CubicCongestionController.Mode.ConservativeSlowStart);
+
+        // When
+        roundTrip(100);
+
+        // Then
+        assertThat(congestionController.getMode()).isEqualTo(CubicCongestionController.Mode.SlowStart);
+    }
+
+    @Test
+    void afterConservativeSlowStartRoundsCongestionAvoidanceIsEntered() {
+        // Given
+        roundTrip(100);
+        roundTrip(120);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            roundTrip(120);
+        }
+
+        // Then
+        assertThat(congestionController.getMode()).isEqualTo(CubicCongestionController.Mode.CongestionAvoidance);
+    }
+
+    @Test
+    void afterLeavingSlowStartWithoutLossWindowGrowsInCongestionAvoidance() {
+        // Given
+        roundTrip(100);
+        roundTrip(120);
+        for (int i = 0; i < 5; i++) {
+            roundTrip(120);
+        }
+        long cwnd = congestionController.getWindowSize();
+
+        // When
+        clock.fastForward(1000);
+        sendAndAck(1200);
+
+        // Then
+        assertThat(congestionController.getWindowSize()).isGreaterThan(cwnd);
+    }
+
+    /**
+     * Simulates one round trip: sends 8 packets (enough RTT samples for HyStart++) and acknowledges them (each with a
+     * separate ack) after the given RTT.
+     */
+    private void roundTrip(int rtt) {
+        clock.fastForward(1);
+        Instant timeSent = clock.instant();
+        List<QuicPacket> packets = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            QuicPacket packet = new MockPacket(packetNumber++, 1200, EncryptionLevel.App);
+            congestionController.registerInFlight(packet);
+            packets.add(packet);
+        }
+        clock.fastForward(rtt);
+        packets.forEach(packet -> {
+            fillCongestionWindow();
+            congestionController.registerAcked(List.of(new PacketInfo(timeSent, packet, p -> {})));
+        });
+    }
+
+    private void sendAndAck(int size) {
+        sendAndAck(size, 0);
+    }
+
+    private void sendAndAck(int size, int rtt) {
+        Instant timeSent = clock.instant();
+        QuicPacket packet = new MockPacket(packetNumber++, size, EncryptionLevel.App);
+        congestionController.registerInFlight(packet);
+        clock.fastForward(rtt);
+        fillCongestionWindow();
+        congestionController.registerAcked(List.of(new PacketInfo(timeSent, packet, p -> {})));
+    }
+
+    private void fillCongestionWindow() {
+        // The congestion window only increases when it is fully utilized.
+        long remaining = congestionController.remainingCwnd();
+        if (remaining > 0) {
+            congestionController.registerInFlight(new MockPacket(packetNumber++, (int) remaining, EncryptionLevel.App));
+        }
+    }
+
+    private void loseOnePacket() {
+        QuicPacket packet = new MockPacket(packetNumber++, 1200, EncryptionLevel.App);
+        Instant timeSent = clock.instant();
+        congestionController.registerInFlight(packet);
+        clock.fastForward(1);
+        congestionController.registerLost(List.of(new PacketInfo(timeSent, packet, p -> {})));
+    }
+}
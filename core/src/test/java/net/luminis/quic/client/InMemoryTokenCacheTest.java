@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryTokenCacheTest {
+
+    private InMemoryTokenCache tokenCache;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        tokenCache = new InMemoryTokenCache(2);
+    }
+
+    @Test
+    void storedTokenCanBeTakenOnlyOnce() {
+        // Given
+        tokenCache.put("example.com", new byte[] { 0x01 });
+
+        // Then
+        assertThat(tokenCache.take("example.com")).hasValue(new byte[] { 0x01 });
+        assertThat(tokenCache.take("example.com")).isEmpty();
+    }
+
+    @Test
+    void tokensAreKeyedByServerName() {
+        // Given
+        tokenCache.put("example.com", new byte[] { 0x01 });
+
+        // Then
+        assertThat(tokenCache.take("example.org")).isEmpty();
+        assertThat(tokenCache.take("example.com")).isPresent();
+    }
+
+    @Test
+    void mostRecentTokenIsTakenFirst() {
+        // Given
+        tokenCache.put("example.com", new byte[] { 0x01 });
+        tokenCache.put("example.com", new byte[] { 0x02 });
+
+        // Then
+        assertThat(tokenCache.take("example.com")).hasValue(new byte[] { 0x02 });
+        assertThat(tokenCache.take("example.com")).hasValue(new byte[] { 0x01 });
+    }
+
+    @Test
+    void whenMaximumIsReachedOldestTokenIsRemoved() {
+        // Given
+        tokenCache.put("example.com", new byte[] { 0x01 });
+        tokenCache.put("example.com", new byte[] { 0x02 });
+
+        // When
+        tokenCache.put("example.com", new byte[] { 0x03 });
+
+        // Then
+        assertThat(tokenCache.take("example.com")).hasValue(new byte[] { 0x03 });
+        assertThat(tokenCache.take("example.com")).hasValue(new byte[] { 0x02 });
+        assertThat(tokenCache.take("example.com")).isEmpty();
+    }
+}
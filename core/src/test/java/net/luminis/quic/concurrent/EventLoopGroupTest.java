@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventLoopGroupTest {
+
+    private EventLoopGroup eventLoopGroup;
+
+    @AfterEach
+    void shutdownEventLoops() {
+        if (eventLoopGroup != null) {
+            eventLoopGroup.shutdown();
+        }
+    }
+
+    @Test
+    void sameConnectionIdShouldAlwaysSelectSameWorker() {
+        eventLoopGroup = new EventLoopGroup(4);
+
+        ScheduledExecutorService first = eventLoopGroup.select(new byte[] { 0x0a, 0x0b, 0x0c, 0x0d, 0x01, 0x02, 0x03, 0x04 });
+        ScheduledExecutorService second = eventLoopGroup.select(new byte[] { 0x0a, 0x0b, 0x0c, 0x0d, 0x01, 0x02, 0x03, 0x04 });
+
+        assertThat(first).isSameAs(second);
+    }
+
+    @Test
+    void connectionsShouldBeSpreadOverWorkers() {
+        eventLoopGroup = new EventLoopGroup(4);
+
+        Set<ScheduledExecutorService> selected = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            selected.add(eventLoopGroup.select(new byte[] { 0x07, (byte) i, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00 }));
+        }
+
+        assertThat(selected).hasSize(4);
+    }
+
+    @Test
+    void tasksForSameConnectionShouldRunOnSameThread() throws Exception {
+        eventLoopGroup = new EventLoopGroup(2);
+        byte[] connectionId = new byte[] { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08 };
+
+        CompletableFuture<Thread> first = new CompletableFuture<>();
+        CompletableFuture<Thread> second = new CompletableFuture<>();
+        eventLoopGroup.select(connectionId).execute(() -> first.complete(Thread.currentThread()));
+        eventLoopGroup.select(connectionId).schedule(() -> second.complete(Thread.currentThread()), 5, TimeUnit.MILLISECONDS);
+
+        assertThat(first.get(1, TimeUnit.SECONDS)).isSameAs(second.get(1, TimeUnit.SECONDS));
+        assertThat(first.get().isDaemon()).isTrue();
+    }
+
+    @Test
+    void queuedTasksShouldCountTasksWaitingForExecution() throws Exception {
+        eventLoopGroup = new EventLoopGroup(1);
+        byte[] connectionId = new byte[] { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08 };
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        eventLoopGroup.select(connectionId).execute(() -> {
+            started.countDown();
+            try {
+                blocker.await();
+            }
+            catch (InterruptedException e) {}
+        });
+        started.await(1, TimeUnit.SECONDS);
+
+        eventLoopGroup.select(connectionId).execute(() -> {});
+        eventLoopGroup.select(connectionId).execute(() -> {});
+
+        assertThat(eventLoopGroup.queuedTasks()).isEqualTo(2);
+        blocker.countDown();
+    }
+
+    @Test
+    void numberOfWorkersMustBePositive() {
+        assertThatThrownBy(() -> new EventLoopGroup(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SerialExecutorTest {
+
+    private ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void tasksShouldBeExecutedInOrderOfSubmission() throws Exception {
+        SerialExecutor executor = new SerialExecutor(pool);
+        List<Integer> executed = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        for (int i = 0; i < 100; i++) {
+            int number = i;
+            executor.execute(() -> executed.add(number));
+        }
+        executor.execute(done::countDown);
+
+        assertThat(done.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(executed).hasSize(100).isSorted();
+    }
+
+    @Test
+    void tasksShouldNeverBeExecutedConcurrently() throws Exception {
+        SerialExecutor executor = new SerialExecutor(pool);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(50);
+
+        for (int i = 0; i < 50; i++) {
+            executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.yield();
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertThat(done.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxRunning.get()).isEqualTo(1);
+    }
+
+    @Test
+    void failingTaskShouldNotPreventExecutionOfNextTasks() throws Exception {
+        SerialExecutor executor = new SerialExecutor(pool);
+        CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute(() -> { throw new RuntimeException("task failed"); });
+        executor.execute(done::countDown);
+
+        assertThat(done.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void blockingTaskShouldNotBlockOtherSerialExecutors() throws Exception {
+        SerialExecutor first = new SerialExecutor(pool);
+        SerialExecutor second = new SerialExecutor(pool);
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        first.execute(() -> {
+            try {
+                blocker.await();
+            }
+            catch (InterruptedException e) {}
+        });
+        second.execute(done::countDown);
+
+        assertThat(done.await(1, TimeUnit.SECONDS)).isTrue();
+        blocker.countDown();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.concurrent;
+
+import net.luminis.quic.test.TestClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimerWheelTest {
+
+    private TestClock clock;
+    private TimerWheel timerWheel;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        clock = new TestClock();
+        timerWheel = new TimerWheel(clock, 1, 16);
+    }
+
+    @Test
+    void timeoutShouldNotExpireBeforeDeadline() {
+        AtomicInteger counter = new AtomicInteger();
+        timerWheel.schedule(counter::incrementAndGet, 10, TimeUnit.MILLISECONDS, null);
+
+        clock.fastForward(9);
+        timerWheel.expireTimeouts();
+        assertThat(counter.get()).isEqualTo(0);
+
+        clock.fastForward(1);
+        timerWheel.expireTimeouts();
+        assertThat(counter.get()).isEqualTo(1);
+    }
+
+    @Test
+    void timeoutShouldExpireOnlyOnce() {
+        AtomicInteger counter = new AtomicInteger();
+        timerWheel.schedule(counter::incrementAndGet, 5, TimeUnit.MILLISECONDS, null);
+
+        clock.fastForward(5);
+        timerWheel.expireTimeouts();
+        clock.fastForward(16);
+        timerWheel.expireTimeouts();
+
+        assertThat(counter.get()).isEqualTo(1);
+        assertThat(timerWheel.size()).isEqualTo(0);
+    }
+
+    @Test
+    void timeoutWithDeadlineBeyondWheelSizeShouldNotExpireEarly() {
+        AtomicInteger counter = new AtomicInteger();
+        timerWheel.schedule(counter::incrementAndGet, 40, TimeUnit.MILLISECONDS, null);
+
+        for (int i = 0; i < 39; i++) {
+            clock.fastForward(1);
+            timerWheel.expireTimeouts();
+        }
+        assertThat(counter.get()).isEqualTo(0);
+
+        clock.fastForward(1);
+        timerWheel.expireTimeouts();
+        assertThat(counter.get()).isEqualTo(1);
+    }
+
+    @Test
+    void rescheduledTimeoutShouldExpireAtNewDeadline() {
+        AtomicInteger counter = new AtomicInteger();
+        TimerWheel.Timeout timeout = timerWheel.newTimeout(counter::incrementAndGet);
+        timeout.schedule(10, TimeUnit.MILLISECONDS);
+
+        clock.fastForward(5);
+        timerWheel.expireTimeouts();
+        timeout.schedule(10, TimeUnit.MILLISECONDS);
+
+        clock.fastForward(5);
+        timerWheel.expireTimeouts();
+        assertThat(counter.get()).isEqualTo(0);
+        assertThat(timerWheel.size()).isEqualTo(1);
+
+        clock.fastForward(5);
+        timerWheel.expireTimeouts();
+        assertThat(counter.get()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelledTimeoutShouldNotExpire() {
+        AtomicInteger counter = new AtomicInteger();
+        TimerWheel.Timeout timeout = timerWheel.schedule(counter::incrementAndGet, 10, TimeUnit.MILLISECONDS, null);
+
+        assertThat(timeout.cancel()).isTrue();
+        clock.fastForward(10);
+        timerWheel.expireTimeouts();
+
+        assertThat(counter.get()).isEqualTo(0);
+        assertThat(timeout.isScheduled()).isFalse();
+        assertThat(timeout.cancel()).isFalse();
+    }
+
+    @Test
+    void expiredTimeoutShouldRunOnGivenExecutor() {
+        List<Runnable> submitted = new ArrayList<>();
+        Executor executor = submitted::add;
+        AtomicInteger counter = new AtomicInteger();
+        timerWheel.schedule(counter::incrementAndGet, 1, TimeUnit.MILLISECONDS, executor);
+
+        clock.fastForward(1);
+        timerWheel.expireTimeouts();
+
+        assertThat(counter.get()).isEqualTo(0);
+        assertThat(submitted).hasSize(1);
+        submitted.get(0).run();
+        assertThat(counter.get()).isEqualTo(1);
+    }
+
+    @Test
+    void timerThreadShouldExpireTimeouts() throws Exception {
+        TimerWheel timer = new TimerWheel("test-timer");
+        try {
+            CompletableFuture<Long> expired = new CompletableFuture<>();
+            long start = System.currentTimeMillis();
+            timer.schedule(() -> expired.complete(System.currentTimeMillis()), 20, TimeUnit.MILLISECONDS, null);
+
+            assertThat(expired.get(1, TimeUnit.SECONDS) - start).isGreaterThanOrEqualTo(20);
+        }
+        finally {
+            timer.stop();
+        }
+    }
+}
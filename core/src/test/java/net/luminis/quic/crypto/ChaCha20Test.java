@@ -21,9 +21,13 @@ package net.luminis.quic.crypto;
 import net.luminis.quic.impl.Role;
 import net.luminis.quic.impl.Version;
 import net.luminis.quic.log.Logger;
+import net.luminis.quic.test.ByteUtils;
+import net.luminis.quic.test.FieldSetter;
 import org.junit.jupiter.api.Test;
 
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -43,4 +47,88 @@ class ChaCha20Test {
         // Then
         assertThat(chaCha20.getWriteKeySpec()).isNotSameAs(originalWriteKeySpec);
     }
-}
\ No newline at end of file
+
+    @Test
+    void headerProtectionMaskComputedFromBufferShouldEqualMaskComputedFromSample() {
+        // Given
+        ChaCha20 chaCha20 = new ChaCha20(Version.getDefault(), Role.Client, mock(Logger.class));
+        chaCha20.computeKeys(new byte[32]);
+        byte[] sample = new byte[] { 0x5e, 0x5c, (byte) 0xd5, 0x5c, 0x41, (byte) 0xf6, (byte) 0x90, (byte) 0x80, 0x57, 0x5d, 0x79, (byte) 0x99, (byte) 0xc2, 0x5a, 0x5b, (byte) 0xfb };
+        ByteBuffer buffer = ByteBuffer.allocateDirect(40);
+        buffer.position(7);
+        buffer.put(sample);
+        buffer.position(3);
+
+        // When
+        byte[] mask = new byte[16];
+        chaCha20.createHeaderProtectionMask(buffer, 7, mask);
+
+        // Then
+        assertThat(Arrays.copyOfRange(mask, 0, 5)).isEqualTo(chaCha20.createHeaderProtectionMask(sample));
+        assertThat(buffer.position()).isEqualTo(3);
+    }
+
+    @Test
+    void messageEncryptedInPlaceShouldDecryptToOriginal() throws Exception {
+        // Given
+        ChaCha20 sender = new ChaCha20(Version.getDefault(), Role.Client, mock(Logger.class));
+        sender.computeKeys(new byte[32]);
+        ChaCha20 receiver = new ChaCha20(Version.getDefault(), Role.Server, mock(Logger.class));
+        receiver.computeKeys(new byte[32]);
+        byte[] associatedData = new byte[] { 0x41, 0x01, 0x02, 0x03 };
+        byte[] message = "hello, quic".getBytes();
+        long packetNumber = 42;
+        ByteBuffer buffer = ByteBuffer.allocate(message.length + 16);
+        buffer.put(message);
+        buffer.flip();
+
+        // When
+        int encryptedLength = sender.aeadEncrypt(ByteBuffer.wrap(associatedData), buffer.duplicate(), buffer.duplicate().limit(buffer.capacity()), packetNumber);
+        ByteBuffer decrypted = ByteBuffer.allocate(message.length);
+        int decryptedLength = receiver.aeadDecrypt(ByteBuffer.wrap(associatedData), ByteBuffer.wrap(buffer.array()), decrypted, packetNumber);
+
+        // Then
+        assertThat(encryptedLength).isEqualTo(message.length + 16);
+        assertThat(decryptedLength).isEqualTo(message.length);
+        assertThat(decrypted.array()).isEqualTo(message);
+    }
+
+    @Test
+    void repeatedlyComputedHeaderProtectionMaskShouldMatchRfcExample() throws Exception {
+        // Given
+        ChaCha20 chaCha20 = new ChaCha20(Version.getDefault(), Role.Server, mock(Logger.class));
+        // https://www.rfc-editor.org/rfc/rfc9001.html#name-chacha20-poly1305-short-hea
+        FieldSetter.setField(chaCha20, BaseAeadImpl.class.getDeclaredField("hp"), ByteUtils.hexToBytes("25a282b9e82f06f21f488917a4fc8f1b73573685608597d0efcb076b0ab7a7a4"));
+        ByteBuffer buffer = ByteBuffer.wrap(ByteUtils.hexToBytes("5e5cd55c41f69080575d7999c25a5bfb"));
+
+        // When
+        byte[] mask1 = new byte[16];
+        chaCha20.createHeaderProtectionMask(buffer, 0, mask1);
+        byte[] mask2 = new byte[16];
+        chaCha20.createHeaderProtectionMask(buffer, 0, mask2);
+
+        // Then
+        assertThat(Arrays.copyOfRange(mask1, 0, 5)).isEqualTo(ByteUtils.hexToBytes("aefefe7d03"));
+        assertThat(mask2).isEqualTo(mask1);
+    }
+
+    @Test
+    void duplicatePacketCanBeDecryptedTwice() throws Exception {
+        // Given
+        ChaCha20 sender = new ChaCha20(Version.getDefault(), Role.Client, mock(Logger.class));
+        sender.computeKeys(new byte[32]);
+        ChaCha20 receiver = new ChaCha20(Version.getDefault(), Role.Server, mock(Logger.class));
+        receiver.computeKeys(new byte[32]);
+        byte[] associatedData = new byte[] { 0x41, 0x01, 0x02, 0x03 };
+        ByteBuffer ciphertext = ByteBuffer.allocate(32);
+        sender.aeadEncrypt(ByteBuffer.wrap(associatedData), ByteBuffer.wrap(new byte[16]), ciphertext, 7);
+
+        // When
+        int firstLength = receiver.aeadDecrypt(ByteBuffer.wrap(associatedData), ByteBuffer.wrap(ciphertext.array()), ByteBuffer.allocate(16), 7);
+        int secondLength = receiver.aeadDecrypt(ByteBuffer.wrap(associatedData), ByteBuffer.wrap(ciphertext.array()), ByteBuffer.allocate(16), 7);
+
+        // Then
+        assertThat(firstLength).isEqualTo(16);
+        assertThat(secondLength).isEqualTo(16);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.crypto;
+
+import net.luminis.quic.test.ByteUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CipherContextTest {
+
+    @Test
+    void nonceShouldBeIvXoredWithPacketNumber() {
+        // Given
+        CipherContext context = CipherContext.forEncryption(() -> BaseAeadImpl.createCipher("ChaCha20-Poly1305"));
+        // https://www.rfc-editor.org/rfc/rfc9001.html#name-chacha20-poly1305-short-hea
+        byte[] iv = ByteUtils.hexToBytes("e0459b3474bdd0e44a41c144");
+
+        // When
+        byte[] nonce = context.computeNonce(iv, 654360564);
+
+        // Then
+        assertThat(nonce).isEqualTo(ByteUtils.hexToBytes("e0459b3474bdd0e46d417eb0"));
+    }
+
+    @Test
+    void computingNonceShouldNotAlterIv() {
+        // Given
+        CipherContext context = CipherContext.forDecryption(() -> BaseAeadImpl.createCipher("AES/GCM/NoPadding"));
+        byte[] iv = ByteUtils.hexToBytes("e0459b3474bdd0e44a41c144");
+
+        // When
+        context.computeNonce(iv, 1);
+        byte[] nonce = context.computeNonce(iv, 2);
+
+        // Then
+        assertThat(iv).isEqualTo(ByteUtils.hexToBytes("e0459b3474bdd0e44a41c144"));
+        assertThat(nonce).isEqualTo(ByteUtils.hexToBytes("e0459b3474bdd0e44a41c146"));
+    }
+}
@@ -180,4 +180,37 @@ class AckFrameTest extends FrameTest {
         assertThat(ackDelay).isEqualTo(expectedEncodedAckDelayValue);
     }
     //endregion
-}
\ No newline at end of file
+
+    //region windowed ranges
+    @Test
+    void acknowledgedRangesAreLimitedToWindow() {
+        // Given
+        AckFrame ackFrame = new AckFrame(List.of(new Range(40L, 50L), new Range(20L, 30L), new Range(0L, 10L)));
+
+        // When
+        List<Range> ranges = ackFrame.getAcknowledgedRanges(5, 45);
+
+        // Then
+        assertThat(ranges).containsExactly(new Range(40L, 45L), new Range(20L, 30L), new Range(5L, 10L));
+    }
+
+    @Test
+    void rangesOutsideWindowAreSkipped() {
+        // Given
+        AckFrame ackFrame = new AckFrame(List.of(new Range(40L, 50L), new Range(20L, 30L), new Range(0L, 10L)));
+
+        // When
+        List<Range> ranges = ackFrame.getAcknowledgedRanges(12, 35);
+
+        // Then
+        assertThat(ranges).containsExactly(new Range(20L, 30L));
+    }
+
+    @Test
+    void emptyWindowLeadsToNoRanges() {
+        AckFrame ackFrame = new AckFrame(new Range(0L, 10L));
+
+        assertThat(ackFrame.getAcknowledgedRanges(8, 7)).isEmpty();
+    }
+    //endregion
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.frame;
+
+import net.luminis.quic.log.Logger;
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class DatagramFrameTest extends FrameTest {
+
+    @Test
+    void serializedFrameCanBeParsed() throws Exception {
+        // Given
+        var frame = new DatagramFrame(ByteBuffer.wrap(new byte[] { 0x01, 0x02, 0x03, 0x04 }));
+
+        // When
+        byte[] data = getBytes(frame);
+        var parsedFrame = new DatagramFrame().parse(ByteBuffer.wrap(data), mock(Logger.class));
+
+        // Then
+        assertThat(data[0]).isEqualTo((byte) 0x31);
+        assertThat(parsedFrame.getData()).isEqualTo(new byte[] { 0x01, 0x02, 0x03, 0x04 });
+    }
+
+    @Test
+    void frameWithoutLengthExtendsToEndOfPacket() throws Exception {
+        // Given
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0x30, 0x0a, 0x0b, 0x0c });
+
+        // When
+        var frame = new DatagramFrame().parse(buffer, mock(Logger.class));
+
+        // Then
+        assertThat(frame.getData()).isEqualTo(new byte[] { 0x0a, 0x0b, 0x0c });
+        assertThat(frame.getFrameLength()).isEqualTo(4);
+        assertThat(buffer.remaining()).isEqualTo(0);
+    }
+
+    @Test
+    void frameWithLengthLeavesRemainingBytes() throws Exception {
+        // Given
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0x31, 0x02, 0x0a, 0x0b, 0x01 });
+
+        // When
+        var frame = new DatagramFrame().parse(buffer, mock(Logger.class));
+
+        // Then
+        assertThat(frame.getData()).isEqualTo(new byte[] { 0x0a, 0x0b });
+        assertThat(buffer.remaining()).isEqualTo(1);
+    }
+
+    @Test
+    void frameWithLengthExceedingPacketShouldBeRejected() {
+        // Given
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0x31, (byte) 0xbf, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0a, 0x0b });
+
+        assertThatThrownBy(() ->
+                // When
+                new DatagramFrame().parse(buffer, mock(Logger.class))
+        )
+                // Then
+                .isInstanceOf(BufferUnderflowException.class);
+    }
+
+    @Test
+    void testGetFrameLength() {
+        // Given
+        var frame = new DatagramFrame(ByteBuffer.allocate(300));
+
+        // When
+        ByteBuffer buffer = ByteBuffer.allocate(400);
+        frame.serialize(buffer);
+        buffer.flip();
+
+        // Then
+        assertThat(frame.getFrameLength()).isEqualTo(buffer.remaining());
+    }
+}
@@ -144,6 +144,22 @@ class RangeTest {
         assertThat(range(5, 8).subtract(range(6, 10))).isEqualTo(range(5, 5));
     }
 
+    @Test
+    void intersectOfOverlappingRangesIsCommonPart() {
+        assertThat(range(5, 11).intersect(range(8, 20))).hasValue(range(8, 11));
+        assertThat(range(8, 20).intersect(range(5, 11))).hasValue(range(8, 11));
+    }
+
+    @Test
+    void intersectWithContainedRangeIsContainedRange() {
+        assertThat(range(5, 11).intersect(range(7, 9))).hasValue(range(7, 9));
+    }
+
+    @Test
+    void intersectOfDisjunctRangesIsEmpty() {
+        assertThat(range(5, 8).intersect(range(9, 11))).isEmpty();
+    }
+
     private List<Range> createRangeList(Range... ranges) {
         var rangeList = new ArrayList<Range>();
         for (Range range: ranges) {
@@ -21,15 +21,13 @@ package net.luminis.quic.impl;
 import net.luminis.quic.frame.PingFrame;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.packet.ShortHeaderPacket;
-import net.luminis.quic.test.FieldSetter;
 import net.luminis.quic.test.TestClock;
-import net.luminis.quic.test.TestScheduledExecutor;
+import net.luminis.quic.test.TestTimerWheel;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
-import java.util.concurrent.ScheduledExecutorService;
 
 import static org.mockito.Mockito.*;
 
@@ -43,9 +41,7 @@ class IdleTimerTest {
     void initObjectUnderTest() throws Exception {
         clock = new TestClock();
         connection = Mockito.mock(QuicConnectionImpl.class);
-        idleTimer = new IdleTimer(clock, connection, mock(Logger.class), 1);
-        ScheduledExecutorService scheduler = new TestScheduledExecutor(clock);
-        FieldSetter.setField(idleTimer, idleTimer.getClass().getDeclaredField("timer"), scheduler);
+        idleTimer = new IdleTimer(clock, connection, mock(Logger.class), new TestTimerWheel(clock));
     }
 
     @AfterEach
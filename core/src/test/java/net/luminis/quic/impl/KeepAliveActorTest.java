@@ -22,12 +22,11 @@ import net.luminis.quic.common.EncryptionLevel;
 import net.luminis.quic.frame.PingFrame;
 import net.luminis.quic.send.Sender;
 import net.luminis.quic.test.TestClock;
-import net.luminis.quic.test.TestScheduledExecutor;
+import net.luminis.quic.test.TestTimerWheel;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.concurrent.ScheduledExecutorService;
 
 import static org.mockito.Mockito.*;
 
@@ -41,8 +40,7 @@ class KeepAliveActorTest {
     void initObjectUnderTest() throws Exception {
         clock = new TestClock();
         sender = mock(Sender.class);
-        ScheduledExecutorService scheduler = new TestScheduledExecutor(clock);
-        keepAliveActor = new KeepAliveActor(clock, new VersionHolder(Version.getDefault()), 300, 30000, sender, scheduler);
+        keepAliveActor = new KeepAliveActor(clock, new VersionHolder(Version.getDefault()), 300, 30000, sender, new TestTimerWheel(clock));
     }
 
     @AfterEach
@@ -20,6 +20,8 @@ package net.luminis.quic.impl;
 
 import net.luminis.quic.ConnectionConfig;
 import net.luminis.quic.QuicStream;
+import net.luminis.quic.TokenCache;
+import net.luminis.quic.client.InMemoryTokenCache;
 import net.luminis.quic.cc.FixedWindowCongestionController;
 import net.luminis.quic.cid.ConnectionIdInfo;
 import net.luminis.quic.cid.ConnectionIdStatus;
@@ -41,18 +43,23 @@ import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.interfaces.ECPublicKey;
 import java.security.spec.ECGenParameterSpec;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 
+import static net.luminis.quic.QuicConstants.TransportErrorCode.FRAME_ENCODING_ERROR;
+import static net.luminis.quic.QuicConstants.TransportErrorCode.PROTOCOL_VIOLATION;
 import static net.luminis.quic.QuicConstants.TransportErrorCode.TRANSPORT_PARAMETER_ERROR;
 import static net.luminis.tls.TlsConstants.NamedGroup.secp256r1;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -238,6 +245,53 @@ class QuicClientConnectionImplTest {
     }
     //endregion
 
+    //region new token
+    @Test
+    void receivedNewTokenShouldBeStoredInTokenCache() throws Exception {
+        // Given
+        TokenCache tokenCache = new InMemoryTokenCache();
+        FieldSetter.setField(connection, "tokenCache", tokenCache);
+        simulateSuccessfulConnect();
+
+        // When
+        byte[] token = new byte[] { 0x4e, 0x01, 0x02, 0x03, 0x04 };
+        connection.processFrames(new ShortHeaderPacket(Version.getDefault(), destinationConnectionId, new NewTokenFrame(token)), Instant.now());
+
+        // Then
+        assertThat(tokenCache.take("localhost")).hasValue(token);
+    }
+
+    @Test
+    void receivingNewTokenWithEmptyTokenLeadsToConnectionError() throws Exception {
+        // Given
+        simulateSuccessfulConnect();
+        connection = spy(connection);
+
+        // When
+        connection.processFrames(new ShortHeaderPacket(Version.getDefault(), destinationConnectionId, new NewTokenFrame(new byte[0])), Instant.now());
+
+        // Then
+        verify(connection).immediateCloseWithError(argThat(l -> l == EncryptionLevel.App), eq((long) FRAME_ENCODING_ERROR.value), any(), any());
+    }
+
+    @Test
+    void tokenFromTokenCacheShouldBeUsedInInitialPackets() throws Exception {
+        // Given
+        TokenCache tokenCache = new InMemoryTokenCache();
+        byte[] token = new byte[] { 0x4e, 0x01, 0x02, 0x03, 0x04 };
+        tokenCache.put("localhost", token);
+        FieldSetter.setField(connection, "tokenCache", tokenCache);
+        FieldSetter.setField(connection, connection.getClass().getDeclaredField("sender"), sender);
+
+        // When
+        assertThatThrownBy(() -> connection.connect()).isInstanceOf(IOException.class);  // Times out, as there is no server
+
+        // Then
+        verify(sender).setInitialToken(token);
+        assertThat(tokenCache.take("localhost")).isEmpty();
+    }
+    //endregion
+
     //region stream
     @Test
     void testCreateStream() throws Exception {
@@ -603,7 +657,124 @@ class QuicClientConnectionImplTest {
     }
     //endregion
 
+    //region datagrams
+    @Test
+    void receivingDatagramWhenNotSupportedLeadsToConnectionError() throws Exception {
+        // Given
+        simulateSuccessfulConnect();
+        connection = spy(connection);
+
+        // When
+        connection.processFrames(
+                new ShortHeaderPacket(Version.getDefault(), destinationConnectionId,
+                        new DatagramFrame(ByteBuffer.wrap(new byte[10]))), Instant.now());
+
+        // Then
+        verify(connection).immediateCloseWithError(argThat(l -> l == EncryptionLevel.App), eq((long) PROTOCOL_VIOLATION.value), any(), any());
+    }
+
+    @Test
+    void receivedDatagramIsPassedToCallback() throws Exception {
+        // Given
+        enableReceivingDatagrams(100);
+        simulateSuccessfulConnect();
+        List<ByteBuffer> received = new ArrayList<>();
+        connection.setDatagramReceivedCallback(received::add);
+
+        // When
+        connection.processFrames(
+                new ShortHeaderPacket(Version.getDefault(), destinationConnectionId,
+                        new DatagramFrame(ByteBuffer.wrap(new byte[] { 0x0d, 0x0a, 0x0e }))), Instant.now());
+
+        // Then
+        assertThat(received).hasSize(1);
+        assertThat(received.get(0).array()).isEqualTo(new byte[] { 0x0d, 0x0a, 0x0e });
+    }
+
+    @Test
+    void receivingDatagramLargerThanAllowedLeadsToConnectionError() throws Exception {
+        // Given
+        enableReceivingDatagrams(100);
+        simulateSuccessfulConnect();
+        connection = spy(connection);
+
+        // When
+        connection.processFrames(
+                new ShortHeaderPacket(Version.getDefault(), destinationConnectionId,
+                        new DatagramFrame(ByteBuffer.wrap(new byte[100]))), Instant.now());
+
+        // Then
+        verify(connection).immediateCloseWithError(argThat(l -> l == EncryptionLevel.App), eq((long) PROTOCOL_VIOLATION.value), any(), any());
+    }
+
+    @Test
+    void sendingDatagramWhenPeerDoesNotSupportDatagramsShouldFail() throws Exception {
+        // Given
+        simulateSuccessfulConnect();
+        connection.setPeerTransportParameters(peerTransportParametersWithMaxDatagramFrameSize(0));
+
+        // Then
+        assertThat(connection.getMaxDatagramSize()).isEqualTo(0);
+        assertThatThrownBy(() ->
+                // When
+                connection.sendDatagram(ByteBuffer.wrap(new byte[10]))
+        ).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void sentDatagramIsQueuedWithoutRetransmission() throws Exception {
+        // Given
+        simulateSuccessfulConnect();
+        when(sender.getMaxPacketSize()).thenReturn(1232);
+        connection.setPeerTransportParameters(peerTransportParametersWithMaxDatagramFrameSize(65535));
+
+        // When
+        connection.sendDatagram(ByteBuffer.wrap(new byte[1000]));
+
+        // Then
+        ArgumentCaptor<Consumer<QuicFrame>> lostCallbackCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(sender).send(argThat(frame -> frame instanceof DatagramFrame), eq(EncryptionLevel.App), lostCallbackCaptor.capture());
+        verify(sender).flush();
+        // And when lost
+        clearInvocations(sender);
+        lostCallbackCaptor.getValue().accept(new DatagramFrame(ByteBuffer.wrap(new byte[1000])));
+        verify(sender, never()).send(any(QuicFrame.class), any(EncryptionLevel.class), any(Consumer.class));
+    }
+
+    @Test
+    void maxDatagramSizeIsLimitedByPeerTransportParameterAndPacketSize() throws Exception {
+        // Given
+        simulateSuccessfulConnect();
+        when(sender.getMaxPacketSize()).thenReturn(1232);
+
+        // When
+        connection.setPeerTransportParameters(peerTransportParametersWithMaxDatagramFrameSize(500));
+        // Then
+        assertThat(connection.getMaxDatagramSize()).isEqualTo(500 - 1 - 2);
+        assertThatThrownBy(() -> connection.sendDatagram(ByteBuffer.wrap(new byte[498])))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        // When
+        connection.setPeerTransportParameters(peerTransportParametersWithMaxDatagramFrameSize(65535));
+        // Then
+        assertThat(connection.getMaxDatagramSize()).isLessThan(1232 - connection.getMaxShortHeaderPacketOverhead());
+    }
+    //endregion
+
     //region helper methods
+    private void enableReceivingDatagrams(int maxDatagramFrameSize) throws Exception {
+        ClientConnectionConfig connectionProperties = (ClientConnectionConfig) new FieldReader(connection, connection.getClass().getDeclaredField("connectionProperties")).read();
+        connectionProperties.setMaxDatagramFrameSize(maxDatagramFrameSize);
+    }
+
+    private TransportParameters peerTransportParametersWithMaxDatagramFrameSize(long maxDatagramFrameSize) {
+        TransportParameters parameters = new TransportParameters(10, 1000, 3, 3);
+        parameters.setInitialSourceConnectionId(connection.getDestinationConnectionId());
+        parameters.setOriginalDestinationConnectionId(connection.getDestinationConnectionId());
+        parameters.setMaxDatagramFrameSize(maxDatagramFrameSize);
+        return parameters;
+    }
+
     private void setFixedOriginalDestinationConnectionId(byte[] originalConnectionId) throws Exception {
         var connectionIdManager = new FieldReader(connection, connection.getClass().getDeclaredField("connectionIdManager")).read();
         FieldSetter.setField(connectionIdManager,
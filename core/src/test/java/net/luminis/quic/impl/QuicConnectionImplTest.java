@@ -29,7 +29,7 @@ import net.luminis.quic.send.SenderImpl;
 import net.luminis.quic.stream.StreamManager;
 import net.luminis.quic.test.FieldSetter;
 import net.luminis.quic.test.TestClock;
-import net.luminis.quic.test.TestScheduledExecutor;
+import net.luminis.quic.test.TestTimerWheel;
 import net.luminis.tls.engine.TlsEngine;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -49,7 +49,6 @@ class QuicConnectionImplTest {
     private QuicConnectionImpl connection;
     private SenderImpl sender;
     private TestClock testClock;
-    private TestScheduledExecutor testExecutor;
 
     @BeforeEach
     void createObjectUnderTest() throws Exception {
@@ -57,8 +56,7 @@ class QuicConnectionImplTest {
         when(sender.getPto()).thenReturn(onePto);
         connection = new NonAbstractQuicConnection();
         testClock = new TestClock();
-        testExecutor = new TestScheduledExecutor(testClock);
-        FieldSetter.setField(connection, QuicConnectionImpl.class.getDeclaredField("scheduler"), testExecutor);
+        FieldSetter.setField(connection, QuicConnectionImpl.class.getDeclaredField("timerWheel"), new TestTimerWheel(testClock));
     }
 
     @Test
@@ -223,7 +221,8 @@ class QuicConnectionImplTest {
         public boolean terminated;
 
         NonAbstractQuicConnection() {
-            super(Version.getDefault(), Role.Server, null, new NullLogger());
+            // Run timer tasks on the (test) timer thread, so they have completed when the test clock returns.
+            super(Version.getDefault(), Role.Server, null, Runnable::run, new NullLogger());
             idleTimer = new IdleTimer(this, log);
             streamManager = mock(StreamManager.class);
         }
@@ -243,4 +243,62 @@ class HandshakePacketTest {
         Aead aead = TestUtils.createKeys();
         byte[] bytes = handshakePacket.generatePacketBytes(aead);
     }
-}
\ No newline at end of file
+
+    @Test
+    void packetGeneratedIntoBufferAfterInitialPacketShouldBeParsable() throws Exception {
+        // Given
+        byte[] srcCid = new byte[] { 0x0e, 0x0e, 0x0e, 0x0e };
+        byte[] destCid = new byte[] { 0x0d, 0x0d, 0x0d, 0x0d };
+        InitialPacket initialPacket = new InitialPacket(Version.getDefault(), srcCid, destCid, null, new CryptoFrame(Version.getDefault(), new byte[48]));
+        initialPacket.setPacketNumber(0);
+        HandshakePacket handshakePacket = new HandshakePacket(Version.getDefault(), srcCid, destCid, new CryptoFrame(Version.getDefault(), new byte[120]));
+        handshakePacket.setPacketNumber(1);
+        ByteBuffer datagram = ByteBuffer.allocate(1200);
+
+        // When
+        int initialPacketSize = initialPacket.generatePacketBytes(TestUtils.createKeys(), datagram);
+        int handshakePacketSize = handshakePacket.generatePacketBytes(TestUtils.createKeys(), datagram);
+
+        // Then
+        assertThat(datagram.position()).isEqualTo(initialPacketSize + handshakePacketSize);
+        datagram.flip();
+        InitialPacket parsedInitial = new InitialPacket(Version.getDefault());
+        parsedInitial.parse(datagram, TestUtils.createKeys(), 0, mock(Logger.class), 4);
+        assertThat(datagram.position()).isEqualTo(initialPacketSize);
+        HandshakePacket parsedHandshake = new HandshakePacket(Version.getDefault());
+        parsedHandshake.parse(datagram.slice(), TestUtils.createKeys(), 0, mock(Logger.class), 4);
+        assertThat(parsedHandshake.getPacketNumber()).isEqualTo(1);
+        assertThat(parsedHandshake.getFrames()).hasOnlyOneElementSatisfying(frame ->
+                assertThat(((CryptoFrame) frame).getLength()).isEqualTo(120));
+    }
+
+    @Test
+    void whenFrameLengthIsUnderestimatedGeneratedPacketShouldStillBeValid() throws Exception {
+        // Given
+        QuicFrame frameWithIncorrectLength = new PingFrame() {
+            @Override
+            public int getFrameLength() {
+                return 1;
+            }
+
+            @Override
+            public void serialize(ByteBuffer buffer) {
+                super.serialize(buffer);
+                new Padding(99).serialize(buffer);
+            }
+        };
+        HandshakePacket handshakePacket = new HandshakePacket(Version.getDefault(), new byte[4], new byte[4], frameWithIncorrectLength);
+        handshakePacket.setPacketNumber(3);
+
+        // When
+        byte[] packetBytes = handshakePacket.generatePacketBytes(aead);
+
+        // Then
+        HandshakePacket parsedPacket = new HandshakePacket(Version.getDefault());
+        ByteBuffer buffer = ByteBuffer.wrap(packetBytes);
+        parsedPacket.parse(buffer, TestUtils.createKeys(), 0, mock(Logger.class), 4);
+        assertThat(buffer.position()).isEqualTo(packetBytes.length);
+        assertThat(parsedPacket.getPacketNumber()).isEqualTo(3);
+        assertThat(parsedPacket.getFrames()).hasAtLeastOneElementOfType(PingFrame.class);
+    }
+}
@@ -41,7 +41,7 @@ class ServerRolePacketParserTest {
         Logger logger = mock(Logger.class);
         VersionHolder version = new VersionHolder(Version.QUIC_version_1);
         ConnectionSecrets connectionSecrets = new ConnectionSecrets(version, Role.Server, null, logger);
-        parser = new ServerRolePacketParser(connectionSecrets, version, 0, false, null, null, logger);
+        parser = new ServerRolePacketParser(connectionSecrets, version, 0, null, null, logger);
     }
 
     @Test
@@ -23,9 +23,15 @@ import net.luminis.quic.impl.Version;
 import net.luminis.quic.crypto.Aead;
 import net.luminis.quic.frame.PingFrame;
 import net.luminis.quic.frame.StreamFrame;
+import net.luminis.quic.impl.DecryptionException;
+import net.luminis.quic.log.Logger;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
 
 class ShortHeaderPacketTest {
 
@@ -86,4 +92,117 @@ class ShortHeaderPacketTest {
         assertThat(actualLength).isEqualTo(estimatedLength);            // In practice
     }
 
-}
\ No newline at end of file
+    @Test
+    void packetsParsedWithSameDecryptionBufferShouldHaveTheirOwnFrames() throws Exception {
+        // Given
+        byte[] destinationConnectionId = { 0x0e, 0x0b, 0x02, 0x0f, 0x0a, 0x04, 0x02, 0x0d };
+        Aead senderKeys = TestUtils.createKeys();
+        ShortHeaderPacket firstPacket = new ShortHeaderPacket(Version.getDefault(), destinationConnectionId, new StreamFrame(0, new byte[] { 1, 2, 3 }, false));
+        firstPacket.setPacketNumber(1);
+        byte[] firstPacketBytes = firstPacket.generatePacketBytes(senderKeys);
+        ShortHeaderPacket secondPacket = new ShortHeaderPacket(Version.getDefault(), destinationConnectionId, new StreamFrame(4, new byte[300], true));
+        secondPacket.setPacketNumber(2);
+        byte[] secondPacketBytes = secondPacket.generatePacketBytes(senderKeys);
+        Aead receiverKeys = TestUtils.createKeys();
+        DecryptionBuffer decryptionBuffer = new DecryptionBuffer();
+
+        // When
+        ShortHeaderPacket firstParsed = new ShortHeaderPacket(Version.getDefault());
+        firstParsed.parse(ByteBuffer.wrap(firstPacketBytes), receiverKeys, 0, mock(Logger.class), 8, decryptionBuffer);
+        ShortHeaderPacket secondParsed = new ShortHeaderPacket(Version.getDefault());
+        secondParsed.parse(ByteBuffer.wrap(secondPacketBytes), receiverKeys, 1, mock(Logger.class), 8, decryptionBuffer);
+
+        // Then
+        assertThat(firstParsed.getPacketNumber()).isEqualTo(1);
+        assertThat(firstParsed.getFrames()).hasOnlyOneElementSatisfying(frame ->
+                assertThat(((StreamFrame) frame).getStreamData()).isEqualTo(new byte[] { 1, 2, 3 }));
+        assertThat(secondParsed.getPacketNumber()).isEqualTo(2);
+        assertThat(secondParsed.getFrames()).hasOnlyOneElementSatisfying(frame ->
+                assertThat(((StreamFrame) frame).getStreamId()).isEqualTo(4));
+    }
+
+    @Test
+    void streamFrameParsedWithDecryptionBufferShouldReferToPayload() throws Exception {
+        // Given
+        byte[] destinationConnectionId = { 0x0e, 0x0b, 0x02, 0x0f, 0x0a, 0x04, 0x02, 0x0d };
+        byte[] streamData = new byte[1000];
+        streamData[0] = 1;
+        streamData[999] = 3;
+        ShortHeaderPacket packet = new ShortHeaderPacket(Version.getDefault(), destinationConnectionId, new StreamFrame(0, streamData, false));
+        packet.setPacketNumber(1);
+        byte[] packetBytes = packet.generatePacketBytes(TestUtils.createKeys());
+        DecryptionBuffer decryptionBuffer = new DecryptionBuffer();
+
+        // When
+        ShortHeaderPacket parsed = new ShortHeaderPacket(Version.getDefault());
+        parsed.parse(ByteBuffer.wrap(packetBytes), TestUtils.createKeys(), 0, mock(Logger.class), 8, decryptionBuffer);
+
+        // Then
+        StreamFrame streamFrame = (StreamFrame) parsed.getFrames().get(0);
+        assertThat(streamFrame.getStreamDataBuffer().isReadOnly()).isTrue();
+        assertThat(streamFrame.getStreamDataBuffer()).isEqualTo(ByteBuffer.wrap(streamData));
+        assertThat(decryptionBuffer.payload().references()).isEqualTo(2);
+    }
+
+    @Test
+    void smallStreamFrameParsedWithDecryptionBufferShouldCopyData() throws Exception {
+        // Given
+        byte[] destinationConnectionId = { 0x0e, 0x0b, 0x02, 0x0f, 0x0a, 0x04, 0x02, 0x0d };
+        ShortHeaderPacket packet = new ShortHeaderPacket(Version.getDefault(), destinationConnectionId, new StreamFrame(0, new byte[] { 1, 2, 3 }, false));
+        packet.setPacketNumber(1);
+        byte[] packetBytes = packet.generatePacketBytes(TestUtils.createKeys());
+        DecryptionBuffer decryptionBuffer = new DecryptionBuffer();
+
+        // When
+        ShortHeaderPacket parsed = new ShortHeaderPacket(Version.getDefault());
+        parsed.parse(ByteBuffer.wrap(packetBytes), TestUtils.createKeys(), 0, mock(Logger.class), 8, decryptionBuffer);
+
+        // Then
+        StreamFrame streamFrame = (StreamFrame) parsed.getFrames().get(0);
+        assertThat(streamFrame.getStreamData()).isEqualTo(new byte[] { 1, 2, 3 });
+        assertThat(decryptionBuffer.payload().references()).isEqualTo(1);
+    }
+
+    @Test
+    void decryptionBufferShouldBeRecycledWhenReleasedByAllFrames() throws Exception {
+        // Given
+        byte[] destinationConnectionId = { 0x0e, 0x0b, 0x02, 0x0f, 0x0a, 0x04, 0x02, 0x0d };
+        Aead senderKeys = TestUtils.createKeys();
+        Aead receiverKeys = TestUtils.createKeys();
+        DecryptionBuffer decryptionBuffer = new DecryptionBuffer();
+        ShortHeaderPacket firstPacket = new ShortHeaderPacket(Version.getDefault(), destinationConnectionId, new StreamFrame(0, new byte[1000], false));
+        firstPacket.setPacketNumber(1);
+        ShortHeaderPacket firstParsed = new ShortHeaderPacket(Version.getDefault());
+        firstParsed.parse(ByteBuffer.wrap(firstPacket.generatePacketBytes(senderKeys)), receiverKeys, 0, mock(Logger.class), 8, decryptionBuffer);
+        ShortHeaderPacket secondPacket = new ShortHeaderPacket(Version.getDefault(), destinationConnectionId, new PingFrame());
+        secondPacket.setPacketNumber(2);
+        new ShortHeaderPacket(Version.getDefault()).parse(ByteBuffer.wrap(secondPacket.generatePacketBytes(senderKeys)), receiverKeys, 1, mock(Logger.class), 8, decryptionBuffer);
+        assertThat(decryptionBuffer.pooled()).isEqualTo(0);
+
+        // When
+        ((StreamFrame) firstParsed.getFrames().get(0)).release();
+
+        // Then
+        assertThat(decryptionBuffer.pooled()).isEqualTo(1);
+    }
+
+    @Test
+    void whenDecryptionFailsPacketDataShouldBeLeftUnaltered() throws Exception {
+        // Given
+        byte[] destinationConnectionId = { 0x0e, 0x0b, 0x02, 0x0f, 0x0a, 0x04, 0x02, 0x0d };
+        ShortHeaderPacket packet = new ShortHeaderPacket(Version.getDefault(), destinationConnectionId, new StreamFrame(0, new byte[32], false));
+        packet.setPacketNumber(300);
+        byte[] packetBytes = packet.generatePacketBytes(TestUtils.createKeys());
+        packetBytes[packetBytes.length - 1] ^= 0x01;  // Corrupt authentication tag
+        byte[] originalBytes = packetBytes.clone();
+
+        // When
+        ShortHeaderPacket parsed = new ShortHeaderPacket(Version.getDefault());
+        assertThatThrownBy(() ->
+                parsed.parse(ByteBuffer.wrap(packetBytes), TestUtils.createKeys(), 299, mock(Logger.class), 8, new DecryptionBuffer())
+        ).isInstanceOf(DecryptionException.class);
+
+        // Then
+        assertThat(packetBytes).isEqualTo(originalBytes);
+    }
+}
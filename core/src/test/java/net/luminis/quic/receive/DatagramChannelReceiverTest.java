@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.receive;
+
+import net.luminis.quic.log.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.time.Instant;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class DatagramChannelReceiverTest {
+
+    static final private int GET_TIMEOUT = 1;
+    private DatagramChannel channel;
+    private DatagramBufferPool bufferPool;
+    private Receiver receiver;
+
+    @BeforeEach
+    void initSocket() throws Exception {
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        bufferPool = new DatagramBufferPool(4, Receiver.MAX_DATAGRAM_SIZE);
+    }
+
+    @AfterEach
+    void closeSocket() throws Exception {
+        if (receiver != null) {
+            receiver.shutdown();
+        }
+        channel.close();
+    }
+
+    @Test
+    void receivedDatagramShouldContainDataAndSourceAddress() throws Exception {
+        // Given
+        receiver = createReceiver(address -> true);
+
+        // When
+        sendFromPort(new byte[] { 0x73, 0x74, 0x75 }, 1235);
+
+        // Then
+        RawPacket rawPacket = receiver.get(GET_TIMEOUT);
+        assertThat(rawPacket).isNotNull();
+        assertThat(rawPacket.isPooled()).isTrue();
+        assertThat(rawPacket.getLength()).isEqualTo(3);
+        assertThat(rawPacket.getData().get()).isEqualTo((byte) 0x73);
+        assertThat(rawPacket.getPort()).isEqualTo(1235);
+    }
+
+    @Test
+    void releasedPacketShouldReturnBufferToPool() {
+        // Given
+        ByteBuffer buffer = bufferPool.acquire();
+        RawPacket rawPacket = new RawPacket(buffer, new InetSocketAddress(InetAddress.getLoopbackAddress(), 1236), Instant.now(), 0, bufferPool::release);
+
+        // When
+        rawPacket.release();
+        rawPacket.release();
+
+        // Then
+        assertThat(bufferPool.available()).isEqualTo(1);
+        assertThat(bufferPool.acquire()).isSameAs(buffer);
+    }
+
+    @Test
+    void packetNotPassingFilterShouldBeDropped() throws Exception {
+        // Given
+        receiver = createReceiver(address -> address.getPort() == 9999);
+
+        // When
+        sendFromPort(new byte[] { 0x73 }, 1237);
+
+        // Then
+        RawPacket rawPacket = receiver.get(GET_TIMEOUT);
+        assertThat(rawPacket).isNull();
+    }
+
+    @Test
+    void socketWithoutChannelShouldNotBeAccepted() throws Exception {
+        try (DatagramSocket socket = new DatagramSocket()) {
+            assertThat(DatagramChannelReceiver.isSupported(socket)).isFalse();
+            assertThatThrownBy(() -> new DatagramChannelReceiver(socket, mock(Logger.class), t -> {}))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void createdSocketShouldBeSupported() throws Exception {
+        try (DatagramSocket socket = DatagramChannelReceiver.createSocket(null)) {
+            assertThat(DatagramChannelReceiver.isSupported(socket)).isTrue();
+            assertThat(socket.getChannel().isBlocking()).isTrue();
+            assertThat(socket.getLocalPort()).isGreaterThan(0);
+        }
+    }
+
+    private Receiver createReceiver(Predicate<InetSocketAddress> filter) {
+        Receiver receiver = new DatagramChannelReceiver(channel.socket(), bufferPool, mock(Logger.class), t -> {}, filter);
+        receiver.start();
+        return receiver;
+    }
+
+    private void sendFromPort(byte[] data, int port) throws Exception {
+        DatagramPacket packet = new DatagramPacket(data, data.length, InetAddress.getLoopbackAddress(), channel.socket().getLocalPort());
+
+        DatagramSocket senderSocket = new DatagramSocket(port);
+        senderSocket.send(packet);
+        senderSocket.close();
+    }
+}
@@ -27,6 +27,8 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Predicate;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -77,6 +79,25 @@ class ReceiverTest {
         assertThat(rawPacket).isNull();
     }
 
+    @Test
+    void drainToShouldReturnAvailablePacketsUpToMaximum() throws Exception {
+        // Given
+        Receiver receiver = createReceiver(null);
+        sendFromPort(new byte[] { 0x01 }, 1241);
+        sendFromPort(new byte[] { 0x02 }, 1242);
+        sendFromPort(new byte[] { 0x03 }, 1243);
+        Thread.sleep(50);
+
+        // When
+        List<RawPacket> batch = new ArrayList<>();
+        int count = receiver.drainTo(batch, 2, GET_TIMEOUT);
+
+        // Then
+        assertThat(count).isEqualTo(2);
+        assertThat(batch).extracting(RawPacket::getPort).containsExactly(1241, 1242);
+        assertThat(receiver.drainTo(batch, 2, GET_TIMEOUT)).isEqualTo(1);
+    }
+
     private Receiver createReceiver(Predicate<DatagramPacket> filter) {
         Receiver receiver;
         if (filter == null) {
@@ -0,0 +1,214 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.recovery;
+
+import net.luminis.quic.cc.RateSample;
+import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.impl.MockPacket;
+import net.luminis.quic.log.NullLogger;
+import net.luminis.quic.test.TestClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeliveryRateEstimatorTest {
+
+    private TestClock clock;
+    private RttEstimator rttEstimator;
+    private DeliveryRateEstimator estimator;
+    private long bytesInFlight;
+    private int packetNumber;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        clock = new TestClock();
+        rttEstimator = new RttEstimator(new NullLogger());
+        estimator = new DeliveryRateEstimator(rttEstimator);
+    }
+
+    @Test
+    void deliveryRateIsBytesDeliveredDividedByRoundTripTime() {
+        // Given
+        List<PacketStatus> packets = send(10, 1000);
+
+        // When
+        clock.fastForward(100);
+        RateSample rateSample = ack(packets);
+
+        // Then
+        assertThat(rateSample.delivered()).isEqualTo(10_000);
+        assertThat(rateSample.interval()).isEqualTo(Duration.ofMillis(100));
+        assertThat(rateSample.deliveryRate()).isEqualTo(100_000.0);
+        assertThat(rateSample.rtt()).isEqualTo(Duration.ofMillis(100));
+        assertThat(rateSample.priorDelivered()).isEqualTo(0);
+        assertThat(rateSample.totalDelivered()).isEqualTo(10_000);
+    }
+
+    @Test
+    void rateSampleIsBasedOnMostRecentlySentPacket() {
+        // Given
+        List<PacketStatus> firstFlight = send(2, 1000);
+        clock.fastForward(100);
+        ack(firstFlight);
+        List<PacketStatus> secondFlight = send(3, 1000);
+
+        // When
+        clock.fastForward(100);
+        RateSample rateSample = ack(secondFlight);
+
+        // Then
+        assertThat(rateSample.priorDelivered()).isEqualTo(2000);
+        assertThat(rateSample.delivered()).isEqualTo(3000);
+        assertThat(rateSample.interval()).isEqualTo(Duration.ofMillis(100));
+        assertThat(rateSample.totalDelivered()).isEqualTo(5000);
+    }
+
+    @Test
+    void intervalIsAckElapsedWhenLongerThanSendElapsed() {
+        // Given
+        List<PacketStatus> first = send(1, 1000);
+        clock.fastForward(50);
+        List<PacketStatus> second = send(1, 1000);
+        clock.fastForward(50);
+        ack(first);
+
+        // When
+        clock.fastForward(70);
+        RateSample rateSample = ack(second);
+
+        // Then
+        // Send elapsed (between sending first and second): 50 ms, ack elapsed (since second was sent): 170 ms
+        assertThat(rateSample.interval()).isEqualTo(Duration.ofMillis(170));
+        assertThat(rateSample.delivered()).isEqualTo(2000);
+    }
+
+    @Test
+    void intervalIsSendElapsedWhenAcksAreCompressed() {
+        // Given
+        List<PacketStatus> first = send(1, 1000);
+        clock.fastForward(50);
+        List<PacketStatus> second = send(1, 1000);
+        clock.fastForward(50);
+        ack(first);
+        clock.fastForward(50);
+        List<PacketStatus> third = send(1, 1000);
+
+        // When
+        clock.fastForward(10);
+        List<PacketStatus> acked = new ArrayList<>(second);
+        acked.addAll(third);
+        RateSample rateSample = ack(acked);
+
+        // Then
+        // Send elapsed (between sending first and third): 150 ms, ack elapsed (since first was acked): 60 ms
+        assertThat(rateSample.interval()).isEqualTo(Duration.ofMillis(150));
+        assertThat(rateSample.delivered()).isEqualTo(2000);
+    }
+
+    @Test
+    void whenNothingInFlightIntervalStartsAtTimeOfSending() {
+        // Given
+        ack(send(1, 1000));
+        clock.fastForward(5000);
+        List<PacketStatus> packets = send(1, 1000);
+
+        // When
+        clock.fastForward(100);
+        RateSample rateSample = ack(packets);
+
+        // Then
+        assertThat(rateSample.interval()).isEqualTo(Duration.ofMillis(100));
+    }
+
+    @Test
+    void samplesAreAppLimitedUntilDataSentAfterMarkingIsDelivered() {
+        // Given
+        List<PacketStatus> first = send(2, 1000);
+        estimator.onAppLimited(bytesInFlight);
+        List<PacketStatus> second = send(2, 1000);
+        List<PacketStatus> third;
+
+        // When
+        clock.fastForward(100);
+        RateSample firstSample = ack(first);
+        RateSample secondSample = ack(second);
+        third = send(1, 1000);
+        clock.fastForward(100);
+        RateSample thirdSample = ack(third);
+
+        // Then
+        assertThat(firstSample.isAppLimited()).isFalse();
+        assertThat(secondSample.isAppLimited()).isTrue();
+        assertThat(thirdSample.isAppLimited()).isFalse();
+    }
+
+    @Test
+    void sampleWithIntervalShorterThanMinRttIsInvalid() {
+        // Given
+        rttEstimator.addSample(clock.instant().plusMillis(100), clock.instant(), 0);
+        List<PacketStatus> packets = send(10, 1000);
+
+        // When
+        clock.fastForward(40);
+        RateSample rateSample = ack(packets);
+
+        // Then
+        assertThat(rateSample.isValid()).isFalse();
+    }
+
+    @Test
+    void sampleWithIntervalOfAtLeastMinRttIsValid() {
+        // Given
+        rttEstimator.addSample(clock.instant().plusMillis(100), clock.instant(), 0);
+        List<PacketStatus> packets = send(10, 1000);
+
+        // When
+        clock.fastForward(100);
+        RateSample rateSample = ack(packets);
+
+        // Then
+        assertThat(rateSample.isValid()).isTrue();
+    }
+
+    @Test
+    void ackWithoutPacketsDoesNotGenerateSample() {
+        assertThat(estimator.onPacketsAcked(List.of(), clock.instant())).isNull();
+    }
+
+    private List<PacketStatus> send(int count, int size) {
+        List<PacketStatus> packets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            PacketStatus packetStatus = new PacketStatus(clock.instant(), new MockPacket(packetNumber++, size, EncryptionLevel.App), p -> {});
+            estimator.onPacketSent(packetStatus, bytesInFlight);
+            bytesInFlight += size;
+            packets.add(packetStatus);
+        }
+        return packets;
+    }
+
+    private RateSample ack(List<PacketStatus> packets) {
+        bytesInFlight -= packets.stream().mapToInt(p -> p.packet().getSize()).sum();
+        return estimator.onPacketsAcked(packets, clock.instant());
+    }
+}
@@ -21,6 +21,7 @@ package net.luminis.quic.recovery;
 import net.luminis.quic.cc.CongestionControlEventListener;
 import net.luminis.quic.cc.CongestionController;
 import net.luminis.quic.cc.NewRenoCongestionController;
+import net.luminis.quic.cc.RateSample;
 import net.luminis.quic.common.EncryptionLevel;
 import net.luminis.quic.impl.MockPacket;
 import net.luminis.quic.impl.MoreArgumentMatchers;
@@ -39,8 +40,12 @@ import net.luminis.quic.test.FieldSetter;
 import net.luminis.quic.test.TestClock;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -87,6 +92,37 @@ class LossDetectorTest extends RecoveryTests {
         verify(congestionController, times(2)).registerAcked(any(List.class));
     }
 
+    @Test
+    void ackedPacketCallbackIsCalledOnceForEachNewlyAckedPacketInPacketNumberOrder() {
+        List<QuicPacket> packets = createPackets(1, 2, 3);
+        List<Long> acked = new ArrayList<>();
+        for (QuicPacket packet: packets) {
+            lossDetector.packetSent(packet, Instant.now(), lostPacket -> {}, ackedPacket -> acked.add(ackedPacket.getPacketNumber()));
+        }
+
+        lossDetector.onAckReceived(new AckFrame(new Range(1L, 2L)), Instant.now());
+        lossDetector.onAckReceived(new AckFrame(new Range(1L, 3L)), Instant.now());
+
+        assertThat(acked).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void congestionControllerReceivesRateSampleBeforeAckedPackets() {
+        List<QuicPacket> packets = createPackets(1, 2);
+        Instant timeSent = clock.instant();
+        lossDetector.packetSent(packets.get(0), timeSent, lostPacket -> lostPacketHandler.process(lostPacket));
+        lossDetector.packetSent(packets.get(1), timeSent, lostPacket -> lostPacketHandler.process(lostPacket));
+
+        lossDetector.onAckReceived(new AckFrame(new Range(1L, 2L)), timeSent.plusMillis(defaultRtt));
+
+        ArgumentCaptor<RateSample> rateSampleCaptor = ArgumentCaptor.forClass(RateSample.class);
+        InOrder inOrder = inOrder(congestionController);
+        inOrder.verify(congestionController).registerRateSample(rateSampleCaptor.capture());
+        inOrder.verify(congestionController).registerAcked(any(List.class));
+        assertThat(rateSampleCaptor.getValue().delivered()).isEqualTo(packets.get(0).getSize() + packets.get(1).getSize());
+        assertThat(rateSampleCaptor.getValue().rtt()).isEqualTo(Duration.ofMillis(defaultRtt));
+    }
+
     @Test
     void congestionControllerRegisterAckedNotCalledWithAckOnlyPacket() {
         QuicPacket packet = createPacket(1, new AckFrame(10));
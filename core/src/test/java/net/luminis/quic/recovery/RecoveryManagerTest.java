@@ -34,7 +34,7 @@ import net.luminis.quic.packet.QuicPacket;
 import net.luminis.quic.send.Sender;
 import net.luminis.quic.test.FieldSetter;
 import net.luminis.quic.test.TestClock;
-import net.luminis.quic.test.TestScheduledExecutor;
+import net.luminis.quic.test.TestTimerWheel;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -43,7 +43,6 @@ import org.mockito.stubbing.Answer;
 
 import java.time.Instant;
 import java.util.List;
-import java.util.concurrent.ScheduledExecutorService;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -71,9 +70,7 @@ class RecoveryManagerTest extends RecoveryTests {
         // logger = new SysOutLogger();
         // logger.logRecovery(true);
         clock = new TestClock();
-        recoveryManager = new RecoveryManager(clock, Role.Client, rttEstimator, mock(CongestionController.class), probeSender, logger);
-        ScheduledExecutorService scheduler = new TestScheduledExecutor(clock);
-        FieldSetter.setField(recoveryManager, recoveryManager.getClass().getDeclaredField("scheduler"), scheduler);
+        recoveryManager = new RecoveryManager(clock, Role.Client, rttEstimator, mock(CongestionController.class), probeSender, new TestTimerWheel(clock), null, logger);
     }
 
     @BeforeEach
@@ -44,6 +44,7 @@ public abstract class RecoveryTests {
     QuicPacket createPacket(int packetNumber, QuicFrame frame) {
         ShortHeaderPacket packet = new ShortHeaderPacket(Version.getDefault(), new byte[0], frame);
         setPacketNumber(packet, packetNumber);
+        setPacketSize(packet);
         return packet;
     }
 
@@ -56,6 +57,7 @@ public abstract class RecoveryTests {
         for (int packetNumber: packetNumbers) {
             ShortHeaderPacket packet = new ShortHeaderPacket(Version.getDefault(), new byte[0], new MaxDataFrame(1024));
             setPacketNumber(packet, packetNumber);
+        setPacketSize(packet);
             packets.add(packet);
         }
         return packets;
@@ -67,12 +69,14 @@ public abstract class RecoveryTests {
             packet.addFrame(frames[i]);
         }
         setPacketNumber(packet, packetNumber);
+        setPacketSize(packet);
         return packet;
     }
 
     QuicPacket createCryptoPacket(int packetNumber) {
         LongHeaderPacket packet = new InitialPacket(Version.getDefault(), srcCid, destCid, null, new CryptoFrame());
         setPacketNumber(packet, packetNumber);
+        setPacketSize(packet);
         return packet;
     }
 
@@ -84,6 +88,15 @@ public abstract class RecoveryTests {
         }
     }
 
+    void setPacketSize(QuicPacket packet) {
+        // Size is normally set when the packet is generated; rate estimation needs the size of every packet sent
+        try {
+            FieldSetter.setField(packet, QuicPacket.class.getDeclaredField("packetSize"), 1200);
+        } catch (NoSuchFieldException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     // For debugging recovery tests....
     String timeNow() {
         LocalTime localTimeNow = LocalTime.from(Instant.now().atZone(ZoneId.systemDefault()));
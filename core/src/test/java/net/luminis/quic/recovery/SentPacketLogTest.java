@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.recovery;
+
+import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.impl.MockPacket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SentPacketLogTest {
+
+    private SentPacketLog log;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        log = new SentPacketLog();
+    }
+
+    @Test
+    void addedPacketCanBeRetrievedByPacketNumber() {
+        // When
+        log.add(packetStatus(0));
+        log.add(packetStatus(1));
+
+        // Then
+        assertThat(log.get(0).packet().getPacketNumber()).isEqualTo(0);
+        assertThat(log.get(1).packet().getPacketNumber()).isEqualTo(1);
+        assertThat(log.get(2)).isNull();
+        assertThat(log.size()).isEqualTo(2);
+    }
+
+    @Test
+    void whenOldestPacketIsRemovedStartAdvancesToNextPresentPacket() {
+        // Given
+        for (int pn = 0; pn < 5; pn++) {
+            log.add(packetStatus(pn));
+        }
+        log.remove(1);
+        log.remove(2);
+
+        // When
+        log.remove(0);
+
+        // Then
+        assertThat(log.start()).isEqualTo(3);
+        assertThat(log.end()).isEqualTo(5);
+        assertThat(log.get(0)).isNull();
+    }
+
+    @Test
+    void whenLastPacketIsRemovedLogIsEmpty() {
+        // Given
+        log.add(packetStatus(7));
+
+        // When
+        log.remove(7);
+
+        // Then
+        assertThat(log.size()).isEqualTo(0);
+        assertThat(log.start()).isEqualTo(log.end());
+        assertThat(log.values()).isEmpty();
+    }
+
+    @Test
+    void logGrowsWhenPacketsInFlightExceedCapacity() {
+        // When
+        for (int pn = 0; pn < 1000; pn++) {
+            log.add(packetStatus(pn));
+        }
+
+        // Then
+        assertThat(log.size()).isEqualTo(1000);
+        for (int pn = 0; pn < 1000; pn++) {
+            assertThat(log.get(pn).packet().getPacketNumber()).isEqualTo(pn);
+        }
+    }
+
+    @Test
+    void slotsAreReusedWhenOldPacketsAreRemoved() {
+        // When
+        for (int pn = 0; pn < 10_000; pn++) {
+            log.add(packetStatus(pn));
+            if (pn >= 10) {
+                log.remove(pn - 10);
+            }
+        }
+
+        // Then
+        assertThat(log.size()).isEqualTo(10);
+        assertThat(log.start()).isEqualTo(9990);
+        assertThat(log.values().stream().map(p -> p.packet().getPacketNumber()).collect(Collectors.toList()))
+                .containsExactly(9990L, 9991L, 9992L, 9993L, 9994L, 9995L, 9996L, 9997L, 9998L, 9999L);
+    }
+
+    @Test
+    void gapsInPacketNumbersAreSupported() {
+        // When
+        log.add(packetStatus(3));
+        log.add(packetStatus(8));
+        log.add(packetStatus(100));
+
+        // Then
+        assertThat(log.get(5)).isNull();
+        assertThat(log.get(100)).isNotNull();
+        assertThat(log.values()).hasSize(3);
+    }
+
+    @Test
+    void packetWithLowerPacketNumberThanOldestCanBeAdded() {
+        // Given
+        log.add(packetStatus(10));
+
+        // When
+        log.add(packetStatus(4));
+
+        // Then
+        assertThat(log.start()).isEqualTo(4);
+        assertThat(log.get(4)).isNotNull();
+        assertThat(log.get(10)).isNotNull();
+    }
+
+    private PacketStatus packetStatus(int packetNumber) {
+        return new PacketStatus(Instant.now(), new MockPacket(packetNumber, 1200, EncryptionLevel.App), p -> {});
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.send;
+
+import net.luminis.quic.cc.CongestionController;
+import net.luminis.quic.recovery.RttEstimator;
+import net.luminis.quic.test.TestClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PacerTest {
+
+    private TestClock clock;
+    private CongestionController congestionController;
+    private RttEstimator rttEstimator;
+    private Pacer pacer;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        clock = new TestClock();
+        congestionController = mock(CongestionController.class);
+        when(congestionController.getWindowSize()).thenReturn(12_000L);
+        rttEstimator = mock(RttEstimator.class);
+        when(rttEstimator.getSmoothedRtt()).thenReturn(100);
+        pacer = new Pacer(clock, congestionController, rttEstimator, 10);
+    }
+
+    @Test
+    void withoutRateFromCongestionControllerRateIsBasedOnCongestionWindowAndSmoothedRtt() {
+        // 1.25 * 12000 bytes / 100 ms
+        assertThat(pacer.getPacingRate()).isEqualTo(150_000);
+    }
+
+    @Test
+    void whenCongestionControllerDeterminesRateThatRateIsUsed() {
+        // Given
+        when(congestionController.getPacingRate()).thenReturn(1_000_000L);
+
+        // Then
+        assertThat(pacer.getPacingRate()).isEqualTo(1_000_000);
+    }
+
+    @Test
+    void burstAllowanceCanBeSentAtOnce() {
+        // When
+        int sent = sendWhileAllowed();
+
+        // Then
+        assertThat(sent).isEqualTo(10);
+        assertThat(pacer.maySend(1200)).isFalse();
+    }
+
+    @Test
+    void afterBurstNextDatagramCanBeSentWhenEnoughTimeHasPassed() {
+        // Given
+        sendWhileAllowed();
+
+        // When
+        clock.fastForward(8);  // 1200 bytes at 150 kB/s
+
+        // Then
+        assertThat(pacer.maySend(1200)).isTrue();
+        pacer.onDatagramSent(1200);
+        assertThat(pacer.maySend(1200)).isFalse();
+    }
+
+    @Test
+    void nextSendTimeIsBasedOnPacingRate() {
+        // Given
+        sendWhileAllowed();
+
+        // When
+        pacer.onDatagramSent(1200);
+
+        // Then
+        assertThat(Duration.between(clock.instant(), pacer.nextSendTime())).isEqualTo(Duration.ofMillis(8));
+    }
+
+    @Test
+    void whenIdleBurstDoesNotExceedAllowance() {
+        // Given
+        sendWhileAllowed();
+
+        // When
+        clock.fastForward(10_000);
+
+        // Then
+        assertThat(sendWhileAllowed()).isEqualTo(10);
+    }
+
+    @Test
+    void atHighRateBurstIsAtLeastWhatCanBeSentDuringTwoTimerTicks() {
+        // Given
+        when(congestionController.getPacingRate()).thenReturn(100_000_000L);  // 100 kB per ms
+        pacer.setBurstAllowance(2);
+
+        // Then
+        // 200 kB in 1200 byte datagrams
+        assertThat(sendWhileAllowed()).isEqualTo(167);
+    }
+
+    @Test
+    void burstAllowanceZeroDisablesPacing() {
+        // Given
+        pacer.setBurstAllowance(0);
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+            pacer.onDatagramSent(1200);
+        }
+
+        // Then
+        assertThat(pacer.maySend(1200)).isTrue();
+        assertThat(pacer.nextSendTime()).isEqualTo(clock.instant());
+    }
+
+    @Test
+    void burstAllowanceCannotBeNegative() {
+        assertThatThrownBy(() -> pacer.setBurstAllowance(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private int sendWhileAllowed() {
+        int count = 0;
+        while (pacer.maySend(1200) && count < 1000) {
+            pacer.onDatagramSent(1200);
+            count++;
+        }
+        return count;
+    }
+}
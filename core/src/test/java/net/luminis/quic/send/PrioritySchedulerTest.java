@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.send;
+
+import net.luminis.quic.StreamPriority;
+import net.luminis.quic.frame.QuicFrame;
+import net.luminis.quic.frame.StreamFrame;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrioritySchedulerTest {
+
+    private PriorityScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new PriorityScheduler();
+    }
+
+    @Test
+    void requestsWithHighestUrgencyAreServedFirst() {
+        // Given
+        scheduler.add(request(0), 0, StreamPriority.of(5, false));
+        scheduler.add(request(4), 4, StreamPriority.of(1, false));
+        scheduler.add(request(8), 8, StreamPriority.DEFAULT);
+
+        // Then
+        assertThat(nextStreamIds(3)).containsExactly(4, 8, 0);
+    }
+
+    @Test
+    void nonIncrementalStreamsWithSameUrgencyAreServedInOrderOfStreamId() {
+        // Given
+        scheduler.add(request(8), 8, StreamPriority.DEFAULT);
+        scheduler.add(request(0), 0, StreamPriority.DEFAULT);
+        scheduler.add(request(8), 8, StreamPriority.DEFAULT);
+        scheduler.add(request(4), 4, StreamPriority.DEFAULT);
+        scheduler.add(request(0), 0, StreamPriority.DEFAULT);
+
+        // Then
+        assertThat(nextStreamIds(5)).containsExactly(0, 0, 4, 8, 8);
+    }
+
+    @Test
+    void incrementalStreamsWithSameUrgencyAreServedRoundRobin() {
+        // Given
+        StreamPriority incremental = StreamPriority.of(3, true);
+        scheduler.add(request(0), 0, incremental);
+        scheduler.add(request(4), 4, incremental);
+        scheduler.add(request(8), 8, incremental);
+
+        // When
+        List<Integer> served = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            int streamId = nextStreamId();
+            served.add(streamId);
+            // Simulate stream having more data to send
+            scheduler.add(request(streamId), streamId, incremental);
+        }
+
+        // Then
+        assertThat(served).containsExactly(0, 4, 8, 0, 4, 8);
+    }
+
+    @Test
+    void nonIncrementalStreamsAreServedBeforeIncrementalStreamsWithSameUrgency() {
+        // Given
+        scheduler.add(request(0), 0, StreamPriority.of(3, true));
+        scheduler.add(request(4), 4, StreamPriority.of(3, false));
+
+        // Then
+        assertThat(nextStreamIds(2)).containsExactly(4, 0);
+    }
+
+    @Test
+    void requestThatDoesNotFitIsSkipped() {
+        // Given
+        scheduler.add(new FrameSupplierSendRequest(100, size -> null, f -> {}), 0, StreamPriority.of(0, false));
+        scheduler.add(request(4), 4, StreamPriority.of(7, false));
+
+        // When
+        Optional<SendRequest> next = scheduler.next(50);
+
+        // Then
+        assertThat(next).isPresent();
+        assertThat(streamIdOf(next.get())).isEqualTo(4);
+        assertThat(scheduler.isEmpty()).isFalse();
+    }
+
+    @Test
+    void whenNoRequestFitsNextReturnsNothing() {
+        // Given
+        scheduler.add(new FrameSupplierSendRequest(100, size -> null, f -> {}), 0, StreamPriority.DEFAULT);
+
+        // Then
+        assertThat(scheduler.next(50)).isEmpty();
+    }
+
+    @Test
+    void clearRemovesAllRequests() {
+        // Given
+        scheduler.add(request(0), 0, StreamPriority.DEFAULT);
+        scheduler.add(request(4), 4, StreamPriority.of(2, true));
+
+        // When
+        scheduler.clear();
+
+        // Then
+        assertThat(scheduler.isEmpty()).isTrue();
+        assertThat(scheduler.next(1000)).isEmpty();
+    }
+
+    private SendRequest request(int streamId) {
+        return new FrameSupplierSendRequest(20, size -> new StreamFrame(streamId, new byte[10], false), f -> {});
+    }
+
+    private int streamIdOf(SendRequest request) {
+        QuicFrame frame = request.getFrame(1000);
+        return ((StreamFrame) frame).getStreamId();
+    }
+
+    private int nextStreamId() {
+        return streamIdOf(scheduler.next(1000).get());
+    }
+
+    private List<Integer> nextStreamIds(int count) {
+        List<Integer> streamIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            streamIds.add(nextStreamId());
+        }
+        return streamIds;
+    }
+}
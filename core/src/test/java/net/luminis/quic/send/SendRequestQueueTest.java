@@ -18,15 +18,21 @@
  */
 package net.luminis.quic.send;
 
+import net.luminis.quic.StreamPriority;
 import net.luminis.quic.impl.Version;
 import net.luminis.quic.frame.CryptoFrame;
+import net.luminis.quic.frame.DatagramFrame;
 import net.luminis.quic.frame.PathResponseFrame;
+import net.luminis.quic.frame.PingFrame;
 import net.luminis.quic.frame.QuicFrame;
+import net.luminis.quic.frame.StreamFrame;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -70,6 +76,35 @@ class SendRequestQueueTest {
         // Then
         assertThat(sendRequest).isNotPresent();
     }
+
+    @Test
+    void otherRequestsAreServedBeforeStreamRequests() {
+        // Given
+        sendRequestQueue.addRequest(streamFrameSupplier(0, StreamPriority.of(0, false)), 20, f -> {});
+        sendRequestQueue.addRequest(new PingFrame(), f -> {});
+
+        // When
+        Optional<SendRequest> first = sendRequestQueue.next(100);
+        Optional<SendRequest> second = sendRequestQueue.next(100);
+
+        // Then
+        assertThat(first.get().getFrame(100)).isInstanceOf(PingFrame.class);
+        assertThat(second.get().getFrame(100)).isInstanceOf(StreamFrame.class);
+        assertThat(sendRequestQueue.hasRequests()).isFalse();
+    }
+
+    @Test
+    void streamRequestsAreServedInOrderOfPriority() {
+        // Given
+        sendRequestQueue.addRequest(streamFrameSupplier(0, StreamPriority.of(6, false)), 20, f -> {});
+        sendRequestQueue.addRequest(streamFrameSupplier(4, StreamPriority.of(2, false)), 20, f -> {});
+
+        // When
+        Optional<SendRequest> first = sendRequestQueue.next(100);
+
+        // Then
+        assertThat(((StreamFrame) first.get().getFrame(100)).getStreamId()).isEqualTo(4);
+    }
     //endregion
 
     //region ack delay
@@ -136,6 +171,39 @@ class SendRequestQueueTest {
     //endprobe
 
     //region frame type limit
+    @Test
+    void whenDatagramQueueIsFullOldestDatagramIsDropped() throws Exception {
+        // Given
+        for (int i = 0; i < SendRequestQueue.MAX_QUEUED_DATAGRAM_FRAMES; i++) {
+            sendRequestQueue.addRequest(new DatagramFrame(ByteBuffer.wrap(new byte[] { (byte) i })), f -> {});
+        }
+
+        // When
+        sendRequestQueue.addRequest(new DatagramFrame(ByteBuffer.wrap(new byte[] { (byte) 0xff })), f -> {});
+
+        // Then
+        List<DatagramFrame> frames = new ArrayList<>();
+        Optional<SendRequest> queuedItem;
+        while ((queuedItem = sendRequestQueue.next(1024)).isPresent()) {
+            frames.add((DatagramFrame) queuedItem.get().getFrame(1024));
+        }
+        assertThat(frames).hasSize(SendRequestQueue.MAX_QUEUED_DATAGRAM_FRAMES);
+        assertThat(frames.get(0).getData()).isEqualTo(new byte[] { 1 });
+        assertThat(frames.get(frames.size() - 1).getData()).isEqualTo(new byte[] { (byte) 0xff });
+    }
+
+    @Test
+    void datagramsGoBeforeStreamFrames() throws Exception {
+        // Given
+        sendRequestQueue.addRequest(streamFrameSupplier(4, StreamPriority.of(3, false)), 100, f -> {});
+
+        // When
+        sendRequestQueue.addRequest(new DatagramFrame(ByteBuffer.wrap(new byte[10])), f -> {});
+
+        // Then
+        assertThat(sendRequestQueue.next(1000).get().getFrame(1000)).isInstanceOf(DatagramFrame.class);
+    }
+
     @Test
     void pathChallenge() throws Exception {
         // Given
@@ -161,4 +229,27 @@ class SendRequestQueueTest {
         assertThat(pollCount).isEqualTo(maxNrOfPathResponseFrames);
     }
     //endregion
-}
\ No newline at end of file
+
+    private StreamFrameSupplier streamFrameSupplier(int streamId, StreamPriority priority) {
+        return new StreamFrameSupplier() {
+            @Override
+            public int getStreamId() {
+                return streamId;
+            }
+
+            @Override
+            public StreamPriority getPriority() {
+                return priority;
+            }
+
+            @Override
+            public QuicFrame apply(Integer maxSize) {
+                return new StreamFrame(streamId, new byte[10], false);
+            }
+
+            @Override
+            public void frameAcknowledged(QuicFrame frame) {
+            }
+        };
+    }
+}
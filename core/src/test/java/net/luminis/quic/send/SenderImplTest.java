@@ -152,6 +152,45 @@ class SenderImplTest extends AbstractSenderTest {
         verify(socket, times(3)).send(any(DatagramPacket.class));
     }
 
+    @Test
+    void whenPacerDoesNotAllowSendingOnlyPacketsThatAreNotCongestionControlledAreAssembled() throws Exception {
+        // Given
+        setupMockPacketAssemblerHonouringCwnd();
+        sender.setPacingBurstAllowance(2);
+
+        // When
+        sender.sendIfAny();
+
+        // Then
+        verify(socket, times(2)).send(any(DatagramPacket.class));
+        verify(packetAssembler).assemble(eq(0), anyInt(), any(byte[].class), any(byte[].class));
+    }
+
+    @Test
+    void whenPacingLimitedSenderIsWakedUpWhenPacerAllowsSending() throws Exception {
+        // Given
+        setupMockPacketAssemblerHonouringCwnd();
+        sender.setPacingBurstAllowance(2);
+        sender.sendIfAny();
+
+        // When
+        clock.fastForward(8);  // Pacing rate is 1.25 * 12000 / 100 ms = 150 bytes/ms
+        sender.sendIfAny();
+        long delay = sender.determineMaximumWaitTime();
+
+        // Then
+        verify(socket, times(3)).send(any(DatagramPacket.class));
+        assertThat(delay).isBetween(1L, 8L);
+    }
+
+    private void setupMockPacketAssemblerHonouringCwnd() throws NoSuchFieldException {
+        packetAssembler = mock(GlobalPacketAssembler.class);
+        when(packetAssembler.assemble(intThat(cwnd -> cwnd > 0), anyInt(), any(byte[].class), any(byte[].class))).thenAnswer(invocation -> List.of(new SendItem(new MockPacket(0, 1200, ""))));
+        when(packetAssembler.assemble(eq(0), anyInt(), any(byte[].class), any(byte[].class))).thenReturn(List.of());
+        when(packetAssembler.nextDelayedSendTime()).thenReturn(Optional.empty());
+        FieldSetter.setField(sender, sender.getClass().getDeclaredField("packetAssembler"), packetAssembler);
+    }
+
     private void setupMockPacketAssember() throws NoSuchFieldException {
         packetAssembler = mock(GlobalPacketAssembler.class);
         when(packetAssembler.assemble(anyInt(), anyInt(), any(byte[].class), any(byte[].class))).thenReturn(List.of(new SendItem(new MockPacket(0, 1200, ""))));
@@ -186,6 +225,25 @@ class SenderImplTest extends AbstractSenderTest {
         verify(socket).send(any(DatagramPacket.class));
     }
 
+    @Test
+    void whenMoreDatagramsAreExpectedSenderIsOnlyWakedUpAfterLastDatagram() throws Exception {
+        // Given
+        FieldReader signalled = new FieldReader(sender, sender.getClass().getDeclaredField("signalled"));
+        sender.datagramProcessed(true);
+
+        // When
+        sender.packetProcessed(false);
+
+        // Then
+        assertThat(signalled.read()).isEqualTo(false);
+
+        // When
+        sender.datagramProcessed(false);
+
+        // Then
+        assertThat(signalled.read()).isEqualTo(true);
+    }
+
     @Test
     @Timeout(value = 500, unit = TimeUnit.MILLISECONDS)
     void probeIsSentImmediatelyEvenWhenSenderIsNotFlushed() throws Exception {
@@ -1,5 +1,6 @@
 package net.luminis.quic.server;
 
+import net.luminis.quic.ConnectionConfig;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -126,4 +127,98 @@ class ServerConfigTest {
         // When
         assertThatThrownBy(builder::build).isInstanceOf(IllegalArgumentException.class);
     }
-}
\ No newline at end of file
+
+    @Test
+    void congestionControlAlgorithmIsRetainedWhenMerged() {
+        // Given
+        ServerConnectionConfig config = ServerConnectionConfig.builder()
+                .congestionControlAlgorithm(ConnectionConfig.CongestionControlAlgorithm.Cubic)
+                .build();
+
+        // When
+        ServerConnectionConfig mergedConfig = config.merge(new ApplicationProtocolSettings() {});
+
+        // Then
+        assertThat(mergedConfig.congestionControlAlgorithm()).isEqualTo(ConnectionConfig.CongestionControlAlgorithm.Cubic);
+    }
+
+    @Test
+    void pacingBurstAllowanceIsRetainedWhenMerged() {
+        // Given
+        ServerConnectionConfig config = ServerConnectionConfig.builder()
+                .pacingBurstAllowance(4)
+                .build();
+
+        // When
+        ServerConnectionConfig mergedConfig = config.merge(new ApplicationProtocolSettings() {});
+
+        // Then
+        assertThat(mergedConfig.pacingBurstAllowance()).isEqualTo(4);
+    }
+
+    @Test
+    void pacingBurstAllowanceCannotBeNegative() {
+        assertThatThrownBy(() -> ServerConnectionConfig.builder().pacingBurstAllowance(-1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void receiveWindowAutoTuningIsRetainedWhenMerged() {
+        // Given
+        ServerConnectionConfig config = ServerConnectionConfig.builder()
+                .receiveWindowAutoTuning(4_000_000, 16_000_000)
+                .build();
+
+        // When
+        ServerConnectionConfig mergedConfig = config.merge(new ApplicationProtocolSettings() {});
+
+        // Then
+        assertThat(mergedConfig.receiveWindowAutoTuning()).isTrue();
+        assertThat(mergedConfig.maxStreamReceiveWindow()).isEqualTo(4_000_000);
+        assertThat(mergedConfig.maxConnectionReceiveWindow()).isEqualTo(16_000_000);
+    }
+
+    @Test
+    void maxConnectionReceiveWindowCannotBeLessThanMaxStreamReceiveWindow() {
+        assertThatThrownBy(() -> ServerConnectionConfig.builder().receiveWindowAutoTuning(4_000_000, 1_000_000))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void maxDatagramFrameSizeIsRetainedWhenMerged() {
+        // Given
+        ServerConnectionConfig config = ServerConnectionConfig.builder()
+                .maxDatagramFrameSize(1200)
+                .build();
+
+        // When
+        ServerConnectionConfig mergedConfig = config.merge(new ApplicationProtocolSettings() {});
+
+        // Then
+        assertThat(mergedConfig.maxDatagramFrameSize()).isEqualTo(1200);
+    }
+
+    @Test
+    void adaptiveRetryIsRetainedWhenMerged() {
+        // Given
+        ServerConnectionConfig config = ServerConnectionConfig.builder()
+                .adaptiveRetry(10, 200, 20, 5000)
+                .build();
+
+        // When
+        ServerConnectionConfig mergedConfig = config.merge(new ApplicationProtocolSettings() {});
+
+        // Then
+        assertThat(mergedConfig.retryRequired()).isEqualTo(ServerConnectionConfig.RetryRequired.Adaptive);
+        assertThat(mergedConfig.adaptiveRetryMaxPendingHandshakes()).isEqualTo(10);
+        assertThat(mergedConfig.adaptiveRetryMaxInitialRate()).isEqualTo(200);
+        assertThat(mergedConfig.adaptiveRetryMaxInitialRatePerSourcePrefix()).isEqualTo(20);
+        assertThat(mergedConfig.adaptiveRetryMaxRegisteredConnectionIds()).isEqualTo(5000);
+    }
+
+    @Test
+    void adaptiveRetryThresholdsMustBePositive() {
+        assertThatThrownBy(() -> ServerConnectionConfig.builder().adaptiveRetry(10, 0, 20, 5000))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -18,6 +18,7 @@
  */
 package net.luminis.quic.server;
 
+import net.luminis.quic.ConnectionConfig;
 import net.luminis.quic.impl.Version;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.server.impl.ServerConnectionImpl;
@@ -84,6 +85,7 @@ class ServerConnectionFactoryTest {
     ServerConnectionConfig getConfig(int connectionIdLength) {
         ServerConnectionConfig config = mock(ServerConnectionConfig.class);
         when(config.connectionIdLength()).thenReturn(connectionIdLength);
+        when(config.congestionControlAlgorithm()).thenReturn(ConnectionConfig.CongestionControlAlgorithm.NewReno);
         return config;
     }
 
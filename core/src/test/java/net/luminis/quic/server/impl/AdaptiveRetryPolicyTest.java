@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import net.luminis.quic.test.TestClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveRetryPolicyTest {
+
+    private TestClock clock;
+    private AtomicInteger pendingHandshakes;
+    private AtomicInteger registeredConnectionIds;
+    private AdaptiveRetryPolicy retryPolicy;
+
+    @BeforeEach
+    void initObjectUnderTest() {
+        clock = new TestClock();
+        pendingHandshakes = new AtomicInteger();
+        registeredConnectionIds = new AtomicInteger();
+        retryPolicy = new AdaptiveRetryPolicy(clock, 10, 100, 5, 1000, pendingHandshakes::get, registeredConnectionIds::get);
+    }
+
+    @Test
+    void whenBelowAllThresholdsRetryIsNotRequired() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertThat(retryPolicy.retryRequired(address("10.0.0.1"))).isFalse();
+        }
+    }
+
+    @Test
+    void whenInitialRateFromSourcePrefixIsExceededRetryIsRequired() throws Exception {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            retryPolicy.retryRequired(address("10.0.0." + i));
+        }
+
+        // Then
+        assertThat(retryPolicy.retryRequired(address("10.0.0.99"))).isTrue();
+    }
+
+    @Test
+    void exceedingInitialRateFromSourcePrefixDoesNotAffectOtherPrefixes() throws Exception {
+        // Given
+        for (int i = 0; i < 10; i++) {
+            retryPolicy.retryRequired(address("10.0.0.1"));
+        }
+
+        // Then
+        assertThat(retryPolicy.retryRequired(address("10.0.1.1"))).isFalse();
+    }
+
+    @Test
+    void whenTotalInitialRateIsExceededRetryIsRequired() throws Exception {
+        // Given
+        for (int i = 0; i < 100; i++) {
+            assertThat(retryPolicy.retryRequired(address("10.0." + i + ".1"))).isFalse();
+        }
+
+        // Then
+        assertThat(retryPolicy.retryRequired(address("10.1.0.1"))).isTrue();
+    }
+
+    @Test
+    void initialRateIsMeasuredOverSlidingWindow() throws Exception {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            retryPolicy.retryRequired(address("10.0.0.1"));
+            clock.fastForward(150);
+        }
+        assertThat(retryPolicy.retryRequired(address("10.0.0.1"))).isTrue();
+
+        // When
+        clock.fastForward(600);
+
+        // Then
+        assertThat(retryPolicy.retryRequired(address("10.0.0.1"))).isFalse();
+    }
+
+    @Test
+    void whenPendingHandshakesExceedThresholdRetryIsRequired() throws Exception {
+        // When
+        pendingHandshakes.set(10);
+
+        // Then
+        assertThat(retryPolicy.retryRequired(address("10.0.0.1"))).isTrue();
+    }
+
+    @Test
+    void whenRegisteredConnectionIdsExceedThresholdRetryIsRequired() throws Exception {
+        // When
+        registeredConnectionIds.set(1000);
+
+        // Then
+        assertThat(retryPolicy.retryRequired(address("10.0.0.1"))).isTrue();
+    }
+
+    @Test
+    void ipv6AddressesAreTrackedPerSlash48Prefix() throws Exception {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            retryPolicy.retryRequired(address("2001:db8:1:" + i + "::1"));
+        }
+
+        // Then
+        assertThat(retryPolicy.retryRequired(address("2001:db8:1:ffff::1"))).isTrue();
+        assertThat(retryPolicy.retryRequired(address("2001:db8:2::1"))).isFalse();
+    }
+
+    @Test
+    void numberOfTrackedPrefixesIsBounded() throws Exception {
+        // Given
+        retryPolicy = new AdaptiveRetryPolicy(clock, 10, Integer.MAX_VALUE, 5, 1000, pendingHandshakes::get, registeredConnectionIds::get);
+        for (int i = 0; i < AdaptiveRetryPolicy.MAX_TRACKED_PREFIXES; i++) {
+            retryPolicy.retryRequired(address("10." + (i / 256) + "." + (i % 256) + ".1"));
+        }
+
+        // When
+        boolean retryRequired = retryPolicy.retryRequired(address("11.0.0.1"));
+
+        // Then
+        assertThat(retryRequired).isTrue();
+        assertThat(retryPolicy.trackedPrefixes()).isEqualTo(AdaptiveRetryPolicy.MAX_TRACKED_PREFIXES);
+
+        // When
+        clock.fastForward(1000);
+
+        // Then
+        assertThat(retryPolicy.retryRequired(address("11.0.0.1"))).isFalse();
+        assertThat(retryPolicy.trackedPrefixes()).isEqualTo(AdaptiveRetryPolicy.MAX_TRACKED_PREFIXES);
+    }
+
+    @Test
+    void whenTrackedPrefixesAreBoundedLeastRecentlySeenPrefixIsEvicted() throws Exception {
+        // Given
+        retryPolicy = new AdaptiveRetryPolicy(clock, 10, Integer.MAX_VALUE, 1, 1000, pendingHandshakes::get, registeredConnectionIds::get);
+        for (int i = 0; i < AdaptiveRetryPolicy.MAX_TRACKED_PREFIXES; i++) {
+            retryPolicy.retryRequired(address("10." + (i / 256) + "." + (i % 256) + ".1"));
+        }
+        clock.fastForward(900);
+        retryPolicy.retryRequired(address("10.0.0.1"));
+        clock.fastForward(200);
+
+        // When
+        retryPolicy.retryRequired(address("11.0.0.1"));
+
+        // Then
+        assertThat(retryPolicy.trackedPrefixes()).isEqualTo(AdaptiveRetryPolicy.MAX_TRACKED_PREFIXES);
+        assertThat(retryPolicy.retryRequired(address("10.0.0.1"))).isTrue();
+    }
+
+    private InetSocketAddress address(String host) throws Exception {
+        return new InetSocketAddress(InetAddress.getByName(host), 4433);
+    }
+}
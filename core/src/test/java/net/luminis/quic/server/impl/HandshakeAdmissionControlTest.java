@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HandshakeAdmissionControlTest {
+
+    @Test
+    void whenBelowMaximumNewConnectionShouldBeAdmitted() {
+        HandshakeAdmissionControl admissionControl = new HandshakeAdmissionControl(10, null, false);
+
+        assertThat(admissionControl.admit(9)).isTrue();
+    }
+
+    @Test
+    void whenMaximumIsReachedNewConnectionShouldNotBeAdmitted() {
+        HandshakeAdmissionControl admissionControl = new HandshakeAdmissionControl(10, null, false);
+
+        assertThat(admissionControl.admit(10)).isFalse();
+    }
+
+    @Test
+    void packetWaitingLongerThanMaximumShouldBeQueuedTooLong() {
+        HandshakeAdmissionControl admissionControl = new HandshakeAdmissionControl(10, Duration.ofMillis(100), false);
+        Instant now = Instant.now();
+
+        assertThat(admissionControl.isQueuedTooLong(now.minusMillis(101), now)).isTrue();
+        assertThat(admissionControl.isQueuedTooLong(now.minusMillis(100), now)).isFalse();
+    }
+
+    @Test
+    void withoutMaximumQueueTimePacketIsNeverQueuedTooLong() {
+        Instant now = Instant.now();
+
+        assertThat(HandshakeAdmissionControl.UNLIMITED.isQueuedTooLong(now.minusSeconds(60), now)).isFalse();
+        assertThat(HandshakeAdmissionControl.UNLIMITED.admit(1_000_000)).isTrue();
+    }
+
+    @Test
+    void maximumHandshakesInProgressMustBePositive() {
+        assertThatThrownBy(() -> new HandshakeAdmissionControl(0, null, false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void maximumQueueTimeMustBePositive() {
+        assertThatThrownBy(() -> new HandshakeAdmissionControl(10, Duration.ZERO, false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
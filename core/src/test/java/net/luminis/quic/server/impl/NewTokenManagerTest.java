@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import net.luminis.quic.test.TestClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NewTokenManagerTest {
+
+    private TestClock clock;
+    private NewTokenManager newTokenManager;
+    private InetAddress clientAddress;
+
+    @BeforeEach
+    void initObjectUnderTest() throws Exception {
+        clock = new TestClock();
+        newTokenManager = new NewTokenManager(clock, Duration.ofHours(1));
+        clientAddress = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+    }
+
+    @Test
+    void validTokenShouldBeAccepted() throws Exception {
+        // Given
+        byte[] token = newTokenManager.createToken(clientAddress);
+
+        // When
+        clock.fastForward(Duration.ofMinutes(30));
+
+        // Then
+        assertThat(newTokenManager.validateToken(token, clientAddress)).isTrue();
+    }
+
+    @Test
+    void tokensForSameClientShouldDiffer() throws Exception {
+        // When
+        byte[] token1 = newTokenManager.createToken(clientAddress);
+        byte[] token2 = newTokenManager.createToken(clientAddress);
+
+        // Then
+        assertThat(token1).isNotEqualTo(token2);
+    }
+
+    @Test
+    void tokenReturnedFromDifferentAddressShouldBeInvalid() throws Exception {
+        // Given
+        byte[] token = newTokenManager.createToken(clientAddress);
+
+        // When
+        InetAddress otherAddress = InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 });
+
+        // Then
+        assertThat(newTokenManager.validateToken(token, otherAddress)).isFalse();
+    }
+
+    @Test
+    void modifiedTokenShouldBeInvalid() throws Exception {
+        // Given
+        byte[] token = newTokenManager.createToken(clientAddress);
+
+        // When
+        token[token.length - 1] ^= 0x01;
+
+        // Then
+        assertThat(newTokenManager.validateToken(token, clientAddress)).isFalse();
+    }
+
+    @Test
+    void expiredTokenShouldBeInvalid() throws Exception {
+        // Given
+        byte[] token = newTokenManager.createToken(clientAddress);
+
+        // When
+        clock.fastForward(Duration.ofMinutes(61));
+
+        // Then
+        assertThat(newTokenManager.validateToken(token, clientAddress)).isFalse();
+    }
+
+    @Test
+    void tokenCreatedJustBeforeKeyRotationShouldStillBeValid() throws Exception {
+        // Given
+        clock.fastForward(Duration.ofMinutes(59));
+        byte[] token = newTokenManager.createToken(clientAddress);
+
+        // When
+        clock.fastForward(Duration.ofMinutes(2));
+        newTokenManager.createToken(clientAddress);  // Triggers key rotation
+
+        // Then
+        assertThat(newTokenManager.validateToken(token, clientAddress)).isTrue();
+    }
+
+    @Test
+    void retryTokenShouldNotBeAcceptedAsNewToken() throws Exception {
+        // Given
+        byte[] retryToken = new RetryTokenManager().createToken(new InetSocketAddress(clientAddress, 4433), new byte[8], new byte[8]);
+
+        // Then
+        assertThat(NewTokenManager.isNewToken(retryToken)).isFalse();
+        assertThat(newTokenManager.validateToken(retryToken, clientAddress)).isFalse();
+    }
+
+    @Test
+    void newTokenShouldNotBeAcceptedAsRetryToken() throws Exception {
+        // Given
+        byte[] token = newTokenManager.createToken(clientAddress);
+
+        // Then
+        assertThat(NewTokenManager.isNewToken(token)).isTrue();
+        assertThat(RetryTokenManager.isRetryToken(token)).isFalse();
+        assertThat(new RetryTokenManager().validateToken(token, new InetSocketAddress(clientAddress, 4433), new byte[8])).isEmpty();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import net.luminis.quic.test.TestClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetryTokenManagerTest {
+
+    private TestClock clock;
+    private RetryTokenManager retryTokenManager;
+    private InetSocketAddress clientAddress;
+    private byte[] originalDcid;
+    private byte[] retrySourceCid;
+
+    @BeforeEach
+    void initObjectUnderTest() throws Exception {
+        clock = new TestClock();
+        retryTokenManager = new RetryTokenManager(clock, Duration.ofSeconds(10), Duration.ofSeconds(60));
+        clientAddress = new InetSocketAddress(InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 }), 51234);
+        originalDcid = new byte[] { 0x0f, 0x0e, 0x0d, 0x0c, 0x0b, 0x0a, 0x09, 0x08 };
+        retrySourceCid = new byte[] { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08 };
+    }
+
+    @Test
+    void validTokenShouldReturnOriginalDestinationConnectionId() throws Exception {
+        // Given
+        byte[] token = retryTokenManager.createToken(clientAddress, originalDcid, retrySourceCid);
+
+        // When
+        clock.fastForward(Duration.ofSeconds(1));
+
+        // Then
+        assertThat(retryTokenManager.validateToken(token, clientAddress, retrySourceCid)).hasValue(originalDcid);
+    }
+
+    @Test
+    void tokensForSameClientShouldDiffer() throws Exception {
+        // When
+        byte[] token1 = retryTokenManager.createToken(clientAddress, originalDcid, retrySourceCid);
+        byte[] token2 = retryTokenManager.createToken(clientAddress, originalDcid, retrySourceCid);
+
+        // Then
+        assertThat(token1).isNotEqualTo(token2);
+    }
+
+    @Test
+    void tokenReturnedFromDifferentAddressShouldBeInvalid() throws Exception {
+        // Given
+        byte[] token = retryTokenManager.createToken(clientAddress, originalDcid, retrySourceCid);
+
+        // When
+        InetSocketAddress otherAddress = new InetSocketAddress(InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 }), 51234);
+
+        // Then
+        assertThat(retryTokenManager.validateToken(token, otherAddress, retrySourceCid)).isEmpty();
+    }
+
+    @Test
+    void tokenReturnedFromDifferentPortShouldBeInvalid() throws Exception {
+        // Given
+        byte[] token = retryTokenManager.createToken(clientAddress, originalDcid, retrySourceCid);
+
+        // When
+        InetSocketAddress otherPort = new InetSocketAddress(clientAddress.getAddress(), 51235);
+
+        // Then
+        assertThat(retryTokenManager.validateToken(token, otherPort, retrySourceCid)).isEmpty();
+    }
+
+    @Test
+    void tokenUsedWithDifferentConnectionIdShouldBeInvalid() throws Exception {
+        // Given
+        byte[] token = retryTokenManager.createToken(clientAddress, originalDcid, retrySourceCid);
+
+        // Then
+        assertThat(retryTokenManager.validateToken(token, clientAddress, originalDcid)).isEmpty();
+    }
+
+    @Test
+    void modifiedTokenShouldBeInvalid() throws Exception {
+        // Given
+        byte[] token = retryTokenManager.createToken(clientAddress, originalDcid, retrySourceCid);
+
+        // When
+        token[token.length - 1] ^= 0x01;
+
+        // Then
+        assertThat(retryTokenManager.validateToken(token, clientAddress, retrySourceCid)).isEmpty();
+    }
+
+    @Test
+    void tokenThatIsTooShortShouldBeInvalid() throws Exception {
+        assertThat(retryTokenManager.validateToken(new byte[16], clientAddress, retrySourceCid)).isEmpty();
+    }
+
+    @Test
+    void expiredTokenShouldBeInvalid() throws Exception {
+        // Given
+        byte[] token = retryTokenManager.createToken(clientAddress, originalDcid, retrySourceCid);
+
+        // When
+        clock.fastForward(Duration.ofSeconds(11));
+
+        // Then
+        assertThat(retryTokenManager.validateToken(token, clientAddress, retrySourceCid)).isEmpty();
+    }
+
+    @Test
+    void tokenCreatedJustBeforeKeyRotationShouldStillBeValid() throws Exception {
+        // Given
+        clock.fastForward(Duration.ofSeconds(55));
+        byte[] token = retryTokenManager.createToken(clientAddress, originalDcid, retrySourceCid);
+
+        // When
+        clock.fastForward(Duration.ofSeconds(6));
+        retryTokenManager.createToken(clientAddress, originalDcid, retrySourceCid);  // Triggers key rotation
+
+        // Then
+        assertThat(retryTokenManager.validateToken(token, clientAddress, retrySourceCid)).hasValue(originalDcid);
+    }
+
+    @Test
+    void tokenFromTokenManagerWithDifferentKeyShouldBeInvalid() throws Exception {
+        // Given
+        byte[] token = new RetryTokenManager(clock, Duration.ofSeconds(10), Duration.ofSeconds(60))
+                .createToken(clientAddress, originalDcid, retrySourceCid);
+
+        // Then
+        assertThat(retryTokenManager.validateToken(token, clientAddress, retrySourceCid)).isEmpty();
+    }
+
+    @Test
+    void keyRotationIntervalShorterThanTokenLifetimeShouldBeRejected() {
+        assertThatThrownBy(() ->
+                new RetryTokenManager(clock, Duration.ofSeconds(10), Duration.ofSeconds(5))
+        ).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -66,7 +66,7 @@ class ServerConnectionCandidateTest {
                 false, mock(ApplicationProtocolRegistry.class), 100, cid -> {}, logger);
         context = mock(Context.class);
         testExecutor = new TestScheduledExecutor(clock);
-        when(context.getSharedServerExecutor()).thenReturn(testExecutor);
+        when(context.getHandshakeExecutor(any(byte[].class))).thenReturn(testExecutor);
         when(context.getSharedScheduledExecutor()).thenReturn(testExecutor);
     }
 
@@ -90,6 +90,56 @@ class ServerConnectionCandidateTest {
         assertThat(antiAmplificationLimit).isEqualTo(3 * 1200);
     }
 
+    @Test
+    void candidateShouldBeProcessedByHandshakeExecutorSelectedByOriginalDestinationConnectionId() throws Exception {
+        // Given
+        byte[] odcid = { 0x0f, 0x0e, 0x0d, 0x0c, 0x0b, 0x0a, 0x09, 0x08 };
+
+        // When
+        new ServerConnectionCandidate(context, Version.getDefault(), new InetSocketAddress("localhost", 55333), new byte[0], odcid,
+                serverConnectionFactory, mock(ServerConnectionRegistry.class), logger);
+
+        // Then
+        verify(context).getHandshakeExecutor(odcid);
+    }
+
+    @Test
+    void initialKeysShouldBeDerivedOnlyOnceForRepeatedInitialPackets() throws Exception {
+        // Given
+        byte[] initialPacketBytes = TestUtils.createValidInitial(Version.getDefault());
+        byte[] odcid = Arrays.copyOfRange(initialPacketBytes, 6, 6 + 8);
+        ServerConnectionCandidate connectionCandidate = new ServerConnectionCandidate(context, Version.getDefault(), new InetSocketAddress("localhost", 55333),
+                new byte[0], odcid, serverConnectionFactory, mock(ServerConnectionRegistry.class), logger);
+        connectionCandidate.parseInitialPacket(0, Instant.now(), ByteBuffer.wrap(initialPacketBytes));
+        Object initialKeys = new FieldReader(connectionCandidate, ServerConnectionCandidate.class.getDeclaredField("initialPeerAead")).read();
+
+        // When
+        InitialPacket packet = connectionCandidate.parseInitialPacket(1, Instant.now(), ByteBuffer.wrap(initialPacketBytes));
+
+        // Then
+        assertThat(packet).isNotNull();
+        assertThat(new FieldReader(connectionCandidate, ServerConnectionCandidate.class.getDeclaredField("initialPeerAead")).read()).isSameAs(initialKeys);
+    }
+
+    @Test
+    void initialThatWaitedTooLongForProcessingShouldBeDiscarded() throws Exception {
+        // Given
+        byte[] initialPacketBytes = TestUtils.createValidInitial(Version.getDefault());
+        byte[] odcid = Arrays.copyOfRange(initialPacketBytes, 6, 6 + 8);
+        ServerConnectionRegistry connectionRegistry = mock(ServerConnectionRegistry.class);
+        ServerConnectionCandidate connectionCandidate = new ServerConnectionCandidate(context, Version.getDefault(), new InetSocketAddress("localhost", 55333),
+                new byte[0], odcid, serverConnectionFactory, connectionRegistry, logger);
+        when(context.isQueuedTooLong(any(Instant.class))).thenReturn(true);
+
+        // When
+        connectionCandidate.parsePackets(0, Instant.now(), ByteBuffer.wrap(initialPacketBytes), null);
+        testExecutor.check();
+
+        // Then
+        assertThat(createdServerConnection).isNull();
+        assertThat(new FieldReader(connectionCandidate, ServerConnectionCandidate.class.getDeclaredField("initialPeerAead")).read()).isNull();
+    }
+
     @Test
     void firstInitialCarriedInSmallDatagramShouldBeDiscarded() throws Exception {
         byte[] initialPacketBytes = TestUtils.createValidInitialNoPadding(Version.getDefault());
@@ -170,8 +220,8 @@ class ServerConnectionCandidateTest {
         }
 
         @Override
-        public ServerConnectionImpl createNewConnection(Version version, InetSocketAddress clientAddress, byte[] originalScid, byte[] originalDcid) {
-            ServerConnectionImpl newConnection = super.createNewConnection(version, clientAddress, originalScid, originalDcid);
+        public ServerConnectionImpl createNewConnection(Version version, InetSocketAddress clientAddress, byte[] originalScid, byte[] originalDcid, byte[] retrySourceCid) {
+            ServerConnectionImpl newConnection = super.createNewConnection(version, clientAddress, originalScid, originalDcid, retrySourceCid);
             createdServerConnection = newConnection;
             return newConnection;
         }
@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.server.impl;
+
+import net.luminis.quic.concurrent.EventLoopGroup;
+import net.luminis.quic.packet.InitialPacket;
+import net.luminis.quic.packet.PacketFilter;
+import net.luminis.quic.packet.PacketMetaData;
+import net.luminis.quic.packet.ServerRolePacketParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ServerConnectionEventLoopProxyTest {
+
+    private ServerConnectionImpl serverConnection;
+    private ServerRolePacketParser parser;
+    private EventLoopGroup eventLoopGroup;
+    private Executor eventLoop;
+
+    @BeforeEach
+    void setUp() {
+        serverConnection = mock(ServerConnectionImpl.class);
+        when(serverConnection.getOriginalDestinationConnectionId()).thenReturn(new byte[0]);
+        when(serverConnection.getPacketProcessorChain()).thenReturn(mock(PacketFilter.class));
+        parser = mock(ServerRolePacketParser.class);
+        when(serverConnection.createParser()).thenReturn(parser);
+        eventLoopGroup = new EventLoopGroup(1);
+        eventLoop = eventLoopGroup.select(new byte[0]);
+    }
+
+    @AfterEach
+    void shutdownEventLoop() {
+        eventLoopGroup.shutdown();
+    }
+
+    @Test
+    void incomingPacketsShouldBeParsed() {
+        // Given
+        ServerConnectionProxy proxy = new ServerConnectionEventLoopProxy(serverConnection, eventLoop, mock(InitialPacket.class), ByteBuffer.allocate(0), mock(PacketMetaData.class));
+
+        // When
+        proxy.parsePackets(10, Instant.now(), ByteBuffer.allocate(71), null);
+
+        // Then
+        verify(parser, timeout(1000)).parseAndProcessPackets(argThat(buffer -> buffer.remaining() == 71), any(PacketMetaData.class));
+    }
+
+    @Test
+    void remainingDatagramDataShouldBeParsed() {
+        // Given
+        ByteBuffer remainingData = ByteBuffer.allocate(1173);
+        remainingData.position(1100);
+
+        // When
+        new ServerConnectionEventLoopProxy(serverConnection, eventLoop, mock(InitialPacket.class), remainingData, mock(PacketMetaData.class));
+
+        // Then
+        verify(parser, timeout(1000)).parseAndProcessPackets(argThat(buffer -> buffer.remaining() == 73), any(PacketMetaData.class));
+    }
+
+    @Test
+    void batchShouldBeProcessedInOneTaskCoalescingResponses() {
+        // Given
+        List<Runnable> tasks = new ArrayList<>();
+        ServerConnectionProxy proxy = new ServerConnectionEventLoopProxy(serverConnection, tasks::add, null, ByteBuffer.allocate(0), mock(PacketMetaData.class));
+        tasks.clear();
+
+        // When
+        proxy.parsePackets(List.of(
+                new ReceivedDatagram(1, Instant.now(), ByteBuffer.allocate(71), null),
+                new ReceivedDatagram(2, Instant.now(), ByteBuffer.allocate(72), null),
+                new ReceivedDatagram(3, Instant.now(), ByteBuffer.allocate(73), null)));
+
+        // Then
+        assertThat(tasks).hasSize(1);
+        tasks.get(0).run();
+        InOrder inOrder = inOrder(parser, serverConnection);
+        inOrder.verify(parser).parseAndProcessPackets(argThat(buffer -> buffer.remaining() == 71), any(PacketMetaData.class));
+        inOrder.verify(serverConnection).datagramProcessed(true);
+        inOrder.verify(parser).parseAndProcessPackets(argThat(buffer -> buffer.remaining() == 72), any(PacketMetaData.class));
+        inOrder.verify(serverConnection).datagramProcessed(true);
+        inOrder.verify(parser).parseAndProcessPackets(argThat(buffer -> buffer.remaining() == 73), any(PacketMetaData.class));
+        inOrder.verify(serverConnection).datagramProcessed(false);
+    }
+
+    @Test
+    void packetsShouldNotBeParsedAfterDispose() {
+        // Given
+        ServerConnectionProxy proxy = new ServerConnectionEventLoopProxy(serverConnection, Runnable::run, null, ByteBuffer.allocate(0), mock(PacketMetaData.class));
+
+        // When
+        proxy.dispose();
+        proxy.parsePackets(11, Instant.now(), ByteBuffer.allocate(71), null);
+
+        // Then
+        verify(parser, never()).parseAndProcessPackets(any(ByteBuffer.class), any(PacketMetaData.class));
+    }
+
+    @Test
+    void processingErrorShouldAbortConnection() {
+        // Given
+        RuntimeException error = new IllegalStateException();
+        doThrow(error).when(parser).parseAndProcessPackets(any(ByteBuffer.class), any(PacketMetaData.class));
+        ServerConnectionProxy proxy = new ServerConnectionEventLoopProxy(serverConnection, Runnable::run, null, ByteBuffer.allocate(0), mock(PacketMetaData.class));
+
+        // When
+        proxy.parsePackets(12, Instant.now(), ByteBuffer.allocate(71), null);
+
+        // Then
+        verify(serverConnection).abortConnection(error);
+    }
+
+    @Test
+    void pooledDatagramShouldBeReleasedAfterParsing() {
+        // Given
+        List<Runnable> tasks = new ArrayList<>();
+        ServerConnectionProxy proxy = new ServerConnectionEventLoopProxy(serverConnection, tasks::add, null, ByteBuffer.allocate(0), mock(PacketMetaData.class));
+        tasks.clear();
+        Runnable releaseCallback = mock(Runnable.class);
+
+        // When
+        proxy.parsePackets(List.of(new ReceivedDatagram(1, Instant.now(), ByteBuffer.allocateDirect(71), null, releaseCallback)));
+
+        // Then
+        verify(releaseCallback, never()).run();
+        tasks.get(0).run();
+        InOrder inOrder = inOrder(parser, releaseCallback);
+        inOrder.verify(parser).parseAndProcessPackets(argThat(buffer -> buffer.remaining() == 71), any(PacketMetaData.class));
+        inOrder.verify(releaseCallback).run();
+    }
+
+    @Test
+    void pooledDatagramShouldBeReleasedWhenDroppedAfterDispose() {
+        // Given
+        ServerConnectionProxy proxy = new ServerConnectionEventLoopProxy(serverConnection, Runnable::run, null, ByteBuffer.allocate(0), mock(PacketMetaData.class));
+        Runnable releaseCallback = mock(Runnable.class);
+
+        // When
+        proxy.dispose();
+        proxy.parsePackets(List.of(new ReceivedDatagram(1, Instant.now(), ByteBuffer.allocateDirect(71), null, releaseCallback)));
+
+        // Then
+        verify(parser, never()).parseAndProcessPackets(any(ByteBuffer.class), any(PacketMetaData.class));
+        verify(releaseCallback).run();
+    }
+}
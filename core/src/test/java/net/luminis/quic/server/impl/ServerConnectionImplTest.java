@@ -24,13 +24,13 @@ import net.luminis.quic.crypto.ConnectionSecrets;
 import net.luminis.quic.frame.ConnectionCloseFrame;
 import net.luminis.quic.frame.CryptoFrame;
 import net.luminis.quic.frame.FrameProcessor;
+import net.luminis.quic.frame.NewTokenFrame;
 import net.luminis.quic.impl.*;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.packet.HandshakePacket;
 import net.luminis.quic.packet.InitialPacket;
 import net.luminis.quic.packet.PacketMetaData;
 import net.luminis.quic.packet.QuicPacket;
-import net.luminis.quic.packet.RetryPacket;
 import net.luminis.quic.send.SenderImpl;
 import net.luminis.quic.server.ApplicationProtocolConnection;
 import net.luminis.quic.server.ApplicationProtocolConnectionFactory;
@@ -70,6 +70,7 @@ import java.nio.ByteBuffer;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -307,120 +308,93 @@ class ServerConnectionImplTest {
 
     //region retry
     @Test
-    void whenRetryIsRequiredFirstInitialLeadsToRetryPacket() throws Exception {
+    void connectionCreatedAfterRetryUsesRetrySourceConnectionIdAsInitialConnectionId() throws Exception {
         // Given
-        connection = createServerConnection(createTlsServerEngine(), true, new byte[8]);
+        byte[] retrySourceCid = { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08 };
 
         // When
-        connection.process(new InitialPacket(Version.getDefault(), new byte[8], new byte[8], null, new CryptoFrame()), Instant.now());
+        connection = createServerConnectionAfterRetry(new byte[8], retrySourceCid);
 
         // Then
-        verify(connection.getSender()).send(any(RetryPacket.class));
+        assertThat(connection.getInitialConnectionId()).isEqualTo(retrySourceCid);
+        assertThat(connection.getOriginalDestinationConnectionId()).isEqualTo(new byte[8]);
     }
 
     @Test
-    void whenRetryIsRequiredAllRetryPacketsContainsSameToken() throws Exception {
+    void connectionCreatedAfterRetryShouldProcessInitialWithToken() throws Exception {
         // Given
-        connection = createServerConnection(createTlsServerEngine(), true, new byte[8]);
-        connection.process(new InitialPacket(Version.getDefault(), new byte[8], new byte[8], null, new CryptoFrame()), Instant.now());
-        ArgumentCaptor<RetryPacket> argumentCaptor = ArgumentCaptor.forClass(RetryPacket.class);
-        verify(connection.getSender()).send(argumentCaptor.capture());
-        byte[] retryToken = argumentCaptor.getValue().getRetryToken();
-        clearInvocations(connection.getSender());
+        byte[] retrySourceCid = { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08 };
+        connection = createServerConnectionAfterRetry(new byte[8], retrySourceCid);
+
         // When
-        connection.process(new InitialPacket(Version.getDefault(), new byte[8], new byte[8], null, new CryptoFrame()), Instant.now());
+        ClientHello ch = new ClientHello("testserver", KeyUtils.generatePublicKey(), false, Collections.emptyList());
+        CryptoFrame initialCrypto = new CryptoFrame(Version.getDefault(), ch.getBytes());
+        connection.process(new InitialPacket(Version.getDefault(), new byte[8], retrySourceCid, new byte[37], initialCrypto), Instant.now());
 
         // Then
-        verify(connection.getSender()).send(argThat(retryPacket -> Arrays.equals(retryPacket.getRetryToken(), retryToken)));
+        verify(connection.getSender()).send(argThat(frame -> frame instanceof ConnectionCloseFrame
+                && ((ConnectionCloseFrame) frame).getErrorCode() == 256 + TlsConstants.AlertDescription.missing_extension.value), any(EncryptionLevel.class));
     }
 
     @Test
-    void whenRetryIsRequiredDifferentDestinationConnectionIdsGetDifferentToken() throws Exception {
+    void connectionCreatedAfterRetryShouldAcceptInitialWithRetrySourceConnectionIdAsDestination() throws Exception {
         // Given
-        byte[] dcid1 = new byte[] { 0, 1, 2, 3, 4, 5, 6, 7, 8 };
-        ServerConnectionImpl connection1 = createServerConnection(createTlsServerEngine(), true, dcid1);
-        connection1.process(new InitialPacket(Version.getDefault(), new byte[8], dcid1, null, new CryptoFrame()), Instant.now());
-        ArgumentCaptor<RetryPacket> argumentCaptor = ArgumentCaptor.forClass(RetryPacket.class);
-        verify(connection1.getSender()).send(argumentCaptor.capture());
-        byte[] retryToken = argumentCaptor.getValue().getRetryToken();
+        byte[] retrySourceCid = { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08 };
+        connection = createServerConnectionAfterRetry(new byte[8], retrySourceCid);
 
         // When
-        byte[] dcid2 = new byte[] { 8, 7, 6, 5, 4, 3, 2, 1, 0 };
-        ServerConnectionImpl connection2 = createServerConnection(createTlsServerEngine(), true, dcid2);
-        connection2.process(new InitialPacket(Version.getDefault(), new byte[8], dcid2, null, new CryptoFrame()), Instant.now());
+        InitialPacket initialPacket = new InitialPacket(Version.getDefault(), new byte[8], retrySourceCid, new byte[37], new CryptoFrame());
 
         // Then
-        verify(connection2.getSender()).send(argThat(retryPacket -> !Arrays.equals(retryPacket.getRetryToken(), retryToken)));
+        assertThat(connection.checkDestinationConnectionId(initialPacket)).isTrue();
     }
+    //endregion
 
+    //region new token
     @Test
-    void whenRetryIsRequiredInitialWithTokenIsProcessed() throws Exception {
+    void whenHandshakeFinishesNewTokenShouldBeSent() throws Exception {
         // Given
-        connection = createServerConnection(createTlsServerEngine(), true, null);
-        connection = createServerConnection(createTlsServerEngine(), true, new byte[8]);
-        connection.process(new InitialPacket(Version.getDefault(), new byte[8], new byte[8], null, new CryptoFrame()), Instant.now());
-        ArgumentCaptor<RetryPacket> argumentCaptor = ArgumentCaptor.forClass(RetryPacket.class);
-        verify(connection.getSender()).send(argumentCaptor.capture());
-        byte[] retryToken = argumentCaptor.getValue().getRetryToken();
-        clearInvocations(connection.getSender());
+        byte[] token = new byte[] { 0x4e, 0x01, 0x02, 0x03 };
+        connection.setNewTokenIssuer(clientAddress -> token);
 
         // When
-        ClientHello ch = new ClientHello("testserver", KeyUtils.generatePublicKey(), false, Collections.emptyList());
-        CryptoFrame initialCrypto = new CryptoFrame(Version.getDefault(), ch.getBytes());
-        connection.process(new InitialPacket(Version.getDefault(), new byte[8], new byte[8], retryToken, initialCrypto), Instant.now());
+        simulateHandshakeSuccesfullyFinished();
 
         // Then
-        verify(connection.getSender()).send(argThat(frame -> frame instanceof ConnectionCloseFrame
-                && ((ConnectionCloseFrame) frame).getErrorCode() == 256 + TlsConstants.AlertDescription.missing_extension.value), any(EncryptionLevel.class));
+        verify(connection.getSender()).send(argThat(frame -> frame instanceof NewTokenFrame
+                && Arrays.equals(((NewTokenFrame) frame).getToken(), token)), eq(EncryptionLevel.App), any(Consumer.class));
     }
 
     @Test
-    void whenRetryIsRequiredInitialWithInvalidTokenConnectionIsClosed() throws Exception {
+    void newTokenShouldBeIssuedForClientAddress() throws Exception {
         // Given
-        connection = createServerConnection(createTlsServerEngine(), true, new byte[8]);
-        connection.process(new InitialPacket(Version.getDefault(), new byte[8], new byte[8], null, new CryptoFrame()), Instant.now());
-        ArgumentCaptor<RetryPacket> argumentCaptor = ArgumentCaptor.forClass(RetryPacket.class);
-        verify(connection.getSender()).send(argumentCaptor.capture());
-        byte[] retryToken = argumentCaptor.getValue().getRetryToken();
-        byte[] incorrectToken = Arrays.copyOfRange(retryToken, 0, retryToken.length - 1);
+        List<InetAddress> addresses = new ArrayList<>();
+        connection.setNewTokenIssuer(clientAddress -> { addresses.add(clientAddress); return new byte[16]; });
 
         // When
-        connection.process(new InitialPacket(Version.getDefault(), new byte[8], new byte[8], incorrectToken, new CryptoFrame()), Instant.now());
+        simulateHandshakeSuccesfullyFinished();
 
         // Then
-        verify(connection.getSender()).send(argThat(frame -> frame instanceof ConnectionCloseFrame
-                && ((ConnectionCloseFrame) frame).getErrorCode() == 0x0b), any(EncryptionLevel.class));
+        assertThat(addresses).containsExactly(InetAddress.getLoopbackAddress());
     }
 
     @Test
-    void whenRetryIsRequiredSecondInitialShouldReturnSameRetryPacket() throws Exception {
-        // Given
-        byte[] odcid = { 0x0f, 0x0e, 0x0d, 0x0c, 0x0b, 0x0a, 0x09, 0x08 };
-        connection = createServerConnection(createTlsServerEngine(), true, odcid);
-        ConnectionSecrets clientConnectionSecrets = new ConnectionSecrets(VersionHolder.withDefault(), Role.Client, null, mock(Logger.class));
-        clientConnectionSecrets.computeInitialKeys(odcid);
-
-        InitialPacket initialPacket = new InitialPacket(Version.getDefault(), new byte[8], odcid, null, new CryptoFrame(Version.getDefault(), new byte[38]));
-        initialPacket.setPacketNumber(0);
-
-        InitialPacket secondInitialPacket = new InitialPacket(Version.getDefault(), new byte[8], odcid, null, new CryptoFrame(Version.getDefault(), new byte[38]));
-        secondInitialPacket.setPacketNumber(1);
-
-        connection.getPacketProcessorChain().processPacket(initialPacket, metaDataForNow());
-        ArgumentCaptor<RetryPacket> argumentCaptor1 = ArgumentCaptor.forClass(RetryPacket.class);
+    void withoutNewTokenIssuerNoNewTokenShouldBeSent() throws Exception {
+        // When
+        simulateHandshakeSuccesfullyFinished();
 
-        verify(connection.getSender()).send(argumentCaptor1.capture());
-        byte[] retryPacket1 = argumentCaptor1.getValue().generatePacketBytes(null);
-        clearInvocations(connection.getSender());
+        // Then
+        verify(connection.getSender(), never()).send(argThat(frame -> frame instanceof NewTokenFrame), any(EncryptionLevel.class), any(Consumer.class));
+    }
 
+    @Test
+    void receivingNewTokenFrameShouldLeadToProtocolViolation() throws Exception {
         // When
-        connection.getPacketProcessorChain().processPacket(secondInitialPacket, metaDataForNow());
-        ArgumentCaptor<RetryPacket> argumentCaptor2 = ArgumentCaptor.forClass(RetryPacket.class);
-        verify(connection.getSender()).send(argumentCaptor2.capture());
-        byte[] retryPacket2 = argumentCaptor1.getValue().generatePacketBytes(null);
+        connection.process(new NewTokenFrame(new byte[16]), mock(QuicPacket.class), Instant.now());
 
         // Then
-        assertThat(retryPacket1).isEqualTo(retryPacket2);
+        verify(connection.getSender()).send(argThat(frame -> frame instanceof ConnectionCloseFrame
+                && ((ConnectionCloseFrame) frame).getErrorCode() == 0x0a), any(EncryptionLevel.class));
     }
     //endregion
 
@@ -479,22 +453,28 @@ class ServerConnectionImplTest {
     }
 
     @Test
-    void whenRetryIsRequiredInitialWithValidTokenDisablesAntiAmplificationLimit() throws Exception {
+    void whenAddressIsValidatedWithTokenAntiAmplificationLimitIsNotApplied() throws Exception {
         // Given
-        connection = createServerConnection(createTlsServerEngine(), true, new byte[8]);
-        connection.process(new InitialPacket(Version.getDefault(), new byte[8], new byte[8], null, new CryptoFrame()), Instant.now());
-        ArgumentCaptor<RetryPacket> argumentCaptor = ArgumentCaptor.forClass(RetryPacket.class);
-        verify(connection.getSender()).send(argumentCaptor.capture());
-        byte[] retryToken = argumentCaptor.getValue().getRetryToken();
-        clearInvocations(connection.getSender());
+        connection.setAddressValidated();
 
         // When
-        ClientHello ch = new ClientHello("testserver", KeyUtils.generatePublicKey(), false, Collections.emptyList());
-        CryptoFrame initialCrypto = new CryptoFrame(Version.getDefault(), ch.getBytes());
-        connection.process(new InitialPacket(Version.getDefault(), new byte[8], new byte[8], retryToken, initialCrypto), Instant.now());
+        connection.increaseAntiAmplificationLimit(1200);
 
         // Then
         verify(connection.getSender()).unsetAntiAmplificationLimit();
+        verify(connection.getSender(), never()).setAntiAmplificationLimit(anyInt());
+    }
+
+    @Test
+    void whenConnectionIsCreatedAfterRetryAntiAmplificationLimitIsNotApplied() throws Exception {
+        // Given
+        connection = createServerConnectionAfterRetry(new byte[8], new byte[8]);
+
+        // When
+        connection.increaseAntiAmplificationLimit(1200);
+
+        // Then
+        verify(connection.getSender(), never()).setAntiAmplificationLimit(anyInt());
     }
     //endregion
 
@@ -660,6 +640,17 @@ class ServerConnectionImplTest {
         return connection;
     }
 
+    private ServerConnectionImpl createServerConnectionAfterRetry(byte[] odcid, byte[] retrySourceCid) throws Exception {
+        ServerConnectionImpl connection = new ServerConnectionImpl(Version.getDefault(), mock(DatagramSocket.class),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 6000), new byte[8], odcid, retrySourceCid,
+                createTlsServerEngine(), getDefaultConfiguration(true), new ApplicationProtocolRegistry(),
+                Mockito.mock(ServerConnectionRegistry.class), c -> {}, null, mock(Logger.class));
+
+        SenderImpl sender = mock(SenderImpl.class);
+        FieldSetter.setField(connection, connection.getClass().getDeclaredField("sender"), sender);
+        return connection;
+    }
+
     private static ServerConnectionConfig getDefaultConfiguration(boolean retryRequired) {
         return ServerConnectionConfig.builder()
                 .maxIdleTimeoutInSeconds(30)
@@ -28,6 +28,7 @@ import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
 import java.time.Instant;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
@@ -70,6 +71,24 @@ class ServerConnectionThreadTest {
         verify(parser).parseAndProcessPackets(argThat(buffer -> buffer.remaining() == 71), any(PacketMetaData.class));
     }
 
+    @Test
+    void testBatchOfPacketsShouldBeParsedWithResponsesCoalesced() throws InterruptedException {
+        // Given
+        serverConnectionThread = new ServerConnectionThread(serverConnection, mock(InitialPacket.class), ByteBuffer.allocate(0), mock(PacketMetaData.class));
+
+        // When
+        serverConnectionThread.parsePackets(List.of(
+                new ReceivedDatagram(10, Instant.now(), ByteBuffer.allocate(71), null),
+                new ReceivedDatagram(11, Instant.now(), ByteBuffer.allocate(72), null)));
+        Thread.sleep(10);
+
+        // Then
+        verify(parser).parseAndProcessPackets(argThat(buffer -> buffer.remaining() == 71), any(PacketMetaData.class));
+        verify(parser).parseAndProcessPackets(argThat(buffer -> buffer.remaining() == 72), any(PacketMetaData.class));
+        verify(serverConnection).datagramProcessed(true);
+        verify(serverConnection).datagramProcessed(false);
+    }
+
     @Test
     void testRemainingDatagramDataShouldBeParsed() throws InterruptedException {
         // Given
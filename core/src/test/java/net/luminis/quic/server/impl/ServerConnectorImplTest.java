@@ -19,16 +19,27 @@
 package net.luminis.quic.server.impl;
 
 import net.luminis.quic.QuicConnection;
+import net.luminis.quic.QuicConstants;
+import net.luminis.quic.common.EncryptionLevel;
+import net.luminis.quic.crypto.ConnectionSecrets;
+import net.luminis.quic.frame.ConnectionCloseFrame;
+import net.luminis.quic.frame.CryptoFrame;
+import net.luminis.quic.frame.Padding;
+import net.luminis.quic.impl.Role;
 import net.luminis.quic.impl.Version;
+import net.luminis.quic.impl.VersionHolder;
 import net.luminis.quic.log.Logger;
 import net.luminis.quic.log.SysOutLogger;
 import net.luminis.quic.packet.InitialPacket;
 import net.luminis.quic.packet.PacketMetaData;
 import net.luminis.quic.packet.QuicPacket;
+import net.luminis.quic.packet.RetryPacket;
 import net.luminis.quic.packet.VersionNegotiationPacket;
 import net.luminis.quic.receive.RawPacket;
 import net.luminis.quic.server.ApplicationProtocolConnectionFactory;
+import net.luminis.quic.server.ServerConnectionConfig;
 import net.luminis.quic.server.ServerConnectionFactory;
+import net.luminis.quic.server.ServerConnector;
 import net.luminis.quic.test.ByteUtils;
 import net.luminis.quic.test.FieldReader;
 import net.luminis.quic.test.FieldSetter;
@@ -36,6 +47,7 @@ import net.luminis.quic.test.TestClock;
 import net.luminis.quic.test.TestScheduledExecutor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import java.io.InputStream;
@@ -45,8 +57,10 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.argThat;
@@ -60,6 +74,8 @@ class ServerConnectorImplTest {
     private Context context;
     private TestScheduledExecutor testExecutor;
     private TestClock clock;
+    private final byte[] odcid = new byte[] { 0x0f, 0x0e, 0x0d, 0x0c, 0x0b, 0x0a, 0x09, 0x08 };
+    private ServerConnectionImpl createdConnection;
 
     @BeforeEach
     void initObjectUnderTest() throws Exception {
@@ -71,7 +87,7 @@ class ServerConnectorImplTest {
         clock = new TestClock();
         context = mock(Context.class);
         testExecutor = new TestScheduledExecutor(clock);
-        when(context.getSharedServerExecutor()).thenReturn(testExecutor);
+        when(context.getHandshakeExecutor(any(byte[].class))).thenReturn(testExecutor);
         when(context.getSharedScheduledExecutor()).thenReturn(testExecutor);
         FieldSetter.setField(server, "context", context);
     }
@@ -199,7 +215,7 @@ class ServerConnectorImplTest {
         when(connection.getSourceConnectionId()).thenReturn(new byte[8]);
         when(connection.getInitialConnectionId()).thenReturn(new byte[8]);
         when(connection.getOriginalDestinationConnectionId()).thenReturn(new byte[8]);
-        when(connectionFactory.createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class)))
+        when(connectionFactory.createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class), any()))
                 .thenReturn(connection);
         when(connectionFactory.createServerConnectionProxy(any(ServerConnectionImpl.class), any(InitialPacket.class), any(ByteBuffer.class), any(PacketMetaData.class)))
                 .thenAnswer(i -> new ServerConnectionThreadDummy(i.getArgument(0), i.getArgument(1), ((PacketMetaData) i.getArgument(3))));
@@ -211,7 +227,7 @@ class ServerConnectorImplTest {
         testExecutor.check();
 
         // Then
-        verify(connectionFactory).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class));
+        verify(connectionFactory).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class), any());
         verify(connection).processPacket(any(QuicPacket.class), any(PacketMetaData.class));
     }
 
@@ -225,7 +241,7 @@ class ServerConnectorImplTest {
         when(connection.getOriginalDestinationConnectionId()).thenReturn(orginalDcid);
 
         ServerConnectionFactory connectionFactory = mock(ServerConnectionFactory.class);
-        when(connectionFactory.createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class)))
+        when(connectionFactory.createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class), any()))
                 .thenReturn(connection);
         FieldSetter.setField(server, server.getClass().getDeclaredField("serverConnectionFactory"), connectionFactory);
 
@@ -234,12 +250,12 @@ class ServerConnectorImplTest {
         server.process(createPacket(buffer));
         testExecutor.check();
 
-        verify(connectionFactory).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class));
+        verify(connectionFactory).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class), any());
         clearInvocations(connectionFactory);
 
         // When
         server.process(createPacket(buffer));
-        verify(connectionFactory, never()).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class));
+        verify(connectionFactory, never()).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class), any());
     }
 
     @Test
@@ -260,6 +276,32 @@ class ServerConnectorImplTest {
         server.process(createPacket(buffer));
     }
 
+    @Test
+    void pooledDatagramShouldBeHandedOverToConnectionWithoutCopying() throws Exception {
+        // Given
+        ServerConnectionProxy connection = mock(ServerConnectionProxy.class);
+        getConnectionRegistry().registerConnection(connection, odcid);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1500);
+        buffer.put((byte) 0b0100_0000);
+        buffer.put(odcid);
+        buffer.put(new byte[40]);
+        buffer.flip();
+        List<ByteBuffer> released = new ArrayList<>();
+        RawPacket rawPacket = new RawPacket(buffer, new InetSocketAddress(InetAddress.getLoopbackAddress(), 38675), Instant.now(), 0, released::add);
+
+        // When
+        server.process(rawPacket);
+
+        // Then
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(connection).parsePackets(captor.capture());
+        ReceivedDatagram datagram = (ReceivedDatagram) captor.getValue().get(0);
+        assertThat(datagram.data()).isSameAs(buffer);
+        assertThat(released).isEmpty();
+        datagram.release();
+        assertThat(released).containsExactly(buffer);
+    }
+
     @Test
     void duplicatedButCorruptedFirstPacketShouldNotChangeServerState() throws Exception {
         RawPacket validFirstPacket = createPacket(ByteBuffer.wrap(ByteUtils.hexToBytes("c900000001088f609080b6d8a632000044d2a83ef8d31f6996534343e3e85cb20cef2df1bad56ee0b89738899b4c152dd706c780ffe6ff2612524c58d32d99c357b9afbbf435e4953b7257d11d676cc472ce9a8be664c11bc37679c68c6063f387f9de8775b7dfe9e48fab013c4919b443339b0d99ac79dac58f053b8b8080f6984b8190dcd5e7bdc0c70beefb392659cbf3fc26b2b9f85174de87766b97eb1a83d1d0ce14b7b211da106a8bf563e4cacc365a79717a4d7213b2f20392d648a8bd8ec42f80c4463b36338c39df6ad5506902651e2105caec47e90396281fa6ce2222d3d09a4db68fb5864cb7c27f8b6e85e046ffa24bd2eecb7fe2d6a4c75ed9666dfd00e32c702987f7fe1eb785c8394ab5cdabeb25ec829d44caab9c61c8d8143f3ba91308fc90a60b61430be992df056f1371749b1cd5c8da640b9637dda85bb2cf172c0642a0d6c33a31f2178dc7cca4d1a50efbba83bb7a6db13432c822f3700ed94e849ceb11342e0081f1fef2705780385cdec8e798be754965abc3f9ccde35670f43391b3601cfc68c78c89d74fdcf394e74e5a3c3eadb952a541a955a78f0211f2136b16cb0919541e74c50d50be561baae4ab3ab555bd5ec62bc2d59fed7a8cbf89f000bb1a7a8a81b2a5fb2ca65e42838b3fadc2e8c6d96be79a290bf3a92f5eab953982986c5f2b0396684f07c7ebac9658caa454d749716e4bea55973b50b83faaf4bbac13bf3be1e473471e2f9e07b28db2bf5763ce342cfb952954424fc3d4e3b935cfaf322dc53d73376361f4662baac2f20b1e168ba2c0711536983b8bd15322cf28c2524d1e08510528c8f09d25525b387e26462104743aecf667571db14c1e73fa52c23f54e36b1c1cc2224f501943688d301d29b897e05d63f1b4a3e5fafee04096cc8e4f49b3f9358c86daaa3d10c54caa9a81676b5c74bb9ebd933adc4fae88acd5ace9ca33f22bb06fab30083328951cfeeb68cb5227e458bbbd65a5f8e1363afe2ef4a065102f732409685efa3525684ab2a513a8f4eabce1c698898ed0c4e6064f9c322d0467ef150f5fedd41258110f0742a436c4bbd1a6899141b2a06deec018ff366ff334f4dbff93c756d8c9db0997d97f7bf1b160ea678d316642fd5842027259503be9dd759b6fa898191bb79ccc84bd294c4f62a5f892a088247757cadb0113b22c444dd6e115dd6fbc1e537dd7ff83789a2fb31b5852546386e01fb06e9130845f9bb38986c7aab6bde6ca04607a98aa89cd2921ebb3ecca4470b5b7def2e376ab028454f4a8fc88c2041315cf399a1c53d5ecdb7b7797a69a06ddced1ba2e32984de47d9f85724121a51d1a0b37d6ebfac2b7ace538be777668bc3692beb125a4eed5e59929df22c1f5735e5fd7fd4b9e08112a94a124000bdf4f57ebd040e615bbb481340d4e8c707280d7ea77ce67044821b1d6c8e97ccad2d5cc704207393ec8a62bc2b4257e4c6d66d9a72d686eea4c49c13c5c64d2e0077affc09727bb16339e2f335e3a1bfd0824abf7a073b2f5f1123aa8cca0b9d926334bc8f6710348e1fd002a8176b20c6be10e968ff14078a6d0c7cddede062b055b9344668feab526dc3972d9da20a81dcf8207f60eb83f3d0083d35d0ff5d735e89d4abc5044307046d4b58a9ba6eb5ff07dbbd8146cc532ea18ed82a6e5b193dea2d8a5b85c529be1a954ce3d35e912066af60674f773d5d9543bef0ffba5e317379955b05629f980c9ac22cb61a037324ec730227ae25ab9a")));
@@ -274,6 +316,365 @@ class ServerConnectorImplTest {
         assertThat(connectionRegistry.isExistingConnection(null, ByteUtils.hexToBytes("8f609080b6d8a632"))).isPresent();
     }
 
+    //region retry
+    @Test
+    void whenRetryIsRequiredInitialWithoutTokenShouldLeadToRetryWithoutCreatingConnection() throws Exception {
+        // Given
+        ServerConnectionFactory connectionFactory = createServerWithRetryRequired();
+
+        // When
+        server.process(createPacket(ByteBuffer.wrap(createInitial(odcid, null))));
+        testExecutor.check();
+
+        // Then
+        verify(serverSocket).send(argThat(datagram -> isRetryPacket(datagram)));
+        verify(connectionFactory, never()).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class), any());
+        assertThat(getConnectionRegistry().isEmpty()).isTrue();
+    }
+
+    @Test
+    void whenRetryIsRequiredInitialWithTokenFromRetryShouldCreateConnection() throws Exception {
+        // Given
+        ServerConnectionFactory connectionFactory = createServerWithRetryRequired();
+        server.process(createPacket(ByteBuffer.wrap(createInitial(odcid, null))));
+        RetryPacket retryPacket = captureRetryPacket();
+
+        // When
+        byte[] retrySourceCid = retryPacket.getSourceConnectionId();
+        server.process(createPacket(ByteBuffer.wrap(createInitial(retrySourceCid, retryPacket.getRetryToken()))));
+        testExecutor.check();
+
+        // Then
+        verify(connectionFactory).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), eq(odcid), eq(retrySourceCid));
+    }
+
+    @Test
+    void whenRetryIsRequiredInitialWithInvalidTokenShouldBeDropped() throws Exception {
+        // Given
+        ServerConnectionFactory connectionFactory = createServerWithRetryRequired();
+        server.process(createPacket(ByteBuffer.wrap(createInitial(odcid, null))));
+        RetryPacket retryPacket = captureRetryPacket();
+        byte[] invalidToken = retryPacket.getRetryToken();
+        invalidToken[invalidToken.length - 1] ^= 0x01;
+
+        // When
+        server.process(createPacket(ByteBuffer.wrap(createInitial(retryPacket.getSourceConnectionId(), invalidToken))));
+        testExecutor.check();
+
+        // Then
+        verify(connectionFactory, never()).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class), any());
+        assertThat(getConnectionRegistry().isEmpty()).isTrue();
+    }
+
+    @Test
+    void whenRetryIsRequiredTooSmallInitialShouldNotLeadToRetry() throws Exception {
+        // Given
+        createServerWithRetryRequired();
+        byte[] initial = createInitial(odcid, null);
+
+        // When
+        server.process(createPacket(ByteBuffer.wrap(initial, 0, 1000)));
+
+        // Then
+        verify(serverSocket, never()).send(any(DatagramPacket.class));
+    }
+
+    @Test
+    void whenRetryIsAdaptiveAndServerIsNotUnderLoadConnectionIsCreatedWithoutRetry() throws Exception {
+        // Given
+        ServerConnectionFactory connectionFactory = createServer(ServerConnectionConfig.builder()
+                .maxConnectionBufferSize(10_000_000)
+                .adaptiveRetry(100, 1000, 50, 1000)
+                .build());
+
+        // When
+        server.process(createPacket(ByteBuffer.wrap(createInitial(odcid, null))));
+        testExecutor.check();
+
+        // Then
+        verify(serverSocket, never()).send(any(DatagramPacket.class));
+        verify(connectionFactory).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), eq(odcid), isNull());
+    }
+
+    @Test
+    void whenRetryIsAdaptiveAndInitialRateIsExceededRetryIsRequired() throws Exception {
+        // Given
+        ServerConnectionFactory connectionFactory = createServer(ServerConnectionConfig.builder()
+                .maxConnectionBufferSize(10_000_000)
+                .adaptiveRetry(100, 1, 50, 1000)
+                .build());
+        server.process(createPacket(ByteBuffer.wrap(createInitial(odcid, null))));
+        testExecutor.check();
+        clearInvocations(connectionFactory);
+
+        // When
+        byte[] otherOdcid = new byte[] { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08 };
+        server.process(createPacket(ByteBuffer.wrap(createInitial(otherOdcid, null))));
+        testExecutor.check();
+
+        // Then
+        verify(serverSocket).send(argThat(datagram -> isRetryPacket(datagram)));
+        verify(connectionFactory, never()).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class), any());
+    }
+    //endregion
+
+    //region new token
+    @Test
+    void whenRetryIsRequiredInitialWithValidNewTokenShouldCreateValidatedConnectionWithoutRetry() throws Exception {
+        // Given
+        ServerConnectionFactory connectionFactory = createServerWithRetryRequired();
+        byte[] token = getNewTokenManager().createToken(InetAddress.getLoopbackAddress());
+
+        // When
+        server.process(createPacket(ByteBuffer.wrap(createInitial(odcid, token))));
+        testExecutor.check();
+
+        // Then
+        verify(serverSocket, never()).send(any(DatagramPacket.class));
+        verify(connectionFactory).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), eq(odcid), isNull());
+        verify(createdConnection).setAddressValidated();
+    }
+
+    @Test
+    void whenRetryIsRequiredInitialWithInvalidNewTokenShouldLeadToRetry() throws Exception {
+        // Given
+        ServerConnectionFactory connectionFactory = createServerWithRetryRequired();
+        byte[] token = new NewTokenManager().createToken(InetAddress.getLoopbackAddress());
+
+        // When
+        server.process(createPacket(ByteBuffer.wrap(createInitial(odcid, token))));
+        testExecutor.check();
+
+        // Then
+        verify(serverSocket).send(argThat(datagram -> isRetryPacket(datagram)));
+        verify(connectionFactory, never()).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class), any());
+    }
+
+    @Test
+    void whenRetryIsNotRequiredInitialWithValidNewTokenShouldCreateValidatedConnection() throws Exception {
+        // Given
+        ServerConnectionFactory connectionFactory = createServer(ServerConnectionConfig.builder()
+                .maxConnectionBufferSize(10_000_000)
+                .build());
+        byte[] token = getNewTokenManager().createToken(InetAddress.getLoopbackAddress());
+
+        // When
+        server.process(createPacket(ByteBuffer.wrap(createInitial(odcid, token))));
+        testExecutor.check();
+
+        // Then
+        verify(connectionFactory).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), eq(odcid), isNull());
+        verify(createdConnection).setAddressValidated();
+    }
+
+    @Test
+    void whenRetryIsNotRequiredInitialWithoutTokenShouldCreateConnectionWithUnvalidatedAddress() throws Exception {
+        // Given
+        createServer(ServerConnectionConfig.builder()
+                .maxConnectionBufferSize(10_000_000)
+                .build());
+
+        // When
+        server.process(createPacket(ByteBuffer.wrap(createInitial(odcid, null))));
+        testExecutor.check();
+
+        // Then
+        verify(createdConnection, never()).setAddressValidated();
+    }
+    //endregion
+
+    //region admission control
+    @Test
+    void whenHandshakesInProgressIsOverBudgetNewConnectionShouldBeRefused() throws Exception {
+        // Given
+        ServerConnectionFactory connectionFactory = createServer(ServerConnectionConfig.builder()
+                .maxConnectionBufferSize(10_000_000)
+                .build());
+        FieldSetter.setField(server, server.getClass().getDeclaredField("admissionControl"), new HandshakeAdmissionControl(1, null, true));
+        simulateHandshakeInProgress();
+
+        // When
+        server.process(createPacket(ByteBuffer.wrap(createInitial(odcid, null))));
+        testExecutor.check();
+
+        // Then
+        verify(connectionFactory, never()).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class), any());
+        ArgumentCaptor<DatagramPacket> captor = ArgumentCaptor.forClass(DatagramPacket.class);
+        verify(serverSocket).send(captor.capture());
+        ConnectionSecrets clientSecrets = new ConnectionSecrets(VersionHolder.withDefault(), Role.Client, null, mock(Logger.class));
+        clientSecrets.computeInitialKeys(odcid);
+        InitialPacket response = new InitialPacket(Version.getDefault());
+        response.parse(ByteBuffer.wrap(captor.getValue().getData(), 0, captor.getValue().getLength()), clientSecrets.getPeerAead(EncryptionLevel.Initial), 0, mock(Logger.class), 0);
+        assertThat(response.getFrames()).anyMatch(frame -> frame instanceof ConnectionCloseFrame
+                && ((ConnectionCloseFrame) frame).getErrorCode() == QuicConstants.TransportErrorCode.CONNECTION_REFUSED.value);
+    }
+
+    @Test
+    void connectionRefusedShouldNotBeSentByReceiveThread() throws Exception {
+        // Given
+        createServer(ServerConnectionConfig.builder()
+                .maxConnectionBufferSize(10_000_000)
+                .build());
+        FieldSetter.setField(server, server.getClass().getDeclaredField("admissionControl"), new HandshakeAdmissionControl(1, null, true));
+        simulateHandshakeInProgress();
+
+        // When
+        server.process(createPacket(ByteBuffer.wrap(createInitial(odcid, null))));
+
+        // Then
+        verify(serverSocket, never()).send(any(DatagramPacket.class));
+        testExecutor.check();
+        verify(serverSocket).send(any(DatagramPacket.class));
+    }
+
+    @Test
+    void whenHandshakesInProgressIsOverBudgetNewConnectionShouldBeDroppedWhenNotRefusing() throws Exception {
+        // Given
+        ServerConnectionFactory connectionFactory = createServer(ServerConnectionConfig.builder()
+                .maxConnectionBufferSize(10_000_000)
+                .build());
+        FieldSetter.setField(server, server.getClass().getDeclaredField("admissionControl"), new HandshakeAdmissionControl(1, null, false));
+        simulateHandshakeInProgress();
+
+        // When
+        server.process(createPacket(ByteBuffer.wrap(createInitial(odcid, null))));
+        testExecutor.check();
+
+        // Then
+        verify(connectionFactory, never()).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class), any());
+        verify(serverSocket, never()).send(any(DatagramPacket.class));
+        assertThat(getConnectionRegistry().isEmpty()).isTrue();
+    }
+
+    @Test
+    void numberOfRefusalsShouldBeRateLimited() throws Exception {
+        // Given
+        ServerConnectionFactory connectionFactory = createServer(ServerConnectionConfig.builder()
+                .maxConnectionBufferSize(10_000_000)
+                .build());
+        FieldSetter.setField(server, server.getClass().getDeclaredField("admissionControl"), new HandshakeAdmissionControl(1, null, true, 2));
+        simulateHandshakeInProgress();
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            byte[] dcid = Arrays.copyOf(odcid, odcid.length);
+            dcid[0] = (byte) i;
+            server.process(createPacket(ByteBuffer.wrap(createInitial(dcid, null))));
+        }
+        testExecutor.check();
+
+        // Then
+        verify(connectionFactory, never()).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class), any());
+        verify(serverSocket, times(2)).send(any(DatagramPacket.class));
+    }
+
+    @Test
+    void timeReceivedOfDatagramShouldBePassedToConnectionCandidate() throws Exception {
+        // Given
+        createServer(ServerConnectionConfig.builder()
+                .maxConnectionBufferSize(10_000_000)
+                .build());
+        Instant timeReceived = Instant.now().minusSeconds(1);
+        byte[] initial = createInitial(odcid, null);
+        DatagramPacket datagram = new DatagramPacket(initial, 0, initial.length, new InetSocketAddress(InetAddress.getLoopbackAddress(), 38675));
+
+        // When
+        server.process(new RawPacket(datagram, timeReceived, 0));
+        testExecutor.check();
+
+        // Then
+        verify(context).isQueuedTooLong(timeReceived);
+    }
+
+    @Test
+    void whenHandshakesInProgressIsWithinBudgetNewConnectionShouldBeCreated() throws Exception {
+        // Given
+        ServerConnectionFactory connectionFactory = createServer(ServerConnectionConfig.builder()
+                .maxConnectionBufferSize(10_000_000)
+                .build());
+        FieldSetter.setField(server, server.getClass().getDeclaredField("admissionControl"), new HandshakeAdmissionControl(2, null, true));
+        simulateHandshakeInProgress();
+
+        // When
+        server.process(createPacket(ByteBuffer.wrap(createInitial(odcid, null))));
+        testExecutor.check();
+
+        // Then
+        verify(connectionFactory).createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), eq(odcid), isNull());
+    }
+    //endregion
+
+    private ServerConnectionFactory createServerWithRetryRequired() throws Exception {
+        return createServer(ServerConnectionConfig.builder()
+                .maxConnectionBufferSize(10_000_000)
+                .retryRequired(true)
+                .build());
+    }
+
+    private ServerConnectionFactory createServer(ServerConnectionConfig configuration) throws Exception {
+        server = (ServerConnectorImpl) ServerConnector.builder()
+                .withPort(4433)
+                .withSocket(serverSocket)
+                .withCertificate(getClass().getResourceAsStream("localhost.pem"), getClass().getResourceAsStream("localhost.key"))
+                .withConfiguration(configuration)
+                .withLogger(new SysOutLogger())
+                .build();
+        FieldSetter.setField(server, "context", context);
+
+        ServerConnectionFactory connectionFactory = mock(ServerConnectionFactory.class);
+        ServerConnectionImpl connection = mock(ServerConnectionImpl.class);
+        when(connection.getInitialConnectionId()).thenReturn(new byte[8]);
+        createdConnection = connection;
+        when(connectionFactory.createNewConnection(any(Version.class), any(InetSocketAddress.class), any(byte[].class), any(byte[].class), any()))
+                .thenReturn(connection);
+        when(connectionFactory.createServerConnectionProxy(any(ServerConnectionImpl.class), any(InitialPacket.class), any(ByteBuffer.class), any(PacketMetaData.class)))
+                .thenAnswer(i -> new ServerConnectionThreadDummy(i.getArgument(0), i.getArgument(1), ((PacketMetaData) i.getArgument(3))));
+        FieldSetter.setField(server, server.getClass().getDeclaredField("serverConnectionFactory"), connectionFactory);
+        return connectionFactory;
+    }
+
+    private byte[] createInitial(byte[] dcid, byte[] token) throws Exception {
+        ConnectionSecrets clientSecrets = new ConnectionSecrets(VersionHolder.withDefault(), Role.Client, null, mock(Logger.class));
+        clientSecrets.computeInitialKeys(dcid);
+        InitialPacket initialPacket = new InitialPacket(Version.getDefault(), new byte[8], dcid, token,
+                List.of(new CryptoFrame(Version.getDefault(), new byte[100]), new Padding(1100)));
+        initialPacket.setPacketNumber(0);
+        return initialPacket.generatePacketBytes(clientSecrets.getOwnAead(EncryptionLevel.Initial));
+    }
+
+    private RetryPacket captureRetryPacket() throws Exception {
+        ArgumentCaptor<DatagramPacket> captor = ArgumentCaptor.forClass(DatagramPacket.class);
+        verify(serverSocket).send(captor.capture());
+        RetryPacket retryPacket = new RetryPacket(Version.getDefault());
+        retryPacket.parse(ByteBuffer.wrap(captor.getValue().getData(), 0, captor.getValue().getLength()), null, 0, mock(Logger.class), 0);
+        assertThat(retryPacket.validateIntegrityTag(odcid)).isTrue();
+        clearInvocations(serverSocket);
+        return retryPacket;
+    }
+
+    private boolean isRetryPacket(DatagramPacket datagram) {
+        try {
+            new RetryPacket(Version.getDefault()).parse(ByteBuffer.wrap(datagram.getData(), 0, datagram.getLength()), null, 0, mock(Logger.class), 0);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void simulateHandshakeInProgress() throws Exception {
+        Set<ServerConnectionImpl> connectionsInHandshake = (Set<ServerConnectionImpl>) new FieldReader(server, server.getClass().getDeclaredField("connectionsInHandshake")).read();
+        connectionsInHandshake.add(mock(ServerConnectionImpl.class));
+    }
+
+    private NewTokenManager getNewTokenManager() throws Exception {
+        return (NewTokenManager) new FieldReader(server, server.getClass().getDeclaredField("newTokenManager")).read();
+    }
+
+    private ServerConnectionRegistryImpl getConnectionRegistry() throws Exception {
+        return (ServerConnectionRegistryImpl) new FieldReader(server, server.getClass().getDeclaredField("connectionRegistry")).read();
+    }
+
     private RawPacket createPacket(ByteBuffer buffer) {
         DatagramPacket datagram = new DatagramPacket(buffer.array(), 0, buffer.limit(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 38675));
         RawPacket packet = new RawPacket(datagram, Instant.now(), 0);
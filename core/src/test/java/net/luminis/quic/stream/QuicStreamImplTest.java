@@ -18,6 +18,7 @@
  */
 package net.luminis.quic.stream;
 
+import net.luminis.quic.StreamPriority;
 import net.luminis.quic.common.EncryptionLevel;
 import net.luminis.quic.impl.QuicConnectionImpl;
 import net.luminis.quic.impl.Role;
@@ -30,10 +31,12 @@ import net.luminis.quic.frame.StopSendingFrame;
 import net.luminis.quic.frame.StreamFrame;
 import net.luminis.quic.generic.InvalidIntegerEncodingException;
 import net.luminis.quic.log.Logger;
+import net.luminis.quic.send.StreamFrameSupplier;
 import net.luminis.quic.test.FieldReader;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
 
@@ -43,11 +46,22 @@ import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadPendingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Flow;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
@@ -189,6 +203,33 @@ class QuicStreamImplTest {
         assertThat(quicStream.getInputStream().readAllBytes()).isEqualTo(data);
     }
 
+    @Test
+    void readBuffersReturnsAvailableData() throws Exception {
+        // Given
+        quicStream.addStreamData(resurrect(new StreamFrame(0, "first-".getBytes(), false)));
+        quicStream.addStreamData(resurrect(new StreamFrame(0, 6, "second".getBytes(), false)));
+
+        // When
+        List<ByteBuffer> buffers = ((StreamInputStream) quicStream.getInputStream()).readBuffers();
+
+        // Then
+        assertThat(buffers).containsExactly(ByteBuffer.wrap("first-".getBytes()), ByteBuffer.wrap("second".getBytes()));
+    }
+
+    @Test
+    void readBuffersReturnsEmptyListAtEndOfStream() throws Exception {
+        // Given
+        quicStream.addStreamData(resurrect(new StreamFrame(0, "data".getBytes(), true)));
+        StreamInputStream inputStream = (StreamInputStream) quicStream.getInputStream();
+        inputStream.readBuffers();
+
+        // When
+        List<ByteBuffer> buffers = inputStream.readBuffers();
+
+        // Then
+        assertThat(buffers).isEmpty();
+    }
+
     @Test
     void testReadStreamWithFFByte() throws Exception {
         quicStream.addStreamData(resurrect(new StreamFrame(0, new byte[] { (byte) 0xff }, true)));
@@ -701,6 +742,27 @@ class QuicStreamImplTest {
         assertThat(((StreamFrame) streamFrame).getStreamData()).isEqualTo("hello world".getBytes());
     }
 
+    @Test
+    void streamFrameSupplierReflectsStreamPriority() throws Exception {
+        // Given
+        quicStream.setPriority(StreamPriority.of(1, true));
+
+        // When
+        quicStream.getOutputStream().write("hello world".getBytes());
+
+        // Then
+        Function<Integer, QuicFrame> sendFunction = captureSendFunction(connection);
+        assertThat(sendFunction).isInstanceOf(StreamFrameSupplier.class);
+        assertThat(((StreamFrameSupplier) sendFunction).getStreamId()).isEqualTo(quicStream.getStreamId());
+        assertThat(((StreamFrameSupplier) sendFunction).getPriority()).isEqualTo(StreamPriority.of(1, true));
+    }
+
+    @Test
+    void defaultPriorityIsNonIncrementalWithUrgencyThree() {
+        assertThat(quicStream.getPriority().getUrgency()).isEqualTo(3);
+        assertThat(quicStream.getPriority().isIncremental()).isFalse();
+    }
+
     @Test
     void testCloseSendsFinalFrame() throws Exception {
         // Given
@@ -740,6 +802,112 @@ class QuicStreamImplTest {
         assertThat(reconstructedContent).isEqualTo(data);
     }
 
+    @Test
+    void writeByteBufferSendsRemainingBytesOfBuffer() throws Exception {
+        // Given
+        ByteBuffer data = ByteBuffer.wrap(generateByteArray(1000));
+        data.position(100);
+
+        // When
+        ((StreamOutputStream) quicStream.getOutputStream()).write(data);
+
+        // Then
+        assertThat(data.hasRemaining()).isFalse();
+        StreamFrame frame = (StreamFrame) captureSendFunction(connection).apply(1500);
+        assertThat(frame.getOffset()).isEqualTo(0);
+        assertThat(frame.getStreamData()).isEqualTo(Arrays.copyOfRange(generateByteArray(1000), 100, 1000));
+    }
+
+    @Test
+    void streamFrameRefersToWrittenByteBufferInsteadOfCopy() throws Exception {
+        // Given
+        byte[] data = generateByteArray(1000);
+        ((StreamOutputStream) quicStream.getOutputStream()).write(ByteBuffer.wrap(data));
+
+        // When
+        StreamFrame frame = (StreamFrame) captureSendFunction(connection).apply(1500);
+        data[0] = 0x00;  // Violates contract, but proves data is not copied
+
+        // Then
+        assertThat(frame.getStreamDataBuffer().get(0)).isEqualTo((byte) 0x00);
+    }
+
+    @Test
+    void byteBufferLargerThanSendBufferIsWrittenInParts() throws Exception {
+        // Given
+        int sendBufferSize = 77;
+        quicStream = new QuicStreamImpl(Version.getDefault(), 0, role, connection, streamManager,
+                new FlowControl(Role.Client, 9999, 9999, 9999, 9999),
+                logger, sendBufferSize);
+        StreamOutputStream outputStream = (StreamOutputStream) quicStream.getOutputStream();
+
+        // When
+        byte[] data = new byte[1000];
+        randomGenerator.nextBytes(data);
+        Thread asyncWriter = new Thread(() -> {
+            try {
+                outputStream.write(ByteBuffer.wrap(data));
+                outputStream.close();
+            } catch (IOException e) {
+            }
+        });
+        asyncWriter.start();
+        // Give writer/sender a change to start sending.
+        Thread.sleep(10);
+
+        ByteBuffer dataSent = ByteBuffer.allocate(1000);
+        StreamFrame lastFrame = null;
+        // Then: collect data that is sent (when frame supplier function is called); should result in same data that is sent.
+        do {
+            ArgumentCaptor<Function<Integer, QuicFrame>> sendFunctionCaptor = ArgumentCaptor.forClass(Function.class);
+            verify(connection, atLeastOnce()).send(sendFunctionCaptor.capture(), anyInt(), any(EncryptionLevel.class), any(Consumer.class), anyBoolean());
+            for (Function<Integer, QuicFrame> f: sendFunctionCaptor.getAllValues()) {
+                QuicFrame frame = f.apply(1200);
+                if (frame != null) {
+                    lastFrame = (StreamFrame) frame;
+                    dataSent.put(((StreamFrame) frame).getStreamDataBuffer());
+                }
+            }
+        }
+        while (lastFrame == null || !lastFrame.isFinal());
+
+        assertThat(dataSent.array()).isEqualTo(data);
+    }
+
+    @Test
+    void transferFromSendsFileRegion(@TempDir Path tempDir) throws Exception {
+        // Given
+        Path file = tempDir.resolve("data");
+        Files.write(file, generateByteArray(2000));
+
+        // When
+        long transferred;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transferred = ((StreamOutputStream) quicStream.getOutputStream()).transferFrom(channel, 100, 500);
+        }
+
+        // Then
+        assertThat(transferred).isEqualTo(500);
+        StreamFrame frame = (StreamFrame) captureSendFunction(connection).apply(1500);
+        assertThat(frame.getStreamData()).isEqualTo(Arrays.copyOfRange(generateByteArray(2000), 100, 600));
+    }
+
+    @Test
+    void transferFromStopsAtEndOfFile(@TempDir Path tempDir) throws Exception {
+        // Given
+        Path file = tempDir.resolve("data");
+        Files.write(file, generateByteArray(2000));
+
+        // When
+        long transferred;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transferred = ((StreamOutputStream) quicStream.getOutputStream()).transferFrom(channel, 1500, 1000);
+        }
+
+        // Then
+        assertThat(transferred).isEqualTo(500);
+    }
+
     @Test
     void writingLessThanSendBufferSizeDoesNotBlock() throws Exception {
         // Given
@@ -1282,19 +1450,64 @@ class QuicStreamImplTest {
         Consumer lostFrameCallback = lostFrameCallbackCaptor.getValue();
 
         // When the recovery manager determines that the frame is lost, it will call the lost-frame-callback with the lost frame as argument
+        clearInvocations(connection);
         lostFrameCallback.accept(lostFrame);
 
-        ArgumentCaptor<QuicFrame> retransmittedFrameCaptor = ArgumentCaptor.forClass(QuicFrame.class);
-        ArgumentCaptor<Consumer> lostRetransmittedFrameCallbackCaptor = ArgumentCaptor.forClass(Consumer.class);
-
-        verify(connection, atLeastOnce()).send(retransmittedFrameCaptor.capture(), lostRetransmittedFrameCallbackCaptor.capture());
-
-        QuicFrame retransmittedFrame = retransmittedFrameCaptor.getValue();
+        // Then the lost data is re-framed from the send buffer when the sender asks for it
+        verify(connection, times(1)).send(sendFunctionCaptor.capture(), anyInt(), any(EncryptionLevel.class), any(Consumer.class), anyBoolean());
+        QuicFrame retransmittedFrame = sendFunctionCaptor.getValue().apply(1500);
 
         assertThat(retransmittedFrame).isInstanceOf(StreamFrame.class);
         assertThat(retransmittedFrame).isEqualTo(lostFrame);
     }
 
+    @Test
+    void lostStreamDataIsSplitToFitAvailableFrameSize() throws Exception {
+        // Given
+        ArgumentCaptor<Function<Integer, QuicFrame>> sendFunctionCaptor = ArgumentCaptor.forClass(Function.class);
+        ArgumentCaptor<Consumer> lostFrameCallbackCaptor = ArgumentCaptor.forClass(Consumer.class);
+        quicStream.getOutputStream().write(generateByteArray(1000));
+        verify(connection, times(1)).send(sendFunctionCaptor.capture(), anyInt(), any(EncryptionLevel.class), lostFrameCallbackCaptor.capture(), anyBoolean());
+        StreamFrame lostFrame = (StreamFrame) sendFunctionCaptor.getValue().apply(1500);
+        clearInvocations(connection);
+
+        // When
+        lostFrameCallbackCaptor.getValue().accept(lostFrame);
+        verify(connection, times(1)).send(sendFunctionCaptor.capture(), anyInt(), any(EncryptionLevel.class), any(Consumer.class), anyBoolean());
+        StreamFrame firstPart = (StreamFrame) sendFunctionCaptor.getValue().apply(600);
+        StreamFrame secondPart = (StreamFrame) sendFunctionCaptor.getValue().apply(1500);
+
+        // Then
+        assertThat(firstPart.getFrameLength()).isLessThanOrEqualTo(600);
+        assertThat(firstPart.getOffset()).isEqualTo(0);
+        assertThat(secondPart.getOffset()).isEqualTo(firstPart.getUpToOffset());
+        assertThat(secondPart.getUpToOffset()).isEqualTo(1000);
+        byte[] retransmittedData = new byte[1000];
+        System.arraycopy(firstPart.getStreamData(), 0, retransmittedData, 0, firstPart.getLength());
+        System.arraycopy(secondPart.getStreamData(), 0, retransmittedData, firstPart.getLength(), secondPart.getLength());
+        assertThat(retransmittedData).isEqualTo(lostFrame.getStreamData());
+    }
+
+    @Test
+    void lostStreamFrameThatIsAcknowledgedMeanwhileShouldNotBeRetransmitted() throws Exception {
+        // Given
+        ArgumentCaptor<Function<Integer, QuicFrame>> sendFunctionCaptor = ArgumentCaptor.forClass(Function.class);
+        ArgumentCaptor<Consumer> lostFrameCallbackCaptor = ArgumentCaptor.forClass(Consumer.class);
+        quicStream.getOutputStream().write(generateByteArray(1000));
+        verify(connection, times(1)).send(sendFunctionCaptor.capture(), anyInt(), any(EncryptionLevel.class), lostFrameCallbackCaptor.capture(), anyBoolean());
+        sendFunctionCaptor.getValue().apply(500);
+        StreamFrame secondFrame = (StreamFrame) sendFunctionCaptor.getValue().apply(1500);
+        clearInvocations(connection);
+
+        // When
+        ((StreamFrameSupplier) sendFunctionCaptor.getValue()).frameAcknowledged(secondFrame);
+        lostFrameCallbackCaptor.getValue().accept(secondFrame);
+
+        // Then
+        verify(connection, never()).send(any(Function.class), anyInt(), any(EncryptionLevel.class), any(Consumer.class), anyBoolean());
+        assertThat(sendFunctionCaptor.getValue().apply(1500)).isNull();
+    }
+
     @Test
     void lostMaxStreamDataFrameShouldBeResentWithActualValues() throws Exception {
         float factor = StreamInputStreamImpl.receiverMaxDataIncrementFactor;
@@ -1358,19 +1571,306 @@ class QuicStreamImplTest {
         // When the recovery manager determines that the frame is lost, it will call the lost-frame-callback with the lost frame as argument
         lostFrameCallback.accept(frameThatWillBecomeLost);
 
-        ArgumentCaptor<QuicFrame> retransmittedFrameCaptor = ArgumentCaptor.forClass(QuicFrame.class);
-        ArgumentCaptor<Consumer> lostRetransmittedFrameCallbackCaptor = ArgumentCaptor.forClass(Consumer.class);
-
-        verify(connection, times(1)).send(retransmittedFrameCaptor.capture(), lostRetransmittedFrameCallbackCaptor.capture());
-
-        QuicFrame retransmittedFrame = retransmittedFrameCaptor.getValue();
+        verify(connection, times(1)).send(sendFunctionCaptor2.capture(), anyInt(), any(EncryptionLevel.class), any(Consumer.class), anyBoolean());
+        QuicFrame retransmittedFrame = sendFunctionCaptor2.getValue().apply(1500);
 
         assertThat(retransmittedFrame).isInstanceOf(StreamFrame.class);
         assertThat(((StreamFrame) retransmittedFrame).isFinal()).isTrue();
     }
     //endregion
 
+    //region async read / write
+    @Test
+    void readAsyncCompletesImmediatelyWhenDataIsAvailable() throws Exception {
+        // Given
+        quicStream.addStreamData(resurrect(new StreamFrame(0, "data".getBytes(), false)));
+
+        // When
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        CompletableFuture<Integer> read = quicStream.readAsync(buffer);
+
+        // Then
+        assertThat(read).isCompletedWithValue(4);
+        assertThat(Arrays.copyOf(buffer.array(), buffer.position())).isEqualTo("data".getBytes());
+    }
+
+    @Test
+    void readAsyncCompletesWhenDataIsReceived() throws Exception {
+        // Given
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        CompletableFuture<Integer> read = quicStream.readAsync(buffer);
+        assertThat(read).isNotDone();
+
+        // When
+        quicStream.addStreamData(resurrect(new StreamFrame(0, "data".getBytes(), false)));
+
+        // Then
+        assertThat(read).isCompletedWithValue(4);
+        assertThat(Arrays.copyOf(buffer.array(), buffer.position())).isEqualTo("data".getBytes());
+    }
+
+    @Test
+    void readAsyncReturnsMinusOneAtEndOfStream() throws Exception {
+        // Given
+        quicStream.addStreamData(resurrect(new StreamFrame(0, "data".getBytes(), true)));
+        quicStream.readAsync(ByteBuffer.allocate(100));
+
+        // When
+        CompletableFuture<Integer> read = quicStream.readAsync(ByteBuffer.allocate(100));
+
+        // Then
+        assertThat(read).isCompletedWithValue(-1);
+    }
+
+    @Test
+    void secondReadAsyncWhileFirstIsPendingShouldThrow() throws Exception {
+        // Given
+        quicStream.readAsync(ByteBuffer.allocate(100));
+
+        assertThatThrownBy(() ->
+                // When
+                quicStream.readAsync(ByteBuffer.allocate(100))
+                // Then
+        ).isInstanceOf(ReadPendingException.class);
+    }
+
+    @Test
+    void pendingReadAsyncFailsWhenStreamIsReset() throws Exception {
+        // Given
+        CompletableFuture<Integer> read = quicStream.readAsync(ByteBuffer.allocate(100));
+
+        // When
+        quicStream.terminateStream(9, 0);
+
+        // Then
+        assertThat(read).isCompletedExceptionally();
+        assertThatThrownBy(() -> read.join()).hasCauseInstanceOf(IOException.class);
+    }
+
+    @Test
+    void readAsyncRacingWithAbortShouldAlwaysComplete() throws Exception {
+        for (int i = 0; i < 500; i++) {
+            // Given
+            QuicStreamImpl stream = new QuicStreamImpl(0, role, connection, streamManager, new FlowControl(Role.Client, 9999, 9999, 9999, 9999), logger);
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            Thread aborter = new Thread(() -> {
+                await(barrier);
+                stream.abort();
+            });
+            aborter.start();
+
+            // When
+            await(barrier);
+            CompletableFuture<Integer> read = stream.readAsync(ByteBuffer.allocate(100));
+            aborter.join();
+
+            // Then
+            assertThat(read).isCompletedExceptionally();
+        }
+    }
+
+    @Test
+    void writeAsyncRacingWithAbortShouldAlwaysComplete() throws Exception {
+        for (int i = 0; i < 500; i++) {
+            // Given
+            QuicStreamImpl stream = new QuicStreamImpl(Version.getDefault(), 0, role, connection, streamManager,
+                    new FlowControl(Role.Client, 9999, 9999, 9999, 9999), logger, 100);
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            Thread aborter = new Thread(() -> {
+                await(barrier);
+                stream.abort();
+            });
+            aborter.start();
+
+            // When
+            await(barrier);
+            CompletableFuture<Void> write = stream.writeAsync(ByteBuffer.allocate(300));
+            aborter.join();
+
+            // Then
+            assertThat(write).isCompletedExceptionally();
+        }
+    }
+
+    @Test
+    void writeAsyncCompletesImmediatelyWhenDataFitsInSendBuffer() throws Exception {
+        // When
+        CompletableFuture<Void> write = quicStream.writeAsync(ByteBuffer.wrap("data".getBytes()));
+
+        // Then
+        assertThat(write).isCompleted();
+        StreamFrame frame = (StreamFrame) captureSendFunction(connection).apply(1500);
+        assertThat(frame.getStreamData()).isEqualTo("data".getBytes());
+    }
+
+    @Test
+    void writeAsyncCompletesWhenSendBufferSpaceBecomesAvailable() throws Exception {
+        // Given
+        quicStream = new QuicStreamImpl(Version.getDefault(), 0, role, connection, streamManager,
+                new FlowControl(Role.Client, 9999, 9999, 9999, 9999), logger, 100);
+        byte[] data = generateByteArray(300);
+
+        // When
+        CompletableFuture<Void> write = quicStream.writeAsync(ByteBuffer.wrap(data));
+        assertThat(write).isNotDone();
+
+        // Then
+        ByteBuffer dataSent = ByteBuffer.allocate(300);
+        Function<Integer, QuicFrame> sendFunction = captureSendFunction(connection);
+        QuicFrame frame;
+        while ((frame = sendFunction.apply(40)) != null) {
+            dataSent.put(((StreamFrame) frame).getStreamData());
+        }
+        assertThat(write).isCompleted();
+        assertThat(dataSent.array()).isEqualTo(data);
+    }
+
+    @Test
+    void closeAfterWriteAsyncShouldSendAllDataBeforeFinalFrame() throws Exception {
+        // Given
+        quicStream = new QuicStreamImpl(Version.getDefault(), 0, role, connection, streamManager,
+                new FlowControl(Role.Client, 9999, 9999, 9999, 9999), logger, 100);
+        byte[] data = generateByteArray(300);
+
+        // When
+        CompletableFuture<Void> write = quicStream.writeAsync(ByteBuffer.wrap(data));
+        quicStream.getOutputStream().close();
+
+        // Then
+        ByteBuffer dataSent = ByteBuffer.allocate(300);
+        Function<Integer, QuicFrame> sendFunction = captureSendFunction(connection);
+        StreamFrame lastFrame = null;
+        QuicFrame frame;
+        while ((frame = sendFunction.apply(40)) != null) {
+            lastFrame = (StreamFrame) frame;
+            dataSent.put(lastFrame.getStreamData());
+        }
+        assertThat(write).isCompletedWithValue(null);
+        assertThat(dataSent.array()).isEqualTo(data);
+        assertThat(lastFrame.isFinal()).isTrue();
+        assertThat(lastFrame.getUpToOffset()).isEqualTo(300);
+    }
+
+    @Test
+    void pendingWriteAsyncFailsWhenStreamIsReset() throws Exception {
+        // Given
+        quicStream = new QuicStreamImpl(Version.getDefault(), 0, role, connection, streamManager,
+                new FlowControl(Role.Client, 9999, 9999, 9999, 9999), logger, 100);
+        CompletableFuture<Void> write = quicStream.writeAsync(ByteBuffer.allocate(300));
+
+        // When
+        quicStream.resetStream(9);
+
+        // Then
+        assertThat(write).isCompletedExceptionally();
+    }
+
+    @Test
+    void publisherOnlyReadsWhenSubscriberHasDemand() throws Exception {
+        // Given
+        List<ByteBuffer> received = new ArrayList<>();
+        AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+        quicStream.getPublisher().subscribe(new TestSubscriber(subscription, received));
+
+        // When
+        quicStream.addStreamData(resurrect(new StreamFrame(0, "data".getBytes(), false)));
+
+        // Then
+        assertThat(received).isEmpty();
+        assertThat(quicStream.getInputStream().available()).isEqualTo(4);
+
+        // When
+        subscription.get().request(1);
+
+        // Then
+        assertThat(received).hasSize(1);
+        assertThat(received.get(0).remaining()).isEqualTo(4);
+        assertThat(quicStream.getInputStream().available()).isEqualTo(0);
+    }
+
+    @Test
+    void publisherDeliversDataReceivedLaterAndCompletesAtEndOfStream() throws Exception {
+        // Given
+        List<ByteBuffer> received = new ArrayList<>();
+        AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+        AtomicBoolean completed = new AtomicBoolean();
+        quicStream.getPublisher().subscribe(new TestSubscriber(subscription, received) {
+            @Override
+            public void onComplete() {
+                completed.set(true);
+            }
+        });
+        subscription.get().request(10);
+
+        // When
+        quicStream.addStreamData(resurrect(new StreamFrame(0, "data".getBytes(), false)));
+        quicStream.addStreamData(resurrect(new StreamFrame(0, 4, "more".getBytes(), true)));
+
+        // Then
+        assertThat(received.stream().mapToInt(ByteBuffer::remaining).sum()).isEqualTo(8);
+        assertThat(completed.get()).isTrue();
+    }
+
+    @Test
+    void subscriberWritesItemsOneByOneAndClosesStreamOnComplete() throws Exception {
+        // Given
+        Flow.Subscriber<ByteBuffer> subscriber = quicStream.getSubscriber();
+        Flow.Subscription subscription = mock(Flow.Subscription.class);
+        subscriber.onSubscribe(subscription);
+        verify(subscription, times(1)).request(1);
+
+        // When
+        subscriber.onNext(ByteBuffer.wrap("data".getBytes()));
+        verify(subscription, times(2)).request(1);
+        subscriber.onComplete();
+
+        // Then
+        StreamFrame frame = (StreamFrame) captureSendFunction(connection).apply(1500);
+        assertThat(frame.getStreamData()).isEqualTo("data".getBytes());
+        assertThat(frame.isFinal()).isTrue();
+    }
+    //endregion
+
     // region test helper methods
+    private static class TestSubscriber implements Flow.Subscriber<ByteBuffer> {
+
+        private final AtomicReference<Flow.Subscription> subscription;
+        private final List<ByteBuffer> received;
+
+        TestSubscriber(AtomicReference<Flow.Subscription> subscription, List<ByteBuffer> received) {
+            this.subscription = subscription;
+            this.received = received;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription.set(subscription);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        }
+        catch (InterruptedException | BrokenBarrierException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private byte[] generateByteArray(int size) {
         byte[] data = new byte[size];
         for (int i = 0; i < size; i++) {
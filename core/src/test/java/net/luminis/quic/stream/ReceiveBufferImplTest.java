@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -694,6 +695,134 @@ class ReceiveBufferImplTest {
         checkData(ByteBuffer.wrap(combined.getStreamData()));
     }
 
+    @Test
+    void readBuffersReturnsAllContiguousData() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 1000));
+        receiveBuffer.add(new DataFrame(1000, 500));
+        receiveBuffer.add(new DataFrame(2000, 500));
+
+        // When
+        List<ByteBuffer> buffers = receiveBuffer.readBuffers();
+
+        // Then
+        assertThat(buffers).hasSize(2);
+        assertThat(buffers.get(0).remaining()).isEqualTo(1000);
+        assertThat(buffers.get(1).remaining()).isEqualTo(500);
+        assertThat(buffers.get(1).get(0)).isEqualTo((byte) (1000 % 256));
+        assertThat(receiveBuffer.readOffset()).isEqualTo(1500);
+        assertThat(receiveBuffer.bytesAvailable()).isEqualTo(0);
+    }
+
+    @Test
+    void readBuffersStartsAtCurrentReadPosition() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 1000));
+        receiveBuffer.read(ByteBuffer.allocate(300));
+
+        // When
+        List<ByteBuffer> buffers = receiveBuffer.readBuffers();
+
+        // Then
+        assertThat(buffers).hasSize(1);
+        assertThat(buffers.get(0).remaining()).isEqualTo(700);
+        assertThat(buffers.get(0).get(0)).isEqualTo((byte) 300);
+        assertThat(buffers.get(0).isReadOnly()).isTrue();
+    }
+
+    @Test
+    void framesAreReleasedWhenCompletelyRead() {
+        // Given
+        DataFrame frame1 = new DataFrame(0, 1000);
+        DataFrame frame2 = new DataFrame(1000, 1000);
+        receiveBuffer.add(frame1);
+        receiveBuffer.add(frame2);
+
+        // When
+        receiveBuffer.read(ByteBuffer.allocate(1500));
+
+        // Then
+        assertThat(frame1.released).isEqualTo(1);
+        assertThat(frame2.released).isEqualTo(0);
+    }
+
+    @Test
+    void framesHandedOutByReadBuffersAreReleasedWithNextRead() {
+        // Given
+        DataFrame frame = new DataFrame(0, 1000);
+        receiveBuffer.add(frame);
+
+        // When
+        receiveBuffer.readBuffers();
+        assertThat(frame.released).isEqualTo(0);
+        receiveBuffer.readBuffers();
+
+        // Then
+        assertThat(frame.released).isEqualTo(1);
+    }
+
+    @Test
+    void frameWithDataAlreadyReceivedIsReleased() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 1000));
+        DataFrame duplicate = new DataFrame(0, 1000);
+
+        // When
+        receiveBuffer.add(duplicate);
+
+        // Then
+        assertThat(duplicate.released).isEqualTo(1);
+        assertThat(receiveBuffer.bytesAvailable()).isEqualTo(1000);
+    }
+
+    @Test
+    void partlyOverlappingFrameIsReleasedOnceWhenRead() {
+        // Given
+        receiveBuffer.add(new DataFrame(0, 1000));
+        DataFrame overlapping = new DataFrame(500, 1000);
+        receiveBuffer.add(overlapping);
+
+        // When
+        ByteBuffer buffer = ByteBuffer.allocate(1500);
+        receiveBuffer.read(buffer);
+
+        // Then
+        assertThat(overlapping.released).isEqualTo(1);
+        checkData(buffer);
+    }
+
+    @Test
+    void outOfOrderFramesAreReleasedWhenCombined() {
+        // Given
+        DataFrame frame1 = new DataFrame(1000, 1000);
+        DataFrame frame2 = new DataFrame(1500, 1000);
+        receiveBuffer.add(frame1);
+
+        // When
+        receiveBuffer.add(frame2);
+
+        // Then
+        assertThat(frame1.released).isEqualTo(1);
+        assertThat(frame2.released).isEqualTo(1);
+        assertThat(receiveBuffer.countOutOfOrderFrames()).isEqualTo(1);
+    }
+
+    @Test
+    void framesAreReleasedWhenDataIsDiscarded() {
+        // Given
+        DataFrame contiguous = new DataFrame(0, 1000);
+        DataFrame outOfOrder = new DataFrame(2000, 1000);
+        receiveBuffer.add(contiguous);
+        receiveBuffer.add(outOfOrder);
+
+        // When
+        receiveBuffer.discardAllData();
+
+        // Then
+        assertThat(contiguous.released).isEqualTo(1);
+        assertThat(outOfOrder.released).isEqualTo(1);
+    }
+
     private void checkData(ByteBuffer buffer) {
         for (int i = 0; i < buffer.position(); i++) {
             assertThat(buffer.get(i)).isEqualTo((byte) i);
@@ -715,6 +844,7 @@ class ReceiveBufferImplTest {
         private final byte[] data;
         private final int length;
         private final boolean isFinal;
+        private int released;
 
         public DataFrame(long offset, int length, boolean isFinal) {
             this.offset = offset;
@@ -765,6 +895,11 @@ class ReceiveBufferImplTest {
             }
         }
 
+        @Override
+        public void release() {
+            released++;
+        }
+
         @Override
         public String toString() {
             return "" + offset + ".." + (offset + data.length - 1);
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import net.luminis.quic.test.TestClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReceiveWindowTunerTest {
+
+    private TestClock clock;
+    private int rtt;
+    private ReceiveWindowTuner tuner;
+
+    @BeforeEach
+    void setUpObjectUnderTest() {
+        clock = new TestClock();
+        rtt = 100;
+        tuner = new ReceiveWindowTuner(clock, 100_000, 1_000_000, () -> rtt);
+    }
+
+    @Test
+    void whenApplicationConsumesMoreThanHalfTheWindowPerRoundTripWindowShouldGrow() {
+        // Given
+        tuner.dataConsumed(10_000);
+
+        // When
+        clock.fastForward(50);
+        tuner.dataConsumed(40_000);
+        clock.fastForward(50);
+        long window = tuner.dataConsumed(40_000);
+
+        // Then
+        assertThat(window).isEqualTo(160_000);
+    }
+
+    @Test
+    void whenApplicationConsumesLessThanHalfTheWindowPerRoundTripWindowShouldNotChange() {
+        // Given
+        tuner.dataConsumed(10_000);
+
+        // When
+        clock.fastForward(100);
+        long window = tuner.dataConsumed(40_000);
+
+        // Then
+        assertThat(window).isEqualTo(100_000);
+    }
+
+    @Test
+    void consumptionRateIsMeasuredOverAtLeastOneRoundTrip() {
+        // Given
+        tuner.dataConsumed(10_000);
+
+        // When
+        clock.fastForward(20);
+        long window = tuner.dataConsumed(90_000);
+
+        // Then
+        assertThat(window).isEqualTo(100_000);
+    }
+
+    @Test
+    void consumptionRateIsScaledToRoundTripTime() {
+        // Given
+        tuner.dataConsumed(10_000);
+
+        // When
+        clock.fastForward(200);
+        long window = tuner.dataConsumed(200_000);
+
+        // Then
+        assertThat(window).isEqualTo(200_000);
+    }
+
+    @Test
+    void windowShouldNotGrowBeyondMaximum() {
+        // Given
+        tuner.dataConsumed(10_000);
+
+        // When
+        clock.fastForward(100);
+        long window = tuner.dataConsumed(800_000);
+
+        // Then
+        assertThat(window).isEqualTo(1_000_000);
+    }
+
+    @Test
+    void windowShouldNotGrowWhenRoundTripTimeIsUnknown() {
+        // Given
+        rtt = 0;
+        tuner.dataConsumed(10_000);
+
+        // When
+        clock.fastForward(100);
+        long window = tuner.dataConsumed(800_000);
+
+        // Then
+        assertThat(window).isEqualTo(100_000);
+    }
+}
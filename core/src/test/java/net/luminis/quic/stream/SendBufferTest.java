@@ -0,0 +1,232 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.stream;
+
+import net.luminis.quic.frame.StreamFrame;
+import net.luminis.quic.impl.Version;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SendBufferTest {
+
+    private SendBuffer sendBuffer;
+
+    @BeforeEach
+    void setUpObjectUnderTest() {
+        sendBuffer = new SendBuffer(Version.getDefault(), 0);
+    }
+
+    @Test
+    void newDataIsSentInStreamOrder() {
+        // Given
+        sendBuffer.add(ByteBuffer.wrap(generateData(0, 1000)));
+
+        // When
+        StreamFrame first = sendBuffer.nextFrame(600);
+        StreamFrame second = sendBuffer.nextFrame(600);
+
+        // Then
+        assertThat(first.getOffset()).isEqualTo(0);
+        assertThat(first.getLength()).isEqualTo(600);
+        assertThat(second.getOffset()).isEqualTo(600);
+        assertThat(second.getLength()).isEqualTo(400);
+        assertThat(second.getStreamData()).isEqualTo(generateData(600, 400));
+        assertThat(sendBuffer.hasDataToSend()).isFalse();
+        assertThat(sendBuffer.nextFrame(600)).isNull();
+    }
+
+    @Test
+    void frameCanSpanMultipleSegments() {
+        // Given
+        sendBuffer.add(ByteBuffer.wrap(generateData(0, 100)));
+        sendBuffer.add(ByteBuffer.wrap(generateData(100, 100)));
+        sendBuffer.add(ByteBuffer.wrap(generateData(200, 100)));
+
+        // When
+        sendBuffer.nextFrame(50);
+        StreamFrame frame = sendBuffer.nextFrame(200);
+
+        // Then
+        assertThat(frame.getOffset()).isEqualTo(50);
+        assertThat(frame.getStreamData()).isEqualTo(generateData(50, 200));
+    }
+
+    @Test
+    void lastFrameShouldHaveFinBitWhenBufferIsClosed() {
+        // Given
+        sendBuffer.add(ByteBuffer.wrap(generateData(0, 100)));
+        sendBuffer.close();
+
+        // When
+        StreamFrame first = sendBuffer.nextFrame(60);
+        StreamFrame second = sendBuffer.nextFrame(60);
+
+        // Then
+        assertThat(first.isFinal()).isFalse();
+        assertThat(second.isFinal()).isTrue();
+        assertThat(sendBuffer.hasDataToSend()).isFalse();
+    }
+
+    @Test
+    void whenFrameIsLostItsDataIsRetransmitted() {
+        // Given
+        sendBuffer.add(ByteBuffer.wrap(generateData(0, 1000)));
+        sendBuffer.nextFrame(500);
+        StreamFrame lostFrame = sendBuffer.nextFrame(500);
+
+        // When
+        boolean retransmit = sendBuffer.frameLost(lostFrame);
+
+        // Then
+        assertThat(retransmit).isTrue();
+        StreamFrame retransmitted = sendBuffer.nextRetransmitFrame(1000);
+        assertThat(retransmitted).isEqualTo(lostFrame);
+        assertThat(sendBuffer.hasLostData()).isFalse();
+    }
+
+    @Test
+    void adjacentLostRangesAreCoalescedIntoOneFrame() {
+        // Given
+        sendBuffer.add(ByteBuffer.wrap(generateData(0, 300)));
+        StreamFrame first = sendBuffer.nextFrame(100);
+        StreamFrame second = sendBuffer.nextFrame(100);
+        StreamFrame third = sendBuffer.nextFrame(100);
+
+        // When
+        sendBuffer.frameLost(second);
+        sendBuffer.frameLost(first);
+        sendBuffer.frameLost(third);
+
+        // Then
+        StreamFrame retransmitted = sendBuffer.nextRetransmitFrame(1000);
+        assertThat(retransmitted.getOffset()).isEqualTo(0);
+        assertThat(retransmitted.getStreamData()).isEqualTo(generateData(0, 300));
+        assertThat(sendBuffer.hasLostData()).isFalse();
+    }
+
+    @Test
+    void lostRangeIsSplitWhenItDoesNotFitInFrame() {
+        // Given
+        sendBuffer.add(ByteBuffer.wrap(generateData(0, 1000)));
+        StreamFrame lostFrame = sendBuffer.nextFrame(1000);
+        sendBuffer.frameLost(lostFrame);
+
+        // When
+        StreamFrame first = sendBuffer.nextRetransmitFrame(700);
+        StreamFrame second = sendBuffer.nextRetransmitFrame(700);
+
+        // Then
+        assertThat(first.getOffset()).isEqualTo(0);
+        assertThat(first.getLength()).isEqualTo(700);
+        assertThat(second.getOffset()).isEqualTo(700);
+        assertThat(second.getLength()).isEqualTo(300);
+        assertThat(sendBuffer.nextRetransmitFrame(700)).isNull();
+    }
+
+    @Test
+    void acknowledgedPartOfLostRangeIsNotRetransmitted() {
+        // Given
+        sendBuffer.add(ByteBuffer.wrap(generateData(0, 1000)));
+        StreamFrame lostFrame = sendBuffer.nextFrame(1000);
+        sendBuffer.frameLost(lostFrame);
+        StreamFrame firstRetransmit = sendBuffer.nextRetransmitFrame(400);
+        sendBuffer.frameLost(firstRetransmit);
+
+        // When
+        sendBuffer.frameAcknowledged(new StreamFrame(0, 200, new byte[600], false));
+
+        // Then
+        StreamFrame first = sendBuffer.nextRetransmitFrame(1000);
+        StreamFrame second = sendBuffer.nextRetransmitFrame(1000);
+        assertThat(first.getOffset()).isEqualTo(0);
+        assertThat(first.getLength()).isEqualTo(200);
+        assertThat(second.getOffset()).isEqualTo(800);
+        assertThat(second.getLength()).isEqualTo(200);
+        assertThat(sendBuffer.hasLostData()).isFalse();
+    }
+
+    @Test
+    void acknowledgedDataIsReleasedOnlyWhenAllDataBeforeItIsAcknowledged() {
+        // Given
+        sendBuffer.add(ByteBuffer.wrap(generateData(0, 100)));
+        sendBuffer.add(ByteBuffer.wrap(generateData(100, 100)));
+        sendBuffer.add(ByteBuffer.wrap(generateData(200, 100)));
+        StreamFrame first = sendBuffer.nextFrame(100);
+        StreamFrame second = sendBuffer.nextFrame(100);
+        StreamFrame third = sendBuffer.nextFrame(100);
+
+        // When
+        sendBuffer.frameAcknowledged(second);
+        sendBuffer.frameAcknowledged(third);
+
+        // Then
+        assertThat(sendBuffer.bufferedBytes()).isEqualTo(300);
+
+        // When
+        sendBuffer.frameAcknowledged(first);
+
+        // Then
+        assertThat(sendBuffer.bufferedBytes()).isEqualTo(0);
+    }
+
+    @Test
+    void lostFinalFrameWithoutDataIsRetransmitted() {
+        // Given
+        sendBuffer.add(ByteBuffer.wrap(generateData(0, 100)));
+        sendBuffer.nextFrame(100);
+        sendBuffer.close();
+        StreamFrame finalFrame = sendBuffer.nextFrame(100);
+
+        // When
+        sendBuffer.frameLost(finalFrame);
+
+        // Then
+        StreamFrame retransmitted = sendBuffer.nextRetransmitFrame(100);
+        assertThat(retransmitted.isFinal()).isTrue();
+        assertThat(retransmitted.getOffset()).isEqualTo(100);
+        assertThat(retransmitted.getLength()).isEqualTo(0);
+    }
+
+    @Test
+    void whenAllDataAndFinAreAcknowledgedBufferIsEmpty() {
+        // Given
+        sendBuffer.add(ByteBuffer.wrap(generateData(0, 100)));
+        sendBuffer.close();
+        StreamFrame frame = sendBuffer.nextFrame(100);
+
+        // When
+        sendBuffer.frameAcknowledged(frame);
+
+        // Then
+        assertThat(sendBuffer.allAcknowledged()).isTrue();
+        assertThat(sendBuffer.bufferedBytes()).isEqualTo(0);
+    }
+
+    private byte[] generateData(int offset, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (offset + i);
+        }
+        return data;
+    }
+}
@@ -18,14 +18,24 @@
  */
 package net.luminis.quic.stream;
 
+import net.luminis.quic.frame.MaxStreamDataFrame;
+import net.luminis.quic.frame.QuicFrame;
 import net.luminis.quic.impl.QuicConnectionImpl;
 import net.luminis.quic.impl.Role;
 import net.luminis.quic.frame.StreamFrame;
+import net.luminis.quic.test.TestClock;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 class StreamInputStreamImplTest {
 
@@ -71,4 +81,26 @@ class StreamInputStreamImplTest {
         // Then
         assertThat(incr).isEqualTo(550);
     }
+
+    @Test
+    void whenReceiveWindowGrowsFlowControlLimitIsIncreasedAccordingly() throws Exception {
+        // Given
+        TestClock clock = new TestClock();
+        QuicConnectionImpl connection = mock(QuicConnectionImpl.class);
+        QuicStreamImpl quicStream = new QuicStreamImpl(0, Role.Client, connection, mock(StreamManager.class), mock(FlowControl.class));
+        streamInputStream = new StreamInputStreamImpl(quicStream, 10_000L, new ReceiveWindowTuner(clock, 10_000, 100_000, () -> 100));
+        streamInputStream.addDataFrom(new StreamFrame(0, 0, new byte[10_000], false));
+        streamInputStream.read(new byte[1_000]);
+
+        // When
+        clock.fastForward(100);
+        streamInputStream.read(new byte[9_000]);
+
+        // Then
+        ArgumentCaptor<QuicFrame> frameCaptor = ArgumentCaptor.forClass(QuicFrame.class);
+        verify(connection, atLeastOnce()).send(frameCaptor.capture(), any(Consumer.class), anyBoolean());
+        assertThat(((MaxStreamDataFrame) frameCaptor.getValue()).getMaxData()).isEqualTo(10_000 + 18_000);
+        long incr = streamInputStream.addDataFrom(new StreamFrame(0, 10_000, new byte[18_000], false));
+        assertThat(incr).isEqualTo(18_000);
+    }
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.test;
+
+import net.luminis.quic.concurrent.TimerWheel;
+
+/**
+ * Deterministic timer wheel to use in unit tests: timeouts expire when the test clock is advanced.
+ */
+public class TestTimerWheel extends TimerWheel implements TestClock.ClockListener {
+
+    public TestTimerWheel(TestClock clock) {
+        super(clock, 1, 64);
+        clock.registerListener(this);
+    }
+
+    @Override
+    public void clockAdvanced() {
+        expireTimeouts();
+    }
+}
@@ -173,6 +173,37 @@ class QuicTransportParametersExtensionTest {
         assertThat(transportParametersExtension.getTransportParameters().getInitialMaxStreamsUni()).isEqualTo(256);
     }
 
+    @Test
+    void maxDatagramFrameSizeIsSerializedAndParsed() throws Exception {
+        // Given
+        TransportParameters tp = new TransportParameters(10, 1_048_576, 1024, 256);
+        tp.setInitialSourceConnectionId(new byte[] { 0x01, 0x02, 0x03, 0x04 });
+        tp.setMaxDatagramFrameSize(65535);
+
+        // When
+        byte[] serializedForm = new QuicTransportParametersExtension(Version.getDefault(), tp, Role.Client).getBytes();
+        QuicTransportParametersExtension transportParametersExtension = new QuicTransportParametersExtension(Version.getDefault());
+        transportParametersExtension.parse(ByteBuffer.wrap(serializedForm), Role.Server, mock(Logger.class));
+
+        // Then
+        assertThat(transportParametersExtension.getTransportParameters().getMaxDatagramFrameSize()).isEqualTo(65535);
+    }
+
+    @Test
+    void whenMaxDatagramFrameSizeIsAbsentDatagramsAreNotSupported() throws Exception {
+        // Given
+        TransportParameters tp = new TransportParameters(10, 1_048_576, 1024, 256);
+        tp.setInitialSourceConnectionId(new byte[] { 0x01, 0x02, 0x03, 0x04 });
+
+        // When
+        byte[] serializedForm = new QuicTransportParametersExtension(Version.getDefault(), tp, Role.Client).getBytes();
+        QuicTransportParametersExtension transportParametersExtension = new QuicTransportParametersExtension(Version.getDefault());
+        transportParametersExtension.parse(ByteBuffer.wrap(serializedForm), Role.Server, mock(Logger.class));
+
+        // Then
+        assertThat(transportParametersExtension.getTransportParameters().getMaxDatagramFrameSize()).isEqualTo(0);
+    }
+
     @Test
     void parseInitialSourceCconnectionId() throws Exception {
         //                                                 id sz
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2024 Peter Doornbosch
+ *
+ * This file is part of Kwik, an implementation of the QUIC protocol in Java.
+ *
+ * Kwik is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * Kwik is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.luminis.quic.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReferenceCountedBufferTest {
+
+    @Test
+    void bufferIsRecycledWhenLastReferenceIsReleased() {
+        // Given
+        AtomicInteger recycled = new AtomicInteger();
+        ReferenceCountedBuffer buffer = new ReferenceCountedBuffer(ByteBuffer.allocate(10), b -> recycled.incrementAndGet());
+        buffer.retain();
+
+        // When
+        buffer.release();
+        assertThat(recycled.get()).isEqualTo(0);
+        buffer.release();
+
+        // Then
+        assertThat(recycled.get()).isEqualTo(1);
+    }
+
+    @Test
+    void releasedBufferCannotBeRetained() {
+        // Given
+        ReferenceCountedBuffer buffer = new ReferenceCountedBuffer(ByteBuffer.allocate(10), b -> {});
+        buffer.release();
+
+        // Then
+        assertThatThrownBy(() -> buffer.retain()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void recycledBufferCanBeReused() {
+        // Given
+        ReferenceCountedBuffer buffer = new ReferenceCountedBuffer(ByteBuffer.allocate(10), b -> {});
+        buffer.buffer().put(new byte[4]);
+        buffer.release();
+
+        // When
+        buffer.reuse();
+
+        // Then
+        assertThat(buffer.references()).isEqualTo(1);
+        assertThat(buffer.buffer().position()).isEqualTo(0);
+    }
+
+    @Test
+    void bufferInUseCannotBeReused() {
+        ReferenceCountedBuffer buffer = new ReferenceCountedBuffer(ByteBuffer.allocate(10), b -> {});
+
+        assertThatThrownBy(() -> buffer.reuse()).isInstanceOf(IllegalStateException.class);
+    }
+}
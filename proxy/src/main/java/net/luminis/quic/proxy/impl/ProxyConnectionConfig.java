@@ -28,8 +28,12 @@ public class ProxyConnectionConfig implements ConnectionConfig {
     private long maxConnectionBufferSize;
     private long maxUnidirectionalStreamBufferSize;
     private long maxBidirectionalStreamBufferSize;
+    private boolean receiveWindowAutoTuning;
+    private long maxStreamReceiveWindow;
+    private long maxConnectionReceiveWindow;
     private int activeConnectionIdLimit;
     private int maxUdpPayloadSize;
+    private int maxDatagramFrameSize;
 
     @Override
     public int maxIdleTimeout() {
@@ -95,6 +99,35 @@ public class ProxyConnectionConfig implements ConnectionConfig {
         this.maxBidirectionalStreamBufferSize = maxBidirectionalStreamBufferSize;
     }
 
+    @Override
+    public boolean receiveWindowAutoTuning() {
+        return receiveWindowAutoTuning;
+    }
+
+    @Override
+    public long maxStreamReceiveWindow() {
+        return maxStreamReceiveWindow;
+    }
+
+    @Override
+    public long maxConnectionReceiveWindow() {
+        return maxConnectionReceiveWindow;
+    }
+
+    void setReceiveWindowAutoTuning(long maxStreamReceiveWindow, long maxConnectionReceiveWindow) {
+        this.receiveWindowAutoTuning = true;
+        this.maxStreamReceiveWindow = maxStreamReceiveWindow;
+        this.maxConnectionReceiveWindow = maxConnectionReceiveWindow;
+    }
+
+    public int getMaxDatagramFrameSize() {
+        return maxDatagramFrameSize;
+    }
+
+    void setMaxDatagramFrameSize(int maxDatagramFrameSize) {
+        this.maxDatagramFrameSize = maxDatagramFrameSize;
+    }
+
     public int getActiveConnectionIdLimit() {
         return activeConnectionIdLimit;
     }
@@ -18,11 +18,13 @@
  */
 package net.luminis.quic.proxy.impl;
 
+import net.luminis.quic.ConnectionConfig.CongestionControlAlgorithm;
 import net.luminis.quic.DatagramSocketFactory;
 import net.luminis.quic.QuicClientConnection;
 import net.luminis.quic.QuicConstants.TransportParameterId;
 import net.luminis.quic.QuicSessionTicket;
 import net.luminis.quic.QuicStream;
+import net.luminis.quic.TokenCache;
 import net.luminis.quic.ack.GlobalAckGenerator;
 import net.luminis.quic.cid.ConnectionIdInfo;
 import net.luminis.quic.cid.ConnectionIdManager;
@@ -48,6 +50,7 @@ import net.luminis.quic.log.NullLogger;
 import net.luminis.quic.packet.*;
 import net.luminis.quic.receive.RawPacket;
 import net.luminis.quic.receive.Receiver;
+import net.luminis.quic.send.Pacer;
 import net.luminis.quic.send.SenderImpl;
 import net.luminis.quic.stream.EarlyDataStream;
 import net.luminis.quic.stream.FlowControl;
@@ -90,6 +93,7 @@ import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import static net.luminis.quic.QuicConstants.TransportErrorCode.FRAME_ENCODING_ERROR;
 import static net.luminis.quic.QuicConstants.TransportErrorCode.PROTOCOL_VIOLATION;
 import static net.luminis.quic.QuicConstants.TransportErrorCode.TRANSPORT_PARAMETER_ERROR;
 import static net.luminis.quic.QuicConstants.TransportErrorCode.VERSION_NEGOTIATION_ERROR;
@@ -155,6 +159,7 @@ public class QuicProxyConnectionImpl extends QuicConnectionImpl implements QuicC
     private final long connectTimeout;
     private final ProxyConnectionConfig connectionProperties;
     private volatile byte[] token;
+    private TokenCache tokenCache;
     private final CountDownLatch handshakeFinishedCondition = new CountDownLatch(1);
     private volatile TransportParameters peerTransportParams;
     private KeepAliveActor keepAliveActor;
@@ -174,7 +179,7 @@ public class QuicProxyConnectionImpl extends QuicConnectionImpl implements QuicC
     private QuicProxyConnectionImpl(String host, int port, String applicationProtocol, long connectTimeout,
                                      ProxyConnectionConfig connectionProperties, QuicSessionTicket sessionTicket,
                                      Version originalVersion, Version preferredVersion, Logger log,
-                                     String proxyHost, Path secretsFile, Integer initialRtt, Integer cidLength,
+                                     String proxyHost, Path secretsFile, Integer initialRtt, CongestionControlAlgorithm congestionControl, Integer cidLength,
                                      List<TlsConstants.CipherSuite> cipherSuites,
                                      X509Certificate clientCertificate, PrivateKey clientCertificateKey,
                                      DatagramSocketFactory socketFactory) throws UnknownHostException, SocketException {
@@ -198,7 +203,7 @@ public class QuicProxyConnectionImpl extends QuicConnectionImpl implements QuicC
 
         idleTimer = new IdleTimer(this, log);
         sender = new SenderImpl(quicVersion, getMaxPacketSize(), socket, new InetSocketAddress(serverAddress, port),
-                        this, "", initialRtt, log);
+                        this, "", initialRtt, congestionControl, log);
         sender.enableAllLevels();
         idleTimer.setPtoSupplier(sender::getPto);
         ackGenerator = sender.getGlobalAckGenerator();
@@ -333,6 +338,9 @@ public class QuicProxyConnectionImpl extends QuicConnectionImpl implements QuicC
         else {
             throw new IllegalArgumentException("maxUdpPayloadSize must be set");
         }
+
+        parameters.setMaxDatagramFrameSize(connectionProperties.getMaxDatagramFrameSize());
+        maxDatagramFrameSize = connectionProperties.getMaxDatagramFrameSize();
         return parameters;
     }
 
@@ -375,6 +383,12 @@ public class QuicProxyConnectionImpl extends QuicConnectionImpl implements QuicC
 
         log.info(String.format("Original destination connection id: %s (scid: %s)", bytesToHex(connectionIdManager.getOriginalDestinationConnectionId()), bytesToHex(connectionIdManager.getInitialConnectionId())));
         generateInitialKeys();
+        if (tokenCache != null) {
+            // https://www.rfc-editor.org/rfc/rfc9000.html#name-address-validation-for-futu
+            // "The client MUST include the token in all Initial packets it sends, unless a Retry replaces the token with
+            //  a newer one."
+            tokenCache.take(host).ifPresent(sender::setInitialToken);
+        }
 
         receiver.start();
         sender.start(connectionSecrets);
@@ -767,6 +781,16 @@ public class QuicProxyConnectionImpl extends QuicConnectionImpl implements QuicC
 
     @Override
     public void process(NewTokenFrame newTokenFrame, QuicPacket packet, Instant timeReceived) {
+        // https://www.rfc-editor.org/rfc/rfc9000.html#name-new_token-frames
+        // "A client MUST treat receipt of a NEW_TOKEN frame with an empty Token field as a connection error of type
+        //  FRAME_ENCODING_ERROR."
+        if (newTokenFrame.getToken().length == 0) {
+            immediateCloseWithError(App, FRAME_ENCODING_ERROR.value, "empty token in NEW_TOKEN frame");
+            return;
+        }
+        if (tokenCache != null) {
+            tokenCache.put(host, newTokenFrame.getToken());
+        }
     }
 
     @Override
@@ -1299,12 +1323,15 @@ public class QuicProxyConnectionImpl extends QuicConnectionImpl implements QuicC
         private String host;
         private int port;
         private QuicSessionTicket sessionTicket;
+        private TokenCache tokenCache;
         private QuicVersion quicVersion = QuicVersion.V1;
         private QuicVersion preferredVersion;
         private Logger log = new NullLogger();
         private String proxyHost;
         private Path secretsFile;
         private Integer initialRtt;
+        private CongestionControlAlgorithm congestionControl = CongestionControlAlgorithm.NewReno;
+        private int pacingBurstAllowance = Pacer.DEFAULT_BURST_ALLOWANCE;
         private Integer connectionIdLength;
         private List<TlsConstants.CipherSuite> cipherSuites = new ArrayList<>();
         private boolean omitCertificateCheck;
@@ -1339,9 +1366,12 @@ public class QuicProxyConnectionImpl extends QuicConnectionImpl implements QuicC
 
             QuicProxyConnectionImpl quicConnection =
                     new QuicProxyConnectionImpl(host, port, applicationProtocol, connectTimeoutInMillis, connectionProperties, sessionTicket, Version.of(quicVersion),
-                            Version.of(preferredVersion), log, proxyHost, secretsFile, initialRtt, connectionIdLength,
+                            Version.of(preferredVersion), log, proxyHost, secretsFile, initialRtt, congestionControl, connectionIdLength,
                             cipherSuites, clientCertificate, clientCertificateKey, socketFactory);
 
+            quicConnection.sender.setPacingBurstAllowance(pacingBurstAllowance);
+            quicConnection.tokenCache = tokenCache;
+
             if (omitCertificateCheck) {
                 quicConnection.trustAnyServerCertificate();
             }
@@ -1476,6 +1506,12 @@ public class QuicProxyConnectionImpl extends QuicConnectionImpl implements QuicC
             return this;
         }
 
+        @Override
+        public Builder tokenCache(TokenCache tokenCache) {
+            this.tokenCache = tokenCache;
+            return this;
+        }
+
         @Override
         public Builder proxy(String host) {
             proxyHost = host;
@@ -1510,6 +1546,42 @@ public class QuicProxyConnectionImpl extends QuicConnectionImpl implements QuicC
             return this;
         }
 
+        @Override
+        public Builder congestionControlAlgorithm(CongestionControlAlgorithm algorithm) {
+            this.congestionControl = Objects.requireNonNull(algorithm);
+            return this;
+        }
+
+        @Override
+        public Builder pacingBurstAllowance(int datagrams) {
+            if (datagrams < 0) {
+                throw new IllegalArgumentException("Pacing burst allowance cannot be negative");
+            }
+            this.pacingBurstAllowance = datagrams;
+            return this;
+        }
+
+        @Override
+        public Builder receiveWindowAutoTuning(long maxStreamReceiveWindow, long maxConnectionReceiveWindow) {
+            if (maxStreamReceiveWindow < 0 || maxConnectionReceiveWindow < 0) {
+                throw new IllegalArgumentException("Maximum receive window cannot be negative");
+            }
+            if (maxConnectionReceiveWindow < maxStreamReceiveWindow) {
+                throw new IllegalArgumentException("Maximum connection receive window can't be less than maximum stream receive window");
+            }
+            connectionProperties.setReceiveWindowAutoTuning(maxStreamReceiveWindow, maxConnectionReceiveWindow);
+            return this;
+        }
+
+        @Override
+        public Builder maxDatagramFrameSize(int maxDatagramFrameSize) {
+            if (maxDatagramFrameSize < 0) {
+                throw new IllegalArgumentException("Maximum datagram frame size cannot be negative");
+            }
+            connectionProperties.setMaxDatagramFrameSize(maxDatagramFrameSize);
+            return this;
+        }
+
         @Override
         public Builder cipherSuite(TlsConstants.CipherSuite cipherSuite) {
             cipherSuites.add(Objects.requireNonNull(cipherSuite));
@@ -74,6 +74,14 @@ public class FrameFormatter implements FrameProcessor {
         jsonGenerator.writeStartObject().write("frame_type", "data_blocked").writeEnd();
     }
 
+    @Override
+    public void process(DatagramFrame datagramFrame, QuicPacket packet, Instant timeReceived) {
+        jsonGenerator.writeStartObject()
+                .write("frame_type", "datagram")
+                .write("length", datagramFrame.getDataLength())
+                .writeEnd();
+    }
+
     @Override
     public void process(HandshakeDoneFrame handshakeDoneFrame, QuicPacket packet, Instant timeReceived) {
         jsonGenerator.writeStartObject().write("frame_type", "handshake_done").writeEnd();